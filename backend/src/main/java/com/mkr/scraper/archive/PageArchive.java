@@ -0,0 +1,302 @@
+package com.mkr.scraper.archive;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only archive of fetched page bodies, so entities can be rebuilt after a selector change without
+ * crawling again. Pages go into {@code pages.warc.gz} as WARC/1.1 {@code resource} records, each its own gzip
+ * member (the usual WARC.gz layout, so {@code zcat} reads the file as plain WARC). {@code pages.idx} holds one
+ * {@code offset length digest url} line per record; the latest record of a URL wins, and a body identical to the
+ * archived one is not stored again.
+ * <p>
+ * Appends are serialized; reads go through a {@link Reader}, which memory-maps the file and is safe to share
+ * between threads. A record torn by a crash has no index line and is never read; a torn index line is cut off
+ * when the archive is opened again.
+ */
+@Component
+public class PageArchive {
+    private static final Logger log = LoggerFactory.getLogger(PageArchive.class);
+    static final String ARCHIVE_FILE = "pages.warc.gz";
+    static final String INDEX_FILE = "pages.idx";
+    // Mapped window size; records crossing a window edge are mapped on their own
+    private static final long REGION = 1L << 30;
+
+    private final boolean enabled;
+    private final Path archiveFile;
+    private final Path indexFile;
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+    private FileChannel archive;
+    private FileChannel indexOut;
+
+    public PageArchive(@Value("${scraper.archive.enabled:false}") boolean enabled,
+                       @Value("${scraper.archive.dir:./data/archive}") Path dir) throws IOException {
+        this.enabled = enabled;
+        this.archiveFile = dir.resolve(ARCHIVE_FILE);
+        this.indexFile = dir.resolve(INDEX_FILE);
+        if (!enabled) return;
+        Files.createDirectories(dir);
+        archive = FileChannel.open(archiveFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        archive.position(archive.size());
+        loadIndex(archive.size());
+        indexOut = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        log.info("Page archive {}: {} pages, {} bytes", archiveFile, index.size(), archive.size());
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public Set<String> urls() {
+        return index.keySet();
+    }
+
+    /**
+     * Archives a downloaded body unless the archive already holds the same bytes for {@code url}.
+     * No-op when the archive is disabled.
+     */
+    public void append(String url, String charset, byte[] body, String digest) throws IOException {
+        if (!enabled) return;
+        Entry current = index.get(url);
+        if (current != null && current.digest().equals(digest)) return;
+        // Compress outside the lock, fetchers call this concurrently
+        byte[] record = compress(header(url, Instant.now(), charset, body.length, digest), body);
+        synchronized (this) {
+            long offset = archive.position();
+            writeFully(archive, ByteBuffer.wrap(record));
+            Entry entry = new Entry(offset, record.length, digest);
+            // Index line only once the record is complete: a crash in between leaves an unindexed tail
+            String line = offset + " " + record.length + " " + digest + " " + url + "\n";
+            writeFully(indexOut, ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+            index.put(url, entry);
+        }
+    }
+
+    /** Opens a reader over everything appended so far and anything appended while it is open. */
+    public Reader reader() throws IOException {
+        if (!enabled) throw new IllegalStateException("Page archive is disabled (scraper.archive.enabled)");
+        return new Reader(FileChannel.open(archiveFile, StandardOpenOption.READ));
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (!enabled || !archive.isOpen()) return;
+        archive.force(true);
+        indexOut.force(true);
+        archive.close();
+        indexOut.close();
+    }
+
+    private void loadIndex(long archiveSize) throws IOException {
+        if (!Files.exists(indexFile)) return;
+        int torn = 0;
+        byte[] bytes = Files.readAllBytes(indexFile);
+        int complete = bytes.length;
+        while (complete > 0 && bytes[complete - 1] != '\n') complete--;
+        if (complete < bytes.length) {
+            // A crash mid-line: cut it off, or the next appended line would run into it
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+            }
+            torn++;
+        }
+        for (String line : new String(bytes, 0, complete, StandardCharsets.UTF_8).split("\n")) {
+            String[] parts = line.split(" ", 4);
+            if (parts.length < 4) {
+                torn++;
+                continue;
+            }
+            long offset;
+            int length;
+            try {
+                offset = Long.parseLong(parts[0]);
+                length = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                torn++;
+                continue;
+            }
+            if (offset < 0 || length < 0 || offset + length > archiveSize) {
+                torn++;
+                continue;
+            }
+            index.put(parts[3], new Entry(offset, length, parts[2]));
+        }
+        if (torn > 0) log.warn("Page archive index {}: ignored {} incomplete entries", indexFile, torn);
+    }
+
+    static String header(String url, Instant date, String charset, int contentLength, String digest) {
+        return "WARC/1.1\r\n"
+                + "WARC-Type: resource\r\n"
+                + "WARC-Target-URI: " + url + "\r\n"
+                + "WARC-Date: " + date + "\r\n"
+                + "WARC-Payload-Digest: sha-256:" + digest + "\r\n"
+                + "Content-Type: text/html; charset=" + charset + "\r\n"
+                + "Content-Length: " + contentLength + "\r\n"
+                + "\r\n";
+    }
+
+    private static byte[] compress(String header, byte[] body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 256);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 8192)) {
+            gzip.write(header.getBytes(StandardCharsets.UTF_8));
+            gzip.write(body);
+            gzip.write("\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) channel.write(buffer);
+    }
+
+    private record Entry(long offset, int length, String digest) {}
+
+    /** One archived page. */
+    public record Record(String url, Instant date, String charset, byte[] body) {}
+
+    /**
+     * Memory-mapped view of the archive. The file is mapped in 1 GiB windows on first use; lookups from many
+     * threads at once only share read-only buffers.
+     */
+    public final class Reader implements AutoCloseable {
+        private final FileChannel channel;
+        private final Map<Integer, MappedByteBuffer> regions = new HashMap<>();
+
+        private Reader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public boolean contains(String url) {
+            return index.containsKey(url);
+        }
+
+        /** The latest archived body of {@code url}; FileNotFoundException when it was never archived. */
+        public Record read(String url) throws IOException {
+            Entry entry = index.get(url);
+            if (entry == null) throw new FileNotFoundException("Not archived: " + url);
+            return parse(url, slice(entry.offset(), entry.length()));
+        }
+
+        private ByteBuffer slice(long offset, int length) throws IOException {
+            int region = (int) (offset / REGION);
+            long regionStart = region * REGION;
+            long regionEnd = Math.min(regionStart + REGION, channel.size());
+            if (offset + length > regionEnd) {
+                // Straddles a window edge, or was appended after the window was mapped
+                return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+            MappedByteBuffer mapped = region(region, regionStart, regionEnd);
+            if (offset + length > regionStart + mapped.capacity()) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+            }
+            return mapped.slice((int) (offset - regionStart), length);
+        }
+
+        private synchronized MappedByteBuffer region(int region, long start, long end) {
+            return regions.computeIfAbsent(region, r -> {
+                try {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    static Record parse(String url, ByteBuffer compressed) throws IOException {
+        byte[] raw;
+        try (InputStream in = new GZIPInputStream(new BufferInputStream(compressed), 8192)) {
+            raw = in.readAllBytes();
+        }
+        int headerEnd = indexOf(raw, "\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        if (headerEnd < 0) throw new IOException("Corrupt archive record for " + url);
+        Map<String, String> headers = new HashMap<>();
+        List<String> lines = List.of(new String(raw, 0, headerEnd, StandardCharsets.UTF_8).split("\r\n"));
+        for (String line : lines.subList(1, lines.size())) {
+            int colon = line.indexOf(':');
+            if (colon > 0) headers.put(line.substring(0, colon), line.substring(colon + 1).trim());
+        }
+        int length = Integer.parseInt(headers.getOrDefault("Content-Length", "-1"));
+        int bodyStart = headerEnd + 4;
+        if (length < 0 || bodyStart + length > raw.length) throw new IOException("Corrupt archive record for " + url);
+        String contentType = headers.getOrDefault("Content-Type", "");
+        int cs = contentType.indexOf("charset=");
+        String charset = cs >= 0 ? contentType.substring(cs + "charset=".length()) : "UTF-8";
+        byte[] body = new byte[length];
+        System.arraycopy(raw, bodyStart, body, 0, length);
+        return new Record(headers.get("WARC-Target-URI"), Instant.parse(headers.get("WARC-Date")), charset, body);
+    }
+
+    private static int indexOf(byte[] haystack, byte[] needle) {
+        outer:
+        for (int i = 0; i <= haystack.length - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (haystack[i + j] != needle[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    // InputStream over a (mapped) buffer, without copying it to the heap first
+    private static final class BufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
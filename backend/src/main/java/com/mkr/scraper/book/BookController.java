@@ -1,24 +1,82 @@
 package com.mkr.scraper.book;
 
+import com.mkr.scraper.snapshot.BookTable;
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+import com.mkr.scraper.snapshot.SnapshotStore;
+import com.mkr.scraper.web.Keyset;
+import com.mkr.scraper.web.NdjsonExporter;
+import com.mkr.scraper.web.PreparedResponses;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/scrapedBooks")
 public class BookController {
 
     private final BookRepository bookRepository;
+    private final SnapshotStore snapshotStore;
+    private final NdjsonExporter ndjsonExporter;
+    private final PreparedResponses preparedResponses;
 
-    public BookController(BookRepository bookRepository) {
+    public BookController(BookRepository bookRepository, SnapshotStore snapshotStore, NdjsonExporter ndjsonExporter,
+                          PreparedResponses preparedResponses) {
         this.bookRepository = bookRepository;
+        this.snapshotStore = snapshotStore;
+        this.ndjsonExporter = ndjsonExporter;
+        this.preparedResponses = preparedResponses;
     }
 
+    /**
+     * Served from the last published snapshot. Without parameters returns every book, as bytes prepared when the
+     * snapshot was published (see {@link PreparedResponses}); with {@code limit} and/or {@code after} returns one
+     * keyset page ordered by id. {@code fields=summary} leaves out the description and product details.
+     */
     @GetMapping
-    public List<BookEntity> getBooks() {
-        return bookRepository.findAll();
+    public ResponseEntity<?> getBooks(@RequestParam(required = false) Long after,
+                                      @RequestParam(required = false) Integer limit,
+                                      @RequestParam(defaultValue = "full") String fields,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                      String acceptEncoding) {
+        CatalogSnapshot<BookEntity> books = snapshotStore.books();
+        boolean summary = isSummary(fields);
+        if (after == null && limit == null) {
+            PreparedResponses.Body body = summary ? PreparedResponses.Body.BOOK_SUMMARIES : PreparedResponses.Body.BOOKS;
+            Optional<ResponseEntity<byte[]>> prepared = preparedResponses.serve(body, books.generation(), acceptEncoding);
+            if (prepared.isPresent()) return prepared.get();
+        }
+        if (summary) {
+            // Straight from the columns, without inflating descriptions
+            return Keyset.page(books.view(BookTable.of(books.items())::summary), after, limit, BookSummary::id,
+                    Function.identity());
+        }
+        return Keyset.page(books, after, limit, BookEntity::getId, Function.identity());
+    }
+
+    // Full export as NDJSON, streamed from a database cursor
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBooks(@RequestParam(defaultValue = "full") String fields) {
+        if (isSummary(fields)) {
+            return ndjsonExporter.export(bookRepository::streamSummariesByRemovedAtIsNullOrderByIdAsc);
+        }
+        return ndjsonExporter.export(bookRepository::streamByRemovedAtIsNullOrderByIdAsc);
     }
-}
 
+    private static boolean isSummary(String fields) {
+        return switch (fields) {
+            case "full" -> false;
+            case "summary" -> true;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fields must be full or summary");
+        };
+    }
+}
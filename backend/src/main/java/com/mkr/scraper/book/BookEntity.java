@@ -1,13 +1,20 @@
 package com.mkr.scraper.book;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+        @Index(name = "idx_books_upc", columnList = "upc"),
+        @Index(name = "idx_books_removed_at", columnList = "removed_at")
+})
 public class BookEntity {
+    // Pooled sequence instead of IDENTITY so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "books_seq")
+    @SequenceGenerator(name = "books_seq", sequenceName = "books_seq", allocationSize = 50)
     private Long id;
 
     private String imageUrl;
@@ -49,6 +56,21 @@ public class BookEntity {
     @Column(name = "num_reviews")
     private Integer numberOfReviews;
 
+    // Hash of the scraped fields; unchanged books are skipped on the next run
+    @JsonIgnore
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Listing page the book was last seen on; lets an unchanged listing be carried over without parsing
+    @JsonIgnore
+    @Column(name = "source_url", length = 512)
+    private String sourceUrl;
+
+    // Tombstone: set when the book disappears from the site, cleared if it comes back
+    @JsonIgnore
+    @Column(name = "removed_at")
+    private Instant removedAt;
+
     // getters and setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -80,4 +102,10 @@ public class BookEntity {
     public void setTax(BigDecimal tax) { this.tax = tax; }
     public Integer getNumberOfReviews() { return numberOfReviews; }
     public void setNumberOfReviews(Integer numberOfReviews) { this.numberOfReviews = numberOfReviews; }
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    public String getSourceUrl() { return sourceUrl; }
+    public void setSourceUrl(String sourceUrl) { this.sourceUrl = sourceUrl; }
+    public Instant getRemovedAt() { return removedAt; }
+    public void setRemovedAt(Instant removedAt) { this.removedAt = removedAt; }
 }
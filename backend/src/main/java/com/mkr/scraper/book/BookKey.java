@@ -0,0 +1,14 @@
+package com.mkr.scraper.book;
+
+import java.time.Instant;
+
+/**
+ * The columns the scraper needs to match and diff a {@link BookEntity} without loading it.
+ */
+public record BookKey(Long id, String upc, String productUrl, String sourceUrl, String contentHash,
+                      Instant removedAt) {
+    public static BookKey of(BookEntity b) {
+        return new BookKey(b.getId(), b.getUpc(), b.getProductUrl(), b.getSourceUrl(), b.getContentHash(),
+                b.getRemovedAt());
+    }
+}
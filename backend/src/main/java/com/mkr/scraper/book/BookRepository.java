@@ -1,8 +1,36 @@
 package com.mkr.scraper.book;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface BookRepository extends JpaRepository<BookEntity, Long> {
-    // ...existing code...
-}
+    // Read queries only see live rows; tombstoned books (removedAt set) stay for id stability
+
+    List<BookEntity> findByRemovedAtIsNullOrderByIdAsc();
+
+    // Cursor-backed streams for exports; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<BookEntity> streamByRemovedAtIsNullOrderByIdAsc();
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<BookSummary> streamSummariesByRemovedAtIsNullOrderByIdAsc();
+
+    // Scrape merge: match by key columns only, tombstone in bulk
+
+    @Query("select new com.mkr.scraper.book.BookKey(b.id, b.upc, b.productUrl, b.sourceUrl, b.contentHash, b.removedAt) from BookEntity b")
+    List<BookKey> findAllKeys();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update BookEntity b set b.removedAt = :at where b.id in :ids and b.removedAt is null")
+    int markRemoved(@Param("ids") Collection<Long> ids, @Param("at") Instant at);
+}
@@ -0,0 +1,15 @@
+package com.mkr.scraper.book;
+
+import java.math.BigDecimal;
+
+/**
+ * List-view projection of {@link BookEntity}: everything a card needs, without the description CLOB
+ * or product-page details.
+ */
+public record BookSummary(Long id, String imageUrl, String rating, String title, BigDecimal price,
+                          String category, String availability) {
+    public static BookSummary of(BookEntity b) {
+        return new BookSummary(b.getId(), b.getImageUrl(), b.getRating(), b.getTitle(), b.getPrice(),
+                b.getCategory(), b.getAvailability());
+    }
+}
@@ -1,6 +1,8 @@
 package com.mkr.scraper.config;
 
+import com.mkr.scraper.web.Keyset;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -11,6 +13,7 @@ public class WebConfig implements WebMvcConfigurer {
         registry.addMapping("/api/**")
                 .allowedOrigins("http://localhost:3000", "http://localhost:5173")
                 .allowedMethods("GET")
+                .exposedHeaders(Keyset.NEXT_AFTER_HEADER, Keyset.GENERATION_HEADER, HttpHeaders.ETAG)
                 .allowCredentials(false);
     }
 }
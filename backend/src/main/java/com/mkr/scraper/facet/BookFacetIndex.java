@@ -0,0 +1,269 @@
+package com.mkr.scraper.facet;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.snapshot.BookTable;
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Facet counts over one books snapshot, answered from bitmaps: one bitmap (a {@code long[]} over snapshot
+ * positions) per category, rating and availability value, plus one per price band and a cumulative "priced
+ * below band n" bitmap per band. A query ANDs the filter bitmaps and counts the bits each value bitmap shares
+ * with them, so its cost depends on the number of facet values and the catalogue size in words, never on
+ * reading books.
+ * <p>
+ * Facets are disjunctive: each facet's counts apply every filter except its own, so a UI can show the
+ * alternatives to the selected category or rating.
+ */
+public final class BookFacetIndex {
+    static final String[] RATINGS = {"One", "Two", "Three", "Four", "Five"};
+    // At most this many price bands; the band width is the smallest "nice" width that fits
+    private static final int MAX_BANDS = 64;
+    private static final int MAX_BUCKETS = 10;
+    private static final long[] NICE_STEPS = {1, 2, 5};
+
+    private final long generation;
+    private final int size;
+    private final long[] live;
+    private final Map<String, long[]> categories;
+    private final Map<String, long[]> ratings;
+    private final Map<String, long[]> availability;
+    private final long[] priceCents;
+    private final long[] priced;
+    private final long bandCents;
+    private final long[][] bands;
+    // below[n]: priced less than n * bandCents
+    private final long[][] below;
+    private final int bandsPerBucket;
+
+    private BookFacetIndex(long generation, int size, Map<String, long[]> categories, Map<String, long[]> ratings,
+                           Map<String, long[]> availability, long[] priceCents, long[] priced, long bandCents,
+                           long[][] bands, int bandsPerBucket) {
+        this.generation = generation;
+        this.size = size;
+        this.live = new long[words(size)];
+        for (int i = 0; i < size; i++) set(live, i);
+        this.categories = categories;
+        this.ratings = ratings;
+        this.availability = availability;
+        this.priceCents = priceCents;
+        this.priced = priced;
+        this.bandCents = bandCents;
+        this.bands = bands;
+        this.below = new long[bands.length + 1][];
+        below[0] = new long[words(size)];
+        for (int n = 0; n < bands.length; n++) below[n + 1] = or(below[n], bands[n]);
+        this.bandsPerBucket = bandsPerBucket;
+    }
+
+    public static BookFacetIndex empty() {
+        return build(0, List.of());
+    }
+
+    public static BookFacetIndex of(CatalogSnapshot<BookEntity> snapshot) {
+        return build(snapshot.generation(), snapshot.items());
+    }
+
+    static BookFacetIndex build(long generation, List<BookEntity> books) {
+        int size = books.size();
+        int words = words(size);
+        Map<String, long[]> categories = new TreeMap<>();
+        Map<String, long[]> ratings = new TreeMap<>();
+        Map<String, long[]> availability = new TreeMap<>();
+        long[] priceCents = new long[size];
+        long[] priced = new long[words];
+        long maxCents = 0;
+        BookTable table = BookTable.of(books);
+        for (int doc = 0; doc < size; doc++) {
+            String category = table.category(doc);
+            if (category != null) set(categories.computeIfAbsent(category, k -> new long[words]), doc);
+            String rating = table.rating(doc);
+            if (rating != null) set(ratings.computeIfAbsent(rating, k -> new long[words]), doc);
+            String stock = stock(table.availability(doc));
+            if (stock != null) set(availability.computeIfAbsent(stock, k -> new long[words]), doc);
+            long cents = table.priceCents(doc);
+            priceCents[doc] = cents == BookTable.NO_PRICE || cents < 0 ? -1 : cents;
+            if (priceCents[doc] >= 0) {
+                set(priced, doc);
+                maxCents = Math.max(maxCents, priceCents[doc]);
+            }
+        }
+        long bandCents = niceWidth(100, (maxCents + 1 + MAX_BANDS - 1) / MAX_BANDS);
+        long[][] bands = new long[(int) (maxCents / bandCents) + 1][];
+        for (int n = 0; n < bands.length; n++) bands[n] = new long[words];
+        for (int doc = 0; doc < size; doc++) {
+            if (priceCents[doc] >= 0) set(bands[(int) (priceCents[doc] / bandCents)], doc);
+        }
+        // Histogram buckets are whole bands, at a nice width of their own
+        long bucketCents = niceWidth(bandCents, (maxCents + 1 + MAX_BUCKETS - 1) / MAX_BUCKETS);
+        return new BookFacetIndex(generation, size, categories, ratings, availability, priceCents, priced,
+                bandCents, bands, (int) (bucketCents / bandCents));
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Counts for every facet under {@code filter}; unknown filter values simply match nothing. */
+    public Facets query(Filter filter) {
+        long[] category = filter.category() == null ? null : categories.getOrDefault(filter.category(), none());
+        long[] rating = filter.rating() == null ? null : ratings.getOrDefault(filter.rating(), none());
+        long[] stock = filter.availability() == null ? null : availability.getOrDefault(filter.availability(), none());
+        long[] price = priceRange(filter.minPrice(), filter.maxPrice());
+
+        long[] all = and(and(category, rating), and(stock, price));
+        List<ValueCount> categoryCounts = counts(categories, and(rating, and(stock, price)));
+        List<ValueCount> ratingCounts = counts(ratings, and(category, and(stock, price)));
+        ratingCounts.sort((a, b) -> Integer.compare(ratingOrder(a.value()), ratingOrder(b.value())));
+        List<ValueCount> stockCounts = counts(availability, and(category, and(rating, price)));
+
+        long[] othersThanPrice = and(category, and(rating, stock));
+        List<PriceBucket> buckets = new ArrayList<>();
+        for (int first = 0; first < bands.length; first += bandsPerBucket) {
+            int last = Math.min(bands.length, first + bandsPerBucket);
+            long[] bucket = andNot(below[last], below[first]);
+            // Only the part of the bucket inside the price filter counts
+            int count = countAnd(and(bucket, price), othersThanPrice);
+            buckets.add(new PriceBucket(money(first * bandCents), money(last * bandCents), count));
+        }
+        return new Facets(generation, count(all == null ? live : all), categoryCounts, ratingCounts, buckets,
+                stockCounts);
+    }
+
+    /** Priced books with min <= price <= max; null when neither bound is given. */
+    private long[] priceRange(BigDecimal min, BigDecimal max) {
+        if (min == null && max == null) return null;
+        long[] range = priced;
+        if (max != null) range = atMost(cents(max, RoundingMode.FLOOR));
+        if (min != null) range = andNot(range, atMost(cents(min, RoundingMode.CEILING) - 1));
+        return range;
+    }
+
+    // A bound past any price a long can hold is past every price we have, so it clamps instead of overflowing
+    private static long cents(BigDecimal bound, RoundingMode rounding) {
+        BigDecimal cents = bound.movePointRight(2).setScale(0, rounding);
+        return cents.compareTo(BigDecimal.valueOf(Long.MAX_VALUE)) >= 0 ? Long.MAX_VALUE : cents.longValueExact();
+    }
+
+    private long[] atMost(long cents) {
+        if (cents < 0) return none();
+        long band = cents / bandCents;
+        if (band >= bands.length) return priced;
+        long[] result = below[(int) band].clone();
+        // Within the band the filter edge falls in, check each price; the rest is whole bands
+        long[] edge = bands[(int) band];
+        for (int w = 0; w < edge.length; w++) {
+            long word = edge[w];
+            while (word != 0) {
+                int doc = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (priceCents[doc] <= cents) set(result, doc);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    private List<ValueCount> counts(Map<String, long[]> values, long[] filter) {
+        List<ValueCount> counts = new ArrayList<>(values.size());
+        values.forEach((value, bits) -> counts.add(new ValueCount(value, countAnd(bits, filter))));
+        return counts;
+    }
+
+    private long[] none() {
+        return new long[words(size)];
+    }
+
+    static String stock(String availability) {
+        if (availability == null || availability.isBlank()) return null;
+        int paren = availability.indexOf('(');
+        return (paren >= 0 ? availability.substring(0, paren) : availability).trim();
+    }
+
+    private static int ratingOrder(String rating) {
+        for (int i = 0; i < RATINGS.length; i++) if (RATINGS[i].equals(rating)) return i;
+        return RATINGS.length;
+    }
+
+    private static BigDecimal money(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    /** Smallest width of the form unit * {1, 2, 5} * 10^k that is at least {@code atLeast}. */
+    static long niceWidth(long unit, long atLeast) {
+        for (long scale = 1; ; scale *= 10) {
+            for (long step : NICE_STEPS) {
+                if (unit * step * scale >= atLeast) return unit * step * scale;
+            }
+        }
+    }
+
+    // Bitmap helpers; null stands for "no filter", i.e. every book
+
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    static long[] and(long[] a, long[] b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        long[] out = new long[a.length];
+        for (int i = 0; i < a.length; i++) out[i] = a[i] & b[i];
+        return out;
+    }
+
+    static long[] or(long[] a, long[] b) {
+        long[] out = new long[a.length];
+        for (int i = 0; i < a.length; i++) out[i] = a[i] | b[i];
+        return out;
+    }
+
+    static long[] andNot(long[] a, long[] b) {
+        long[] out = new long[a.length];
+        for (int i = 0; i < a.length; i++) out[i] = a[i] & ~b[i];
+        return out;
+    }
+
+    static int count(long[] bits) {
+        int n = 0;
+        for (long word : bits) n += Long.bitCount(word);
+        return n;
+    }
+
+    static int countAnd(long[] a, long[] b) {
+        if (b == null) return count(a);
+        int n = 0;
+        for (int i = 0; i < a.length; i++) n += Long.bitCount(a[i] & b[i]);
+        return n;
+    }
+
+    /** Null fields are not filtered on; prices are inclusive. */
+    public record Filter(String category, String rating, String availability, BigDecimal minPrice,
+                         BigDecimal maxPrice) {
+        public static final Filter NONE = new Filter(null, null, null, null, null);
+    }
+
+    public record ValueCount(String value, int count) {}
+
+    /** Books priced from {@code from} (inclusive) to {@code to} (exclusive). */
+    public record PriceBucket(BigDecimal from, BigDecimal to, int count) {}
+
+    /**
+     * @param total books matching every filter
+     */
+    public record Facets(long generation, int total, List<ValueCount> categories, List<ValueCount> ratings,
+                         List<PriceBucket> prices, List<ValueCount> availability) {}
+}
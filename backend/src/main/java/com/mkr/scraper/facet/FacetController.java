@@ -0,0 +1,36 @@
+package com.mkr.scraper.facet;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.math.BigDecimal;
+
+@RestController
+@RequestMapping("/api/books")
+public class FacetController {
+    private final FacetService facetService;
+
+    public FacetController(FacetService facetService) {
+        this.facetService = facetService;
+    }
+
+    // Counts per category, rating, price bucket and availability; each facet ignores its own filter
+    @GetMapping("/facets")
+    public BookFacetIndex.Facets facets(@RequestParam(required = false) String category,
+                                        @RequestParam(required = false) String rating,
+                                        @RequestParam(required = false) String availability,
+                                        @RequestParam(required = false) BigDecimal minPrice,
+                                        @RequestParam(required = false) BigDecimal maxPrice) {
+        if ((minPrice != null && minPrice.signum() < 0) || (maxPrice != null && maxPrice.signum() < 0)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "minPrice and maxPrice must be >= 0");
+        }
+        if (minPrice != null && maxPrice != null && minPrice.compareTo(maxPrice) > 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "minPrice must not exceed maxPrice");
+        }
+        return facetService.bookFacets(new BookFacetIndex.Filter(category, rating, availability, minPrice, maxPrice));
+    }
+}
@@ -0,0 +1,41 @@
+package com.mkr.scraper.facet;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.scrape.ScrapeCompletedEvent;
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+import com.mkr.scraper.snapshot.SnapshotPublishedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the facet index of the current books snapshot. It is built once per publish, off to the side, and swapped
+ * in with a single reference write, so facet queries never touch entities or see a half-built index.
+ */
+@Service
+public class FacetService {
+    private static final Logger log = LoggerFactory.getLogger(FacetService.class);
+
+    private final AtomicReference<BookFacetIndex> books = new AtomicReference<>(BookFacetIndex.empty());
+
+    @SuppressWarnings("unchecked")
+    @EventListener
+    public void onSnapshotPublished(SnapshotPublishedEvent event) {
+        if (event.kind() == ScrapeCompletedEvent.Kind.BOOKS) rebuildBooks((CatalogSnapshot<BookEntity>) event.snapshot());
+    }
+
+    public void rebuildBooks(CatalogSnapshot<BookEntity> snapshot) {
+        long start = System.nanoTime();
+        BookFacetIndex index = BookFacetIndex.of(snapshot);
+        books.set(index);
+        log.info("Book facet index rebuilt: {} books, generation {} in {} ms", index.size(), index.generation(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public BookFacetIndex.Facets bookFacets(BookFacetIndex.Filter filter) {
+        return books.get().query(filter);
+    }
+}
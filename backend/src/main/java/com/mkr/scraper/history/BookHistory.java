@@ -0,0 +1,14 @@
+package com.mkr.scraper.history;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Changes of one book's series between {@code from} and {@code to}. Prices are in pounds, availability in copies
+ * in stock; a series without any value in the range is left out.
+ */
+public record BookHistory(String upc, Instant from, Instant to, Map<HistorySeries, List<Point>> series) {
+    public record Point(Instant at, BigDecimal value) {}
+}
@@ -0,0 +1,67 @@
+package com.mkr.scraper.history;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Byte encoding of a series block's points after the first: per point the seconds since the previous one as an
+ * unsigned varint, then the change of value as a zigzag varint. A price that moves by a few pounds after a few
+ * days takes 4 to 5 bytes, an availability count that drops by one takes 4.
+ */
+final class DeltaCodec {
+    private DeltaCodec() {}
+
+    /** {@code data} with one more point appended, as a new array. */
+    static byte[] append(byte[] data, long seconds, long change) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(20);
+        writeVarint(out, seconds);
+        writeVarint(out, zigzag(change));
+        byte[] point = out.toByteArray();
+        byte[] grown = Arrays.copyOf(data, data.length + point.length);
+        System.arraycopy(point, 0, grown, data.length, point.length);
+        return grown;
+    }
+
+    /** Calls {@code points} with every point of a block, the first one included, oldest first. */
+    static void decode(long firstAt, long firstValue, byte[] data, PointConsumer points) {
+        long at = firstAt;
+        long value = firstValue;
+        points.accept(at, value);
+        int[] pos = {0};
+        while (pos[0] < data.length) {
+            at += readVarint(data, pos);
+            value += unzigzag(readVarint(data, pos));
+            points.accept(at, value);
+        }
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    static long readVarint(byte[] data, int[] pos) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = data[pos[0]++];
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return v;
+        }
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    @FunctionalInterface
+    interface PointConsumer {
+        void accept(long epochSecond, long value);
+    }
+}
@@ -0,0 +1,97 @@
+package com.mkr.scraper.history;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Up to {@code scraper.history.block-points} consecutive changes of one series of one book. The first and last
+ * point are kept as columns, so the value at either end of a block is known without decoding it; the points in
+ * between are {@link DeltaCodec} bytes. New points go to the series' {@code latest} block until it is full.
+ */
+@Entity
+@Table(name = "history_blocks", indexes = {
+        @Index(name = "idx_history_blocks_series", columnList = "upc, series, first_at"),
+        @Index(name = "idx_history_blocks_latest", columnList = "series, latest, last_at")
+})
+public class HistoryBlockEntity {
+    static final int MAX_DATA_BYTES = 2048;
+    // Two 10-byte varints: the most one point can add
+    static final int MAX_POINT_BYTES = 20;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "history_blocks_seq")
+    @SequenceGenerator(name = "history_blocks_seq", sequenceName = "history_blocks_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String upc;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private HistorySeries series;
+
+    @Column(name = "first_at", nullable = false)
+    private Instant firstAt;
+
+    @Column(name = "first_value", nullable = false)
+    private long firstValue;
+
+    @Column(name = "last_at", nullable = false)
+    private Instant lastAt;
+
+    @Column(name = "last_value", nullable = false)
+    private long lastValue;
+
+    @Column(nullable = false)
+    private int points;
+
+    @Column(nullable = false)
+    private boolean latest;
+
+    @Column(nullable = false, length = MAX_DATA_BYTES)
+    private byte[] data;
+
+    protected HistoryBlockEntity() {}
+
+    HistoryBlockEntity(String upc, HistorySeries series, Instant at, long value) {
+        this.upc = upc;
+        this.series = series;
+        this.firstAt = at;
+        this.firstValue = value;
+        this.lastAt = at;
+        this.lastValue = value;
+        this.points = 1;
+        this.latest = true;
+        this.data = new byte[0];
+    }
+
+    /** Adds a point no earlier than the last one. */
+    void append(Instant at, long value) {
+        long seconds = Math.max(0, at.getEpochSecond() - lastAt.getEpochSecond());
+        data = DeltaCodec.append(data, seconds, value - lastValue);
+        lastAt = lastAt.plusSeconds(seconds);
+        lastValue = value;
+        points++;
+    }
+
+    boolean full(int maxPoints) {
+        return points >= maxPoints || data.length + MAX_POINT_BYTES > MAX_DATA_BYTES;
+    }
+
+    void decode(DeltaCodec.PointConsumer consumer) {
+        DeltaCodec.decode(firstAt.getEpochSecond(), firstValue, data, consumer);
+    }
+
+    public Long getId() { return id; }
+    public String getUpc() { return upc; }
+    public HistorySeries getSeries() { return series; }
+    public Instant getFirstAt() { return firstAt; }
+    public long getFirstValue() { return firstValue; }
+    public Instant getLastAt() { return lastAt; }
+    public long getLastValue() { return lastValue; }
+    public int getPoints() { return points; }
+    public boolean isLatest() { return latest; }
+    public void setLatest(boolean latest) { this.latest = latest; }
+    public int getDataBytes() { return data.length; }
+}
@@ -0,0 +1,42 @@
+package com.mkr.scraper.history;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface HistoryBlockRepository extends JpaRepository<HistoryBlockEntity, Long> {
+    // Recording: the block each series appends to
+
+    List<HistoryBlockEntity> findByLatestTrueAndUpcIn(Collection<String> upcs);
+
+    boolean existsByUpc(String upc);
+
+    @Query("select distinct b.upc from HistoryBlockEntity b")
+    List<String> findTrackedUpcs();
+
+    // History of one book: the blocks overlapping [from, to], oldest first
+
+    @Query("select b from HistoryBlockEntity b where b.upc = :upc and b.firstAt <= :to and b.lastAt >= :from"
+            + " order by b.series, b.firstAt")
+    List<HistoryBlockEntity> findOverlapping(@Param("upc") String upc, @Param("from") Instant from,
+                                             @Param("to") Instant to);
+
+    Optional<HistoryBlockEntity> findFirstByUpcAndSeriesAndLastAtLessThanOrderByLastAtDesc(String upc,
+                                                                                          HistorySeries series,
+                                                                                          Instant before);
+
+    // Movers: series that changed after a date, and their block in effect at that date
+
+    List<HistoryBlockEntity> findBySeriesAndLatestTrueAndLastAtGreaterThan(HistorySeries series, Instant since);
+
+    @Query("select b from HistoryBlockEntity b where b.series = :series and b.upc in :upcs and b.firstAt <= :at"
+            + " and b.firstAt = (select max(c.firstAt) from HistoryBlockEntity c"
+            + " where c.upc = b.upc and c.series = b.series and c.firstAt <= :at)")
+    List<HistoryBlockEntity> findInEffectAt(@Param("series") HistorySeries series,
+                                            @Param("upcs") Collection<String> upcs, @Param("at") Instant at);
+}
@@ -0,0 +1,69 @@
+package com.mkr.scraper.history;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+
+@RestController
+@RequestMapping("/api/books")
+public class HistoryController {
+    private static final int MAX_MOVERS = 100;
+
+    private final PriceHistory priceHistory;
+
+    public HistoryController(PriceHistory priceHistory) {
+        this.priceHistory = priceHistory;
+    }
+
+    // from/to are instants or dates (start of day, UTC); both optional
+    @GetMapping("/{upc}/history")
+    public BookHistory history(@PathVariable String upc, @RequestParam(required = false) String from,
+                               @RequestParam(required = false) String to) {
+        Instant start = from == null ? Instant.EPOCH : instant("from", from);
+        Instant end = to == null ? Instant.now() : instant("to", to);
+        if (start.isAfter(end)) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "from must not be after to");
+        if (!priceHistory.tracked(upc)) throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No history for UPC " + upc);
+        return priceHistory.history(upc, start, end);
+    }
+
+    // Biggest relative changes of one series since a date
+    @GetMapping("/movers")
+    public List<PriceHistory.Mover> movers(@RequestParam String since,
+                                           @RequestParam(defaultValue = "price") String series,
+                                           @RequestParam(defaultValue = "20") int limit) {
+        if (limit < 1 || limit > MAX_MOVERS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be in 1.." + MAX_MOVERS);
+        }
+        return priceHistory.movers(series(series), instant("since", since), limit);
+    }
+
+    private static HistorySeries series(String name) {
+        try {
+            return HistorySeries.valueOf(name.replace('-', '_').toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "series must be price, price-incl-tax, availability or reviews");
+        }
+    }
+
+    private static Instant instant(String name, String value) {
+        try {
+            return value.length() == 10 ? LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant()
+                    : Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    name + " must be a date (2024-05-01) or an instant (2024-05-01T12:00:00Z)");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.mkr.scraper.history;
+
+import com.mkr.scraper.book.BookEntity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** The book fields whose history is kept, each as a series of longs (prices in pence). */
+public enum HistorySeries {
+    PRICE(2),
+    PRICE_INCL_TAX(2),
+    // Copies in stock: "In stock (22 available)" is 22, "Out of stock" 0
+    AVAILABILITY(0),
+    REVIEWS(0);
+
+    private static final Pattern AVAILABLE = Pattern.compile("(\\d+)\\s+available");
+
+    private final int scale;
+
+    HistorySeries(int scale) {
+        this.scale = scale;
+    }
+
+    /** The value of this series for {@code book}; null when the book does not have it. */
+    Long value(BookEntity book) {
+        return switch (this) {
+            case PRICE -> cents(book.getPrice());
+            case PRICE_INCL_TAX -> cents(book.getPriceInclTax());
+            case AVAILABILITY -> copies(book.getAvailability());
+            case REVIEWS -> book.getNumberOfReviews() == null ? null : book.getNumberOfReviews().longValue();
+        };
+    }
+
+    BigDecimal decimal(long value) {
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    private static Long cents(BigDecimal price) {
+        return price == null ? null : price.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    static Long copies(String availability) {
+        if (availability == null || availability.isBlank()) return null;
+        Matcher m = AVAILABLE.matcher(availability);
+        if (m.find()) return Long.parseLong(m.group(1));
+        return availability.toLowerCase().contains("out of stock") ? 0L : null;
+    }
+}
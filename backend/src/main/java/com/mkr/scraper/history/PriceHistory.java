@@ -0,0 +1,184 @@
+package com.mkr.scraper.history;
+
+import com.mkr.scraper.book.BookEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Price, availability and review history per UPC. Only changes are stored: a scrape that finds the same values
+ * adds nothing, so the store grows with how often books change, not with how often they are crawled. Each series
+ * is a chain of blocks ({@link HistoryBlockEntity}) whose first and last points are columns and whose other points
+ * are delta/varint bytes. Queries pick blocks by their time range and decode only those; the value at a block
+ * boundary comes from the columns without decoding anything.
+ */
+@Service
+public class PriceHistory {
+    static final int UPC_CHUNK = 500;
+
+    private final HistoryBlockRepository blockRepository;
+    private final int blockPoints;
+
+    public PriceHistory(HistoryBlockRepository blockRepository,
+                        @Value("${scraper.history.block-points:64}") int blockPoints) {
+        if (blockPoints < 2) throw new IllegalArgumentException("scraper.history.block-points must be at least 2");
+        this.blockRepository = blockRepository;
+        this.blockPoints = blockPoints;
+    }
+
+    /** UPCs with any history, so the merge can start one for books stored before history was kept. */
+    public Set<String> trackedUpcs() {
+        return new HashSet<>(blockRepository.findTrackedUpcs());
+    }
+
+    public boolean tracked(String upc) {
+        return blockRepository.existsByUpc(upc);
+    }
+
+    /**
+     * Records the values of {@code books} at {@code at} where they differ from the last recorded ones. Runs in the
+     * caller's transaction, so history commits with the rows it describes.
+     */
+    @Transactional
+    public void record(Collection<BookEntity> books, Instant at) {
+        Map<String, BookEntity> byUpc = new LinkedHashMap<>();
+        for (BookEntity book : books) {
+            if (book.getUpc() != null) byUpc.put(book.getUpc(), book);
+        }
+        if (byUpc.isEmpty()) return;
+        Instant second = at.truncatedTo(ChronoUnit.SECONDS);
+        List<String> upcs = new ArrayList<>(byUpc.keySet());
+        Map<String, HistoryBlockEntity> latest = new HashMap<>();
+        for (int i = 0; i < upcs.size(); i += UPC_CHUNK) {
+            for (HistoryBlockEntity block : blockRepository.findByLatestTrueAndUpcIn(upcs.subList(i,
+                    Math.min(upcs.size(), i + UPC_CHUNK)))) {
+                latest.put(key(block.getUpc(), block.getSeries()), block);
+            }
+        }
+        List<HistoryBlockEntity> changed = new ArrayList<>();
+        byUpc.forEach((upc, book) -> {
+            for (HistorySeries series : HistorySeries.values()) {
+                Long value = series.value(book);
+                if (value == null) continue;
+                HistoryBlockEntity block = latest.get(key(upc, series));
+                if (block != null && block.getLastValue() == value) continue;
+                if (block == null || block.full(blockPoints)) {
+                    if (block != null) {
+                        block.setLatest(false);
+                        changed.add(block);
+                    }
+                    changed.add(new HistoryBlockEntity(upc, series, second, value));
+                } else {
+                    block.append(second, value);
+                    changed.add(block);
+                }
+            }
+        });
+        blockRepository.saveAll(changed);
+    }
+
+    /**
+     * Every change of {@code upc} between {@code from} and {@code to}, per series. The first point of a series is
+     * the value in effect at {@code from}, which may have been set before it. Empty when the UPC has no history.
+     */
+    @Transactional(readOnly = true)
+    public BookHistory history(String upc, Instant from, Instant to) {
+        Map<HistorySeries, List<HistoryBlockEntity>> blocks = new EnumMap<>(HistorySeries.class);
+        for (HistoryBlockEntity block : blockRepository.findOverlapping(upc, from, to)) {
+            blocks.computeIfAbsent(block.getSeries(), s -> new ArrayList<>()).add(block);
+        }
+        Map<HistorySeries, List<BookHistory.Point>> series = new EnumMap<>(HistorySeries.class);
+        for (HistorySeries s : HistorySeries.values()) {
+            List<HistoryBlockEntity> overlapping = blocks.getOrDefault(s, List.of());
+            List<BookHistory.Point> points = new ArrayList<>();
+            if (overlapping.isEmpty() || overlapping.get(0).getFirstAt().isAfter(from)) {
+                // From falls before the first overlapping block: the previous block's last point is in effect
+                blockRepository.findFirstByUpcAndSeriesAndLastAtLessThanOrderByLastAtDesc(upc, s, from)
+                        .ifPresent(b -> points.add(new BookHistory.Point(b.getLastAt(), s.decimal(b.getLastValue()))));
+            }
+            long fromSecond = from.getEpochSecond();
+            long toSecond = to.getEpochSecond();
+            for (HistoryBlockEntity block : overlapping) {
+                block.decode((at, value) -> {
+                    if (at > toSecond) return;
+                    BookHistory.Point point = new BookHistory.Point(Instant.ofEpochSecond(at), s.decimal(value));
+                    // Points before from only matter as the value in effect at from
+                    if (at < fromSecond && !points.isEmpty()) points.set(0, point);
+                    else points.add(point);
+                });
+            }
+            if (!points.isEmpty()) series.put(s, points);
+        }
+        return new BookHistory(upc, from, to, series);
+    }
+
+    /**
+     * Books whose {@code series} value changed the most since {@code since}, relative to its value then, largest
+     * first. Books without a value at {@code since} (first seen later) are left out. Only series that changed
+     * after {@code since} are looked at, and of those only the block in effect at {@code since} is decoded, when
+     * it was still being appended to.
+     */
+    @Transactional(readOnly = true)
+    public List<Mover> movers(HistorySeries series, Instant since, int limit) {
+        Map<String, Long> now = new HashMap<>();
+        for (HistoryBlockEntity block : blockRepository.findBySeriesAndLatestTrueAndLastAtGreaterThan(series, since)) {
+            now.put(block.getUpc(), block.getLastValue());
+        }
+        List<String> upcs = new ArrayList<>(now.keySet());
+        Map<String, HistoryBlockEntity> inEffect = new HashMap<>();
+        for (int i = 0; i < upcs.size(); i += UPC_CHUNK) {
+            for (HistoryBlockEntity block : blockRepository.findInEffectAt(series,
+                    upcs.subList(i, Math.min(upcs.size(), i + UPC_CHUNK)), since)) {
+                // Two blocks may start in the same second; the later one is in effect
+                inEffect.merge(block.getUpc(), block, (a, b) -> a.getId() > b.getId() ? a : b);
+            }
+        }
+        List<Mover> movers = new ArrayList<>();
+        inEffect.forEach((upc, block) -> {
+            long then = valueAt(block, since.getEpochSecond());
+            long current = now.get(upc);
+            if (then == current) return;
+            movers.add(new Mover(upc, series.decimal(then), series.decimal(current), series.decimal(current - then),
+                    then == 0 ? null : BigDecimal.valueOf(current - then).multiply(BigDecimal.valueOf(100))
+                            .divide(BigDecimal.valueOf(then), 2, RoundingMode.HALF_UP)));
+        });
+        movers.sort(Comparator.comparing((Mover m) -> m.changePercent() == null ? BigDecimal.ZERO
+                        : m.changePercent().abs()).reversed()
+                .thenComparing(m -> m.change().abs(), Comparator.reverseOrder())
+                .thenComparing(Mover::upc));
+        return movers.size() > limit ? movers.subList(0, limit) : movers;
+    }
+
+    private static long valueAt(HistoryBlockEntity block, long epochSecond) {
+        if (block.getLastAt().getEpochSecond() <= epochSecond) return block.getLastValue();
+        long[] value = {block.getFirstValue()};
+        block.decode((at, v) -> {
+            if (at <= epochSecond) value[0] = v;
+        });
+        return value[0];
+    }
+
+    private static String key(String upc, HistorySeries series) {
+        return upc + '\u0000' + series.ordinal();
+    }
+
+    /**
+     * @param changePercent change relative to {@code from}; null when that was 0
+     */
+    public record Mover(String upc, BigDecimal from, BigDecimal to, BigDecimal change, BigDecimal changePercent) {}
+}
@@ -0,0 +1,345 @@
+package com.mkr.scraper.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A staged crawl pipeline: one source feeds a chain of stages, each with its own worker count and a bounded
+ * input queue, ending in a batching sink. A full queue blocks the stage in front of it, so a slow stage slows
+ * the whole pipeline down instead of letting work pile up in memory.
+ * <p>
+ * Stages are 1:1 transforms and run on virtual threads. A stage returning null drops the item. The first
+ * exception aborts the run; {@link #requestStop()} (or interrupting the thread in {@link #run()}) instead stops
+ * the source and lets everything already emitted drain through to the sink. An ordered sink holds the source to
+ * {@link #reorderWindow()} items ahead of the oldest one it has not written yet, so one stuck item cannot make the
+ * items behind it pile up in its reorder buffer. A pipeline runs once.
+ *
+ * <pre>{@code
+ * Pipeline.from("frontier", out -> ...)
+ *         .then("fetch", 16, 64, url -> fetch(url))
+ *         .then("parse", 4, 64, page -> parse(page))
+ *         .into("write", 1, 200, true, batch -> save(batch))
+ *         .run();
+ * }</pre>
+ */
+public final class Pipeline {
+    private static final Logger log = LoggerFactory.getLogger(Pipeline.class);
+    private static final Envelope END = new Envelope(-1, null);
+    private static final long POLL_MILLIS = 100;
+
+    private final String name;
+    private final Source<?> source;
+    private final List<StageSpec> stages;
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Map<String, StageStats> stats = new LinkedHashMap<>();
+    // Read by metrics gauges from other threads while run() is setting up
+    private final List<BlockingQueue<Envelope>> queues = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final int reorderWindow;
+    private final Semaphore inFlight;
+    private volatile boolean stopRequested;
+
+    private Pipeline(String name, Source<?> source, List<StageSpec> stages) {
+        this.name = name;
+        this.source = source;
+        this.stages = stages;
+        // Every queue full plus one item in every worker: the window never holds back a pipeline that is flowing
+        this.reorderWindow = stages.stream().mapToInt(spec -> spec.queueCapacity + spec.parallelism).sum();
+        this.inFlight = stages.getLast().ordered ? new Semaphore(reorderWindow) : null;
+    }
+
+    public static <T> Builder<T> from(String name, Source<T> source) {
+        return new Builder<>(name, source, new ArrayList<>());
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /** Stage names in pipeline order, the sink last. */
+    public List<String> stageNames() {
+        return stages.stream().map(StageSpec::name).toList();
+    }
+
+    /** How many sequence numbers an ordered sink lets the source run ahead of the next one it is waiting for. */
+    public int reorderWindow() {
+        return reorderWindow;
+    }
+
+    /** Stops the source; items already emitted still flow through every stage into the sink. */
+    public void requestStop() {
+        stopRequested = true;
+    }
+
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    /** Current depth of each stage's input queue, keyed by stage name. */
+    public Map<String, Integer> queueDepths() {
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        for (int i = 0; i < queues.size(); i++) {
+            depths.put(stages.get(i).name, queues.get(i).size());
+        }
+        return depths;
+    }
+
+    /**
+     * Starts every stage and blocks until the sink has drained.
+     *
+     * @return whether the source ran to completion (false after {@link #requestStop()})
+     * @throws IllegalStateException if the pipeline was already run
+     */
+    public Result run() throws IOException {
+        // Not synchronized: joining the workers while holding a monitor would pin a virtual caller's carrier
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("Pipeline " + name + " was already run");
+        }
+        for (StageSpec spec : stages) {
+            queues.add(new ArrayBlockingQueue<>(spec.queueCapacity));
+            stats.put(spec.name, new StageStats());
+        }
+        AtomicBoolean sourceCompleted = new AtomicBoolean();
+        start(name + "-source", () -> runSource(sourceCompleted));
+        for (int i = 0; i < stages.size(); i++) {
+            StageSpec spec = stages.get(i);
+            AtomicInteger live = new AtomicInteger(spec.parallelism);
+            int index = i;
+            for (int w = 0; w < spec.parallelism; w++) {
+                start(name + "-" + spec.name + "-" + w, () -> runStage(index, live));
+            }
+        }
+        // Interrupting the caller (e.g. a scheduler shutting down) drains instead of aborting
+        boolean interrupted = false;
+        for (Thread t : threads) {
+            while (true) {
+                try {
+                    t.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    requestStop();
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        Throwable t = failure.get();
+        if (t instanceof IOException io) throw io;
+        if (t instanceof RuntimeException re) throw re;
+        if (t instanceof Error err) throw err;
+        if (t != null) throw new IOException("Pipeline " + name + " failed", t);
+        Map<String, StageStats.Snapshot> summary = new LinkedHashMap<>();
+        stats.forEach((stage, s) -> summary.put(stage, s.snapshot()));
+        return new Result(sourceCompleted.get() && !stopRequested, summary);
+    }
+
+    private void start(String threadName, ThrowingRunnable body) {
+        Thread t = Thread.ofVirtual().name(threadName).unstarted(() -> {
+            try {
+                body.run();
+            } catch (Throwable e) {
+                fail(e);
+            }
+        });
+        threads.add(t);
+        t.start();
+    }
+
+    private void fail(Throwable e) {
+        if (failure.compareAndSet(null, e)) {
+            if (!(e instanceof InterruptedException)) log.warn("Pipeline {} failed: {}", name, e.toString());
+            for (Thread t : threads) {
+                if (t != Thread.currentThread()) t.interrupt();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runSource(AtomicBoolean completed) throws Exception {
+        BlockingQueue<Envelope> out = queues.get(0);
+        AtomicLong seq = new AtomicLong();
+        Emitter<Object> emitter = item -> {
+            if (stopRequested || failure.get() != null) return false;
+            if (inFlight != null) acquire(inFlight);
+            put(out, new Envelope(seq.getAndIncrement(), item));
+            return true;
+        };
+        ((Source<Object>) source).produce(emitter);
+        completed.set(true);
+        signalEnd(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runStage(int index, AtomicInteger live) throws Exception {
+        StageSpec spec = stages.get(index);
+        StageStats stageStats = stats.get(spec.name);
+        BlockingQueue<Envelope> in = queues.get(index);
+        if (spec.sink != null) {
+            runSink(spec, stageStats, in);
+            return;
+        }
+        BlockingQueue<Envelope> out = queues.get(index + 1);
+        while (true) {
+            Envelope env = take(in);
+            if (env == END) break;
+            Object result = null;
+            if (env.item != null) {
+                long start = System.nanoTime();
+                result = ((Stage<Object, Object>) spec.stage).apply(env.item);
+                stageStats.record(System.nanoTime() - start);
+            }
+            // Dropped items still travel on as empty envelopes so an ordered sink sees every sequence number
+            put(out, new Envelope(env.seq, result));
+        }
+        if (live.decrementAndGet() == 0) signalEnd(index + 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runSink(StageSpec spec, StageStats stageStats, BlockingQueue<Envelope> in) throws Exception {
+        BatchSink<Object> sink = (BatchSink<Object>) spec.sink;
+        List<Object> batch = new ArrayList<>(spec.batchSize);
+        Map<Long, Envelope> pending = new HashMap<>();
+        long next = 0;
+        while (true) {
+            Envelope env = take(in);
+            if (env == END) break;
+            if (!spec.ordered) {
+                if (env.item != null) batch.add(env.item);
+            } else {
+                // Re-establish source order; the source's window caps how far ahead of next anything can be
+                pending.put(env.seq, env);
+                Envelope e;
+                while ((e = pending.remove(next)) != null) {
+                    if (e.item != null) batch.add(e.item);
+                    next++;
+                    inFlight.release();
+                }
+            }
+            if (batch.size() >= spec.batchSize) {
+                flush(sink, stageStats, batch);
+            }
+        }
+        if (!batch.isEmpty()) flush(sink, stageStats, batch);
+    }
+
+    private static void flush(BatchSink<Object> sink, StageStats stageStats, List<Object> batch) throws Exception {
+        long start = System.nanoTime();
+        sink.accept(List.copyOf(batch));
+        stageStats.record(System.nanoTime() - start, batch.size());
+        batch.clear();
+    }
+
+    private void signalEnd(int queueIndex) throws InterruptedException {
+        BlockingQueue<Envelope> q = queues.get(queueIndex);
+        for (int i = 0; i < stages.get(queueIndex).parallelism; i++) {
+            put(q, END);
+        }
+    }
+
+    // Queue operations poll so a worker that swallowed its interrupt still notices an aborted run
+
+    private Envelope take(BlockingQueue<Envelope> queue) throws InterruptedException {
+        while (true) {
+            checkAborted();
+            Envelope env = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+            if (env != null) return env;
+        }
+    }
+
+    private void put(BlockingQueue<Envelope> queue, Envelope env) throws InterruptedException {
+        while (!queue.offer(env, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkAborted();
+        }
+    }
+
+    private void acquire(Semaphore permits) throws InterruptedException {
+        while (!permits.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            checkAborted();
+        }
+    }
+
+    private void checkAborted() throws InterruptedException {
+        if (failure.get() != null) throw new InterruptedException("Pipeline " + name + " aborted");
+    }
+
+    private record Envelope(long seq, Object item) {}
+
+    private record StageSpec(String name, int parallelism, int queueCapacity, Stage<?, ?> stage,
+                             BatchSink<?> sink, int batchSize, boolean ordered) {}
+
+    public static final class Builder<T> {
+        private final String name;
+        private final Source<?> source;
+        private final List<StageSpec> stages;
+
+        private Builder(String name, Source<?> source, List<StageSpec> stages) {
+            this.name = name;
+            this.source = source;
+            this.stages = stages;
+        }
+
+        public <R> Builder<R> then(String stageName, int parallelism, int queueCapacity, Stage<T, R> stage) {
+            stages.add(new StageSpec(stageName, Math.max(1, parallelism), Math.max(1, queueCapacity), stage,
+                    null, 0, false));
+            return new Builder<>(name, source, stages);
+        }
+
+        /**
+         * Terminates the chain with a single-threaded sink receiving batches of up to {@code batchSize} items.
+         * With {@code ordered} the batches follow the order in which the source emitted.
+         */
+        public Pipeline into(String stageName, int queueCapacity, int batchSize, boolean ordered, BatchSink<T> sink) {
+            stages.add(new StageSpec(stageName, 1, Math.max(1, queueCapacity), null, sink,
+                    Math.max(1, batchSize), ordered));
+            return new Pipeline(name, source, List.copyOf(stages));
+        }
+    }
+
+    @FunctionalInterface
+    public interface Source<T> {
+        void produce(Emitter<T> out) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Emitter<T> {
+        /** Blocks while the next queue is full; returns false once the pipeline is stopping. */
+        boolean emit(T item) throws InterruptedException;
+    }
+
+    @FunctionalInterface
+    public interface Stage<I, O> {
+        O apply(I item) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface BatchSink<T> {
+        void accept(List<T> batch) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    /**
+     * @param complete true if the source emitted everything it had, i.e. the run was not stopped early
+     */
+    public record Result(boolean complete, Map<String, StageStats.Snapshot> stages) {}
+}
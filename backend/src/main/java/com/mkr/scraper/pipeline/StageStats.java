@@ -0,0 +1,26 @@
+package com.mkr.scraper.pipeline;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage counters: items processed and time spent in the stage function.
+ */
+public final class StageStats {
+    private final LongAdder items = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    void record(long nanos) {
+        record(nanos, 1);
+    }
+
+    void record(long nanos, int count) {
+        items.add(count);
+        busyNanos.add(nanos);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(items.sum(), busyNanos.sum() / 1_000_000);
+    }
+
+    public record Snapshot(long items, long busyMillis) {}
+}
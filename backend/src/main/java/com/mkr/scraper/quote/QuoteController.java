@@ -1,23 +1,60 @@
 package com.mkr.scraper.quote;
 
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+import com.mkr.scraper.snapshot.SnapshotStore;
+import com.mkr.scraper.web.Keyset;
+import com.mkr.scraper.web.NdjsonExporter;
+import com.mkr.scraper.web.PreparedResponses;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping("/api/scrapedQuotes")
 public class QuoteController {
     private final QuoteRepository quoteRepository;
+    private final SnapshotStore snapshotStore;
+    private final NdjsonExporter ndjsonExporter;
+    private final PreparedResponses preparedResponses;
 
-    public QuoteController(QuoteRepository quoteRepository) {
+    public QuoteController(QuoteRepository quoteRepository, SnapshotStore snapshotStore,
+                           NdjsonExporter ndjsonExporter, PreparedResponses preparedResponses) {
         this.quoteRepository = quoteRepository;
+        this.snapshotStore = snapshotStore;
+        this.ndjsonExporter = ndjsonExporter;
+        this.preparedResponses = preparedResponses;
     }
 
+    /**
+     * Served from the last published snapshot. Without parameters returns every quote, as bytes prepared when the
+     * snapshot was published (see {@link PreparedResponses}); with {@code limit} and/or {@code after} returns one
+     * keyset page ordered by id.
+     */
     @GetMapping
-    public List<QuoteEntity> getQuotes() {
-        return quoteRepository.findAll();
+    public ResponseEntity<?> getQuotes(@RequestParam(required = false) Long after,
+                                       @RequestParam(required = false) Integer limit,
+                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                       String acceptEncoding) {
+        CatalogSnapshot<QuoteEntity> quotes = snapshotStore.quotes();
+        if (after == null && limit == null) {
+            Optional<ResponseEntity<byte[]>> prepared =
+                    preparedResponses.serve(PreparedResponses.Body.QUOTES, quotes.generation(), acceptEncoding);
+            if (prepared.isPresent()) return prepared.get();
+        }
+        return Keyset.page(quotes, after, limit, QuoteEntity::getId, Function.identity());
     }
-}
 
+    // Full export as NDJSON, streamed from a database cursor
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportQuotes() {
+        return ndjsonExporter.export(quoteRepository::streamByRemovedAtIsNullOrderByIdAsc);
+    }
+}
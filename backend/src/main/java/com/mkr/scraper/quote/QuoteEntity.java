@@ -1,15 +1,22 @@
 package com.mkr.scraper.quote;
 
 import jakarta.persistence.*;
+import java.time.Instant;
 import java.util.List;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 @Entity
-@Table(name = "quotes")
+@Table(name = "quotes", indexes = {
+        @Index(name = "idx_quotes_key", columnList = "quote_key"),
+        @Index(name = "idx_quotes_removed_at", columnList = "removed_at")
+})
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class QuoteEntity {
+    // Pooled sequence instead of IDENTITY so Hibernate can batch inserts
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "quotes_seq")
+    @SequenceGenerator(name = "quotes_seq", sequenceName = "quotes_seq", allocationSize = 50)
     private Long id;
 
     @Column(length = 2048)
@@ -22,6 +29,26 @@ public class QuoteEntity {
     @Column(name = "tag")
     private List<String> tags;
 
+    // Natural key: hash of text + author, stable across runs
+    @JsonIgnore
+    @Column(name = "quote_key", length = 64)
+    private String quoteKey;
+
+    // Hash of the scraped fields; unchanged quotes are skipped on the next run
+    @JsonIgnore
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    // Listing page the quote was last seen on; lets an unchanged listing be carried over without parsing
+    @JsonIgnore
+    @Column(name = "source_url", length = 512)
+    private String sourceUrl;
+
+    // Tombstone: set when the quote disappears from the site, cleared if it comes back
+    @JsonIgnore
+    @Column(name = "removed_at")
+    private Instant removedAt;
+
     // getters and setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -31,5 +58,13 @@ public class QuoteEntity {
     public void setAuthor(String author) { this.author = author; }
     public List<String> getTags() { return tags; }
     public void setTags(List<String> tags) { this.tags = tags; }
+    public String getQuoteKey() { return quoteKey; }
+    public void setQuoteKey(String quoteKey) { this.quoteKey = quoteKey; }
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+    public String getSourceUrl() { return sourceUrl; }
+    public void setSourceUrl(String sourceUrl) { this.sourceUrl = sourceUrl; }
+    public Instant getRemovedAt() { return removedAt; }
+    public void setRemovedAt(Instant removedAt) { this.removedAt = removedAt; }
 }
 
@@ -0,0 +1,12 @@
+package com.mkr.scraper.quote;
+
+import java.time.Instant;
+
+/**
+ * The columns the scraper needs to match and diff a {@link QuoteEntity} without loading it.
+ */
+public record QuoteKey(Long id, String quoteKey, String sourceUrl, String contentHash, Instant removedAt) {
+    public static QuoteKey of(QuoteEntity q) {
+        return new QuoteKey(q.getId(), q.getQuoteKey(), q.getSourceUrl(), q.getContentHash(), q.getRemovedAt());
+    }
+}
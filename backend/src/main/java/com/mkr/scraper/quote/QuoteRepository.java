@@ -1,7 +1,33 @@
 package com.mkr.scraper.quote;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface QuoteRepository extends JpaRepository<QuoteEntity, Long> {
-}
+    // Read queries only see live rows; tombstoned quotes (removedAt set) stay for id stability
+
+    List<QuoteEntity> findByRemovedAtIsNullOrderByIdAsc();
+
+    // Cursor-backed stream for exports; must be consumed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<QuoteEntity> streamByRemovedAtIsNullOrderByIdAsc();
 
+    // Scrape merge: match by key columns only, tombstone in bulk
+
+    @Query("select new com.mkr.scraper.quote.QuoteKey(q.id, q.quoteKey, q.sourceUrl, q.contentHash, q.removedAt) from QuoteEntity q")
+    List<QuoteKey> findAllKeys();
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update QuoteEntity q set q.removedAt = :at where q.id in :ids and q.removedAt is null")
+    int markRemoved(@Param("ids") Collection<Long> ids, @Param("at") Instant at);
+}
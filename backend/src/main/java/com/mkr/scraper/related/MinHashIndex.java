@@ -0,0 +1,191 @@
+package com.mkr.scraper.related;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+/**
+ * Precomputed nearest neighbours by Jaccard similarity of feature sets, estimated with MinHash and found through
+ * LSH. Each document gets a {@value #HASHES}-value signature; the signature is cut into {@value #BANDS} bands of
+ * {@value #ROWS} rows, and documents agreeing on a whole band become candidates of each other. With two rows per
+ * band, a pair at similarity 0.1 is a candidate about half the time and one at 0.3 almost always.
+ * <p>
+ * Band buckets are kept as one sorted {@code long[]} per band ({@code bucket hash | doc}), so finding a bucket is
+ * a binary search and the index holds no per-bucket objects. Signatures, bands and neighbour lists are all
+ * computed in parallel; once built, the neighbours of a document are a single array lookup.
+ */
+public final class MinHashIndex {
+    static final int HASHES = 128;
+    static final int ROWS = 2;
+    static final int BANDS = HASHES / ROWS;
+    private static final int DOC_BITS = 24;
+    private static final long DOC_MASK = (1L << DOC_BITS) - 1;
+    // Candidates looked at per document, so a bucket shared by half the catalogue cannot make a build quadratic
+    private static final int MAX_CANDIDATES = 1024;
+    private static final int[] NO_DOCS = new int[0];
+    private static final float[] NO_SCORES = new float[0];
+    // Odd multipliers and offsets for the HASHES multiply-shift hash functions
+    private static final long[] MULTIPLIERS = new long[HASHES];
+    private static final long[] OFFSETS = new long[HASHES];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            MULTIPLIERS[i] = mix(seed += 0x9E3779B97F4A7C15L) | 1;
+            OFFSETS[i] = mix(seed += 0x9E3779B97F4A7C15L);
+        }
+    }
+
+    private final int[][] neighbours;
+    private final float[][] similarities;
+
+    private MinHashIndex(int[][] neighbours, float[][] similarities) {
+        this.neighbours = neighbours;
+        this.similarities = similarities;
+    }
+
+    public static MinHashIndex empty() {
+        return new MinHashIndex(new int[0][], new float[0][]);
+    }
+
+    /** MinHash signature of a feature set; null when there are no features (such a document relates to nothing). */
+    public static int[] signature(Collection<String> features) {
+        if (features.isEmpty()) return null;
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String feature : features) {
+            long x = hash(feature);
+            for (int i = 0; i < HASHES; i++) {
+                int h = (int) ((MULTIPLIERS[i] * x + OFFSETS[i]) >>> 33);
+                if (h < signature[i]) signature[i] = h;
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Finds up to {@code topK} neighbours of every document; {@code signatures[doc]} may be null.
+     */
+    public static MinHashIndex build(int[][] signatures, int topK) {
+        int n = signatures.length;
+        if (n > DOC_MASK) throw new IllegalArgumentException("At most " + DOC_MASK + " documents, got " + n);
+        int[] docs = IntStream.range(0, n).filter(d -> signatures[d] != null).toArray();
+        long[][] bands = new long[BANDS][];
+        IntStream.range(0, BANDS).parallel().forEach(band -> {
+            long[] entries = new long[docs.length];
+            for (int i = 0; i < docs.length; i++) entries[i] = bucket(signatures[docs[i]], band) | docs[i];
+            Arrays.sort(entries);
+            bands[band] = entries;
+        });
+
+        int[][] neighbours = new int[n][];
+        float[][] similarities = new float[n][];
+        // Per-thread "already a candidate of doc" marks: stamp[c] == doc + 1
+        ThreadLocal<int[]> stamps = ThreadLocal.withInitial(() -> new int[n]);
+        IntStream.range(0, n).parallel().forEach(doc -> {
+            if (signatures[doc] == null) {
+                neighbours[doc] = NO_DOCS;
+                similarities[doc] = NO_SCORES;
+                return;
+            }
+            TopK top = new TopK(topK);
+            int[] stamp = stamps.get();
+            stamp[doc] = doc + 1;
+            int seen = 0;
+            for (int band = 0; band < BANDS && seen < MAX_CANDIDATES; band++) {
+                long[] entries = bands[band];
+                long key = bucket(signatures[doc], band);
+                int i = Arrays.binarySearch(entries, key);
+                for (i = i >= 0 ? i : -i - 1; i < entries.length && (entries[i] & ~DOC_MASK) == key; i++) {
+                    int candidate = (int) (entries[i] & DOC_MASK);
+                    if (stamp[candidate] == doc + 1) continue;
+                    stamp[candidate] = doc + 1;
+                    top.offer(candidate, similarity(signatures[doc], signatures[candidate]));
+                    if (++seen >= MAX_CANDIDATES) break;
+                }
+            }
+            neighbours[doc] = top.docs();
+            similarities[doc] = top.scores();
+        });
+        return new MinHashIndex(neighbours, similarities);
+    }
+
+    public int size() {
+        return neighbours.length;
+    }
+
+    /** Neighbours of {@code doc}, most similar first. */
+    public int[] neighbours(int doc) {
+        return neighbours[doc];
+    }
+
+    /** Estimated Jaccard similarity of each of {@link #neighbours(int)}. */
+    public float[] similarities(int doc) {
+        return similarities[doc];
+    }
+
+    static float similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) if (a[i] == b[i]) same++;
+        return (float) same / HASHES;
+    }
+
+    // Bucket hash of one band, with the low DOC_BITS cleared for the document number
+    private static long bucket(int[] signature, int band) {
+        long h = band;
+        for (int r = band * ROWS; r < (band + 1) * ROWS; r++) h = mix(h * 31 + signature[r]);
+        return h & ~DOC_MASK;
+    }
+
+    private static long hash(String feature) {
+        // FNV-1a over the UTF-8 bytes, finished with a mix so nearby strings spread over all 64 bits
+        long h = 0xcbf29ce484222325L;
+        for (byte b : feature.getBytes(StandardCharsets.UTF_8)) h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // Best k by similarity, then lower doc number; k is small, so insertion into sorted arrays
+    private static final class TopK {
+        private final int[] docs;
+        private final float[] scores;
+        private int size;
+
+        TopK(int k) {
+            docs = new int[k];
+            scores = new float[k];
+        }
+
+        void offer(int doc, float score) {
+            if (docs.length == 0) return;
+            if (size == docs.length && !better(doc, score, size - 1)) return;
+            int i = Math.min(size, docs.length - 1);
+            while (i > 0 && better(doc, score, i - 1)) {
+                docs[i] = docs[i - 1];
+                scores[i] = scores[i - 1];
+                i--;
+            }
+            docs[i] = doc;
+            scores[i] = score;
+            if (size < docs.length) size++;
+        }
+
+        private boolean better(int doc, float score, int at) {
+            return score > scores[at] || (score == scores[at] && doc < docs[at]);
+        }
+
+        int[] docs() {
+            return Arrays.copyOf(docs, size);
+        }
+
+        float[] scores() {
+            return Arrays.copyOf(scores, size);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.mkr.scraper.related;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.quote.QuoteEntity;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+
+@RestController
+public class RelatedController {
+    private final RelatedItemsService relatedItemsService;
+
+    public RelatedController(RelatedItemsService relatedItemsService) {
+        this.relatedItemsService = relatedItemsService;
+    }
+
+    @GetMapping("/api/books/{id}/related")
+    public RelatedResponse<BookEntity> relatedBooks(@PathVariable long id, @RequestParam(defaultValue = "8") int limit) {
+        return found(id, relatedItemsService.relatedBooks(id, checked(limit)));
+    }
+
+    @GetMapping("/api/quotes/{id}/related")
+    public RelatedResponse<QuoteEntity> relatedQuotes(@PathVariable long id, @RequestParam(defaultValue = "6") int limit) {
+        return found(id, relatedItemsService.relatedQuotes(id, checked(limit)));
+    }
+
+    private static int checked(int limit) {
+        if (limit < 1 || limit > RelatedItemsService.TOP_K) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be in 1.." + RelatedItemsService.TOP_K);
+        }
+        return limit;
+    }
+
+    private static <T> T found(long id, Optional<T> response) {
+        return response.orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "No item with id " + id));
+    }
+}
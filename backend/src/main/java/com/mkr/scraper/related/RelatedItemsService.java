@@ -0,0 +1,159 @@
+package com.mkr.scraper.related;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.quote.QuoteEntity;
+import com.mkr.scraper.search.Tokenizer;
+import com.mkr.scraper.snapshot.BookTable;
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+import com.mkr.scraper.snapshot.ColumnTable;
+import com.mkr.scraper.snapshot.QuoteTable;
+import com.mkr.scraper.snapshot.SnapshotPublishedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Related books and quotes, precomputed from each published snapshot with {@link MinHashIndex}. Books are compared
+ * on the words of their title and description plus their category, quotes on the words of their text plus their
+ * tags and author. Categories, tags and authors are whole-value features entered several times over, so that
+ * sharing one counts for more than sharing a word.
+ * <p>
+ * Signatures are kept by id and content hash between rebuilds, so only new and changed items are hashed again.
+ */
+@Service
+public class RelatedItemsService {
+    private static final Logger log = LoggerFactory.getLogger(RelatedItemsService.class);
+    // Neighbours kept per item; the most a request can ask for
+    public static final int TOP_K = 12;
+    private static final int CATEGORY_WEIGHT = 4;
+    private static final int TAG_WEIGHT = 4;
+    private static final int AUTHOR_WEIGHT = 2;
+    // Shorter words are mostly "the", "and", "of" and would make every pair look alike
+    private static final int MIN_WORD_LENGTH = 4;
+
+    private final AtomicReference<RelatedCorpus<BookEntity>> books = new AtomicReference<>(RelatedCorpus.empty());
+    private final AtomicReference<RelatedCorpus<QuoteEntity>> quotes = new AtomicReference<>(RelatedCorpus.empty());
+    // Signatures of the items in the current indexes, by id; only touched by the (synchronized) rebuilds
+    private Map<Long, CachedSignature> bookSignatures = Map.of();
+    private Map<Long, CachedSignature> quoteSignatures = Map.of();
+
+    @SuppressWarnings("unchecked")
+    @EventListener
+    public void onSnapshotPublished(SnapshotPublishedEvent event) {
+        switch (event.kind()) {
+            case BOOKS -> rebuildBooks((CatalogSnapshot<BookEntity>) event.snapshot());
+            case QUOTES -> rebuildQuotes((CatalogSnapshot<QuoteEntity>) event.snapshot());
+        }
+    }
+
+    public synchronized void rebuildBooks(CatalogSnapshot<BookEntity> snapshot) {
+        BookTable table = BookTable.of(snapshot.items());
+        bookSignatures = rebuild("Book", snapshot, books, bookSignatures, table, table::contentHash,
+                row -> bookFeatures(table, row));
+    }
+
+    public synchronized void rebuildQuotes(CatalogSnapshot<QuoteEntity> snapshot) {
+        QuoteTable table = QuoteTable.of(snapshot.items());
+        quoteSignatures = rebuild("Quote", snapshot, quotes, quoteSignatures, table, table::contentHash,
+                row -> quoteFeatures(table, row));
+    }
+
+    /** Empty when the id is not in the current snapshot. */
+    public Optional<RelatedResponse<BookEntity>> relatedBooks(long id, int limit) {
+        return books.get().related(id, limit);
+    }
+
+    public Optional<RelatedResponse<QuoteEntity>> relatedQuotes(long id, int limit) {
+        return quotes.get().related(id, limit);
+    }
+
+    private static <T> Map<Long, CachedSignature> rebuild(String kind, CatalogSnapshot<T> snapshot,
+                                                          AtomicReference<RelatedCorpus<T>> target,
+                                                          Map<Long, CachedSignature> cache, ColumnTable<T> table,
+                                                          IntFunction<String> contentHash,
+                                                          IntFunction<Set<String>> features) {
+        long start = System.nanoTime();
+        int size = table.size();
+        int[][] signatures = new int[size][];
+        IntStream.range(0, size).parallel().forEach(row -> {
+            CachedSignature cached = cache.get(table.id(row));
+            String hash = contentHash.apply(row);
+            signatures[row] = cached != null && hash != null && hash.equals(cached.contentHash())
+                    ? cached.signature() : MinHashIndex.signature(features.apply(row));
+        });
+        Map<Long, CachedSignature> next = new HashMap<>(size * 4 / 3 + 1);
+        int reused = 0;
+        for (int row = 0; row < size; row++) {
+            CachedSignature cached = cache.get(table.id(row));
+            if (cached != null && cached.signature() == signatures[row]) reused++;
+            String hash = contentHash.apply(row);
+            if (hash != null) next.put(table.id(row), new CachedSignature(hash, signatures[row]));
+        }
+        MinHashIndex index = MinHashIndex.build(signatures, TOP_K);
+        target.set(new RelatedCorpus<>(snapshot, index));
+        log.info("{} related index rebuilt: {} items ({} reused) in {} ms", kind, size, reused,
+                (System.nanoTime() - start) / 1_000_000);
+        return next;
+    }
+
+    static Set<String> bookFeatures(BookTable books, int row) {
+        Set<String> features = new HashSet<>();
+        words(books.title(row), features);
+        words(books.description(row), features);
+        weighted("c:", books.category(row), CATEGORY_WEIGHT, features);
+        return features;
+    }
+
+    static Set<String> quoteFeatures(QuoteTable quotes, int row) {
+        Set<String> features = new HashSet<>();
+        words(quotes.text(row), features);
+        for (String tag : quotes.tags(row)) weighted("t:", tag, TAG_WEIGHT, features);
+        weighted("a:", quotes.author(row), AUTHOR_WEIGHT, features);
+        return features;
+    }
+
+    private static void words(String text, Set<String> features) {
+        for (String token : Tokenizer.tokenize(text)) {
+            if (token.length() >= MIN_WORD_LENGTH) features.add(token);
+        }
+    }
+
+    // MinHash is unweighted: a value entered as n distinct features weighs n times a word
+    private static void weighted(String prefix, String value, int weight, Set<String> features) {
+        if (value == null || value.isBlank()) return;
+        String feature = prefix + value.trim().toLowerCase();
+        for (int i = 0; i < weight; i++) features.add(feature + "#" + i);
+    }
+
+    private record CachedSignature(String contentHash, int[] signature) {}
+
+    private record RelatedCorpus<T>(CatalogSnapshot<T> snapshot, MinHashIndex index) {
+        static <T> RelatedCorpus<T> empty() {
+            return new RelatedCorpus<>(null, MinHashIndex.empty());
+        }
+
+        Optional<RelatedResponse<T>> related(long id, int limit) {
+            int doc = snapshot == null ? -1 : snapshot.indexOf(id);
+            if (doc < 0) return Optional.empty();
+            int[] neighbours = index.neighbours(doc);
+            float[] similarities = index.similarities(doc);
+            List<RelatedResponse.Match<T>> matches = new ArrayList<>(Math.min(limit, neighbours.length));
+            for (int i = 0; i < neighbours.length && i < limit; i++) {
+                matches.add(new RelatedResponse.Match<>(similarities[i], snapshot.items().get(neighbours[i])));
+            }
+            return Optional.of(new RelatedResponse<>(id, matches));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.mkr.scraper.related;
+
+import java.util.List;
+
+/**
+ * @param id      the item the others are related to
+ * @param related most similar first; {@code similarity} is the estimated Jaccard similarity of their features
+ */
+public record RelatedResponse<T>(long id, List<Match<T>> related) {
+    public record Match<T>(float similarity, T item) {}
+}
@@ -0,0 +1,38 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Inserts large batches of new entities in chunks: each chunk is persisted, flushed as batched JDBC statements
+ * and then cleared from the persistence context, so memory stays bounded however many rows are written.
+ * <p>
+ * Must run inside the caller's transaction. Pending changes to managed entities are flushed before the first
+ * chunk, and every entity is detached afterwards.
+ */
+@Component
+public class BulkWriter {
+    private final EntityManager entityManager;
+    private final int chunkSize;
+
+    public BulkWriter(EntityManager entityManager, @Value("${scraper.persist.chunk-size:500}") int chunkSize) {
+        this.entityManager = entityManager;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public int insert(Iterable<?> entities) {
+        entityManager.flush();
+        int written = 0;
+        for (Object entity : entities) {
+            entityManager.persist(entity);
+            if (++written % chunkSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return written;
+    }
+}
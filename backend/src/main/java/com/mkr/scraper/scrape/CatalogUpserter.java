@@ -0,0 +1,345 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookKey;
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.history.PriceHistory;
+import com.mkr.scraper.quote.QuoteEntity;
+import com.mkr.scraper.quote.QuoteKey;
+import com.mkr.scraper.quote.QuoteRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Merges a scrape run into the stored catalogue by natural key (UPC for books, text+author hash for quotes).
+ * Rows whose content hash is unchanged are not touched, changed rows are updated in place (ids stay stable),
+ * new rows are inserted and rows that vanished from the site are tombstoned via {@code removedAt}.
+ * <p>
+ * A run is merged in batches: {@link #beginBooks()} loads only the key columns, every
+ * {@link BookMerge#apply(List)} writes one batch in its own transaction (joining the caller's, if any) and
+ * {@link BookMerge#finish(boolean)} tombstones whatever was not seen, but only for a complete run.
+ * <p>
+ * Book values that change over time (prices, availability, reviews) are also recorded in {@link PriceHistory},
+ * in the transaction of the batch that wrote them, for new books, changed books and books without history yet.
+ */
+@Component
+public class CatalogUpserter {
+    private static final int REMOVE_CHUNK = 1000;
+
+    private final BookRepository bookRepository;
+    private final QuoteRepository quoteRepository;
+    private final BulkWriter bulkWriter;
+    private final PriceHistory priceHistory;
+    private final TransactionTemplate tx;
+
+    public CatalogUpserter(BookRepository bookRepository, QuoteRepository quoteRepository, BulkWriter bulkWriter,
+                           PriceHistory priceHistory, PlatformTransactionManager transactionManager) {
+        this.bookRepository = bookRepository;
+        this.quoteRepository = quoteRepository;
+        this.bulkWriter = bulkWriter;
+        this.priceHistory = priceHistory;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    public Result upsertBooks(List<BookEntity> scraped) {
+        BookMerge merge = beginBooks();
+        merge.apply(scraped);
+        return merge.finish(true);
+    }
+
+    public Result upsertQuotes(List<QuoteEntity> scraped) {
+        QuoteMerge merge = beginQuotes();
+        merge.apply(scraped);
+        return merge.finish(true);
+    }
+
+    public BookMerge beginBooks() {
+        return new BookMerge(bookRepository.findAllKeys(), priceHistory.trackedUpcs());
+    }
+
+    public QuoteMerge beginQuotes() {
+        return new QuoteMerge(quoteRepository.findAllKeys());
+    }
+
+    /** Merge state for one book scrape run. Not thread-safe; feed it from a single writer. */
+    public final class BookMerge {
+        private final Map<String, BookKey> byUpc = new HashMap<>();
+        private final Map<String, BookKey> byUrl = new HashMap<>();
+        private final Set<Long> live = new HashSet<>();
+        private final Set<Long> seen = new HashSet<>();
+        // UPCs with history; a book without any gets its first point even when unchanged
+        private final Set<String> tracked;
+        private int inserted, updated, unchanged;
+
+        private BookMerge(List<BookKey> keys, Set<String> tracked) {
+            this.tracked = tracked;
+            for (BookKey k : keys) {
+                index(k);
+                if (k.removedAt() == null) live.add(k.id());
+            }
+        }
+
+        private void index(BookKey k) {
+            if (k.upc() != null) byUpc.put(k.upc(), k);
+            if (k.productUrl() != null) byUrl.put(k.productUrl(), k);
+        }
+
+        public void apply(List<BookEntity> batch) {
+            tx.executeWithoutResult(status -> applyInTransaction(batch));
+        }
+
+        /** Counts books stored by an earlier attempt of a resumed run as seen, so they are not tombstoned. */
+        public void markSeen(Collection<String> productUrls) {
+            for (String url : productUrls) {
+                BookKey key = byUrl.get(url);
+                if (key != null && key.id() != null) seen.add(key.id());
+            }
+        }
+
+        private void applyInTransaction(List<BookEntity> batch) {
+            Map<Long, BookEntity> changed = new LinkedHashMap<>();
+            Map<Long, String> hashes = new HashMap<>();
+            List<BookEntity> inserts = new ArrayList<>();
+            List<BookEntity> history = new ArrayList<>();
+            for (BookEntity incoming : batch) {
+                // UPC comes from the product page; fall back to the URL when that page could not be fetched
+                BookKey key = incoming.getUpc() != null ? byUpc.get(incoming.getUpc()) : null;
+                if (key == null && incoming.getProductUrl() != null) key = byUrl.get(incoming.getProductUrl());
+
+                if (key == null) {
+                    incoming.setContentHash(ContentHash.book(incoming));
+                    inserts.add(incoming);
+                    index(BookKey.of(incoming)); // id still null: marks the key as taken within this run
+                    continue;
+                }
+                if (key.id() == null || !seen.add(key.id())) continue; // listed twice in the same run
+                // Product page failed this time: the listing fields are still fresh, so the stored row is loaded
+                // and merged below (no hash entry), keeping the details we already have
+                if (incoming.getUpc() == null && key.upc() != null) {
+                    changed.put(key.id(), incoming);
+                    continue;
+                }
+                String hash = ContentHash.book(incoming);
+                if (hash.equals(key.contentHash()) && key.removedAt() == null
+                        && Objects.equals(incoming.getSourceUrl(), key.sourceUrl())) {
+                    unchanged++;
+                    if (!tracked.contains(key.upc())) history.add(incoming);
+                    continue;
+                }
+                changed.put(key.id(), incoming);
+                hashes.put(key.id(), hash);
+            }
+
+            for (BookEntity current : bookRepository.findAllById(changed.keySet())) {
+                BookEntity incoming = changed.get(current.getId());
+                String hash = hashes.get(current.getId());
+                current.setSourceUrl(incoming.getSourceUrl());
+                boolean revived = revive(current);
+                if (hash == null) {
+                    copyListing(incoming, current);
+                    hash = ContentHash.book(current);
+                }
+                if (!hash.equals(current.getContentHash())) {
+                    if (hashes.containsKey(current.getId())) copyBook(incoming, current);
+                    current.setContentHash(hash);
+                    history.add(current);
+                    updated++;
+                } else if (revived) {
+                    updated++;
+                } else {
+                    unchanged++;
+                }
+                index(BookKey.of(current));
+            }
+            // Inserts go last: the bulk writer flushes the updates above, then clears the context between chunks
+            bulkWriter.insert(inserts);
+            for (BookEntity b : inserts) {
+                index(BookKey.of(b));
+                seen.add(b.getId());
+            }
+            inserted += inserts.size();
+            history.addAll(inserts);
+            priceHistory.record(history, Instant.now());
+            for (BookEntity b : history) tracked.add(b.getUpc());
+        }
+
+        /**
+         * Tombstones every book that was live before the run and not seen in it. An incomplete run (stopped
+         * early) removes nothing, since unseen rows may simply not have been reached.
+         */
+        public Result finish(boolean complete) {
+            int removed = 0;
+            if (complete) {
+                List<Long> gone = new ArrayList<>(live);
+                gone.removeAll(seen);
+                removed = markRemoved(gone, bookRepository::markRemoved);
+            }
+            return new Result(inserted, updated, unchanged, removed);
+        }
+    }
+
+    /** Merge state for one quote scrape run. Not thread-safe; feed it from a single writer. */
+    public final class QuoteMerge {
+        private final Map<String, QuoteKey> byKey = new HashMap<>();
+        private final Set<Long> live = new HashSet<>();
+        private final Set<Long> seen = new HashSet<>();
+        private int inserted, updated, unchanged;
+
+        private QuoteMerge(List<QuoteKey> keys) {
+            for (QuoteKey k : keys) {
+                if (k.quoteKey() != null) byKey.put(k.quoteKey(), k);
+                if (k.removedAt() == null) live.add(k.id());
+            }
+        }
+
+        public void apply(List<QuoteEntity> batch) {
+            tx.executeWithoutResult(status -> applyInTransaction(batch));
+        }
+
+        /** Counts live quotes from listing pages an earlier attempt of a resumed run finished with as seen. */
+        public void markSeenFrom(Collection<String> sourceUrls) {
+            if (sourceUrls.isEmpty()) return;
+            for (QuoteKey key : byKey.values()) {
+                if (key.id() != null && key.removedAt() == null && sourceUrls.contains(key.sourceUrl())) {
+                    seen.add(key.id());
+                }
+            }
+        }
+
+        private void applyInTransaction(List<QuoteEntity> batch) {
+            Map<Long, QuoteEntity> changed = new LinkedHashMap<>();
+            Map<Long, String> hashes = new HashMap<>();
+            List<QuoteEntity> inserts = new ArrayList<>();
+            for (QuoteEntity incoming : batch) {
+                String quoteKey = ContentHash.quoteKey(incoming.getText(), incoming.getAuthor());
+                QuoteKey key = byKey.get(quoteKey);
+                if (key == null) {
+                    incoming.setQuoteKey(quoteKey);
+                    incoming.setContentHash(ContentHash.quote(incoming));
+                    inserts.add(incoming);
+                    byKey.put(quoteKey, QuoteKey.of(incoming));
+                    continue;
+                }
+                if (key.id() == null || !seen.add(key.id())) continue;
+                String hash = ContentHash.quote(incoming);
+                if (hash.equals(key.contentHash()) && key.removedAt() == null
+                        && Objects.equals(incoming.getSourceUrl(), key.sourceUrl())) {
+                    unchanged++;
+                    continue;
+                }
+                changed.put(key.id(), incoming);
+                hashes.put(key.id(), hash);
+            }
+
+            for (QuoteEntity current : quoteRepository.findAllById(changed.keySet())) {
+                QuoteEntity incoming = changed.get(current.getId());
+                String hash = hashes.get(current.getId());
+                current.setSourceUrl(incoming.getSourceUrl());
+                boolean revived = revive(current);
+                if (!hash.equals(current.getContentHash())) {
+                    current.setText(incoming.getText());
+                    current.setAuthor(incoming.getAuthor());
+                    current.setTags(new ArrayList<>(incoming.getTags()));
+                    current.setContentHash(hash);
+                    updated++;
+                } else if (revived) {
+                    updated++;
+                } else {
+                    unchanged++;
+                }
+                byKey.put(current.getQuoteKey(), QuoteKey.of(current));
+            }
+            bulkWriter.insert(inserts);
+            for (QuoteEntity q : inserts) {
+                byKey.put(q.getQuoteKey(), QuoteKey.of(q));
+                seen.add(q.getId());
+            }
+            inserted += inserts.size();
+        }
+
+        /** See {@link BookMerge#finish(boolean)}. */
+        public Result finish(boolean complete) {
+            int removed = 0;
+            if (complete) {
+                List<Long> gone = new ArrayList<>(live);
+                gone.removeAll(seen);
+                removed = markRemoved(gone, quoteRepository::markRemoved);
+            }
+            return new Result(inserted, updated, unchanged, removed);
+        }
+    }
+
+    private int markRemoved(List<Long> ids, RemoveQuery query) {
+        if (ids.isEmpty()) return 0;
+        Instant now = Instant.now();
+        Integer removed = tx.execute(status -> {
+            int n = 0;
+            for (int i = 0; i < ids.size(); i += REMOVE_CHUNK) {
+                n += query.markRemoved(ids.subList(i, Math.min(ids.size(), i + REMOVE_CHUNK)), now);
+            }
+            return n;
+        });
+        return removed != null ? removed : 0;
+    }
+
+    @FunctionalInterface
+    private interface RemoveQuery {
+        int markRemoved(List<Long> ids, Instant at);
+    }
+
+    private static boolean revive(BookEntity b) {
+        if (b.getRemovedAt() == null) return false;
+        b.setRemovedAt(null);
+        return true;
+    }
+
+    private static boolean revive(QuoteEntity q) {
+        if (q.getRemovedAt() == null) return false;
+        q.setRemovedAt(null);
+        return true;
+    }
+
+    // The fields a listing page carries; the rest come from the product page
+    private static void copyListing(BookEntity from, BookEntity to) {
+        to.setImageUrl(from.getImageUrl());
+        to.setRating(from.getRating());
+        to.setTitle(from.getTitle());
+        to.setPrice(from.getPrice());
+        to.setProductUrl(from.getProductUrl());
+    }
+
+    static void copyBook(BookEntity from, BookEntity to) {
+        to.setImageUrl(from.getImageUrl());
+        to.setRating(from.getRating());
+        to.setTitle(from.getTitle());
+        to.setPrice(from.getPrice());
+        to.setCategory(from.getCategory());
+        to.setProductUrl(from.getProductUrl());
+        to.setDescription(from.getDescription());
+        to.setAvailability(from.getAvailability());
+        to.setUpc(from.getUpc());
+        to.setProductType(from.getProductType());
+        to.setPriceExclTax(from.getPriceExclTax());
+        to.setPriceInclTax(from.getPriceInclTax());
+        to.setTax(from.getTax());
+        to.setNumberOfReviews(from.getNumberOfReviews());
+    }
+
+    public record Result(int inserted, int updated, int unchanged, int removed) {
+        public boolean hasChanges() {
+            return inserted + updated + removed > 0;
+        }
+    }
+}
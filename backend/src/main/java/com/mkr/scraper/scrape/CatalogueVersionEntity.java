@@ -0,0 +1,27 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.persistence.*;
+
+/**
+ * Bumped by whichever node stores changes to a catalogue in cluster mode, so the other nodes know to republish
+ * their snapshot of it.
+ */
+@Entity
+@Table(name = "catalogue_versions")
+public class CatalogueVersionEntity {
+    @Id
+    @Column(length = 32)
+    private String catalogue;
+
+    private long version;
+
+    protected CatalogueVersionEntity() {}
+
+    public CatalogueVersionEntity(String catalogue, long version) {
+        this.catalogue = catalogue;
+        this.version = version;
+    }
+
+    public String getCatalogue() { return catalogue; }
+    public long getVersion() { return version; }
+}
@@ -0,0 +1,12 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CatalogueVersionRepository extends JpaRepository<CatalogueVersionEntity, String> {
+    @Modifying
+    @Query("update CatalogueVersionEntity v set v.version = v.version + 1 where v.catalogue = :catalogue")
+    int bump(@Param("catalogue") String catalogue);
+}
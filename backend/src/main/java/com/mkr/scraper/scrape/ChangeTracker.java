@@ -0,0 +1,186 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.archive.PageArchive;
+import org.jsoup.nodes.Document;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Change detection on top of {@link PageFetcher}: remembers ETag, Last-Modified and a body digest per URL,
+ * revalidates with conditional requests and only parses pages whose body actually changed. Downloaded bodies are
+ * kept in the {@link PageArchive} when it is enabled, and a replay session serves pages from there instead.
+ * Every live check also feeds the page's change history to the {@link RecrawlPolicy}.
+ */
+@Component
+public class ChangeTracker {
+    private final PageFetcher pageFetcher;
+    private final PageStateRepository pageStateRepository;
+    private final PageArchive pageArchive;
+    private final RecrawlPolicy recrawlPolicy;
+
+    public ChangeTracker(PageFetcher pageFetcher, PageStateRepository pageStateRepository, PageArchive pageArchive,
+                         RecrawlPolicy recrawlPolicy) {
+        this.pageFetcher = pageFetcher;
+        this.pageStateRepository = pageStateRepository;
+        this.pageArchive = pageArchive;
+        this.recrawlPolicy = recrawlPolicy;
+    }
+
+    /**
+     * Starts a crawl session for every URL under {@code baseUrl}. Call {@link Session#commit()} once the scraped
+     * items are persisted, so page states never run ahead of the data.
+     */
+    public Session begin(String baseUrl) {
+        return new Session(states(baseUrl), null);
+    }
+
+    /**
+     * Session that never touches the network: every page comes from {@code archive} and counts as changed, so it
+     * is parsed again. A page missing from the archive is treated like a 304 when the caller asked to revalidate
+     * and its state is known, otherwise it fails with FileNotFoundException. {@link Session#commit()} stores
+     * nothing.
+     */
+    public Session replay(String baseUrl, PageArchive.Reader archive) {
+        return new Session(states(baseUrl), archive);
+    }
+
+    private Map<String, PageStateEntity> states(String baseUrl) {
+        return pageStateRepository.findByUrlStartingWith(baseUrl).stream()
+                .collect(Collectors.toConcurrentMap(PageStateEntity::getUrl, Function.identity()));
+    }
+
+    public final class Session {
+        private final Map<String, PageStateEntity> states;
+        private final Map<String, PageStateEntity> dirty = new ConcurrentHashMap<>();
+        private final LongAdder downloaded = new LongAdder();
+        private final LongAdder notModified = new LongAdder();
+        private final LongAdder sameDigest = new LongAdder();
+        private final LongAdder bytesSaved = new LongAdder();
+        private final PageArchive.Reader replay;
+
+        private Session(Map<String, PageStateEntity> states, PageArchive.Reader replay) {
+            this.states = states;
+            this.replay = replay;
+        }
+
+        /**
+         * Fetches {@code url}. With {@code revalidate} the stored validators are sent and an unchanged page
+         * comes back without a document; without it the page is always downloaded and parsed. Pass false when
+         * whatever was derived from the page last time is not available to the caller.
+         */
+        public TrackedPage fetch(String url, boolean revalidate) throws IOException {
+            if (replay != null) return replay(url, revalidate);
+            PageStateEntity state = states.get(url);
+            boolean conditional = revalidate && state != null;
+            PageFetcher.FetchedPage page = conditional
+                    ? pageFetcher.fetchPage(url, state.getEtag(), state.getLastModified())
+                    : pageFetcher.fetchPage(url);
+
+            Instant now = Instant.now();
+            if (page.notModified() && conditional) {
+                notModified.increment();
+                bytesSaved.add(state.getBodyBytes());
+                recrawlPolicy.observe(state, false, now);
+                dirty.put(url, state);
+                return new TrackedPage(url, null, state);
+            }
+            String digest = ContentHash.digest(page.body());
+            if (state == null) {
+                state = new PageStateEntity(url);
+                states.put(url, state);
+            }
+            boolean sameBody = digest.equals(state.getDigest());
+            boolean unchanged = conditional && sameBody;
+            state.setEtag(page.etag());
+            state.setLastModified(page.lastModified());
+            state.setDigest(digest);
+            state.setBodyBytes(page.wireBytes());
+            state.setFetchedAt(now);
+            recrawlPolicy.observe(state, !sameBody, now);
+            dirty.put(url, state);
+            // Also for same-digest pages: the archive skips bodies it already holds
+            pageArchive.append(url, page.charset(), page.body(), digest);
+            if (unchanged) {
+                sameDigest.increment();
+                return new TrackedPage(url, null, state);
+            }
+            downloaded.increment();
+            return new TrackedPage(url, page, state);
+        }
+
+        private TrackedPage replay(String url, boolean revalidate) throws IOException {
+            PageStateEntity state = states.get(url);
+            if (!replay.contains(url)) {
+                if (revalidate && state != null) {
+                    notModified.increment();
+                    return new TrackedPage(url, null, state);
+                }
+                throw new FileNotFoundException("Not archived: " + url);
+            }
+            PageArchive.Record record = replay.read(url);
+            // Replayed states are never stored; this copy only carries the next link for the walk
+            PageStateEntity replayed = new PageStateEntity(url);
+            if (state != null) replayed.setNextUrl(state.getNextUrl());
+            states.put(url, replayed);
+            downloaded.increment();
+            return new TrackedPage(url, new PageFetcher.FetchedPage(url, 200, record.body(), record.charset(),
+                    record.body().length, 0, null, null), replayed);
+        }
+
+        /** Stores the listing's next link so an unchanged page can be walked past without parsing it. */
+        public void recordNext(String url, String nextUrl) {
+            PageStateEntity state = states.get(url);
+            if (state != null) {
+                state.setNextUrl(nextUrl);
+                if (replay == null) dirty.put(url, state);
+            }
+        }
+
+        /** Makes a known page due at {@code when}, for a page this session leaves to someone else to check. */
+        public void markDue(String url, Instant when) {
+            PageStateEntity state = states.get(url);
+            if (state != null && replay == null) {
+                state.setNextDueAt(when);
+                dirty.put(url, state);
+            }
+        }
+
+        /** Stores the states of the pages checked since the last commit and returns them. */
+        public List<PageStateEntity> commit() {
+            List<PageStateEntity> committed = List.copyOf(dirty.values());
+            pageStateRepository.saveAll(committed);
+            dirty.clear();
+            return committed;
+        }
+
+        public Summary summary() {
+            long skipped = notModified.sum() + sameDigest.sum();
+            return new Summary(downloaded.sum(), notModified.sum(), sameDigest.sum(), skipped, bytesSaved.sum());
+        }
+    }
+
+    /**
+     * @param page downloaded page, or null when it has not changed since the last run
+     */
+    public record TrackedPage(String url, PageFetcher.FetchedPage page, PageStateEntity state) {
+        public boolean changed() {
+            return page != null;
+        }
+
+        /** Parses the downloaded body; only valid when {@link #changed()}. */
+        public Document document() throws IOException {
+            return page.parse();
+        }
+    }
+
+    public record Summary(long parsed, long notModified, long sameDigest, long parsesSkipped, long bytesSaved) {}
+}
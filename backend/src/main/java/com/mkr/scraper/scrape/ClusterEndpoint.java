@@ -0,0 +1,25 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/** {@code GET /actuator/cluster}: this node's id, the live nodes it sees and the shards it holds. */
+@Component
+@Endpoint(id = "cluster")
+public class ClusterEndpoint {
+    private final CrawlCluster cluster;
+
+    public ClusterEndpoint(CrawlCluster cluster) {
+        this.cluster = cluster;
+    }
+
+    @ReadOperation
+    public ClusterState state() {
+        return new ClusterState(cluster.enabled(), cluster.nodeId(), cluster.liveNodes(), cluster.ownedShards());
+    }
+
+    public record ClusterState(boolean enabled, String node, int liveNodes, Set<Integer> shards) {}
+}
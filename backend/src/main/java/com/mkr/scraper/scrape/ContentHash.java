@@ -0,0 +1,60 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.quote.QuoteEntity;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 fingerprints of scraped content, used as quote natural keys and for change detection.
+ */
+public final class ContentHash {
+    private ContentHash() {}
+
+    public static String quoteKey(String text, String author) {
+        return of(text, author);
+    }
+
+    public static String book(BookEntity b) {
+        return of(b.getImageUrl(), b.getRating(), b.getTitle(), b.getPrice(), b.getCategory(), b.getProductUrl(),
+                b.getDescription(), b.getAvailability(), b.getUpc(), b.getProductType(), b.getPriceExclTax(),
+                b.getPriceInclTax(), b.getTax(), b.getNumberOfReviews());
+    }
+
+    public static String quote(QuoteEntity q) {
+        return of(q.getText(), q.getAuthor(), q.getTags() != null ? String.join("\u0002", q.getTags()) : null);
+    }
+
+    /** Digest of raw bytes, e.g. a fetched page body. */
+    public static String digest(byte[] bytes) {
+        return HexFormat.of().formatHex(sha256().digest(bytes));
+    }
+
+    /** Hash of the fields in order; null and empty are distinct, and separators keep field boundaries. */
+    public static String of(Object... fields) {
+        MessageDigest digest = sha256();
+        for (Object field : fields) {
+            if (field == null) {
+                digest.update((byte) 0);
+            } else {
+                String value = field instanceof BigDecimal bd ? bd.stripTrailingZeros().toPlainString() : field.toString();
+                digest.update((byte) 1);
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+            }
+            digest.update((byte) 0x1F);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
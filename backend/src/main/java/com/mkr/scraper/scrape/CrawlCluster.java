@@ -0,0 +1,307 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cluster mode: several instances share one database and split the crawl between them. URLs are hashed into
+ * {@code scraper.cluster.shards} shards, and each shard is leased to one node at a time through a row in
+ * {@code crawl_leases}. A node only fetches and stores the pages of the shards it holds. Every heartbeat renews
+ * its leases; a lease that is not renewed expires after {@code scraper.cluster.lease-ttl} and the other nodes
+ * take the shard over, so a dead node's URLs are reclaimed. Nodes announce themselves with a lease of their own
+ * and take or give back shards until each holds its fair share, so joining or leaving rebalances the cluster
+ * within a couple of heartbeats.
+ * <p>
+ * The same table has one walk lease per catalogue, for the node walking its listing pages, and
+ * {@code catalogue_versions} tells the other nodes when one of them changed a catalogue so they republish it.
+ * With cluster mode off this node owns every URL and the tables are never touched.
+ */
+@Component
+public class CrawlCluster {
+    private static final Logger log = LoggerFactory.getLogger(CrawlCluster.class);
+    static final String NODE = "node:";
+    static final String SHARD = "shard:";
+    static final String WALK = "walk:";
+    private static final List<String> CATALOGUES = List.of("books", "quotes");
+
+    private final CrawlLeaseRepository leaseRepository;
+    private final CatalogueVersionRepository versionRepository;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final String nodeId;
+    private final int shards;
+    private final Duration leaseTtl;
+    private final Duration heartbeatInterval;
+    private ScheduledExecutorService heartbeats;
+    // Republishing rebuilds every read model; off the heartbeat thread so it never delays a lease renewal
+    private ExecutorService republisher;
+    private volatile CompletableFuture<Void> republished = CompletableFuture.completedFuture(null);
+    private final Set<String> walks = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> seenVersions = new ConcurrentHashMap<>();
+    private volatile Set<Integer> owned = Set.of();
+    // Shards count as ours until half the lease is gone, well before another node may take them
+    private volatile Instant ownedUntil = Instant.EPOCH;
+    private volatile int liveNodes = 1;
+    private boolean rowsCreated;
+    private boolean versionsPolled;
+
+    public CrawlCluster(CrawlLeaseRepository leaseRepository, CatalogueVersionRepository versionRepository,
+                        ApplicationEventPublisher events, PlatformTransactionManager transactionManager,
+                        @Value("${scraper.cluster.enabled:false}") boolean enabled,
+                        @Value("${scraper.cluster.node-id:}") String nodeId,
+                        @Value("${scraper.cluster.shards:64}") int shards,
+                        @Value("${scraper.cluster.lease-ttl:30s}") Duration leaseTtl,
+                        @Value("${scraper.cluster.heartbeat:10s}") Duration heartbeatInterval) {
+        if (shards < 1) throw new IllegalArgumentException("scraper.cluster.shards must be positive, got " + shards);
+        this.leaseRepository = leaseRepository;
+        this.versionRepository = versionRepository;
+        this.events = events;
+        this.tx = new TransactionTemplate(transactionManager);
+        // Lease updates commit on their own, whatever transaction the caller is in
+        tx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.nodeId = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        this.shards = shards;
+        this.leaseTtl = leaseTtl;
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "node";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    /** Live nodes as of the last heartbeat, this one included; 1 with cluster mode off. */
+    public int liveNodes() {
+        return enabled ? liveNodes : 1;
+    }
+
+    public int shardOf(String url) {
+        // String.hashCode is specified, so every node agrees; the mix spreads similar URLs over the shards
+        long z = url.hashCode() * 0x9E3779B97F4A7C15L;
+        return (int) Math.floorMod(z ^ (z >>> 32), (long) shards);
+    }
+
+    /** Whether this node may crawl and store {@code url} right now. */
+    public boolean owns(String url) {
+        if (!enabled) return true;
+        return Instant.now().isBefore(ownedUntil) && owned.contains(shardOf(url));
+    }
+
+    public Set<Integer> ownedShards() {
+        return owned;
+    }
+
+    // Its own thread, so a long crawl on the scheduler thread never holds up the renewals
+    @PostConstruct
+    void startHeartbeat() {
+        if (!enabled) return;
+        heartbeats = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("cluster-heartbeat").daemon().factory());
+        republisher = Executors.newSingleThreadExecutor(
+                Thread.ofPlatform().name("cluster-republish").daemon().factory());
+        heartbeats.scheduleWithFixedDelay(() -> {
+            try {
+                heartbeat();
+            } catch (RuntimeException e) {
+                log.warn("Cluster heartbeat failed, shards count as held until {}", ownedUntil, e);
+            }
+        }, heartbeatInterval.toMillis(), heartbeatInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Renews this node's leases, then takes or gives back shards until it holds its fair share of them, and
+     * queues a republish of each catalogue another node changed since the last heartbeat.
+     */
+    public synchronized void heartbeat() {
+        if (!enabled) return;
+        createRows();
+        Instant now = Instant.now();
+        Instant until = now.plus(leaseTtl);
+        acquire(NODE + nodeId, now, until);
+        walks.removeIf(walk -> !acquire(walk, now, until));
+
+        Map<Integer, CrawlLeaseEntity> shardLeases = new HashMap<>();
+        int nodes = 0;
+        for (CrawlLeaseEntity lease : leaseRepository.findAll()) {
+            if (lease.getName().startsWith(NODE) && lease.getExpiresAt().isAfter(now)) nodes++;
+            if (lease.getName().startsWith(SHARD)) {
+                shardLeases.put(Integer.parseInt(lease.getName().substring(SHARD.length())), lease);
+            }
+        }
+        nodes = Math.max(1, nodes);
+        int fairShare = (shards + nodes - 1) / nodes;
+        Set<Integer> mine = new TreeSet<>();
+        // Keep what we hold up to the fair share and give back the rest for a node that joined
+        for (int shard = 0; shard < shards; shard++) {
+            CrawlLeaseEntity lease = shardLeases.get(shard);
+            if (lease == null || !nodeId.equals(lease.getOwner())) continue;
+            if (mine.size() < fairShare && acquire(SHARD + shard, now, until)) {
+                mine.add(shard);
+            } else {
+                release(SHARD + shard);
+            }
+        }
+        // Then take free shards, including those of nodes that stopped renewing
+        for (int i = 0; i < shards && mine.size() < fairShare; i++) {
+            // Start at a node-specific shard so nodes joining together do not race for the same rows
+            int shard = Math.floorMod(nodeId.hashCode() + i, shards);
+            CrawlLeaseEntity lease = shardLeases.get(shard);
+            boolean free = lease != null && (lease.getOwner() == null || !lease.getExpiresAt().isAfter(now));
+            if (free && !mine.contains(shard) && acquire(SHARD + shard, now, until)) mine.add(shard);
+        }
+        if (!mine.equals(owned)) {
+            log.info("Node {} now holds {} of {} shards ({} nodes live)", nodeId, mine.size(), shards, nodes);
+        }
+        owned = Collections.unmodifiableSet(mine);
+        ownedUntil = now.plus(leaseTtl.dividedBy(2));
+        liveNodes = nodes;
+        pollVersions();
+    }
+
+    /** Takes the walk lease of {@code catalogue}, or confirms this node holds it; always true with cluster mode off. */
+    public boolean tryWalk(String catalogue) {
+        if (!enabled) return true;
+        Instant now = Instant.now();
+        if (!acquire(WALK + catalogue, now, now.plus(leaseTtl))) return false;
+        walks.add(WALK + catalogue);
+        return true;
+    }
+
+    public void endWalk(String catalogue) {
+        if (!enabled) return;
+        walks.remove(WALK + catalogue);
+        release(WALK + catalogue);
+    }
+
+    /**
+     * Tells the other nodes that this one stored changes to {@code kind}. The caller publishes the change locally
+     * afterwards, so the new version counts as seen here and the next heartbeat does not republish it.
+     */
+    public void catalogueChanged(ScrapeCompletedEvent.Kind kind) {
+        if (!enabled) return;
+        String catalogue = kind.name();
+        Long version = tx.execute(status -> bump(catalogue));
+        if (version == null) {
+            try {
+                tx.executeWithoutResult(status -> versionRepository.save(new CatalogueVersionEntity(catalogue, 1)));
+                version = 1L;
+            } catch (DataIntegrityViolationException e) {
+                // Another node created the row in the meantime
+                version = tx.execute(status -> bump(catalogue));
+            }
+        }
+        // Versions another node bumped in between are covered too: the local publish reads after their commit
+        if (version != null) seenVersions.merge(catalogue, version, Math::max);
+    }
+
+    private Long bump(String catalogue) {
+        if (versionRepository.bump(catalogue) == 0) return null;
+        return versionRepository.findById(catalogue).map(CatalogueVersionEntity::getVersion).orElse(null);
+    }
+
+    /** Completes once every republish the heartbeats so far asked for has run. */
+    CompletableFuture<Void> republished() {
+        return republished;
+    }
+
+    // Publishing locally what another node stored: the snapshot, search, facets... are rebuilt from the database
+    private void pollVersions() {
+        for (CatalogueVersionEntity v : versionRepository.findAll()) {
+            Long seen = seenVersions.get(v.getCatalogue());
+            if (seen != null && seen >= v.getVersion()) continue;
+            seenVersions.merge(v.getCatalogue(), v.getVersion(), Math::max);
+            if (!versionsPolled) continue;
+            ScrapeCompletedEvent event = new ScrapeCompletedEvent(ScrapeCompletedEvent.Kind.valueOf(v.getCatalogue()));
+            republished = CompletableFuture.runAsync(() -> events.publishEvent(event), republisher)
+                    .exceptionally(e -> {
+                        log.warn("Republishing {} failed", event.kind(), e);
+                        return null;
+                    });
+        }
+        versionsPolled = true;
+    }
+
+    private void createRows() {
+        if (rowsCreated) return;
+        for (int shard = 0; shard < shards; shard++) createRow(SHARD + shard);
+        for (String catalogue : CATALOGUES) createRow(WALK + catalogue);
+        createRow(NODE + nodeId);
+        rowsCreated = true;
+    }
+
+    private void createRow(String name) {
+        if (leaseRepository.existsById(name)) return;
+        try {
+            tx.executeWithoutResult(status -> leaseRepository.save(new CrawlLeaseEntity(name)));
+        } catch (DataIntegrityViolationException e) {
+            // Another node created it first
+        }
+    }
+
+    private boolean acquire(String name, Instant now, Instant until) {
+        Integer updated = tx.execute(status -> leaseRepository.acquire(name, nodeId, now, until));
+        return updated != null && updated == 1;
+    }
+
+    private void release(String name) {
+        tx.executeWithoutResult(status -> leaseRepository.release(name, nodeId, Instant.EPOCH));
+    }
+
+    /** On shutdown, hand everything back at once instead of making the others wait for the leases to expire. */
+    @PreDestroy
+    synchronized void leave() {
+        if (!enabled) return;
+        heartbeats.shutdownNow();
+        republisher.shutdownNow();
+        if (!rowsCreated) return;
+        owned = Set.of();
+        try {
+            for (int shard = 0; shard < shards; shard++) release(SHARD + shard);
+            for (String walk : walks) release(walk);
+            release(NODE + nodeId);
+        } catch (RuntimeException e) {
+            log.warn("Could not release the leases of node {}, they expire in {}", nodeId, leaseTtl, e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * When a catalogue was last crawled to the end. With file-backed storage this survives restarts and decides
+ * whether the data loaded at boot is fresh enough to skip the startup scrape.
+ */
+@Entity
+@Table(name = "crawl_completions")
+public class CrawlCompletionEntity {
+    @Id
+    @Column(length = 32)
+    private String catalogue;
+
+    @Column(name = "completed_at", nullable = false)
+    private Instant completedAt;
+
+    protected CrawlCompletionEntity() {}
+
+    public CrawlCompletionEntity(String catalogue, Instant completedAt) {
+        this.catalogue = catalogue;
+        this.completedAt = completedAt;
+    }
+
+    public String getCatalogue() { return catalogue; }
+    public Instant getCompletedAt() { return completedAt; }
+    public void setCompletedAt(Instant completedAt) { this.completedAt = completedAt; }
+}
@@ -0,0 +1,6 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface CrawlCompletionRepository extends JpaRepository<CrawlCompletionEntity, String> {
+}
@@ -0,0 +1,280 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Persisted crawl frontier, so a scrape that dies half-way (crash, redeploy, early stop) is resumed by the next
+ * run instead of starting over. Walked listing pages are checkpointed as they are crawled, and the URLs behind
+ * each stored write batch are marked done in the same transaction as the batch itself. A resumed run skips
+ * everything done, re-emits what is still pending and deletes the frontier once it completes.
+ * <p>
+ * In cluster mode the frontier is also how a walk is shared out: the node walking the listing pages records every
+ * product page it finds, and each node stores the pending ones of its own shards ({@link #pendingBooks}).
+ */
+@Component
+public class CrawlFrontier {
+    private static final Logger log = LoggerFactory.getLogger(CrawlFrontier.class);
+    private static final int DONE_CHUNK = 1000;
+
+    private final FrontierRepository frontierRepository;
+    private final CrawlCompletionRepository completionRepository;
+    private final TransactionTemplate tx;
+
+    public CrawlFrontier(FrontierRepository frontierRepository, CrawlCompletionRepository completionRepository,
+                         PlatformTransactionManager transactionManager) {
+        this.frontierRepository = frontierRepository;
+        this.completionRepository = completionRepository;
+        this.tx = new TransactionTemplate(transactionManager);
+    }
+
+    /** A frontier that persists nothing, for runs that are cheap to repeat such as a reparse from the archive. */
+    public Run detached(String catalogue) {
+        return new Run(catalogue, List.of(), false);
+    }
+
+    /** When {@code catalogue} was last crawled to the end, if ever. */
+    public Optional<Instant> lastCompleted(String catalogue) {
+        return completionRepository.findById(catalogue).map(CrawlCompletionEntity::getCompletedAt);
+    }
+
+    /** Whether a run of {@code catalogue} is unfinished, i.e. its frontier is still there. */
+    public boolean active(String catalogue) {
+        return frontierRepository.existsByCatalogue(catalogue);
+    }
+
+    /** Whether the unfinished run of {@code catalogue} has walked its last listing page. */
+    public boolean walked(String catalogue) {
+        return frontierRepository.existsByCatalogueAndKindAndStateAndNextUrlIsNull(catalogue,
+                FrontierEntryEntity.Kind.LISTING, FrontierEntryEntity.State.DONE);
+    }
+
+    public long pendingProducts(String catalogue) {
+        return frontierRepository.countByCatalogueAndKindAndState(catalogue, FrontierEntryEntity.Kind.PRODUCT,
+                FrontierEntryEntity.State.PENDING);
+    }
+
+    public Set<String> doneProductUrls(String catalogue) {
+        return new HashSet<>(frontierRepository.findDoneProductUrls(catalogue));
+    }
+
+    /**
+     * Books recorded by the walk of {@code catalogue}, on whichever node, whose product pages are not stored yet
+     * and pass {@code mine}, with their listing fields.
+     */
+    public List<BookEntity> pendingBooks(String catalogue, Predicate<String> mine) {
+        List<BookEntity> books = new ArrayList<>();
+        for (FrontierEntryEntity e : frontierRepository.findByCatalogueAndKindAndState(catalogue,
+                FrontierEntryEntity.Kind.PRODUCT, FrontierEntryEntity.State.PENDING)) {
+            if (mine.test(e.getUrl())) books.add(book(e));
+        }
+        return books;
+    }
+
+    /** Runs {@code write} and marks the product pages behind it done, in one transaction. */
+    public void commitProducts(List<String> productUrls, Runnable write) {
+        tx.executeWithoutResult(status -> {
+            write.run();
+            for (int i = 0; i < productUrls.size(); i += DONE_CHUNK) {
+                frontierRepository.markDone(productUrls.subList(i, Math.min(productUrls.size(), i + DONE_CHUNK)));
+            }
+        });
+    }
+
+    /** Deletes the frontier of {@code catalogue} and stamps it as crawled to the end. */
+    public void complete(String catalogue) {
+        tx.executeWithoutResult(status -> {
+            frontierRepository.deleteByCatalogue(catalogue);
+            completionRepository.save(new CrawlCompletionEntity(catalogue, Instant.now()));
+        });
+    }
+
+    private static BookEntity book(FrontierEntryEntity e) {
+        BookEntity book = new BookEntity();
+        book.setProductUrl(e.getUrl());
+        book.setSourceUrl(e.getSourceUrl());
+        book.setTitle(e.getTitle());
+        book.setImageUrl(e.getImageUrl());
+        book.setRating(e.getRating());
+        book.setPrice(e.getPrice());
+        return book;
+    }
+
+    /** Picks up where the last unfinished run of {@code catalogue} stopped, or starts an empty frontier. */
+    public Run begin(String catalogue) {
+        Run run = new Run(catalogue, frontierRepository.findByCatalogue(catalogue), true);
+        if (run.resumed()) {
+            log.info("Resuming {} crawl: {} listing pages and {} product pages already done", catalogue,
+                    run.doneListingUrls().size(), run.doneProductUrls().size());
+        }
+        return run;
+    }
+
+    /**
+     * Frontier of one run. Listing pages are recorded by the frontier thread, batches are committed by the
+     * single writer thread.
+     */
+    public final class Run {
+        private final String catalogue;
+        private final boolean persistent;
+        private final boolean resumed;
+        private final Map<String, FrontierEntryEntity> listings = new ConcurrentHashMap<>();
+        private final Map<String, List<FrontierEntryEntity>> pendingProducts = new HashMap<>();
+        private final Set<String> doneProducts = new HashSet<>();
+        private final Set<String> recordedProducts = ConcurrentHashMap.newKeySet();
+        // Listing pages whose items are stored directly → items still to be written
+        private final Map<String, Integer> unwrittenItems = new ConcurrentHashMap<>();
+
+        private Run(String catalogue, List<FrontierEntryEntity> entries, boolean persistent) {
+            this.catalogue = catalogue;
+            this.persistent = persistent;
+            this.resumed = !entries.isEmpty();
+            for (FrontierEntryEntity e : entries) {
+                if (e.getKind() == FrontierEntryEntity.Kind.LISTING) {
+                    listings.put(e.getUrl(), e);
+                    continue;
+                }
+                recordedProducts.add(e.getUrl());
+                if (e.getState() == FrontierEntryEntity.State.DONE) {
+                    doneProducts.add(e.getUrl());
+                } else {
+                    pendingProducts.computeIfAbsent(e.getSourceUrl(), k -> new ArrayList<>()).add(e);
+                }
+            }
+            pendingProducts.values().forEach(l -> l.sort(Comparator.comparingInt(FrontierEntryEntity::getPosition)));
+        }
+
+        public boolean resumed() {
+            return resumed;
+        }
+
+        /** The listing page if an earlier attempt already finished with it, otherwise null: fetch it. */
+        public FrontierEntryEntity completedListing(String url) {
+            FrontierEntryEntity e = listings.get(url);
+            return e != null && e.getState() == FrontierEntryEntity.State.DONE ? e : null;
+        }
+
+        public Set<String> doneListingUrls() {
+            Set<String> done = new HashSet<>();
+            listings.forEach((url, e) -> {
+                if (e.getState() == FrontierEntryEntity.State.DONE) done.add(url);
+            });
+            return done;
+        }
+
+        public Set<String> doneProductUrls() {
+            return doneProducts;
+        }
+
+        /** Books found on a completed listing page whose product pages were not stored yet, in listing order. */
+        public List<BookEntity> pendingBooks(String listingUrl) {
+            List<BookEntity> books = new ArrayList<>();
+            for (FrontierEntryEntity e : pendingProducts.getOrDefault(listingUrl, List.of())) {
+                books.add(book(e));
+            }
+            return books;
+        }
+
+        /**
+         * Checkpoints a walked book listing page: the page is done and its product pages pending, with the
+         * listing fields they need to be resumed.
+         */
+        public void recordListing(String url, String nextUrl, List<BookEntity> books) {
+            FrontierEntryEntity listing = listing(url, nextUrl, FrontierEntryEntity.State.DONE);
+            List<FrontierEntryEntity> entries = new ArrayList<>(books.size() + 1);
+            entries.add(listing);
+            for (int i = 0; i < books.size(); i++) {
+                BookEntity book = books.get(i);
+                // A book listed twice is tracked once
+                if (book.getProductUrl() == null || !recordedProducts.add(book.getProductUrl())) continue;
+                FrontierEntryEntity product = new FrontierEntryEntity(book.getProductUrl(), catalogue,
+                        FrontierEntryEntity.Kind.PRODUCT);
+                product.setSourceUrl(url);
+                product.setPosition(i);
+                product.setTitle(book.getTitle());
+                product.setImageUrl(book.getImageUrl());
+                product.setRating(book.getRating());
+                product.setPrice(book.getPrice());
+                entries.add(product);
+            }
+            if (persistent) tx.executeWithoutResult(status -> frontierRepository.saveAll(entries));
+        }
+
+        /**
+         * Checkpoints a walked listing page whose {@code items} are stored directly; it is done once they are all
+         * written.
+         */
+        public void recordListing(String url, String nextUrl, int items) {
+            FrontierEntryEntity listing = listing(url, nextUrl,
+                    items == 0 ? FrontierEntryEntity.State.DONE : FrontierEntryEntity.State.PENDING);
+            if (items > 0) unwrittenItems.put(url, items);
+            if (persistent) tx.executeWithoutResult(status -> frontierRepository.save(listing));
+        }
+
+        private FrontierEntryEntity listing(String url, String nextUrl, FrontierEntryEntity.State state) {
+            FrontierEntryEntity listing = listings.computeIfAbsent(url,
+                    u -> new FrontierEntryEntity(u, catalogue, FrontierEntryEntity.Kind.LISTING));
+            listing.setNextUrl(nextUrl);
+            listing.setState(state);
+            return listing;
+        }
+
+        /** Runs {@code write} and marks the product pages behind it done, in one transaction. */
+        public void commitProducts(List<String> productUrls, Runnable write) {
+            commit(productUrls, write);
+        }
+
+        /**
+         * Runs {@code write} for items stored straight from listing pages, given by their listing URL, and marks
+         * every listing page done whose items are now all written.
+         */
+        public void commitListingItems(List<String> sourceUrls, Runnable write) {
+            Map<String, Integer> written = new LinkedHashMap<>();
+            for (String source : sourceUrls) written.merge(source, 1, Integer::sum);
+            List<String> done = new ArrayList<>();
+            written.forEach((source, n) -> {
+                Integer left = unwrittenItems.computeIfPresent(source, (k, v) -> v - n > 0 ? v - n : null);
+                if (left == null) done.add(source);
+            });
+            commit(done, write);
+        }
+
+        private void commit(List<String> urls, Runnable write) {
+            if (persistent) {
+                CrawlFrontier.this.commitProducts(urls, write);
+            } else {
+                write.run();
+            }
+        }
+
+        /**
+         * A completed run no longer needs its frontier and stamps the catalogue as complete; an incomplete one
+         * leaves the frontier for the next run.
+         */
+        public void finish(boolean complete) {
+            if (!persistent) return;
+            if (!complete) {
+                log.info("{} crawl stopped early, the next run resumes from its frontier", catalogue);
+                return;
+            }
+            complete(catalogue);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * A time-limited claim in cluster mode, see {@link CrawlCluster}: {@code shard:N} for a slice of the URL space,
+ * {@code walk:books} for walking a catalogue's listing pages, {@code node:ID} for a node announcing itself.
+ * A lease is held while {@code expiresAt} lies ahead; nobody deletes expired rows, they are simply taken again.
+ */
+@Entity
+@Table(name = "crawl_leases")
+public class CrawlLeaseEntity {
+    @Id
+    @Column(length = 160)
+    private String name;
+
+    @Column(length = 128)
+    private String owner;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    protected CrawlLeaseEntity() {}
+
+    public CrawlLeaseEntity(String name) {
+        this.name = name;
+        this.expiresAt = Instant.EPOCH;
+    }
+
+    public String getName() { return name; }
+    public String getOwner() { return owner; }
+    public Instant getExpiresAt() { return expiresAt; }
+}
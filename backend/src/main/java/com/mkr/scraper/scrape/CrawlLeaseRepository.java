@@ -0,0 +1,21 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+public interface CrawlLeaseRepository extends JpaRepository<CrawlLeaseEntity, String> {
+    /** Takes or renews the lease: succeeds (1) when {@code node} holds it already or nobody holds it anymore. */
+    @Modifying
+    @Query("update CrawlLeaseEntity l set l.owner = :node, l.expiresAt = :until where l.name = :name"
+            + " and (l.owner = :node or l.owner is null or l.expiresAt < :now)")
+    int acquire(@Param("name") String name, @Param("node") String node, @Param("now") Instant now,
+                @Param("until") Instant until);
+
+    @Modifying
+    @Query("update CrawlLeaseEntity l set l.owner = null, l.expiresAt = :epoch where l.name = :name and l.owner = :node")
+    int release(@Param("name") String name, @Param("node") String node, @Param("epoch") Instant epoch);
+}
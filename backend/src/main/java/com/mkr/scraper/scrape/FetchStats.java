@@ -0,0 +1,54 @@
+package com.mkr.scraper.scrape;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals for HTTP fetches. Thread-safe; {@link #snapshot()} gives a consistent-enough view for logging.
+ */
+public class FetchStats {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    void recordResponse(long bodyBytes, long nanos) {
+        requests.increment();
+        bytes.add(bodyBytes);
+        latencyNanos.add(nanos);
+        latencies.record(nanos);
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(requests.sum(), failures.sum(), retries.sum(), bytes.sum(), latencyNanos.sum(),
+                latencies.snapshot());
+    }
+
+    public record Snapshot(long requests, long failures, long retries, long bytes, long latencyNanos,
+                           LatencyHistogram.Counts latencies) {
+        public Snapshot minus(Snapshot earlier) {
+            return new Snapshot(requests - earlier.requests, failures - earlier.failures, retries - earlier.retries,
+                    bytes - earlier.bytes, latencyNanos - earlier.latencyNanos, latencies.minus(earlier.latencies));
+        }
+
+        public long avgLatencyMillis() {
+            return requests == 0 ? 0 : latencyNanos / requests / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "requests=" + requests + ", failures=" + failures + ", retries=" + retries
+                    + ", bytes=" + bytes + ", avgLatencyMs=" + avgLatencyMillis()
+                    + ", p50Ms=" + latencies.percentileMillis(0.5) + ", p99Ms=" + latencies.percentileMillis(0.99);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.mkr.scraper.scrape;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * How fresh the crawled pages are, as shown by {@code /actuator/recrawl}.
+ *
+ * @param budgetAvailable requests the recrawl may make right now
+ * @param queued          pages waiting in the recrawl queue
+ */
+public record FreshnessReport(double requestsPerHour, int budgetAvailable, int queued, List<Catalogue> catalogues) {
+
+    /**
+     * @param due              pages due now or overdue
+     * @param medianAgeSeconds median time since a page was last checked
+     * @param lastFullCrawl    last crawl of the whole site that reached the end, null if none did
+     */
+    public record Catalogue(String catalogue, int pages, int due, long medianAgeSeconds, long maxAgeSeconds,
+                            Instant lastFullCrawl) {}
+
+    /**
+     * One crawled page, as shown by {@code /actuator/recrawl/{catalogue}}.
+     *
+     * @param checks                intervals observed between checks (halved now and then, see {@link RecrawlPolicy})
+     * @param changes               how many of them ended with a changed body
+     * @param changeIntervalSeconds estimated mean time between changes, null until a change was seen
+     * @param ageSeconds            time since the page was last checked
+     */
+    public record Page(String url, Instant checkedAt, Instant changedAt, Instant nextDueAt, boolean due, int checks,
+                       int changes, Long changeIntervalSeconds, long ageSeconds) {}
+}
@@ -0,0 +1,100 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.math.BigDecimal;
+
+/**
+ * One URL of an unfinished crawl. Listing pages record the next-page link, product pages the listing fields
+ * of their book, so a crawl that died half-way can be resumed without fetching completed pages again.
+ * Rows live only while a run is in progress and are deleted once it completes.
+ */
+@Entity
+@Table(name = "crawl_frontier", indexes = @Index(name = "idx_crawl_frontier_catalogue", columnList = "catalogue"))
+public class FrontierEntryEntity implements Persistable<String> {
+    public enum Kind { LISTING, PRODUCT }
+
+    // PENDING: recorded, its results not yet stored; DONE: never needs fetching again in this run
+    public enum State { PENDING, DONE }
+
+    @Id
+    @Column(length = 1024)
+    private String url;
+
+    @Column(length = 32, nullable = false)
+    private String catalogue;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private Kind kind;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    private State state = State.PENDING;
+
+    // Listing pages only: the parsed next link, null on the last page
+    @Column(name = "next_url", length = 1024)
+    private String nextUrl;
+
+    // Product pages only: listing the book was found on, its position there and the listing fields
+    @Column(name = "source_url", length = 1024)
+    private String sourceUrl;
+
+    private int position;
+
+    @Column(length = 1024)
+    private String title;
+
+    @Column(name = "image_url", length = 512)
+    private String imageUrl;
+
+    @Column(length = 16)
+    private String rating;
+
+    @Column(precision = 10, scale = 2)
+    private BigDecimal price;
+
+    @Transient
+    private boolean isNew = true;
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    protected FrontierEntryEntity() {}
+
+    public FrontierEntryEntity(String url, String catalogue, Kind kind) {
+        this.url = url;
+        this.catalogue = catalogue;
+        this.kind = kind;
+    }
+
+    @Override
+    public String getId() { return url; }
+    @Override
+    public boolean isNew() { return isNew; }
+
+    // getters and setters
+    public String getUrl() { return url; }
+    public String getCatalogue() { return catalogue; }
+    public Kind getKind() { return kind; }
+    public State getState() { return state; }
+    public void setState(State state) { this.state = state; }
+    public String getNextUrl() { return nextUrl; }
+    public void setNextUrl(String nextUrl) { this.nextUrl = nextUrl; }
+    public String getSourceUrl() { return sourceUrl; }
+    public void setSourceUrl(String sourceUrl) { this.sourceUrl = sourceUrl; }
+    public int getPosition() { return position; }
+    public void setPosition(int position) { this.position = position; }
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+    public String getImageUrl() { return imageUrl; }
+    public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+    public String getRating() { return rating; }
+    public void setRating(String rating) { this.rating = rating; }
+    public BigDecimal getPrice() { return price; }
+    public void setPrice(BigDecimal price) { this.price = price; }
+}
@@ -0,0 +1,38 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface FrontierRepository extends JpaRepository<FrontierEntryEntity, String> {
+    List<FrontierEntryEntity> findByCatalogue(String catalogue);
+
+    boolean existsByCatalogue(String catalogue);
+
+    List<FrontierEntryEntity> findByCatalogueAndKindAndState(String catalogue, FrontierEntryEntity.Kind kind,
+                                                             FrontierEntryEntity.State state);
+
+    long countByCatalogueAndKindAndState(String catalogue, FrontierEntryEntity.Kind kind,
+                                         FrontierEntryEntity.State state);
+
+    // The last listing page is walked once it is recorded done without a next link
+    boolean existsByCatalogueAndKindAndStateAndNextUrlIsNull(String catalogue, FrontierEntryEntity.Kind kind,
+                                                              FrontierEntryEntity.State state);
+
+    @Query("select e.url from FrontierEntryEntity e where e.catalogue = :catalogue"
+            + " and e.kind = com.mkr.scraper.scrape.FrontierEntryEntity.Kind.PRODUCT"
+            + " and e.state = com.mkr.scraper.scrape.FrontierEntryEntity.State.DONE")
+    List<String> findDoneProductUrls(@Param("catalogue") String catalogue);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update FrontierEntryEntity e set e.state = com.mkr.scraper.scrape.FrontierEntryEntity.State.DONE where e.url in :urls")
+    int markDone(@Param("urls") Collection<String> urls);
+
+    @Modifying
+    @Query("delete from FrontierEntryEntity e where e.catalogue = :catalogue")
+    int deleteByCatalogue(@Param("catalogue") String catalogue);
+}
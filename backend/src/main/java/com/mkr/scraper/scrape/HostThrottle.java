@@ -0,0 +1,63 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Per-host politeness: caps in-flight requests and applies a token-bucket rate limit for each host.
+ */
+@Component
+public class HostThrottle {
+    private final int maxConcurrentPerHost;
+    private final double requestsPerSecond;
+    private final int burst;
+    private final Map<String, HostLimits> hosts = new ConcurrentHashMap<>();
+
+    public HostThrottle(@Value("${scraper.fetch.max-concurrent-per-host:8}") int maxConcurrentPerHost,
+                        @Value("${scraper.fetch.requests-per-second:10}") double requestsPerSecond,
+                        @Value("${scraper.fetch.burst:10}") int burst) {
+        this.maxConcurrentPerHost = Math.max(1, maxConcurrentPerHost);
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+    }
+
+    /**
+     * Blocks until the host has a free slot and a rate-limit token. Close the permit when the request is done.
+     */
+    public Permit acquire(String url) throws InterruptedIOException {
+        HostLimits limits = hosts.computeIfAbsent(hostOf(url),
+                h -> new HostLimits(new Semaphore(maxConcurrentPerHost), new TokenBucket(requestsPerSecond, burst)));
+        try {
+            limits.slots().acquire();
+            try {
+                limits.bucket().acquire();
+            } catch (InterruptedException e) {
+                limits.slots().release();
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + url);
+        }
+        return limits.slots()::release;
+    }
+
+    static String hostOf(String url) {
+        String host = URI.create(url).getHost();
+        return host != null ? host.toLowerCase() : "";
+    }
+
+    private record HostLimits(Semaphore slots, TokenBucket bucket) {}
+
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.mkr.scraper.scrape;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets: four sub-buckets per power of two of microseconds,
+ * so a percentile is at most 25% above the true value. Cheap enough to record every fetch.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = SUB_BUCKETS + (64 - 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0, nanos) / 1_000));
+    }
+
+    public Counts snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) copy[i] = counts.get(i);
+        return new Counts(copy);
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int mantissa = (int) (micros >>> (exp - 2)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exp - 2) * SUB_BUCKETS + mantissa;
+    }
+
+    /** Exclusive upper bound of a bucket, in microseconds. */
+    static long upperBoundMicros(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket + 1;
+        int exp = (bucket - SUB_BUCKETS) / SUB_BUCKETS + 2;
+        int mantissa = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + mantissa + 1) << (exp - 2);
+    }
+
+    /** Bucket counts at one point in time; subtract two of them to get the latencies of a single run. */
+    public record Counts(long[] buckets) {
+        public Counts minus(Counts earlier) {
+            long[] diff = new long[buckets.length];
+            for (int i = 0; i < diff.length; i++) diff[i] = buckets[i] - earlier.buckets[i];
+            return new Counts(diff);
+        }
+
+        public long total() {
+            long total = 0;
+            for (long c : buckets) total += c;
+            return total;
+        }
+
+        /** Upper bound of the bucket holding the {@code quantile} (0..1), in milliseconds; 0 when empty. */
+        public double percentileMillis(double quantile) {
+            long total = total();
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) return upperBoundMicros(i) / 1_000.0;
+            }
+            return upperBoundMicros(buckets.length - 1) / 1_000.0;
+        }
+    }
+}
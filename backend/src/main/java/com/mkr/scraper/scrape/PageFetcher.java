@@ -0,0 +1,216 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.annotation.PreDestroy;
+import org.jsoup.HttpStatusException;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Shared HTTP layer for the scraper: one pooled {@link HttpClient} (keep-alive, HTTP/2 when offered),
+ * compressed transfers, timeouts and retries with jittered exponential backoff on 5xx/429 and IO errors.
+ * <p>
+ * Brotli is not advertised because the JDK ships no decoder for it; gzip and deflate are.
+ */
+@Component
+public class PageFetcher {
+    private static final Logger log = LoggerFactory.getLogger(PageFetcher.class);
+    private static final String USER_AGENT = "Mozilla/5.0 (compatible; web-scraping-search-engine)";
+
+    private final HttpClient client;
+    private final HostThrottle hostThrottle;
+    private final Duration requestTimeout;
+    private final int maxRetries;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final FetchStats stats = new FetchStats();
+    private final ScrapeMetrics metrics;
+
+    @Autowired
+    public PageFetcher(HostThrottle hostThrottle, ScrapeMetrics metrics,
+                       @Value("${scraper.fetch.timeout-ms:15000}") long timeoutMs,
+                       @Value("${scraper.fetch.max-retries:3}") int maxRetries,
+                       @Value("${scraper.fetch.backoff-base-ms:200}") long backoffBaseMs,
+                       @Value("${scraper.fetch.backoff-max-ms:5000}") long backoffMaxMs) {
+        this(HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .followRedirects(HttpClient.Redirect.NORMAL)
+                        .connectTimeout(Duration.ofMillis(timeoutMs))
+                        .build(),
+                hostThrottle, metrics, Duration.ofMillis(timeoutMs), maxRetries, backoffBaseMs, backoffMaxMs);
+    }
+
+    PageFetcher(HttpClient client, HostThrottle hostThrottle, Duration requestTimeout,
+                int maxRetries, long backoffBaseMs, long backoffMaxMs) {
+        this(client, hostThrottle, ScrapeMetrics.detached(), requestTimeout, maxRetries, backoffBaseMs, backoffMaxMs);
+    }
+
+    PageFetcher(HttpClient client, HostThrottle hostThrottle, ScrapeMetrics metrics, Duration requestTimeout,
+                int maxRetries, long backoffBaseMs, long backoffMaxMs) {
+        this.client = client;
+        this.metrics = metrics;
+        this.hostThrottle = hostThrottle;
+        this.requestTimeout = requestTimeout;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.backoffBaseMs = backoffBaseMs;
+        this.backoffMaxMs = backoffMaxMs;
+    }
+
+    public FetchStats stats() {
+        return stats;
+    }
+
+    /**
+     * Fetches and parses a page. Non-2xx responses surface as {@link HttpStatusException}, like {@code Jsoup.connect}.
+     */
+    public Document fetch(String url) throws IOException {
+        return fetchPage(url).parse();
+    }
+
+    public FetchedPage fetchPage(String url) throws IOException {
+        return fetchPage(url, null, null);
+    }
+
+    /**
+     * Conditional GET: sends {@code If-None-Match}/{@code If-Modified-Since} for whichever validator is non-null.
+     * A 304 comes back as a {@link FetchedPage} with an empty body, see {@link FetchedPage#notModified()}.
+     */
+    public FetchedPage fetchPage(String url, String etag, String lastModified) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(requestTimeout)
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.8")
+                .header("Accept-Encoding", "gzip, deflate");
+        if (etag != null) builder.header("If-None-Match", etag);
+        if (lastModified != null) builder.header("If-Modified-Since", lastModified);
+        HttpRequest request = builder.GET().build();
+
+        for (int attempt = 0; ; attempt++) {
+            boolean lastAttempt = attempt >= maxRetries;
+            try {
+                FetchedPage page = send(url, request);
+                if (isRetryable(page.status()) && !lastAttempt) {
+                    log.debug("GET {} -> {}, retrying (attempt {})", url, page.status(), attempt + 1);
+                } else if (page.status() >= 400) {
+                    stats.recordFailure();
+                    throw new HttpStatusException("HTTP error fetching URL", page.status(), url);
+                } else {
+                    return page;
+                }
+            } catch (HttpStatusException | InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                if (lastAttempt) {
+                    stats.recordFailure();
+                    metrics.fetchFailed(HostThrottle.hostOf(url));
+                    throw e;
+                }
+                log.debug("GET {} failed: {}, retrying (attempt {})", url, e.toString(), attempt + 1);
+            }
+            stats.recordRetry();
+            backoff(attempt);
+        }
+    }
+
+    private FetchedPage send(String url, HttpRequest request) throws IOException {
+        HostThrottle.Permit permit = hostThrottle.acquire(url);
+        try {
+            long start = System.nanoTime();
+            HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            byte[] raw = response.body();
+            byte[] body = decode(raw, response.headers().firstValue("Content-Encoding").orElse(""));
+            long nanos = System.nanoTime() - start;
+            stats.recordResponse(raw.length, nanos);
+            metrics.fetched(HostThrottle.hostOf(url), response.statusCode(), raw.length, nanos);
+            log.debug("GET {} -> {} ({} bytes, {} ms)", url, response.statusCode(), raw.length, nanos / 1_000_000);
+            String contentType = response.headers().firstValue("Content-Type").orElse(null);
+            return new FetchedPage(url, response.statusCode(), body, charsetOf(contentType), raw.length, nanos,
+                    response.headers().firstValue("ETag").orElse(null),
+                    response.headers().firstValue("Last-Modified").orElse(null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + url);
+        } finally {
+            permit.close();
+        }
+    }
+
+    private static boolean isRetryable(int status) {
+        return status >= 500 || status == 429;
+    }
+
+    private void backoff(int attempt) throws InterruptedIOException {
+        // Full jitter: uniform in [0, min(max, base * 2^attempt)]
+        long cap = Math.min(backoffMaxMs, backoffBaseMs << Math.min(attempt, 20));
+        long sleepMs = cap > 0 ? ThreadLocalRandom.current().nextLong(cap + 1) : 0;
+        try {
+            Thread.sleep(sleepMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during retry backoff");
+        }
+    }
+
+    private static byte[] decode(byte[] raw, String contentEncoding) throws IOException {
+        String encoding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        if (raw.length == 0 || encoding.isEmpty() || encoding.equals("identity")) return raw;
+        InputStream in = switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(new ByteArrayInputStream(raw));
+            case "deflate" -> new InflaterInputStream(new ByteArrayInputStream(raw));
+            default -> throw new IOException("Unsupported Content-Encoding: " + contentEncoding);
+        };
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+
+    /** Charset from a Content-Type header, or null to let Jsoup sniff the document. */
+    static String charsetOf(String contentType) {
+        if (contentType == null) return null;
+        for (String param : contentType.split(";")) {
+            String p = param.trim();
+            if (p.regionMatches(true, 0, "charset=", 0, 8)) {
+                String cs = p.substring(8).trim().replace("\"", "");
+                return cs.isEmpty() ? null : cs;
+            }
+        }
+        return null;
+    }
+
+    @PreDestroy
+    void close() {
+        client.close();
+    }
+
+    /**
+     * A fetched response: decoded body bytes, what was measured on the wire and the cache validators.
+     */
+    public record FetchedPage(String url, int status, byte[] body, String charset, long wireBytes, long latencyNanos,
+                              String etag, String lastModified) {
+        public boolean notModified() {
+            return status == 304;
+        }
+
+        public Document parse() throws IOException {
+            return Jsoup.parse(new ByteArrayInputStream(body), charset, url);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.mkr.scraper.scrape;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.Instant;
+
+/**
+ * What we know about a crawled URL from the last time its body was downloaded: HTTP validators for
+ * conditional requests, a digest of the body and, for listing pages, the next-page link. It also keeps the
+ * URL's change history, from which {@link RecrawlPolicy} decides when to look at it again.
+ */
+@Entity
+@Table(name = "page_states")
+public class PageStateEntity implements Persistable<String> {
+    @Id
+    @Column(length = 1024)
+    private String url;
+
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    // SHA-256 of the decoded body
+    @Column(length = 64)
+    private String digest;
+
+    // Bytes on the wire for the last full download; what a 304 saves
+    @Column(name = "body_bytes")
+    private long bodyBytes;
+
+    // Listing pages only: parsed "li.next a" target, null on the last page
+    @Column(name = "next_url", length = 1024)
+    private String nextUrl;
+
+    @Column(name = "fetched_at")
+    private Instant fetchedAt;
+
+    // Change history: intervals between checks, how many of them ended with a changed body, and their total
+    // length. Defaults so the columns can be added to a database that already has page states.
+    @Column(columnDefinition = "integer default 0 not null")
+    private int checks;
+
+    @Column(columnDefinition = "integer default 0 not null")
+    private int changes;
+
+    @Column(name = "observed_seconds", columnDefinition = "bigint default 0 not null")
+    private long observedSeconds;
+
+    // Last time the page was looked at, whether or not it came back changed
+    @Column(name = "checked_at")
+    private Instant checkedAt;
+
+    @Column(name = "changed_at")
+    private Instant changedAt;
+
+    @Column(name = "next_due_at")
+    private Instant nextDueAt;
+
+    // The id is the URL, so tell Spring Data which rows are new instead of letting save() merge (select first)
+    @Transient
+    private boolean isNew = true;
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    protected PageStateEntity() {}
+
+    public PageStateEntity(String url) {
+        this.url = url;
+    }
+
+    @Override
+    public String getId() { return url; }
+    @Override
+    public boolean isNew() { return isNew; }
+
+    // getters and setters
+    public String getUrl() { return url; }
+    public String getEtag() { return etag; }
+    public void setEtag(String etag) { this.etag = etag; }
+    public String getLastModified() { return lastModified; }
+    public void setLastModified(String lastModified) { this.lastModified = lastModified; }
+    public String getDigest() { return digest; }
+    public void setDigest(String digest) { this.digest = digest; }
+    public long getBodyBytes() { return bodyBytes; }
+    public void setBodyBytes(long bodyBytes) { this.bodyBytes = bodyBytes; }
+    public String getNextUrl() { return nextUrl; }
+    public void setNextUrl(String nextUrl) { this.nextUrl = nextUrl; }
+    public Instant getFetchedAt() { return fetchedAt; }
+    public void setFetchedAt(Instant fetchedAt) { this.fetchedAt = fetchedAt; }
+    public int getChecks() { return checks; }
+    public void setChecks(int checks) { this.checks = checks; }
+    public int getChanges() { return changes; }
+    public void setChanges(int changes) { this.changes = changes; }
+    public long getObservedSeconds() { return observedSeconds; }
+    public void setObservedSeconds(long observedSeconds) { this.observedSeconds = observedSeconds; }
+    public Instant getCheckedAt() { return checkedAt; }
+    public void setCheckedAt(Instant checkedAt) { this.checkedAt = checkedAt; }
+    public Instant getChangedAt() { return changedAt; }
+    public void setChangedAt(Instant changedAt) { this.changedAt = changedAt; }
+    public Instant getNextDueAt() { return nextDueAt; }
+    public void setNextDueAt(Instant nextDueAt) { this.nextDueAt = nextDueAt; }
+}
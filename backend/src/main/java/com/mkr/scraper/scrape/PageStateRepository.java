@@ -0,0 +1,14 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PageStateRepository extends JpaRepository<PageStateEntity, String> {
+    List<PageStateEntity> findByUrlStartingWith(String prefix);
+
+    Slice<PageStateEntity> findByNextDueAtLessThanEqualOrderByNextDueAtAsc(Instant now, Pageable page);
+}
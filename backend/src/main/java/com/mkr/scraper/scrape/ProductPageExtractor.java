@@ -0,0 +1,128 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.QueryParser;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pulls the details out of a books.toscrape.com product page in one pass: the selectors are compiled once, the
+ * product information table is walked a single time into a header → value map, and prices are parsed without
+ * regular expressions.
+ * <p>
+ * Rows are matched on their exact header, so "Tax" no longer picks up the "Price (excl. tax)" row the way
+ * {@code tr:contains(Tax)} (case-insensitive) did.
+ */
+public final class ProductPageExtractor {
+    private static final int MAX_DESCRIPTION = 16000;
+    private static final Evaluator CATEGORY = QueryParser.parse("ul.breadcrumb li:nth-child(3) a");
+    private static final Evaluator DESCRIPTION = QueryParser.parse("#product_description");
+    private static final Evaluator INFO_TABLE = QueryParser.parse("table.table.table-striped");
+    private static final Evaluator ROW = QueryParser.parse("tr");
+
+    private ProductPageExtractor() {}
+
+    public static void apply(Document pd, BookEntity book) {
+        // Category from breadcrumb: Home > Books > Category
+        Element breadcrumbCat = pd.selectFirst(CATEGORY);
+        if (breadcrumbCat != null) {
+            book.setCategory(breadcrumbCat.text());
+        }
+        // Description is the paragraph after the header
+        Element descHeader = pd.selectFirst(DESCRIPTION);
+        if (descHeader != null) {
+            Element descPara = descHeader.nextElementSibling();
+            if (descPara != null) {
+                // Truncate to a generous limit to avoid DB issues in stricter envs
+                book.setDescription(truncateWithEllipsis(descPara.text(), MAX_DESCRIPTION));
+            }
+        }
+
+        Map<String, String> info = productInformation(pd);
+        String availability = info.get("Availability");
+        if (availability != null) book.setAvailability(availability);
+        String upc = info.get("UPC");
+        if (upc != null) book.setUpc(upc);
+        String productType = info.get("Product Type");
+        if (productType != null) book.setProductType(productType);
+        BigDecimal excl = parsePrice(info.get("Price (excl. tax)"));
+        if (excl != null) book.setPriceExclTax(excl);
+        BigDecimal incl = parsePrice(info.get("Price (incl. tax)"));
+        if (incl != null) book.setPriceInclTax(incl);
+        BigDecimal tax = parsePrice(info.get("Tax"));
+        if (tax != null) book.setTax(tax);
+        String reviews = info.get("Number of reviews");
+        if (reviews != null) {
+            try {
+                book.setNumberOfReviews(Integer.parseInt(reviews.trim()));
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+
+    /** Header text → cell text for every row of the product information table. */
+    static Map<String, String> productInformation(Document pd) {
+        Map<String, String> info = new HashMap<>(16);
+        Element table = pd.selectFirst(INFO_TABLE);
+        if (table == null) return info;
+        for (Element row : table.select(ROW)) {
+            Element th = row.firstElementChild();
+            Element td = th != null ? th.nextElementSibling() : null;
+            if (td != null) info.putIfAbsent(th.text(), td.text());
+        }
+        return info;
+    }
+
+    /**
+     * Digits and the first decimal point of {@code text}, e.g. "£51.77" → 51.77; everything else is skipped.
+     * Returns null when there are no digits. Accumulates into a long and falls back to BigDecimal past 18 digits.
+     */
+    public static BigDecimal parsePrice(String text) {
+        if (text == null) return null;
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                try {
+                    unscaled = Math.addExact(Math.multiplyExact(unscaled, 10), c - '0');
+                } catch (ArithmeticException overflow) {
+                    return parseLongPrice(text);
+                }
+                digits++;
+                if (scale >= 0) scale++;
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            }
+        }
+        return digits == 0 ? null : BigDecimal.valueOf(unscaled, Math.max(scale, 0));
+    }
+
+    // Same rules as parsePrice, for numbers that do not fit a long
+    private static BigDecimal parseLongPrice(String text) {
+        StringBuilder number = new StringBuilder(text.length());
+        boolean point = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                number.append(c);
+            } else if (c == '.' && !point) {
+                number.append(c);
+                point = true;
+            }
+        }
+        return new BigDecimal(number.toString());
+    }
+
+    static String truncateWithEllipsis(String s, int max) {
+        if (s == null) return null;
+        if (s.length() <= max) return s;
+        if (max <= 3) return s.substring(0, Math.max(0, max));
+        return s.substring(0, max - 3) + "...";
+    }
+}
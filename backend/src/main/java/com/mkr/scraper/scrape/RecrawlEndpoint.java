@@ -0,0 +1,32 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * {@code GET /actuator/recrawl}: recrawl budget, queue and freshness per catalogue;
+ * {@code /actuator/recrawl/books} for every page of one catalogue, soonest due first.
+ */
+@Component
+@Endpoint(id = "recrawl")
+public class RecrawlEndpoint {
+    private final ScrapeScheduler scheduler;
+
+    public RecrawlEndpoint(ScrapeScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    @ReadOperation
+    public FreshnessReport freshness() {
+        return scheduler.freshness();
+    }
+
+    @ReadOperation
+    public List<FreshnessReport.Page> pages(@Selector String catalogue) {
+        return scheduler.pages(catalogue);
+    }
+}
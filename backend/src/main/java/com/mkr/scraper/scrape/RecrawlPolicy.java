@@ -0,0 +1,89 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Decides when a URL is due again from how often it was seen to change. Each check adds the time since the
+ * previous one and whether the body changed; the change rate is estimated as
+ * {@code -ln((n - x + 0.5) / (n + 0.5)) / meanInterval} for {@code x} changes in {@code n} checks, which unlike
+ * {@code x / observedTime} accounts for several changes between two checks looking like one. The page is due
+ * again after one expected change interval, so volatile pages (prices, stock) come round often and pages that
+ * never change drift out to the maximum. A page not seen to change yet is checked again after as long as it has
+ * been stable, i.e. the interval doubles with every unchanged check.
+ */
+@Component
+public class RecrawlPolicy {
+    // Past this many intervals the history is halved, so the estimate follows what the page does lately
+    static final int HISTORY = 32;
+
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final Duration initialInterval;
+
+    public RecrawlPolicy(@Value("${scraper.recrawl.min-interval:15m}") Duration minInterval,
+                         @Value("${scraper.recrawl.max-interval:7d}") Duration maxInterval,
+                         @Value("${scraper.recrawl.initial-interval:6h}") Duration initialInterval) {
+        if (minInterval.isNegative() || maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("Need 0 <= min-interval <= max-interval, got " + minInterval + " and "
+                    + maxInterval);
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.initialInterval = clamp(initialInterval.toSeconds());
+    }
+
+    /** Records a check of {@code state} at {@code now} and moves its due time. */
+    public void observe(PageStateEntity state, boolean changed, Instant now) {
+        Instant last = state.getCheckedAt();
+        if (last != null) {
+            state.setObservedSeconds(state.getObservedSeconds() + Math.max(0, Duration.between(last, now).toSeconds()));
+            state.setChecks(state.getChecks() + 1);
+            if (changed) state.setChanges(state.getChanges() + 1);
+            if (state.getChecks() > HISTORY) {
+                state.setChecks(state.getChecks() / 2);
+                state.setChanges(state.getChanges() / 2);
+                state.setObservedSeconds(state.getObservedSeconds() / 2);
+            }
+        }
+        state.setCheckedAt(now);
+        if (changed || state.getChangedAt() == null) state.setChangedAt(now);
+        state.setNextDueAt(now.plus(interval(state)));
+    }
+
+    /** Time from one check of {@code state} to the next. */
+    public Duration interval(PageStateEntity state) {
+        if (state.getChecks() == 0 || state.getObservedSeconds() == 0) return initialInterval;
+        if (state.getChanges() == 0) return clamp(state.getObservedSeconds());
+        return clamp(Math.round(changeSeconds(state)));
+    }
+
+    /** Estimated mean time between changes of {@code state}; null until it has been seen to change. */
+    public Duration changeInterval(PageStateEntity state) {
+        if (state.getChanges() == 0 || state.getObservedSeconds() == 0) return null;
+        return Duration.ofSeconds(Math.round(changeSeconds(state)));
+    }
+
+    /** When {@code state} is due, also for pages stored before their history was kept. */
+    public Instant dueAt(PageStateEntity state) {
+        if (state.getNextDueAt() != null) return state.getNextDueAt();
+        Instant last = state.getCheckedAt() != null ? state.getCheckedAt() : state.getFetchedAt();
+        return last != null ? last.plus(initialInterval) : Instant.EPOCH;
+    }
+
+    private static double changeSeconds(PageStateEntity state) {
+        int n = state.getChecks();
+        int x = state.getChanges();
+        double rate = -Math.log((n - x + 0.5) / (n + 0.5));
+        return state.getObservedSeconds() / (double) n / rate;
+    }
+
+    private Duration clamp(long seconds) {
+        Duration d = Duration.ofSeconds(seconds);
+        if (d.compareTo(minInterval) < 0) return minInterval;
+        return d.compareTo(maxInterval) > 0 ? maxInterval : d;
+    }
+}
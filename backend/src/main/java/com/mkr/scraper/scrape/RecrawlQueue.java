@@ -0,0 +1,51 @@
+package com.mkr.scraper.scrape;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * URLs ordered by the time they are next due. Offering a URL again moves it; the stale heap entry is skipped
+ * when it comes up rather than searched for. Not thread-safe.
+ */
+final class RecrawlQueue {
+    private final PriorityQueue<Due> heap = new PriorityQueue<>();
+    private final Map<String, Instant> dueAt = new HashMap<>();
+
+    void offer(String url, Instant at) {
+        if (!at.equals(dueAt.put(url, at))) heap.add(new Due(at, url));
+    }
+
+    /** Removes and returns up to {@code max} URLs due at {@code now}, most overdue first. */
+    List<String> takeDue(Instant now, int max) {
+        List<String> due = new ArrayList<>();
+        while (due.size() < max && !heap.isEmpty() && !heap.peek().at().isAfter(now)) {
+            Due next = heap.poll();
+            if (next.at().equals(dueAt.get(next.url()))) {
+                dueAt.remove(next.url());
+                due.add(next.url());
+            }
+        }
+        return due;
+    }
+
+    int size() {
+        return dueAt.size();
+    }
+
+    void clear() {
+        heap.clear();
+        dueAt.clear();
+    }
+
+    private record Due(Instant at, String url) implements Comparable<Due> {
+        @Override
+        public int compareTo(Due o) {
+            int c = at.compareTo(o.at);
+            return c != 0 ? c : url.compareTo(o.url);
+        }
+    }
+}
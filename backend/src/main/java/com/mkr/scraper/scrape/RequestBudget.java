@@ -0,0 +1,53 @@
+package com.mkr.scraper.scrape;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Requests per hour for recrawling, as a non-blocking token bucket holding at most a quarter of an hour's worth.
+ * Requests are charged after the fact, so a run that needed more than it was given (a changed listing pulls in its
+ * product pages, a full crawl everything) leaves the bucket in debt and the following runs wait it out: the
+ * budget holds as an hourly average. A non-positive rate disables the limit.
+ */
+final class RequestBudget {
+    private final double perHour;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+    private double tokens;
+    private long lastRefill;
+
+    RequestBudget(double perHour) {
+        this(perHour, System::nanoTime);
+    }
+
+    RequestBudget(double perHour, LongSupplier nanoTime) {
+        this.perHour = perHour;
+        this.capacity = Math.max(1, perHour / 4);
+        this.nanoTime = nanoTime;
+        this.tokens = capacity;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    /** Whole requests that may be made now. */
+    synchronized int available() {
+        if (perHour <= 0) return Integer.MAX_VALUE;
+        refill();
+        return (int) Math.max(0, Math.floor(tokens));
+    }
+
+    synchronized void charge(long requests) {
+        if (perHour <= 0) return;
+        refill();
+        tokens -= requests;
+    }
+
+    double perHour() {
+        return perHour;
+    }
+
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * perHour / TimeUnit.HOURS.toNanos(1));
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,8 @@
+package com.mkr.scraper.scrape;
+
+/**
+ * Published by {@link ScrapeService} when a scrape run has written its results.
+ */
+public record ScrapeCompletedEvent(Kind kind) {
+    public enum Kind { BOOKS, QUOTES }
+}
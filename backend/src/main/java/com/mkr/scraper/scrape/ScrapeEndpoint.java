@@ -0,0 +1,32 @@
+package com.mkr.scraper.scrape;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/scrape}: the last run of each catalogue with its per-stage summary;
+ * {@code /actuator/scrape/books} for a single catalogue.
+ */
+@Component
+@Endpoint(id = "scrape")
+public class ScrapeEndpoint {
+    private final ScrapeMetrics metrics;
+
+    public ScrapeEndpoint(ScrapeMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, ScrapeRunReport> lastRuns() {
+        return metrics.lastRuns();
+    }
+
+    @ReadOperation
+    public ScrapeRunReport lastRun(@Selector String catalogue) {
+        return metrics.lastRuns().get(catalogue);
+    }
+}
@@ -0,0 +1,167 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.pipeline.Pipeline;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer meters for the crawl, all named {@code scraper.*}:
+ * <ul>
+ *     <li>{@code scraper.fetch} timer and {@code scraper.fetch.bytes} summary per host and status</li>
+ *     <li>{@code scraper.parse} timer per catalogue and page kind (listing, product)</li>
+ *     <li>{@code scraper.items} counter per catalogue and merge outcome (inserted, updated, ...)</li>
+ *     <li>{@code scraper.product.failures} counter per stage (fetch, parse)</li>
+ *     <li>{@code scraper.persist} timer per catalogue, one sample per write batch</li>
+ *     <li>{@code scraper.pipeline.queue} gauge per pipeline stage while a run is in progress</li>
+ * </ul>
+ * The last run of each catalogue is also kept as a {@link ScrapeRunReport} for {@code /actuator/scrape}.
+ */
+@Component
+public class ScrapeMetrics {
+    private final MeterRegistry registry;
+    // Keyed by instance: runs of the same pipeline may overlap
+    private final Set<Pipeline> running = ConcurrentHashMap.newKeySet();
+    private final Set<QueueKey> queueGauges = ConcurrentHashMap.newKeySet();
+    // Hot-path meters, built once per tag combination
+    private final Map<FetchKey, FetchMeters> fetchMeters = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fetchErrors = new ConcurrentHashMap<>();
+    private final Map<ParseKey, Timer> parseTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> productFailures = new ConcurrentHashMap<>();
+    private final Map<String, Timer> persistTimers = new ConcurrentHashMap<>();
+    private final Map<String, ScrapeRunReport> lastRuns = new ConcurrentHashMap<>();
+
+    public ScrapeMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Meters that go nowhere, for code constructed outside Spring (tests, benchmarks). */
+    static ScrapeMetrics detached() {
+        return new ScrapeMetrics(new SimpleMeterRegistry());
+    }
+
+    public MeterRegistry registry() {
+        return registry;
+    }
+
+    void fetched(String host, int status, long wireBytes, long nanos) {
+        FetchMeters meters = fetchMeters.computeIfAbsent(new FetchKey(host, status), this::fetchMeters);
+        meters.latency().record(nanos, TimeUnit.NANOSECONDS);
+        meters.bytes().record(wireBytes);
+    }
+
+    private FetchMeters fetchMeters(FetchKey key) {
+        String statusTag = Integer.toString(key.status());
+        return new FetchMeters(
+                Timer.builder("scraper.fetch")
+                        .description("HTTP fetch latency, including body download")
+                        .tags("host", key.host(), "status", statusTag)
+                        .publishPercentiles(0.5, 0.99)
+                        .register(registry),
+                DistributionSummary.builder("scraper.fetch.bytes")
+                        .description("Response bytes on the wire")
+                        .baseUnit("bytes")
+                        .tags("host", key.host(), "status", statusTag)
+                        .register(registry));
+    }
+
+    void fetchFailed(String host) {
+        fetchErrors.computeIfAbsent(host, h -> Counter.builder("scraper.fetch.errors")
+                        .description("Fetches that failed with an IO error after all retries")
+                        .tag("host", h)
+                        .register(registry))
+                .increment();
+    }
+
+    void parsed(String catalogue, String kind, long nanos) {
+        parseTimers.computeIfAbsent(new ParseKey(catalogue, kind), k -> Timer.builder("scraper.parse")
+                        .description("HTML parsing and extraction time per page")
+                        .tags("catalogue", k.catalogue(), "kind", k.kind())
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    void productFailed(String stage) {
+        productFailures.computeIfAbsent(stage, st -> Counter.builder("scraper.product.failures")
+                        .description("Product pages kept with listing data only because a fetch or parse failed")
+                        .tag("stage", st)
+                        .register(registry))
+                .increment();
+    }
+
+    void persisted(String catalogue, long nanos) {
+        persistTimers.computeIfAbsent(catalogue, c -> Timer.builder("scraper.persist")
+                        .description("Time to merge one write batch into the database")
+                        .tag("catalogue", c)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Publishes the queue depths of {@code pipeline} until {@link #untrack(Pipeline)}. */
+    void track(Pipeline pipeline) {
+        running.add(pipeline);
+        String name = pipeline.name();
+        for (String stage : pipeline.stageNames()) {
+            if (!queueGauges.add(new QueueKey(name, stage))) continue;
+            // Registered once per stage; sums every run of that pipeline in progress (a recrawl and a full
+            // scrape can overlap), 0 in between
+            Gauge.builder("scraper.pipeline.queue", running, r -> r.stream()
+                            .filter(p -> p.name().equals(name))
+                            .mapToInt(p -> p.queueDepths().getOrDefault(stage, 0))
+                            .sum())
+                    .description("Items waiting in front of a pipeline stage")
+                    .tags("pipeline", name, "stage", stage)
+                    .register(registry);
+        }
+    }
+
+    void untrack(Pipeline pipeline) {
+        running.remove(pipeline);
+    }
+
+    void runFinished(ScrapeRunReport report) {
+        Timer.builder("scraper.run")
+                .description("Duration of a whole scrape run")
+                .tags("catalogue", report.catalogue(), "complete", Boolean.toString(report.complete()))
+                .register(registry)
+                .record(Duration.ofMillis(report.durationMillis()));
+        CatalogUpserter.Result result = report.result();
+        items(report.catalogue(), "inserted", result.inserted());
+        items(report.catalogue(), "updated", result.updated());
+        items(report.catalogue(), "unchanged", result.unchanged());
+        items(report.catalogue(), "removed", result.removed());
+        lastRuns.put(report.catalogue(), report);
+    }
+
+    private void items(String catalogue, String outcome, int count) {
+        Counter.builder("scraper.items")
+                .description("Items extracted by scrape runs, by what the merge did with them")
+                .tags("catalogue", catalogue, "outcome", outcome)
+                .register(registry)
+                .increment(count);
+    }
+
+    /** Last finished run per catalogue, keyed by catalogue name. */
+    public Map<String, ScrapeRunReport> lastRuns() {
+        return new LinkedHashMap<>(lastRuns);
+    }
+
+    private record FetchKey(String host, int status) {}
+
+    private record FetchMeters(Timer latency, DistributionSummary bytes) {}
+
+    private record ParseKey(String catalogue, String kind) {}
+
+    private record QueueKey(String pipeline, String stage) {}
+}
@@ -0,0 +1,26 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.pipeline.StageStats;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Summary of one finished scrape run, as shown by {@code /actuator/scrape}.
+ *
+ * @param complete           false when the run was stopped early
+ * @param failedProductPages product pages whose fetch or parse failed; their books keep the listing data
+ * @param stages             items handled and time spent per pipeline stage
+ */
+public record ScrapeRunReport(String catalogue, Instant startedAt, long durationMillis, boolean complete,
+                              CatalogUpserter.Result result, ChangeTracker.Summary pages, Fetch fetch,
+                              long failedProductPages, Map<String, StageStats.Snapshot> stages) {
+
+    public record Fetch(long requests, long failures, long retries, long bytes, long avgLatencyMillis,
+                        double p50Millis, double p99Millis) {
+        static Fetch of(FetchStats.Snapshot s) {
+            return new Fetch(s.requests(), s.failures(), s.retries(), s.bytes(), s.avgLatencyMillis(),
+                    s.latencies().percentileMillis(0.5), s.latencies().percentileMillis(0.99));
+        }
+    }
+}
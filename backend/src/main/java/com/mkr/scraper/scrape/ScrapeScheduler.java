@@ -2,44 +2,298 @@ package com.mkr.scraper.scrape;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the catalogues fresh. After the startup refresh, every page is revisited on its own schedule: a
+ * {@link RecrawlQueue} holds each known listing and product URL at the time {@link RecrawlPolicy} made it due,
+ * and every tick recrawls the most overdue ones that fit the hourly request budget. Pages that change often come
+ * round often, stable ones rarely. A full crawl still runs every {@code scraper.recrawl.full-interval}, because
+ * only a walk of the whole site notices removed items; its requests count against the budget too.
+ * <p>
+ * In cluster mode ({@link CrawlCluster}) each node recrawls the due pages of its own shards, read from the
+ * database rather than a local queue since shards move between nodes. A full crawl is walked by whichever node
+ * takes the catalogue's walk lease, and every node stores the books of its shards that the walk finds. The
+ * budget is for the whole cluster: each node's requests are charged once per live node.
+ */
 @Component
 public class ScrapeScheduler {
     private static final Logger log = LoggerFactory.getLogger(ScrapeScheduler.class);
+    private static final List<String> CATALOGUES = List.of("books", "quotes");
+    private static final int DUE_PAGE_SIZE = 500;
     private final ScrapeService scrapeService;
+    private final CrawlFrontier crawlFrontier;
+    private final CrawlCluster cluster;
+    private final PageStateRepository pageStateRepository;
+    private final PageFetcher pageFetcher;
+    private final RecrawlPolicy recrawlPolicy;
+    private final boolean initialScrapeEnabled;
+    private final Duration initialScrapeTtl;
+    private final boolean reparseOnStartup;
+    private final boolean recrawlEnabled;
+    private final Duration fullInterval;
+    private final RequestBudget budget;
+    private final RecrawlQueue queue = new RecrawlQueue();
+    private final Instant startedAt = Instant.now();
+    // Startup refresh, recrawls and full crawls never crawl at the same time
+    private final ReentrantLock crawling = new ReentrantLock();
+    private volatile CompletableFuture<Void> startupRefresh = CompletableFuture.completedFuture(null);
+    // Set whenever page states may have moved under the queue (a full crawl, a failed recrawl)
+    private volatile boolean reloadQueue = true;
 
-    public ScrapeScheduler(ScrapeService scrapeService) {
+    public ScrapeScheduler(ScrapeService scrapeService, CrawlFrontier crawlFrontier, CrawlCluster cluster,
+                           PageStateRepository pageStateRepository, PageFetcher pageFetcher,
+                           RecrawlPolicy recrawlPolicy,
+                           @Value("${scraper.initial-scrape.enabled:true}") boolean initialScrapeEnabled,
+                           @Value("${scraper.initial-scrape.ttl:0}") Duration initialScrapeTtl,
+                           @Value("${scraper.archive.reparse-on-startup:false}") boolean reparseOnStartup,
+                           @Value("${scraper.recrawl.enabled:true}") boolean recrawlEnabled,
+                           @Value("${scraper.recrawl.requests-per-hour:600}") double requestsPerHour,
+                           @Value("${scraper.recrawl.full-interval:7d}") Duration fullInterval) {
         this.scrapeService = scrapeService;
+        this.crawlFrontier = crawlFrontier;
+        this.cluster = cluster;
+        this.pageStateRepository = pageStateRepository;
+        this.pageFetcher = pageFetcher;
+        this.recrawlPolicy = recrawlPolicy;
+        this.initialScrapeEnabled = initialScrapeEnabled;
+        this.initialScrapeTtl = initialScrapeTtl;
+        this.reparseOnStartup = reparseOnStartup;
+        this.recrawlEnabled = recrawlEnabled;
+        this.budget = new RequestBudget(requestsPerHour);
+        this.fullInterval = fullInterval;
     }
 
-    // Initial scrape on app ready
+    // Initial scrape on app ready, in the background: the API already serves whatever storage had at boot
     @EventListener(ApplicationReadyEvent.class)
     public void initialScrape() {
+        if (!initialScrapeEnabled && !reparseOnStartup) return;
+        startupRefresh = CompletableFuture.runAsync(this::refreshOnStartup,
+                task -> Thread.ofVirtual().name("initial-scrape").start(task));
+    }
+
+    /** The background startup refresh; already done when it was disabled or not started yet. */
+    CompletableFuture<Void> startupRefresh() {
+        return startupRefresh;
+    }
+
+    private void refreshOnStartup() {
+        if (!crawling.tryLock()) return;
         try {
+            if (reparseOnStartup) {
+                log.info("Reparse from archive started");
+                scrapeService.reparseFromArchive();
+            }
+            if (!initialScrapeEnabled) return;
             log.info("Initial scrape started");
-            scrapeService.scrapeBooks();
-            scrapeService.scrapeQuotes();
+            // Shards first, so the walk below already splits the work
+            cluster.heartbeat();
+            for (String catalogue : CATALOGUES) {
+                if (stale(catalogue) && cluster.tryWalk(catalogue)) crawl(catalogue);
+            }
+            scrapeService.crawlPendingBooks();
             log.info("Initial scrape finished");
         } catch (Exception e) {
             log.error("Initial scrape failed", e);
+        } finally {
+            reloadQueue = true;
+            crawling.unlock();
+        }
+    }
+
+    // Stale when never crawled to the end, or longer ago than the TTL (0 = always)
+    boolean stale(String catalogue) {
+        Optional<Instant> completed = crawlFrontier.lastCompleted(catalogue);
+        if (completed.isPresent() && Duration.between(completed.get(), Instant.now()).compareTo(initialScrapeTtl) < 0) {
+            log.info("Skipping initial {} scrape, last complete crawl at {} is within {}", catalogue,
+                    completed.get(), initialScrapeTtl);
+            return false;
         }
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${scraper.recrawl.tick:PT1M}", initialDelayString = "${scraper.recrawl.tick:PT1M}")
+    public void recrawlTick() {
+        if (!recrawlEnabled || !startupRefresh.isDone()) return;
+        recrawlDue();
     }
 
-    // Daily at 2AM CET
-    @Scheduled(cron = "0 0 2 * * *", zone = "Europe/Belgrade")
-    public void dailyScrape() {
+    /**
+     * Runs whatever is due now: full crawls past {@code scraper.recrawl.full-interval}, then as many of the most
+     * overdue pages as the budget allows. Skipped while another crawl is running.
+     *
+     * @return pages recrawled, not counting full crawls
+     */
+    int recrawlDue() {
+        if (!crawling.tryLock()) return 0;
         try {
-            log.info("Daily scrape started (2AM CET)");
-            scrapeService.scrapeBooks();
-            scrapeService.scrapeQuotes();
-            log.info("Daily scrape finished");
+            if (cluster.enabled()) return clusterRecrawlDue();
+            for (String catalogue : CATALOGUES) {
+                if (fullCrawlDue(catalogue)) fullCrawl(catalogue);
+            }
+            if (reloadQueue) loadQueue();
+            List<String> due;
+            synchronized (queue) {
+                due = queue.takeDue(Instant.now(), budget.available());
+            }
+            if (due.isEmpty()) return 0;
+            List<PageStateEntity> checked = charged(() -> scrapeService.recrawl(due));
+            synchronized (queue) {
+                for (PageStateEntity state : checked) queue.offer(state.getUrl(), recrawlPolicy.dueAt(state));
+            }
+            return checked.size();
         } catch (Exception e) {
-            log.error("Daily scrape failed", e);
+            log.error("Recrawl failed", e);
+            reloadQueue = true;
+            return 0;
+        } finally {
+            crawling.unlock();
         }
     }
-}
 
+    private int clusterRecrawlDue() throws IOException {
+        // Other nodes' walks first: finishing a books run needs every node to store its books
+        charged(scrapeService::crawlPendingBooks);
+        for (String catalogue : CATALOGUES) {
+            if (crawlFrontier.active(catalogue)) {
+                // An unfinished run: its walker carries on, or takes over from a walker that stopped renewing
+                if (!cluster.tryWalk(catalogue)) continue;
+                if (catalogue.equals("books") && crawlFrontier.walked(catalogue)) {
+                    if (scrapeService.finishShardedBooks()) cluster.endWalk(catalogue);
+                } else {
+                    log.info("Resuming the unfinished {} crawl", catalogue);
+                    charged(() -> crawl(catalogue));
+                }
+            } else if (fullCrawlDue(catalogue) && cluster.tryWalk(catalogue)) {
+                fullCrawl(catalogue);
+            }
+        }
+        List<String> due = ownedDue(Instant.now(), budget.available());
+        if (due.isEmpty()) return 0;
+        return charged(() -> scrapeService.recrawl(due)).size();
+    }
+
+    // Most overdue pages of this node's shards; the due times are in the database, whichever node set them
+    private List<String> ownedDue(Instant now, int max) {
+        List<String> due = new ArrayList<>();
+        Pageable page = PageRequest.of(0, DUE_PAGE_SIZE);
+        while (due.size() < max) {
+            Slice<PageStateEntity> slice =
+                    pageStateRepository.findByNextDueAtLessThanEqualOrderByNextDueAtAsc(now, page);
+            for (PageStateEntity state : slice) {
+                if (due.size() < max && cluster.owns(state.getUrl())) due.add(state.getUrl());
+            }
+            if (!slice.hasNext()) break;
+            page = slice.nextPageable();
+        }
+        return due;
+    }
+
+    // Charges the requests made by crawl against the budget
+    private <T> T charged(Crawl<T> crawl) throws IOException {
+        long requestsBefore = pageFetcher.stats().snapshot().requests();
+        try {
+            return crawl.run();
+        } finally {
+            long requests = pageFetcher.stats().snapshot().requests() - requestsBefore;
+            budget.charge(requests * cluster.liveNodes());
+        }
+    }
+
+    @FunctionalInterface
+    private interface Crawl<T> {
+        T run() throws IOException;
+    }
+
+    // Never crawled to the end counts from startup, so a failing initial scrape is not retried every tick
+    private boolean fullCrawlDue(String catalogue) {
+        Instant last = crawlFrontier.lastCompleted(catalogue).orElse(startedAt);
+        return Duration.between(last, Instant.now()).compareTo(fullInterval) >= 0 && budget.available() > 0;
+    }
+
+    private void fullCrawl(String catalogue) throws IOException {
+        log.info("Full {} crawl started, last one is older than {}", catalogue, fullInterval);
+        try {
+            charged(() -> crawl(catalogue));
+        } finally {
+            reloadQueue = true;
+        }
+    }
+
+    private Void crawl(String catalogue) throws IOException {
+        if (catalogue.equals("books")) scrapeService.scrapeBooks();
+        else scrapeService.scrapeQuotes();
+        // A sharded books walk keeps its lease until every node stored its books
+        if (!crawlFrontier.active(catalogue)) cluster.endWalk(catalogue);
+        return null;
+    }
+
+    private void loadQueue() {
+        List<PageStateEntity> states = new ArrayList<>();
+        for (String catalogue : CATALOGUES) {
+            states.addAll(pageStateRepository.findByUrlStartingWith(scrapeService.baseUrl(catalogue)));
+        }
+        synchronized (queue) {
+            queue.clear();
+            for (PageStateEntity state : states) queue.offer(state.getUrl(), recrawlPolicy.dueAt(state));
+        }
+        reloadQueue = false;
+        log.debug("Recrawl queue loaded with {} pages", states.size());
+    }
+
+    public FreshnessReport freshness() {
+        Instant now = Instant.now();
+        List<FreshnessReport.Catalogue> catalogues = new ArrayList<>();
+        for (String catalogue : CATALOGUES) {
+            List<FreshnessReport.Page> pages = pages(catalogue, now);
+            long[] ages = pages.stream().mapToLong(FreshnessReport.Page::ageSeconds).sorted().toArray();
+            catalogues.add(new FreshnessReport.Catalogue(catalogue, pages.size(),
+                    (int) pages.stream().filter(FreshnessReport.Page::due).count(),
+                    ages.length == 0 ? 0 : ages[ages.length / 2], ages.length == 0 ? 0 : ages[ages.length - 1],
+                    crawlFrontier.lastCompleted(catalogue).orElse(null)));
+        }
+        int queued;
+        synchronized (queue) {
+            queued = queue.size();
+        }
+        return new FreshnessReport(budget.perHour(), budget.available(), queued, catalogues);
+    }
+
+    /** Every page of {@code catalogue}, soonest due first; null for an unknown catalogue. */
+    public List<FreshnessReport.Page> pages(String catalogue) {
+        return scrapeService.baseUrl(catalogue) == null ? null : pages(catalogue, Instant.now());
+    }
+
+    private List<FreshnessReport.Page> pages(String catalogue, Instant now) {
+        return pageStateRepository.findByUrlStartingWith(scrapeService.baseUrl(catalogue)).stream()
+                .map(state -> page(state, now))
+                .sorted(Comparator.comparing(FreshnessReport.Page::nextDueAt).thenComparing(FreshnessReport.Page::url))
+                .toList();
+    }
+
+    private FreshnessReport.Page page(PageStateEntity state, Instant now) {
+        Instant due = recrawlPolicy.dueAt(state);
+        Instant checked = state.getCheckedAt() != null ? state.getCheckedAt() : state.getFetchedAt();
+        Duration changeInterval = recrawlPolicy.changeInterval(state);
+        return new FreshnessReport.Page(state.getUrl(), checked, state.getChangedAt(), due, !due.isAfter(now),
+                state.getChecks(), state.getChanges(), changeInterval == null ? null : changeInterval.toSeconds(),
+                checked == null ? 0 : Math.max(0, Duration.between(checked, now).toSeconds()));
+    }
+}
@@ -1,187 +1,680 @@
 package com.mkr.scraper.scrape;
 
+import com.mkr.scraper.archive.PageArchive;
 import com.mkr.scraper.book.BookEntity;
 import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.pipeline.Pipeline;
 import com.mkr.scraper.quote.QuoteEntity;
 import com.mkr.scraper.quote.QuoteRepository;
-import org.jsoup.Jsoup;
+import jakarta.annotation.PreDestroy;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
+/**
+ * Runs each scrape as a {@link Pipeline}: the frontier walks listing pages, fetchers download product pages,
+ * parsers fill in the details and a single writer merges the results in batches. Queues between the stages
+ * are bounded, so a slow database slows the crawl down rather than buffering the whole site in memory.
+ */
 @Service
 public class ScrapeService {
+    private static final Logger log = LoggerFactory.getLogger(ScrapeService.class);
+    private static final long DRAIN_TIMEOUT_MS = 30_000;
     private final BookRepository bookRepository;
     private final QuoteRepository quoteRepository;
+    private final CatalogUpserter catalogUpserter;
+    private final ChangeTracker changeTracker;
+    private final CrawlFrontier crawlFrontier;
+    private final CrawlCluster cluster;
+    private final PageFetcher pageFetcher;
+    private final PageArchive pageArchive;
+    private final ApplicationEventPublisher events;
+    private final ScrapeMetrics metrics;
+    private final int queueCapacity;
+    private final int fetchParallelism;
+    private final int parseParallelism;
+    private final int writeBatchSize;
+    private final String booksBaseUrl;
+    private final String quotesBaseUrl;
+    private final Set<Pipeline> running = ConcurrentHashMap.newKeySet();
 
-    public ScrapeService(BookRepository bookRepository, QuoteRepository quoteRepository) {
+    public ScrapeService(BookRepository bookRepository, QuoteRepository quoteRepository,
+                         CatalogUpserter catalogUpserter, ChangeTracker changeTracker, CrawlFrontier crawlFrontier,
+                         CrawlCluster cluster, PageFetcher pageFetcher, PageArchive pageArchive,
+                         ApplicationEventPublisher events, ScrapeMetrics metrics,
+                         @Value("${scraper.pipeline.queue-capacity:256}") int queueCapacity,
+                         @Value("${scraper.pipeline.fetch-parallelism:8}") int fetchParallelism,
+                         @Value("${scraper.pipeline.parse-parallelism:0}") int parseParallelism,
+                         @Value("${scraper.pipeline.write-batch-size:200}") int writeBatchSize,
+                         @Value("${scraper.books.base-url:https://books.toscrape.com/}") String booksBaseUrl,
+                         @Value("${scraper.quotes.base-url:https://quotes.toscrape.com/}") String quotesBaseUrl) {
         this.bookRepository = bookRepository;
         this.quoteRepository = quoteRepository;
+        this.catalogUpserter = catalogUpserter;
+        this.changeTracker = changeTracker;
+        this.crawlFrontier = crawlFrontier;
+        this.cluster = cluster;
+        this.pageFetcher = pageFetcher;
+        this.pageArchive = pageArchive;
+        this.events = events;
+        this.metrics = metrics;
+        this.queueCapacity = queueCapacity;
+        this.fetchParallelism = fetchParallelism;
+        // Parsing is CPU-bound: default to one parser per core
+        this.parseParallelism = parseParallelism > 0 ? parseParallelism : Runtime.getRuntime().availableProcessors();
+        this.writeBatchSize = writeBatchSize;
+        this.booksBaseUrl = withTrailingSlash(booksBaseUrl);
+        this.quotesBaseUrl = withTrailingSlash(quotesBaseUrl);
     }
 
-    private static String truncateWithEllipsis(String s, int max) {
-        if (s == null) return null;
-        if (s.length() <= max) return s;
-        if (max <= 3) return s.substring(0, Math.max(0, max));
-        return s.substring(0, max - 3) + "...";
+    private static String withTrailingSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
     }
 
-    @Transactional
+    /** Base URL of the "books" or "quotes" site; null for any other catalogue. */
+    public String baseUrl(String catalogue) {
+        return switch (catalogue) {
+            case "books" -> booksBaseUrl;
+            case "quotes" -> quotesBaseUrl;
+            default -> null;
+        };
+    }
+
+    /**
+     * Crawls the books site. In cluster mode only the product pages of this node's shards are fetched and stored;
+     * the rest stay pending in the frontier for their nodes ({@link #crawlPendingBooks()}), and the run is
+     * finished by {@link #finishShardedBooks()} once they are all stored.
+     */
     public void scrapeBooks() throws IOException {
-        String baseUrl = "https://books.toscrape.com/";
-        String startUrl = baseUrl + "index.html";
-        List<BookEntity> books = new ArrayList<>();
+        crawlBooks(changeTracker.begin(booksBaseUrl), crawlFrontier.begin("books"), fetchParallelism, "Scraped",
+                cluster.enabled());
+    }
 
-        String url = startUrl;
-        while (url != null) {
-            Document doc = Jsoup.connect(url).get();
-            Elements articles = doc.select("section div ol.row li article.product_pod");
-            for (Element article : articles) {
-                BookEntity book = new BookEntity();
-                // Image
-                String imgSrc = article.selectFirst("div.image_container a img").attr("src");
-                if (imgSrc != null && !imgSrc.isEmpty()) {
-                    String normalized = imgSrc.replace("../", "");
-                    book.setImageUrl(baseUrl + normalized);
-                }
-                // Rating from class "star-rating Three" etc.
-                Element ratingEl = article.selectFirst("p.star-rating");
-                String rating = ratingEl != null ? ratingEl.className().replace("star-rating", "").trim() : null;
-                book.setRating(rating);
-                // Title
-                String title = article.selectFirst("h3 a").attr("title");
-                book.setTitle(title);
-                // Price
-                String priceText = article.selectFirst("div.product_price p.price_color").text();
-                String numeric = priceText.replaceAll("[^0-9.]", "");
-                if (!numeric.isEmpty()) {
-                    book.setPrice(new BigDecimal(numeric));
-                }
-                // Product URL (details page)
-                String href = article.selectFirst("h3 a").attr("href");
-                String productUrl;
-                if (href.startsWith("catalogue")) {
-                    productUrl = baseUrl + href;
-                } else {
-                    productUrl = baseUrl + "catalogue/" + href;
+    public void scrapeQuotes() throws IOException {
+        crawlQuotes(changeTracker.begin(quotesBaseUrl), crawlFrontier.begin("quotes"), "Scraped");
+    }
+
+    /**
+     * Rebuilds books and quotes from the {@link PageArchive} without any network traffic, e.g. after a selector
+     * change or a new field. Archive reads and product page parsing run on every core; pages missing from the
+     * archive keep what is stored. Fails when the archive is disabled.
+     */
+    public void reparseFromArchive() throws IOException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        try (PageArchive.Reader archive = pageArchive.reader()) {
+            crawlBooks(changeTracker.replay(booksBaseUrl, archive), crawlFrontier.detached("books"), cores,
+                    "Reparsed", false);
+            crawlQuotes(changeTracker.replay(quotesBaseUrl, archive), crawlFrontier.detached("quotes"), "Reparsed");
+        }
+    }
+
+    /**
+     * Checks just {@code urls}, listing or product pages of either site, instead of walking the whole site. A
+     * changed listing page refreshes the books or quotes on it, including the product pages it links to, and is
+     * followed to a next page that was never seen before; a changed product page updates its book. Pages that no
+     * longer belong to a live item are skipped. Nothing is tombstoned, since most of the site was not looked at:
+     * removals are left to full crawls.
+     *
+     * @return the states of the pages checked, with their new due times
+     */
+    public List<PageStateEntity> recrawl(Collection<String> urls) throws IOException {
+        List<PageStateEntity> checked = new ArrayList<>();
+        List<String> books = urls.stream().filter(u -> u.startsWith(booksBaseUrl)).toList();
+        List<String> quotes = urls.stream().filter(u -> u.startsWith(quotesBaseUrl)).toList();
+        if (!books.isEmpty()) checked.addAll(recrawlBooks(books));
+        if (!quotes.isEmpty()) checked.addAll(recrawlQuotes(quotes));
+        return checked;
+    }
+
+    private List<PageStateEntity> recrawlBooks(List<String> urls) throws IOException {
+        ChangeTracker.Session session = changeTracker.begin(booksBaseUrl);
+        LongAdder failedProducts = new LongAdder();
+        KnownBooks known = knownBooks();
+        CatalogUpserter.BookMerge merge = catalogUpserter.beginBooks();
+        Pipeline pipeline = Pipeline.<ProductTask>from("books-recrawl",
+                        out -> revisitBookPages(session, urls, known, out))
+                .then("fetch", fetchParallelism, queueCapacity, task -> fetchProductPage(session, task, failedProducts))
+                .then("parse", parseParallelism, queueCapacity, product -> parseProductPage(product, failedProducts))
+                .into("write", queueCapacity, writeBatchSize, true, batch -> persist("books", batch, merge::apply));
+        execute(pipeline);
+        List<PageStateEntity> checked = session.commit();
+        CatalogUpserter.Result result = merge.finish(false);
+        log.info("Recrawled {} book pages: {}, {}, {} product pages failed", checked.size(), result,
+                session.summary(), failedProducts.sum());
+        if (result.hasChanges()) changed(ScrapeCompletedEvent.Kind.BOOKS);
+        return checked;
+    }
+
+    private void revisitBookPages(ChangeTracker.Session session, List<String> urls, KnownBooks known,
+                                  Pipeline.Emitter<ProductTask> out) throws IOException, InterruptedException {
+        Set<String> requested = new HashSet<>(urls);
+        Set<String> emitted = new HashSet<>();
+        Instant now = Instant.now();
+        Deque<String> listings = new ArrayDeque<>(urls.stream().filter(known.bySource()::containsKey).toList());
+        Set<String> visited = new HashSet<>(listings);
+        while (!listings.isEmpty()) {
+            String url = listings.poll();
+            ChangeTracker.TrackedPage listing = session.fetch(url, known.bySource().containsKey(url));
+            if (!listing.changed()) continue;
+            for (BookEntity book : parseBookListing(session, listing, booksBaseUrl)) {
+                if (!emitted.add(book.getProductUrl())) continue;
+                if (!cluster.owns(book.getProductUrl())) {
+                    // Another node's book: make it due there. One new since the last full crawl waits for the next
+                    session.markDue(book.getProductUrl(), now);
+                    continue;
                 }
-                // Normalize possible ../
-                productUrl = productUrl.replace("../", "");
-                book.setProductUrl(productUrl);
-
-                // Fetch product page for category & details
-                try {
-                    Document pd = Jsoup.connect(productUrl).get();
-                    // Category from breadcrumb: Home > Books > Category
-                    Element breadcrumbCat = pd.selectFirst("ul.breadcrumb li:nth-child(3) a");
-                    if (breadcrumbCat != null) {
-                        book.setCategory(breadcrumbCat.text());
-                    }
-                    // Description (if present)
-                    Element descHeader = pd.selectFirst("#product_description");
-                    if (descHeader != null) {
-                        Element descPara = descHeader.nextElementSibling();
-                        if (descPara != null) {
-                            String desc = descPara.text();
-                            // Truncate to a generous limit to avoid DB issues in stricter envs
-                            book.setDescription(truncateWithEllipsis(desc, 16000));
-                        }
-                    }
-                    // Availability
-                    Element avail = pd.selectFirst("table.table.table-striped tr:contains(Availability) td");
-                    if (avail != null) book.setAvailability(avail.text());
-                    // UPC
-                    Element upcEl = pd.selectFirst("table.table.table-striped tr:contains(UPC) td");
-                    if (upcEl != null) book.setUpc(upcEl.text());
-                    // Product Type
-                    Element typeEl = pd.selectFirst("table.table.table-striped tr:contains(Product Type) td");
-                    if (typeEl != null) book.setProductType(typeEl.text());
-                    // Prices & Tax
-                    Element exclEl = pd.selectFirst("table.table.table-striped tr:contains(Price (excl. tax)) td");
-                    if (exclEl != null) {
-                        String n = exclEl.text().replaceAll("[^0-9.]", "");
-                        if (!n.isEmpty()) book.setPriceExclTax(new BigDecimal(n));
-                    }
-                    Element inclEl = pd.selectFirst("table.table.table-striped tr:contains(Price (incl. tax)) td");
-                    if (inclEl != null) {
-                        String n = inclEl.text().replaceAll("[^0-9.]", "");
-                        if (!n.isEmpty()) book.setPriceInclTax(new BigDecimal(n));
-                    }
-                    Element taxEl = pd.selectFirst("table.table.table-striped tr:contains(Tax) td");
-                    if (taxEl != null) {
-                        String n = taxEl.text().replaceAll("[^0-9.]", "");
-                        if (!n.isEmpty()) book.setTax(new BigDecimal(n));
-                    }
-                    // Number of reviews
-                    Element reviewsEl = pd.selectFirst("table.table.table-striped tr:contains(Number of reviews) td");
-                    if (reviewsEl != null) {
-                        try {
-                            book.setNumberOfReviews(Integer.parseInt(reviewsEl.text().trim()));
-                        } catch (NumberFormatException ignored) {}
+                BookEntity before = known.byUrl().get(book.getProductUrl());
+                // Product pages only for books whose listing entry changed, the rest keep their details
+                boolean fetch = before == null || before.getUpc() == null || !sameListing(before, book)
+                        || requested.contains(book.getProductUrl());
+                if (!fetch) copyProductDetails(before, book);
+                if (!out.emit(new ProductTask(book, before, fetch))) return;
+            }
+            // A page the site grew since the last full crawl
+            String next = listing.state().getNextUrl();
+            if (next != null && !known.bySource().containsKey(next) && visited.add(next)) listings.add(next);
+        }
+        for (String url : urls) {
+            BookEntity book = known.byUrl().get(url);
+            if (book == null || !emitted.add(url)) continue;
+            if (!out.emit(new ProductTask(carryOver(book), book, true))) return;
+        }
+    }
+
+    private List<PageStateEntity> recrawlQuotes(List<String> urls) throws IOException {
+        ChangeTracker.Session session = changeTracker.begin(quotesBaseUrl);
+        Map<String, List<QuoteEntity>> knownBySource = knownQuotes();
+        CatalogUpserter.QuoteMerge merge = catalogUpserter.beginQuotes();
+        Pipeline pipeline = Pipeline.<QuoteEntity>from("quotes-recrawl",
+                        out -> revisitQuotePages(session, urls, knownBySource, out))
+                .into("write", queueCapacity, writeBatchSize, true, batch -> persist("quotes", batch, merge::apply));
+        execute(pipeline);
+        List<PageStateEntity> checked = session.commit();
+        CatalogUpserter.Result result = merge.finish(false);
+        log.info("Recrawled {} quote pages: {}, {}", checked.size(), result, session.summary());
+        if (result.hasChanges()) changed(ScrapeCompletedEvent.Kind.QUOTES);
+        return checked;
+    }
+
+    private void revisitQuotePages(ChangeTracker.Session session, List<String> urls,
+                                   Map<String, List<QuoteEntity>> knownBySource,
+                                   Pipeline.Emitter<QuoteEntity> out) throws IOException, InterruptedException {
+        Deque<String> listings = new ArrayDeque<>(urls.stream().filter(knownBySource::containsKey).toList());
+        Set<String> visited = new HashSet<>(listings);
+        while (!listings.isEmpty()) {
+            String url = listings.poll();
+            ChangeTracker.TrackedPage listing = session.fetch(url, knownBySource.containsKey(url));
+            if (!listing.changed()) continue;
+            for (QuoteEntity quote : parseQuoteListing(session, listing, quotesBaseUrl)) {
+                if (!out.emit(quote)) return;
+            }
+            String next = listing.state().getNextUrl();
+            if (next != null && !knownBySource.containsKey(next) && visited.add(next)) listings.add(next);
+        }
+    }
+
+    private void crawlBooks(ChangeTracker.Session session, CrawlFrontier.Run frontier, int fetchers, String verb,
+                            boolean sharded) throws IOException {
+        String baseUrl = booksBaseUrl;
+        Predicate<String> mine = sharded ? cluster::owns : url -> true;
+        Instant startedAt = Instant.now();
+        LongAdder failedProducts = new LongAdder();
+        FetchStats.Snapshot fetchedBefore = pageFetcher.stats().snapshot();
+
+        // What we stored last time, so unchanged listing and product pages can be carried over without parsing
+        KnownBooks known = knownBooks();
+        Map<String, List<BookEntity>> knownBySource = known.bySource();
+        Map<String, BookEntity> knownByUrl = known.byUrl();
+
+        // Resuming an interrupted run: books it already stored count as seen, their pages are not fetched again
+        CatalogUpserter.BookMerge merge = catalogUpserter.beginBooks();
+        merge.markSeen(frontier.doneProductUrls());
+        // The writer restores listing order, so new books get ids in site order whatever the fetch timing
+        Pipeline pipeline = Pipeline.<ProductTask>from("books",
+                        out -> walkBookListings(session, frontier, baseUrl, knownBySource, knownByUrl, mine, out))
+                .then("fetch", fetchers, queueCapacity, task -> fetchProductPage(session, task, failedProducts))
+                .then("parse", parseParallelism, queueCapacity, product -> parseProductPage(product, failedProducts))
+                .into("write", queueCapacity, writeBatchSize, true, batch -> persist("books", batch, b -> {
+                    // Shards moved to another node since the walk emitted them stay pending for that node
+                    List<BookEntity> owned = b.stream().filter(book -> mine.test(book.getProductUrl())).toList();
+                    frontier.commitProducts(productUrls(owned), () -> merge.apply(owned));
+                }));
+        Pipeline.Result run = execute(pipeline);
+        // Page states only after the data they describe is stored
+        session.commit();
+        // Sharded, only the whole cluster's books tell what was removed: finishShardedBooks tombstones
+        CatalogUpserter.Result result = merge.finish(run.complete() && !sharded);
+        if (!sharded) frontier.finish(run.complete());
+        FetchStats.Snapshot fetched = pageFetcher.stats().snapshot().minus(fetchedBefore);
+        log.info("{} books{}: {}, {} ({}), {} product pages failed, stages={}", verb,
+                run.complete() ? "" : " (stopped early)", result, session.summary(), fetched, failedProducts.sum(),
+                run.stages());
+        metrics.runFinished(report("books", startedAt, run, result, session, fetched, failedProducts.sum()));
+        if (result.hasChanges()) changed(ScrapeCompletedEvent.Kind.BOOKS);
+        if (sharded && run.complete() && !finishShardedBooks()) {
+            log.info("Books walk finished, {} product pages left for the other nodes",
+                    crawlFrontier.pendingProducts("books"));
+        }
+    }
+
+    /**
+     * Cluster mode: fetches and stores the books of this node's shards that a walk, on any node, recorded in the
+     * frontier but nobody stored yet. Keeps going while the walk records more of them.
+     *
+     * @return books stored
+     */
+    public int crawlPendingBooks() throws IOException {
+        if (!cluster.enabled()) return 0;
+        LongAdder stored = new LongAdder();
+        List<BookEntity> pending;
+        while (!(pending = crawlFrontier.pendingBooks("books", cluster::owns)).isEmpty()) {
+            if (!storePendingBooks(pending, stored)) break;
+        }
+        return stored.intValue();
+    }
+
+    // False when the run was stopped early
+    private boolean storePendingBooks(List<BookEntity> pending, LongAdder stored) throws IOException {
+        ChangeTracker.Session session = changeTracker.begin(booksBaseUrl);
+        LongAdder failedProducts = new LongAdder();
+        KnownBooks known = knownBooks();
+        CatalogUpserter.BookMerge merge = catalogUpserter.beginBooks();
+        long storedBefore = stored.sum();
+        Pipeline pipeline = Pipeline.<ProductTask>from("books-shard", out -> {
+                    for (BookEntity book : pending) {
+                        if (!out.emit(new ProductTask(book, known.byUrl().get(book.getProductUrl()), true))) return;
                     }
-                } catch (IOException ignored) {
-                    // continue without details if product page fails
-                }
+                })
+                .then("fetch", fetchParallelism, queueCapacity, task -> fetchProductPage(session, task, failedProducts))
+                .then("parse", parseParallelism, queueCapacity, product -> parseProductPage(product, failedProducts))
+                .into("write", queueCapacity, writeBatchSize, true, batch -> persist("books", batch, b -> {
+                    List<BookEntity> owned = b.stream().filter(book -> cluster.owns(book.getProductUrl())).toList();
+                    crawlFrontier.commitProducts(productUrls(owned), () -> merge.apply(owned));
+                    stored.add(owned.size());
+                }));
+        Pipeline.Result run = execute(pipeline);
+        session.commit();
+        CatalogUpserter.Result result = merge.finish(false);
+        log.info("Stored {} books of shards {}{}: {}, {}, {} product pages failed", stored.sum() - storedBefore,
+                cluster.ownedShards(), run.complete() ? "" : " (stopped early)", result, session.summary(),
+                failedProducts.sum());
+        if (result.hasChanges()) changed(ScrapeCompletedEvent.Kind.BOOKS);
+        return run.complete();
+    }
 
-                books.add(book);
+    /**
+     * Cluster mode: ends the current books run once its walk is done and every book it found is stored,
+     * tombstoning the books it did not find. The node holding the walk calls this.
+     *
+     * @return whether the run is finished; false while books are still pending
+     */
+    public boolean finishShardedBooks() {
+        if (crawlFrontier.pendingProducts("books") > 0) return false;
+        CatalogUpserter.BookMerge merge = catalogUpserter.beginBooks();
+        merge.markSeen(crawlFrontier.doneProductUrls("books"));
+        CatalogUpserter.Result result = merge.finish(true);
+        crawlFrontier.complete("books");
+        log.info("Books crawl finished across {} nodes, {} removed", cluster.liveNodes(), result.removed());
+        if (result.hasChanges()) changed(ScrapeCompletedEvent.Kind.BOOKS);
+        return true;
+    }
+
+    // Other nodes republish the catalogue on their next heartbeat
+    private void changed(ScrapeCompletedEvent.Kind kind) {
+        cluster.catalogueChanged(kind);
+        events.publishEvent(new ScrapeCompletedEvent(kind));
+    }
+
+    private KnownBooks knownBooks() {
+        Map<String, List<BookEntity>> bySource = new HashMap<>();
+        Map<String, BookEntity> byUrl = new HashMap<>();
+        for (BookEntity b : bookRepository.findByRemovedAtIsNullOrderByIdAsc()) {
+            if (b.getSourceUrl() != null) {
+                bySource.computeIfAbsent(b.getSourceUrl(), k -> new ArrayList<>()).add(b);
+            }
+            if (b.getProductUrl() != null) byUrl.put(b.getProductUrl(), b);
+        }
+        return new KnownBooks(bySource, byUrl);
+    }
+
+    private Map<String, List<QuoteEntity>> knownQuotes() {
+        Map<String, List<QuoteEntity>> bySource = new HashMap<>();
+        for (QuoteEntity q : quoteRepository.findByRemovedAtIsNullOrderByIdAsc()) {
+            if (q.getSourceUrl() != null) {
+                bySource.computeIfAbsent(q.getSourceUrl(), k -> new ArrayList<>()).add(q);
             }
-            // Next page
-            Element next = doc.selectFirst("li.next a");
-            if (next != null) {
-                String nhref = next.attr("href");
-                if (nhref.startsWith("catalogue")) {
-                    url = baseUrl + nhref;
-                } else if (nhref.startsWith("page")) {
-                    url = baseUrl + "catalogue/" + nhref;
-                } else {
-                    url = baseUrl + nhref;
+        }
+        return bySource;
+    }
+
+    // Frontier: listing pages have to be walked in order, each one names the next
+    private void walkBookListings(ChangeTracker.Session session, CrawlFrontier.Run frontier, String baseUrl,
+                                  Map<String, List<BookEntity>> knownBySource, Map<String, BookEntity> knownByUrl,
+                                  Predicate<String> mine, Pipeline.Emitter<ProductTask> out)
+            throws IOException, InterruptedException {
+        String url = baseUrl + "index.html";
+        while (url != null) {
+            FrontierEntryEntity walked = frontier.completedListing(url);
+            if (walked != null) {
+                // Walked by an earlier attempt: only its products that were not stored yet
+                for (BookEntity book : frontier.pendingBooks(url)) {
+                    if (!mine.test(book.getProductUrl())) continue;
+                    if (!out.emit(new ProductTask(book, knownByUrl.get(book.getProductUrl()), true))) return;
                 }
-                url = url.replace("../", "");
+                url = walked.getNextUrl();
+                continue;
+            }
+            ChangeTracker.TrackedPage listing = session.fetch(url, knownBySource.containsKey(url));
+            List<BookEntity> pageBooks = new ArrayList<>();
+            if (listing.changed()) {
+                pageBooks.addAll(parseBookListing(session, listing, baseUrl));
             } else {
-                url = null;
+                for (BookEntity known : knownBySource.get(url)) {
+                    pageBooks.add(carryOver(known));
+                }
+            }
+            String next = listing.state().getNextUrl();
+            // Every book goes into the frontier, the other shards' ones for their nodes to store
+            frontier.recordListing(url, next, pageBooks);
+            for (BookEntity book : pageBooks) {
+                if (!mine.test(book.getProductUrl())) continue;
+                if (!out.emit(new ProductTask(book, knownByUrl.get(book.getProductUrl()), true))) return;
             }
+            url = next;
         }
-        bookRepository.deleteAllInBatch();
-        bookRepository.saveAll(books);
     }
 
-    @Transactional
-    public void scrapeQuotes() throws IOException {
-        String baseUrl = "https://quotes.toscrape.com/";
-        String startUrl = baseUrl;
-        List<QuoteEntity> quotes = new ArrayList<>();
+    private List<BookEntity> parseBookListing(ChangeTracker.Session session, ChangeTracker.TrackedPage listing,
+                                              String baseUrl) throws IOException {
+        long parseStart = System.nanoTime();
+        Document doc = listing.document();
+        List<BookEntity> books = new ArrayList<>();
+        for (Element article : doc.select("section div ol.row li article.product_pod")) {
+            BookEntity book = parseListingItem(article, baseUrl);
+            book.setSourceUrl(listing.url());
+            books.add(book);
+        }
+        session.recordNext(listing.url(), nextListingUrl(doc, baseUrl));
+        metrics.parsed("books", "listing", System.nanoTime() - parseStart);
+        return books;
+    }
 
-        String url = startUrl;
+    private static BookEntity parseListingItem(Element article, String baseUrl) {
+        BookEntity book = new BookEntity();
+        // Image
+        String imgSrc = article.selectFirst("div.image_container a img").attr("src");
+        if (imgSrc != null && !imgSrc.isEmpty()) {
+            String normalized = imgSrc.replace("../", "");
+            book.setImageUrl(baseUrl + normalized);
+        }
+        // Rating from class "star-rating Three" etc.
+        Element ratingEl = article.selectFirst("p.star-rating");
+        String rating = ratingEl != null ? ratingEl.className().replace("star-rating", "").trim() : null;
+        book.setRating(rating);
+        // Title
+        String title = article.selectFirst("h3 a").attr("title");
+        book.setTitle(title);
+        // Price
+        BigDecimal price = ProductPageExtractor.parsePrice(article.selectFirst("div.product_price p.price_color").text());
+        if (price != null) {
+            book.setPrice(price);
+        }
+        // Product URL (details page)
+        String href = article.selectFirst("h3 a").attr("href");
+        String productUrl;
+        if (href.startsWith("catalogue")) {
+            productUrl = baseUrl + href;
+        } else {
+            productUrl = baseUrl + "catalogue/" + href;
+        }
+        // Normalize possible ../
+        productUrl = productUrl.replace("../", "");
+        book.setProductUrl(productUrl);
+        return book;
+    }
+
+    private static String nextListingUrl(Document doc, String baseUrl) {
+        Element next = doc.selectFirst("li.next a");
+        if (next == null) return null;
+        String nhref = next.attr("href");
+        String url;
+        if (nhref.startsWith("catalogue")) {
+            url = baseUrl + nhref;
+        } else if (nhref.startsWith("page")) {
+            url = baseUrl + "catalogue/" + nhref;
+        } else {
+            url = baseUrl + nhref;
+        }
+        return url.replace("../", "");
+    }
+
+    private ProductPage fetchProductPage(ChangeTracker.Session session, ProductTask task, LongAdder failed)
+            throws InterruptedIOException {
+        String url = task.book().getProductUrl();
+        if (!task.fetch()) return new ProductPage(task, null);
+        try {
+            // Only revalidate when we still have the details parsed from the previous download
+            boolean haveDetails = task.known() != null && task.known().getUpc() != null;
+            return new ProductPage(task, session.fetch(url, haveDetails));
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // continue without details if product page fails
+            log.debug("Product page {} failed, keeping listing data: {}", url, e.toString());
+            failed.increment();
+            metrics.productFailed("fetch");
+            return new ProductPage(task, null);
+        }
+    }
+
+    private BookEntity parseProductPage(ProductPage product, LongAdder failed) {
+        BookEntity book = product.task().book();
+        ChangeTracker.TrackedPage page = product.page();
+        if (page == null) return book;
+        if (!page.changed()) {
+            copyProductDetails(product.task().known(), book);
+            return book;
+        }
+        long start = System.nanoTime();
+        try {
+            ProductPageExtractor.apply(page.document(), book);
+            metrics.parsed("books", "product", System.nanoTime() - start);
+        } catch (IOException e) {
+            // unparseable product page: keep the listing data
+            log.debug("Product page {} could not be parsed, keeping listing data: {}", page.url(), e.toString());
+            failed.increment();
+            metrics.productFailed("parse");
+        }
+        return book;
+    }
+
+    // Detached copy of a stored book, used when its listing page has not changed
+    private static BookEntity carryOver(BookEntity known) {
+        BookEntity copy = new BookEntity();
+        CatalogUpserter.copyBook(known, copy);
+        copy.setSourceUrl(known.getSourceUrl());
+        return copy;
+    }
+
+    private static boolean sameListing(BookEntity a, BookEntity b) {
+        return Objects.equals(a.getTitle(), b.getTitle()) && Objects.equals(a.getRating(), b.getRating())
+                && Objects.equals(a.getImageUrl(), b.getImageUrl())
+                && (a.getPrice() == null ? b.getPrice() == null
+                        : b.getPrice() != null && a.getPrice().compareTo(b.getPrice()) == 0);
+    }
+
+    private static void copyProductDetails(BookEntity from, BookEntity to) {
+        to.setCategory(from.getCategory());
+        to.setDescription(from.getDescription());
+        to.setAvailability(from.getAvailability());
+        to.setUpc(from.getUpc());
+        to.setProductType(from.getProductType());
+        to.setPriceExclTax(from.getPriceExclTax());
+        to.setPriceInclTax(from.getPriceInclTax());
+        to.setTax(from.getTax());
+        to.setNumberOfReviews(from.getNumberOfReviews());
+    }
+
+    private void crawlQuotes(ChangeTracker.Session session, CrawlFrontier.Run frontier, String verb)
+            throws IOException {
+        String baseUrl = quotesBaseUrl;
+        Instant startedAt = Instant.now();
+        FetchStats.Snapshot fetchedBefore = pageFetcher.stats().snapshot();
+
+        Map<String, List<QuoteEntity>> knownBySource = knownQuotes();
+
+        CatalogUpserter.QuoteMerge merge = catalogUpserter.beginQuotes();
+        merge.markSeenFrom(frontier.doneListingUrls());
+        // Quotes live entirely on the listing pages: the frontier parses them and feeds the writer directly
+        Pipeline pipeline = Pipeline.<QuoteEntity>from("quotes",
+                        out -> walkQuoteListings(session, frontier, baseUrl, knownBySource, out))
+                .into("write", queueCapacity, writeBatchSize, true, batch -> persist("quotes", batch,
+                        b -> frontier.commitListingItems(sourceUrls(b), () -> merge.apply(b))));
+        Pipeline.Result run = execute(pipeline);
+        session.commit();
+        CatalogUpserter.Result result = merge.finish(run.complete());
+        frontier.finish(run.complete());
+        FetchStats.Snapshot fetched = pageFetcher.stats().snapshot().minus(fetchedBefore);
+        log.info("{} quotes{}: {}, {} ({}) stages={}", verb, run.complete() ? "" : " (stopped early)", result,
+                session.summary(), fetched, run.stages());
+        metrics.runFinished(report("quotes", startedAt, run, result, session, fetched, 0));
+        if (result.hasChanges()) changed(ScrapeCompletedEvent.Kind.QUOTES);
+    }
+
+    private void walkQuoteListings(ChangeTracker.Session session, CrawlFrontier.Run frontier, String baseUrl,
+                                   Map<String, List<QuoteEntity>> knownBySource,
+                                   Pipeline.Emitter<QuoteEntity> out) throws IOException, InterruptedException {
+        String url = baseUrl;
         while (url != null) {
-            Document doc = Jsoup.connect(url).get();
-            Elements quoteEls = doc.select("div.quote");
-            for (Element q : quoteEls) {
-                QuoteEntity qe = new QuoteEntity();
-                qe.setText(q.selectFirst("span.text").text());
-                qe.setAuthor(q.selectFirst("small.author").text());
-                List<String> tags = new ArrayList<>();
-                for (Element tagEl : q.select("div.tags a.tag")) {
-                    tags.add(tagEl.text());
-                }
-                qe.setTags(tags);
-                quotes.add(qe);
+            FrontierEntryEntity walked = frontier.completedListing(url);
+            if (walked != null) {
+                // Every quote on it was stored by an earlier attempt
+                url = walked.getNextUrl();
+                continue;
             }
-            Element next = doc.selectFirst("li.next a");
-            if (next != null) {
-                String href = next.attr("href");
-                url = baseUrl + href;
+            ChangeTracker.TrackedPage listing = session.fetch(url, knownBySource.containsKey(url));
+            List<QuoteEntity> pageQuotes = new ArrayList<>();
+            if (listing.changed()) {
+                pageQuotes.addAll(parseQuoteListing(session, listing, baseUrl));
             } else {
-                url = null;
+                for (QuoteEntity known : knownBySource.get(url)) {
+                    QuoteEntity copy = new QuoteEntity();
+                    copy.setText(known.getText());
+                    copy.setAuthor(known.getAuthor());
+                    copy.setTags(new ArrayList<>(known.getTags()));
+                    copy.setSourceUrl(known.getSourceUrl());
+                    pageQuotes.add(copy);
+                }
+            }
+            String next = listing.state().getNextUrl();
+            frontier.recordListing(url, next, pageQuotes.size());
+            for (QuoteEntity quote : pageQuotes) {
+                if (!out.emit(quote)) return;
+            }
+            url = next;
+        }
+    }
+
+    private List<QuoteEntity> parseQuoteListing(ChangeTracker.Session session, ChangeTracker.TrackedPage listing,
+                                                String baseUrl) throws IOException {
+        long parseStart = System.nanoTime();
+        Document doc = listing.document();
+        List<QuoteEntity> quotes = new ArrayList<>();
+        for (Element q : doc.select("div.quote")) {
+            QuoteEntity qe = new QuoteEntity();
+            qe.setText(q.selectFirst("span.text").text());
+            qe.setAuthor(q.selectFirst("small.author").text());
+            List<String> tags = new ArrayList<>();
+            for (Element tagEl : q.select("div.tags a.tag")) {
+                tags.add(tagEl.text());
+            }
+            qe.setTags(tags);
+            qe.setSourceUrl(listing.url());
+            quotes.add(qe);
+        }
+        Element next = doc.selectFirst("li.next a");
+        session.recordNext(listing.url(), next != null ? baseUrl + next.attr("href") : null);
+        metrics.parsed("quotes", "listing", System.nanoTime() - parseStart);
+        return quotes;
+    }
+
+    private <T> void persist(String catalogue, List<T> batch, Pipeline.BatchSink<T> merge) throws Exception {
+        long start = System.nanoTime();
+        merge.accept(batch);
+        metrics.persisted(catalogue, System.nanoTime() - start);
+    }
+
+    private static List<String> productUrls(List<BookEntity> books) {
+        return books.stream().map(BookEntity::getProductUrl).filter(Objects::nonNull).toList();
+    }
+
+    private static List<String> sourceUrls(List<QuoteEntity> quotes) {
+        return quotes.stream().map(QuoteEntity::getSourceUrl).toList();
+    }
+
+    private static ScrapeRunReport report(String catalogue, Instant startedAt, Pipeline.Result run,
+                                          CatalogUpserter.Result result, ChangeTracker.Session session,
+                                          FetchStats.Snapshot fetched, long failedProducts) {
+        return new ScrapeRunReport(catalogue, startedAt, Duration.between(startedAt, Instant.now()).toMillis(),
+                run.complete(), result, session.summary(), ScrapeRunReport.Fetch.of(fetched), failedProducts,
+                run.stages());
+    }
+
+    private Pipeline.Result execute(Pipeline pipeline) throws IOException {
+        running.add(pipeline);
+        metrics.track(pipeline);
+        try {
+            return pipeline.run();
+        } finally {
+            metrics.untrack(pipeline);
+            synchronized (running) {
+                running.remove(pipeline);
+                running.notifyAll();
             }
         }
-        quoteRepository.deleteAllInBatch();
-        quoteRepository.saveAll(quotes);
     }
+
+    /** On shutdown, stop crawling new pages and let whatever is in flight reach the database. */
+    @PreDestroy
+    void drain() throws InterruptedException {
+        running.forEach(Pipeline::requestStop);
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        synchronized (running) {
+            long left;
+            while (!running.isEmpty() && (left = deadline - System.currentTimeMillis()) > 0) {
+                running.wait(left);
+            }
+        }
+    }
+
+    private record KnownBooks(Map<String, List<BookEntity>> bySource, Map<String, BookEntity> byUrl) {}
+
+    /** @param fetch false when the details were carried over from {@code known} and the page is not needed */
+    private record ProductTask(BookEntity book, BookEntity known, boolean fetch) {}
+
+    /** @param page tracked product page, or null when it was not needed or could not be fetched */
+    private record ProductPage(ProductTask task, ChangeTracker.TrackedPage page) {}
 }
@@ -0,0 +1,58 @@
+package com.mkr.scraper.scrape;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Blocking token bucket: refills {@code ratePerSecond} tokens per second up to {@code capacity}.
+ * A non-positive rate disables limiting.
+ */
+public class TokenBucket {
+    private final double ratePerNano;
+    private final double capacity;
+    private final LongSupplier nanoTime;
+    private final Sleeper sleeper;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double ratePerSecond, int capacity) {
+        this(ratePerSecond, capacity, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    TokenBucket(double ratePerSecond, int capacity, LongSupplier nanoTime, Sleeper sleeper) {
+        this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.capacity = Math.max(1, capacity);
+        this.nanoTime = nanoTime;
+        this.sleeper = sleeper;
+        this.tokens = this.capacity;
+        this.lastRefill = nanoTime.getAsLong();
+    }
+
+    public void acquire() throws InterruptedException {
+        if (ratePerNano <= 0) return;
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return;
+                }
+                waitNanos = (long) Math.ceil((1 - tokens) / ratePerNano);
+            }
+            // Sleep outside the lock so other callers can still refill/check
+            sleeper.sleep(waitNanos);
+        }
+    }
+
+    private void refill() {
+        long now = nanoTime.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+}
@@ -0,0 +1,36 @@
+package com.mkr.scraper.search;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Field-weighted term frequencies of one document: what tokenizing it produced, kept so an unchanged document
+ * can be added to the next index without tokenizing it again.
+ */
+public record DocTerms(String[] terms, int[] freqs) {
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private final Map<String, Integer> freqs = new HashMap<>();
+
+        /** Each token of {@code text} counts {@code weight} times. */
+        public Builder add(String text, int weight) {
+            for (String token : Tokenizer.tokenize(text)) freqs.merge(token, weight, Integer::sum);
+            return this;
+        }
+
+        public DocTerms build() {
+            String[] terms = new String[freqs.size()];
+            int[] counts = new int[freqs.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> e : freqs.entrySet()) {
+                terms[i] = e.getKey();
+                counts[i++] = e.getValue();
+            }
+            return new DocTerms(terms, counts);
+        }
+    }
+}
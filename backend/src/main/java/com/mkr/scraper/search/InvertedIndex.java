@@ -0,0 +1,398 @@
+package com.mkr.scraper.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable term → postings index. Postings are parallel primitive arrays of ascending doc ids and
+ * field-weighted term frequencies, so a lookup never allocates per-posting objects.
+ * <p>
+ * Queries are AND-ed over their distinct terms and ranked by BM25, with field weights folded into the term
+ * frequencies and document lengths. A query term that is not in the dictionary is matched against terms within a
+ * small edit distance (one edit from 4 characters, two from 8; a transposition is one edit), found through a
+ * trigram index over the dictionary, and scored lower the more edits it took.
+ */
+public final class InvertedIndex {
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // Score factor per edit of a fuzzy match
+    private static final float FUZZY_PENALTY = 0.5f;
+    private static final int MAX_EXPANSIONS = 16;
+
+    private final int docCount;
+    private final Map<String, Postings> postings;
+    private final int[] docLengths;
+    private final float avgDocLength;
+    private final String[] dictionary;
+    private final Map<String, int[]> trigrams;
+    private final long estimatedBytes;
+
+    private InvertedIndex(int docCount, Map<String, Postings> postings, int[] docLengths, String[] dictionary,
+                          Map<String, int[]> trigrams, long estimatedBytes) {
+        this.docCount = docCount;
+        this.postings = postings;
+        this.docLengths = docLengths;
+        long total = 0;
+        for (int length : docLengths) total += length;
+        this.avgDocLength = docCount == 0 ? 1 : Math.max(1, (float) total / docCount);
+        this.dictionary = dictionary;
+        this.trigrams = trigrams;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public static Builder builder() {
+        return new Builder(Long.MAX_VALUE);
+    }
+
+    /** Builder that reports {@link Builder#hasRoom()} false once the index estimate reaches {@code budgetBytes}. */
+    public static Builder builder(long budgetBytes) {
+        return new Builder(budgetBytes);
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    public int termCount() {
+        return postings.size();
+    }
+
+    /** Rough heap footprint of postings, dictionary and trigram index. */
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    /**
+     * Ranked doc ids for the query, best first. Ties keep document order.
+     */
+    public Result search(String query, int offset, int limit) {
+        List<String> terms = List.copyOf(new LinkedHashSet<>(Tokenizer.tokenize(query)));
+        if (terms.isEmpty()) return new Result(0, new int[0], new float[0]);
+
+        Clause[] clauses = new Clause[terms.size()];
+        for (int i = 0; i < clauses.length; i++) {
+            clauses[i] = clause(terms.get(i));
+            if (clauses[i] == null) return new Result(0, new int[0], new float[0]);
+        }
+        // Drive the intersection from the rarest term
+        Arrays.sort(clauses, (a, b) -> Integer.compare(a.docs.length, b.docs.length));
+
+        // Score and doc packed into one long: positive float bits sort like the floats themselves,
+        // and the inverted doc id keeps earlier documents first among equal scores.
+        long[] keys = new long[clauses[0].docs.length];
+        int matches = 0;
+        int[] cursors = new int[clauses.length];
+        outer:
+        for (int p = 0; p < clauses[0].docs.length; p++) {
+            int doc = clauses[0].docs[p];
+            float score = clauses[0].score(p, doc);
+            for (int i = 1; i < clauses.length; i++) {
+                int[] docs = clauses[i].docs;
+                int c = advance(docs, cursors[i], doc);
+                cursors[i] = c;
+                if (c >= docs.length) break outer;
+                if (docs[c] != doc) continue outer;
+                score += clauses[i].score(c, doc);
+            }
+            keys[matches++] = ((long) Float.floatToIntBits(score) << 32) | (Integer.MAX_VALUE - doc);
+        }
+        Arrays.sort(keys, 0, matches);
+
+        int from = Math.min(offset, matches);
+        int to = Math.min(matches, from + limit);
+        int[] docs = new int[to - from];
+        float[] scores = new float[to - from];
+        for (int i = from; i < to; i++) {
+            long key = keys[matches - 1 - i];
+            docs[i - from] = Integer.MAX_VALUE - (int) key;
+            scores[i - from] = Float.intBitsToFloat((int) (key >>> 32));
+        }
+        return new Result(matches, docs, scores);
+    }
+
+    /** The docs one query term matches, exactly or else fuzzily; null when it matches nothing. */
+    private Clause clause(String term) {
+        Postings exact = postings.get(term);
+        if (exact != null) return new Clause(exact, 1f);
+        List<Expansion> expansions = fuzzy(term);
+        if (expansions.isEmpty()) return null;
+        if (expansions.size() == 1) return new Clause(expansions.get(0).postings(), expansions.get(0).boost());
+        // Union of the expansions, keeping each doc's best score: sort (doc, score) pairs, take the last per doc
+        int total = 0;
+        for (Expansion e : expansions) total += e.postings().docs.length;
+        long[] pairs = new long[total];
+        int n = 0;
+        for (Expansion e : expansions) {
+            Clause single = new Clause(e.postings(), e.boost());
+            for (int i = 0; i < single.docs.length; i++) {
+                int bits = Float.floatToIntBits(single.score(i, single.docs[i]));
+                pairs[n++] = ((long) single.docs[i] << 32) | (bits & 0xffffffffL);
+            }
+        }
+        Arrays.sort(pairs);
+        int[] docs = new int[total];
+        float[] scores = new float[total];
+        int size = 0;
+        for (int i = 0; i < total; i++) {
+            if (i + 1 < total && (pairs[i + 1] >>> 32) == (pairs[i] >>> 32)) continue;
+            docs[size] = (int) (pairs[i] >>> 32);
+            scores[size++] = Float.intBitsToFloat((int) pairs[i]);
+        }
+        return new Clause(Arrays.copyOf(docs, size), Arrays.copyOf(scores, size));
+    }
+
+    private List<Expansion> fuzzy(String term) {
+        int maxEdits = maxEdits(term.length());
+        if (maxEdits == 0 || dictionary.length == 0) return List.of();
+        // Candidates share enough trigrams: one edit breaks at most three of them, a transposition four
+        String[] grams = trigramsOf(term);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : grams) {
+            int[] ids = trigrams.get(gram);
+            if (ids == null) continue;
+            for (int id : ids) shared.merge(id, 1, Integer::sum);
+        }
+        int minShared = Math.max(1, grams.length - 4 * maxEdits);
+        List<Expansion> expansions = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> e : shared.entrySet()) {
+            if (e.getValue() < minShared) continue;
+            String candidate = dictionary[e.getKey()];
+            if (Math.abs(candidate.length() - term.length()) > maxEdits) continue;
+            int edits = editDistance(term, candidate, maxEdits);
+            if (edits <= maxEdits) {
+                expansions.add(new Expansion(postings.get(candidate), (float) Math.pow(FUZZY_PENALTY, edits), edits));
+            }
+        }
+        // Fewest edits first, then the most common term
+        expansions.sort((a, b) -> a.edits() != b.edits() ? Integer.compare(a.edits(), b.edits())
+                : Integer.compare(b.postings().docs.length, a.postings().docs.length));
+        return expansions.size() > MAX_EXPANSIONS ? expansions.subList(0, MAX_EXPANSIONS) : expansions;
+    }
+
+    static int maxEdits(int length) {
+        return length < 4 ? 0 : length < 8 ? 1 : 2;
+    }
+
+    /** Trigrams of the term padded with ^ and $, so short terms and word edges count too. */
+    static String[] trigramsOf(String term) {
+        String padded = "^" + term + "$";
+        String[] grams = new String[padded.length() - 2];
+        for (int i = 0; i < grams.length; i++) grams[i] = padded.substring(i, i + 3);
+        return grams;
+    }
+
+    /**
+     * Optimal string alignment distance (Levenshtein plus adjacent transpositions), or {@code max + 1} as soon as
+     * it is certain to exceed {@code max}.
+     */
+    static int editDistance(String a, String b, int max) {
+        int[] prevPrev = new int[b.length() + 1];
+        int[] prev = new int[b.length() + 1];
+        int[] row = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            row[0] = i;
+            int rowMin = row[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int d = Math.min(Math.min(row[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d = Math.min(d, prevPrev[j - 2] + 1);
+                }
+                row[j] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > max) return max + 1;
+            int[] recycled = prevPrev;
+            prevPrev = prev;
+            prev = row;
+            row = recycled;
+        }
+        return Math.min(prev[b.length()], max + 1);
+    }
+
+    /** First position at or after {@code from} whose doc is >= target (galloping, then binary search). */
+    private static int advance(int[] docs, int from, int target) {
+        int step = 1;
+        int hi = from;
+        while (hi < docs.length && docs[hi] < target) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        int idx = Arrays.binarySearch(docs, from, Math.min(hi + 1, docs.length), target);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    /**
+     * @param total number of matching documents
+     * @param docs  doc ids of the requested page, best first
+     */
+    public record Result(int total, int[] docs, float[] scores) {}
+
+    private record Postings(int[] docs, int[] freqs) {}
+
+    private record Expansion(Postings postings, float boost, int edits) {}
+
+    /** One query term's matching docs: BM25 computed from postings, or precomputed for a fuzzy union. */
+    private final class Clause {
+        final int[] docs;
+        final int[] freqs;
+        final float[] scores;
+        final float idf;
+        final float boost;
+
+        Clause(Postings postings, float boost) {
+            this.docs = postings.docs;
+            this.freqs = postings.freqs;
+            this.scores = null;
+            this.idf = (float) Math.log(1.0 + (docCount - docs.length + 0.5) / (docs.length + 0.5));
+            this.boost = boost;
+        }
+
+        Clause(int[] docs, float[] scores) {
+            this.docs = docs;
+            this.freqs = null;
+            this.scores = scores;
+            this.idf = 0;
+            this.boost = 1;
+        }
+
+        float score(int i, int doc) {
+            if (scores != null) return scores[i];
+            float tf = freqs[i];
+            float norm = K1 * (1 - B + B * docLengths[doc] / avgDocLength);
+            return boost * idf * tf * (K1 + 1) / (tf + norm);
+        }
+    }
+
+    public static final class Builder {
+        // Rough per-item heap costs behind estimatedBytes(). A posting is doc id and frequency, plus the same
+        // again for the per-document terms SearchIndexService keeps to reuse in the next build
+        private static final int POSTING_BYTES = 16;
+        private static final int TERM_BYTES = 96;
+        private static final int TERM_CHAR_BYTES = 2 + 12; // the string plus its trigram postings
+
+        private final Map<String, PostingsBuilder> terms = new HashMap<>();
+        private final long budgetBytes;
+        private int[] docLengths = new int[16];
+        private int docCount;
+        private long estimatedBytes;
+
+        private Builder(long budgetBytes) {
+            this.budgetBytes = budgetBytes;
+        }
+
+        /**
+         * Adds a field of {@code doc}; each token counts {@code weight} times. Documents must be added in
+         * ascending id order.
+         */
+        public Builder add(int doc, String text, int weight) {
+            for (String token : Tokenizer.tokenize(text)) addToken(doc, token, weight);
+            docCount = Math.max(docCount, doc + 1);
+            return this;
+        }
+
+        /** Adds the terms of a whole document, e.g. reused from a previous build. */
+        public Builder add(int doc, DocTerms document) {
+            String[] docTerms = document.terms();
+            int[] freqs = document.freqs();
+            for (int i = 0; i < docTerms.length; i++) {
+                // Share the dictionary's string, so cached terms cost no extra memory per doc
+                docTerms[i] = addToken(doc, docTerms[i], freqs[i]);
+            }
+            docCount = Math.max(docCount, doc + 1);
+            return this;
+        }
+
+        /** Whether the index is still within its budget; once not, callers leave out the fields they can spare. */
+        public boolean hasRoom() {
+            return estimatedBytes < budgetBytes;
+        }
+
+        public long estimatedBytes() {
+            return estimatedBytes;
+        }
+
+        private String addToken(int doc, String token, int weight) {
+            PostingsBuilder postings = terms.get(token);
+            if (postings == null) {
+                postings = new PostingsBuilder(token);
+                terms.put(token, postings);
+                estimatedBytes += TERM_BYTES + (long) TERM_CHAR_BYTES * token.length();
+            }
+            if (postings.add(doc, weight)) estimatedBytes += POSTING_BYTES;
+            if (doc >= docLengths.length) docLengths = Arrays.copyOf(docLengths, Math.max(doc + 1, docLengths.length * 2));
+            docLengths[doc] += weight;
+            return postings.term;
+        }
+
+        public InvertedIndex build() {
+            Map<String, Postings> frozen = new HashMap<>(terms.size() * 4 / 3 + 1);
+            String[] dictionary = new String[terms.size()];
+            Map<String, IntList> grams = new HashMap<>();
+            int id = 0;
+            for (PostingsBuilder b : terms.values()) {
+                frozen.put(b.term, new Postings(Arrays.copyOf(b.docs, b.size), Arrays.copyOf(b.freqs, b.size)));
+                dictionary[id] = b.term;
+                // Short terms are never corrected, so they need no trigrams
+                if (maxEdits(b.term.length()) > 0) {
+                    for (String gram : trigramsOf(b.term)) grams.computeIfAbsent(gram, g -> new IntList()).add(id);
+                }
+                id++;
+            }
+            Map<String, int[]> trigrams = new HashMap<>(grams.size() * 4 / 3 + 1);
+            grams.forEach((gram, ids) -> trigrams.put(gram, ids.toArray()));
+            return new InvertedIndex(docCount, frozen, Arrays.copyOf(docLengths, docCount), dictionary, trigrams,
+                    estimatedBytes);
+        }
+    }
+
+    private static final class PostingsBuilder {
+        final String term;
+        int[] docs = new int[4];
+        int[] freqs = new int[4];
+        int size;
+
+        PostingsBuilder(String term) {
+            this.term = term;
+        }
+
+        /** @return whether this started a new posting */
+        boolean add(int doc, int weight) {
+            if (size > 0 && docs[size - 1] == doc) {
+                freqs[size - 1] += weight;
+                return false;
+            }
+            if (size > 0 && docs[size - 1] > doc) {
+                throw new IllegalArgumentException("Documents must be added in ascending order");
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                freqs = Arrays.copyOf(freqs, size * 2);
+            }
+            docs[size] = doc;
+            freqs[size] = weight;
+            size++;
+            return true;
+        }
+    }
+
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.mkr.scraper.search;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final SearchIndexService searchIndexService;
+
+    public SearchController(SearchIndexService searchIndexService) {
+        this.searchIndexService = searchIndexService;
+    }
+
+    @GetMapping
+    public SearchResponse<?> search(@RequestParam String type,
+                                    @RequestParam(defaultValue = "") String q,
+                                    @RequestParam(defaultValue = "0") int page,
+                                    @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "page must be >= 0 and size in 1.." + MAX_PAGE_SIZE);
+        }
+        return switch (type) {
+            case "books" -> searchIndexService.searchBooks(q, page, size);
+            case "quotes" -> searchIndexService.searchQuotes(q, page, size);
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "type must be books or quotes");
+        };
+    }
+}
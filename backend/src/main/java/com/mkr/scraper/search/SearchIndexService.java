@@ -0,0 +1,168 @@
+package com.mkr.scraper.search;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.quote.QuoteEntity;
+import com.mkr.scraper.snapshot.BookTable;
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+import com.mkr.scraper.snapshot.QuoteTable;
+import com.mkr.scraper.snapshot.SnapshotPublishedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the current search indexes, rebuilt from each published snapshot. Each rebuild happens off to the side
+ * and is published with a single reference swap, so queries never see a half-built index.
+ * <p>
+ * Rebuilds are incremental where it counts: the terms of every indexed item are kept by id and content hash, so
+ * only new and changed items are tokenized again. Each index is held to {@code scraper.search.index-budget-mb}:
+ * once it reaches the budget, the remaining items are indexed without their bulkiest field, the description of a
+ * book or the text of a quote, so they stay findable by title and category, or by author and tags.
+ */
+@Service
+public class SearchIndexService {
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private final long budgetBytes;
+    private final AtomicReference<IndexedCorpus<BookEntity>> books = new AtomicReference<>(IndexedCorpus.empty());
+    private final AtomicReference<IndexedCorpus<QuoteEntity>> quotes = new AtomicReference<>(IndexedCorpus.empty());
+    // Terms of the items in the current indexes, by id; only touched by the (synchronized) rebuilds
+    private Map<Long, CachedTerms> bookTerms = Map.of();
+    private Map<Long, CachedTerms> quoteTerms = Map.of();
+
+    public SearchIndexService(@Value("${scraper.search.index-budget-mb:64}") long budgetMb) {
+        this.budgetBytes = budgetMb * 1024 * 1024;
+    }
+
+    @SuppressWarnings("unchecked")
+    @EventListener
+    public void onSnapshotPublished(SnapshotPublishedEvent event) {
+        switch (event.kind()) {
+            case BOOKS -> rebuildBooks((CatalogSnapshot<BookEntity>) event.snapshot());
+            case QUOTES -> rebuildQuotes((CatalogSnapshot<QuoteEntity>) event.snapshot());
+        }
+    }
+
+    public synchronized BuildStats rebuildBooks(CatalogSnapshot<BookEntity> snapshot) {
+        long start = System.nanoTime();
+        BookTable items = BookTable.of(snapshot.items());
+        InvertedIndex.Builder builder = InvertedIndex.builder(budgetBytes);
+        Map<Long, CachedTerms> next = new HashMap<>(items.size() * 4 / 3 + 1);
+        int reused = 0, truncated = 0;
+        for (int doc = 0; doc < items.size(); doc++) {
+            long id = items.id(doc);
+            String contentHash = items.contentHash(doc);
+            DocTerms terms = reusable(bookTerms, id, contentHash);
+            boolean complete = true;
+            if (terms != null) {
+                reused++;
+            } else {
+                DocTerms.Builder fields = DocTerms.builder()
+                        .add(items.title(doc), 3)
+                        .add(items.category(doc), 2);
+                complete = builder.hasRoom();
+                if (complete) fields.add(items.description(doc), 1);
+                else truncated++;
+                terms = fields.build();
+            }
+            builder.add(doc, terms);
+            // A book indexed without its description is tokenized again next time, in case there is room by then
+            if (complete && contentHash != null) {
+                next.put(id, new CachedTerms(contentHash, terms));
+            }
+        }
+        bookTerms = next;
+        InvertedIndex index = builder.build();
+        books.set(new IndexedCorpus<>(items, index));
+        return logged("Book", new BuildStats(items.size(), index.termCount(), index.estimatedBytes(), reused,
+                truncated, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    public synchronized BuildStats rebuildQuotes(CatalogSnapshot<QuoteEntity> snapshot) {
+        long start = System.nanoTime();
+        QuoteTable items = QuoteTable.of(snapshot.items());
+        InvertedIndex.Builder builder = InvertedIndex.builder(budgetBytes);
+        Map<Long, CachedTerms> next = new HashMap<>(items.size() * 4 / 3 + 1);
+        int reused = 0, truncated = 0;
+        for (int doc = 0; doc < items.size(); doc++) {
+            long id = items.id(doc);
+            String contentHash = items.contentHash(doc);
+            DocTerms terms = reusable(quoteTerms, id, contentHash);
+            boolean complete = true;
+            if (terms != null) {
+                reused++;
+            } else {
+                DocTerms.Builder fields = DocTerms.builder().add(items.author(doc), 2);
+                for (String tag : items.tags(doc)) fields.add(tag, 2);
+                complete = builder.hasRoom();
+                if (complete) fields.add(items.text(doc), 1);
+                else truncated++;
+                terms = fields.build();
+            }
+            builder.add(doc, terms);
+            if (complete && contentHash != null) next.put(id, new CachedTerms(contentHash, terms));
+        }
+        quoteTerms = next;
+        InvertedIndex index = builder.build();
+        quotes.set(new IndexedCorpus<>(items, index));
+        return logged("Quote", new BuildStats(items.size(), index.termCount(), index.estimatedBytes(), reused,
+                truncated, (System.nanoTime() - start) / 1_000_000));
+    }
+
+    private static DocTerms reusable(Map<Long, CachedTerms> cache, long id, String contentHash) {
+        CachedTerms cached = cache.get(id);
+        return cached != null && contentHash != null && contentHash.equals(cached.contentHash()) ? cached.terms() : null;
+    }
+
+    private BuildStats logged(String kind, BuildStats stats) {
+        log.info("{} search index rebuilt: {} docs ({} reused), {} terms, ~{} KB, {} docs over budget in {} ms", kind,
+                stats.docs(), stats.reusedDocs(), stats.terms(), stats.estimatedBytes() / 1024,
+                stats.truncatedDocs(), stats.millis());
+        if (stats.truncatedDocs() > 0) {
+            log.warn("{} search index reached its {} MB budget: {} docs indexed without optional fields", kind,
+                    budgetBytes / (1024 * 1024), stats.truncatedDocs());
+        }
+        return stats;
+    }
+
+    public SearchResponse<BookEntity> searchBooks(String query, int page, int size) {
+        return books.get().search("books", query, page, size);
+    }
+
+    public SearchResponse<QuoteEntity> searchQuotes(String query, int page, int size) {
+        return quotes.get().search("quotes", query, page, size);
+    }
+
+    /**
+     * @param reusedDocs    items whose terms were carried over from the previous build
+     * @param truncatedDocs items indexed without their optional fields to stay within the budget
+     */
+    public record BuildStats(int docs, int terms, long estimatedBytes, int reusedDocs, int truncatedDocs,
+                             long millis) {}
+
+    private record CachedTerms(String contentHash, DocTerms terms) {}
+
+    private record IndexedCorpus<T>(List<T> items, InvertedIndex index) {
+        static <T> IndexedCorpus<T> empty() {
+            return new IndexedCorpus<>(List.of(), InvertedIndex.builder().build());
+        }
+
+        SearchResponse<T> search(String type, String query, int page, int size) {
+            int offset = (int) Math.min(Integer.MAX_VALUE, (long) page * size);
+            InvertedIndex.Result result = index.search(query, offset, size);
+            List<SearchResponse.Hit<T>> hits = new ArrayList<>(result.docs().length);
+            for (int i = 0; i < result.docs().length; i++) {
+                hits.add(new SearchResponse.Hit<>(result.scores()[i], items.get(result.docs()[i])));
+            }
+            return new SearchResponse<>(type, query, result.total(), page, size, hits);
+        }
+    }
+}
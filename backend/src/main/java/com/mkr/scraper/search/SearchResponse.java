@@ -0,0 +1,7 @@
+package com.mkr.scraper.search;
+
+import java.util.List;
+
+public record SearchResponse<T>(String type, String query, long total, int page, int size, List<Hit<T>> hits) {
+    public record Hit<T>(float score, T item) {}
+}
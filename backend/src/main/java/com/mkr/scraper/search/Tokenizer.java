@@ -0,0 +1,29 @@
+package com.mkr.scraper.search;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into lowercase alphanumeric tokens; everything else is a separator.
+ */
+public final class Tokenizer {
+    private Tokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) return tokens;
+        StringBuilder current = new StringBuilder();
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.isLetterOrDigit(cp)) {
+                current.appendCodePoint(Character.toLowerCase(cp));
+            } else if (!current.isEmpty()) {
+                tokens.add(current.toString());
+                current.setLength(0);
+            }
+        }
+        if (!current.isEmpty()) tokens.add(current.toString());
+        return tokens;
+    }
+}
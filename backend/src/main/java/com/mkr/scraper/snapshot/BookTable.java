@@ -0,0 +1,238 @@
+package com.mkr.scraper.snapshot;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookSummary;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar read model of the live books. Rating, category, availability and product type are dictionary-encoded,
+ * the four money columns are whole pence in {@code long[]}s and descriptions are deflated off-heap. Columns the
+ * API never shows (source URL, tombstone) are not kept.
+ * <p>
+ * Index builders read single columns ({@link #category(int)}, {@link #priceCents(int)}, ...); {@link #get(int)}
+ * rebuilds a detached {@link BookEntity} for serialization.
+ */
+public final class BookTable extends ColumnTable<BookEntity> {
+    /** Money column value for null. */
+    public static final long NO_PRICE = Long.MIN_VALUE;
+    private static final int NO_REVIEWS = Integer.MIN_VALUE;
+
+    private final String[] imageUrls;
+    private final String[] titles;
+    private final String[] productUrls;
+    private final String[] upcs;
+    private final String[] contentHashes;
+    private final Dictionary ratings;
+    private final Dictionary categories;
+    private final Dictionary availabilities;
+    private final Dictionary productTypes;
+    private final int[] rating;
+    private final int[] category;
+    private final int[] availability;
+    private final int[] productType;
+    private final long[] price;
+    private final long[] priceExclTax;
+    private final long[] priceInclTax;
+    private final long[] tax;
+    private final int[] numberOfReviews;
+    private final CompressedTexts descriptions;
+
+    private BookTable(Builder b) {
+        super(Arrays.copyOf(b.ids, b.size));
+        int n = b.size;
+        imageUrls = Arrays.copyOf(b.imageUrls, n);
+        titles = Arrays.copyOf(b.titles, n);
+        productUrls = Arrays.copyOf(b.productUrls, n);
+        upcs = Arrays.copyOf(b.upcs, n);
+        contentHashes = Arrays.copyOf(b.contentHashes, n);
+        ratings = b.ratings.build();
+        categories = b.categories.build();
+        availabilities = b.availabilities.build();
+        productTypes = b.productTypes.build();
+        rating = Arrays.copyOf(b.rating, n);
+        category = Arrays.copyOf(b.category, n);
+        availability = Arrays.copyOf(b.availability, n);
+        productType = Arrays.copyOf(b.productType, n);
+        price = Arrays.copyOf(b.price, n);
+        priceExclTax = Arrays.copyOf(b.priceExclTax, n);
+        priceInclTax = Arrays.copyOf(b.priceInclTax, n);
+        tax = Arrays.copyOf(b.tax, n);
+        numberOfReviews = Arrays.copyOf(b.numberOfReviews, n);
+        descriptions = b.descriptions.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** {@code books} itself when it already is a table, otherwise its rows encoded into one. */
+    public static BookTable of(List<BookEntity> books) {
+        if (books instanceof BookTable table) return table;
+        Builder builder = builder();
+        books.forEach(builder::add);
+        return builder.build();
+    }
+
+    @Override
+    public BookEntity get(int row) {
+        BookEntity b = new BookEntity();
+        b.setId(ids[row]);
+        b.setImageUrl(imageUrls[row]);
+        b.setRating(rating(row));
+        b.setTitle(titles[row]);
+        b.setPrice(money(price[row]));
+        b.setCategory(category(row));
+        b.setProductUrl(productUrls[row]);
+        b.setDescription(description(row));
+        b.setAvailability(availability(row));
+        b.setUpc(upcs[row]);
+        b.setProductType(productTypes.value(productType[row]));
+        b.setPriceExclTax(money(priceExclTax[row]));
+        b.setPriceInclTax(money(priceInclTax[row]));
+        b.setTax(money(tax[row]));
+        b.setNumberOfReviews(numberOfReviews(row));
+        b.setContentHash(contentHashes[row]);
+        return b;
+    }
+
+    /** The list view of a row; unlike {@link #get(int)} it never inflates the description. */
+    public BookSummary summary(int row) {
+        return new BookSummary(ids[row], imageUrls[row], rating(row), titles[row], money(price[row]), category(row),
+                availability(row));
+    }
+
+    public String title(int row) {
+        return titles[row];
+    }
+
+    public String rating(int row) {
+        return ratings.value(rating[row]);
+    }
+
+    public String category(int row) {
+        return categories.value(category[row]);
+    }
+
+    public String availability(int row) {
+        return availabilities.value(availability[row]);
+    }
+
+    /** Price in pence, or {@link #NO_PRICE}. */
+    public long priceCents(int row) {
+        return price[row];
+    }
+
+    public Integer numberOfReviews(int row) {
+        return numberOfReviews[row] == NO_REVIEWS ? null : numberOfReviews[row];
+    }
+
+    public String description(int row) {
+        return descriptions.get(row);
+    }
+
+    public String contentHash(int row) {
+        return contentHashes[row];
+    }
+
+    @Override
+    public long heapBytes() {
+        long bytes = ARRAY_HEADER + 8L * ids.length;
+        for (String[] column : List.of(imageUrls, titles, productUrls, upcs, contentHashes)) bytes += bytes(column);
+        for (Dictionary dictionary : List.of(ratings, categories, availabilities, productTypes)) {
+            bytes += dictionary.heapBytes();
+        }
+        bytes += 4 * (ARRAY_HEADER + 4L * ids.length);
+        bytes += 4 * (ARRAY_HEADER + 8L * ids.length);
+        bytes += ARRAY_HEADER + 4L * ids.length;
+        return bytes + descriptions.heapBytes();
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return descriptions.offHeapBytes();
+    }
+
+    static long cents(BigDecimal money) {
+        return money == null ? NO_PRICE : money.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal money(long cents) {
+        return cents == NO_PRICE ? null : BigDecimal.valueOf(cents, 2);
+    }
+
+    public static final class Builder {
+        private long[] ids = new long[16];
+        private String[] imageUrls = new String[16];
+        private String[] titles = new String[16];
+        private String[] productUrls = new String[16];
+        private String[] upcs = new String[16];
+        private String[] contentHashes = new String[16];
+        private final Dictionary.Builder ratings = Dictionary.builder();
+        private final Dictionary.Builder categories = Dictionary.builder();
+        private final Dictionary.Builder availabilities = Dictionary.builder();
+        private final Dictionary.Builder productTypes = Dictionary.builder();
+        private int[] rating = new int[16];
+        private int[] category = new int[16];
+        private int[] availability = new int[16];
+        private int[] productType = new int[16];
+        private long[] price = new long[16];
+        private long[] priceExclTax = new long[16];
+        private long[] priceInclTax = new long[16];
+        private long[] tax = new long[16];
+        private int[] numberOfReviews = new int[16];
+        private final CompressedTexts.Builder descriptions = new CompressedTexts.Builder();
+        private int size;
+
+        private Builder() {}
+
+        /** Rows must come in ascending id order. */
+        public Builder add(BookEntity b) {
+            if (size == ids.length) grow();
+            int row = size++;
+            ids[row] = b.getId();
+            imageUrls[row] = b.getImageUrl();
+            titles[row] = b.getTitle();
+            productUrls[row] = b.getProductUrl();
+            upcs[row] = b.getUpc();
+            contentHashes[row] = b.getContentHash();
+            rating[row] = ratings.code(b.getRating());
+            category[row] = categories.code(b.getCategory());
+            availability[row] = availabilities.code(b.getAvailability());
+            productType[row] = productTypes.code(b.getProductType());
+            price[row] = cents(b.getPrice());
+            priceExclTax[row] = cents(b.getPriceExclTax());
+            priceInclTax[row] = cents(b.getPriceInclTax());
+            tax[row] = cents(b.getTax());
+            numberOfReviews[row] = b.getNumberOfReviews() == null ? NO_REVIEWS : b.getNumberOfReviews();
+            descriptions.add(b.getDescription());
+            return this;
+        }
+
+        private void grow() {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            imageUrls = Arrays.copyOf(imageUrls, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            productUrls = Arrays.copyOf(productUrls, capacity);
+            upcs = Arrays.copyOf(upcs, capacity);
+            contentHashes = Arrays.copyOf(contentHashes, capacity);
+            rating = Arrays.copyOf(rating, capacity);
+            category = Arrays.copyOf(category, capacity);
+            availability = Arrays.copyOf(availability, capacity);
+            productType = Arrays.copyOf(productType, capacity);
+            price = Arrays.copyOf(price, capacity);
+            priceExclTax = Arrays.copyOf(priceExclTax, capacity);
+            priceInclTax = Arrays.copyOf(priceInclTax, capacity);
+            tax = Arrays.copyOf(tax, capacity);
+            numberOfReviews = Arrays.copyOf(numberOfReviews, capacity);
+        }
+
+        public BookTable build() {
+            return new BookTable(this);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.mkr.scraper.snapshot;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * One published generation of a catalogue: an unmodifiable, id-ordered list of items. Readers hold on to the
+ * instance they fetched, so a concurrent publish never changes what they see.
+ * <p>
+ * Published generations sit on a {@link ColumnTable}, whose rows are decoded into a fresh, detached entity on every
+ * access: a reader that calls a setter on an item changes its own copy, never the generation. The list-backed
+ * constructor shares its items as they are and is only meant for items that cannot change.
+ */
+public final class CatalogSnapshot<T> {
+    private final long generation;
+    private final Instant publishedAt;
+    private final List<T> items;
+    private final long[] ids;
+
+    // Items are shared, not copied: only for immutable items
+    CatalogSnapshot(long generation, Instant publishedAt, List<T> items, ToLongFunction<T> id) {
+        this(generation, publishedAt, List.copyOf(items), items.stream().mapToLong(id).toArray());
+    }
+
+    CatalogSnapshot(long generation, Instant publishedAt, ColumnTable<T> table) {
+        this(generation, publishedAt, table, table.ids);
+    }
+
+    private CatalogSnapshot(long generation, Instant publishedAt, List<T> items, long[] ids) {
+        this.generation = generation;
+        this.publishedAt = publishedAt;
+        this.items = items;
+        this.ids = ids;
+    }
+
+    static <T> CatalogSnapshot<T> empty() {
+        return new CatalogSnapshot<>(0, Instant.EPOCH, List.of(), t -> 0L);
+    }
+
+    /** 0 until the first snapshot is published, then increasing with each publish. */
+    public long generation() {
+        return generation;
+    }
+
+    public Instant publishedAt() {
+        return publishedAt;
+    }
+
+    public List<T> items() {
+        return items;
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /** Keyset page: up to {@code limit} items with id greater than {@code after}. */
+    public List<T> after(long after, int limit) {
+        int from = Arrays.binarySearch(ids, after);
+        from = from >= 0 ? from + 1 : -from - 1;
+        return items.subList(from, (int) Math.min(items.size(), (long) from + limit));
+    }
+
+    /** Item with the given id, or null. */
+    public T byId(long id) {
+        int idx = indexOf(id);
+        return idx >= 0 ? items.get(idx) : null;
+    }
+
+    /** The same generation with each item replaced by {@code view.apply(position)}, computed on access. */
+    public <V> CatalogSnapshot<V> view(IntFunction<V> view) {
+        return new CatalogSnapshot<>(generation, publishedAt, new AbstractList<>() {
+            @Override
+            public V get(int index) {
+                return view.apply(index);
+            }
+
+            @Override
+            public int size() {
+                return ids.length;
+            }
+        }, ids);
+    }
+
+    /** Position of the item with the given id in {@link #items()}, or a negative number. */
+    public int indexOf(long id) {
+        return Arrays.binarySearch(ids, id);
+    }
+}
@@ -0,0 +1,47 @@
+package com.mkr.scraper.snapshot;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * An immutable, id-ordered list stored column by column. {@link #get(int)} decodes a fresh, detached object per
+ * call, so what readers keep is only the columns, never one object graph per row.
+ */
+public abstract class ColumnTable<T> extends AbstractList<T> implements RandomAccess {
+    // Array and object header overheads used by the footprint estimates (64-bit JVM, compressed oops)
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+    static final int STRING_OVERHEAD = 24 + ARRAY_HEADER;
+
+    final long[] ids;
+
+    ColumnTable(long[] ids) {
+        this.ids = ids;
+    }
+
+    public long id(int row) {
+        return ids[row];
+    }
+
+    @Override
+    public int size() {
+        return ids.length;
+    }
+
+    /** Estimated heap held by the columns. */
+    public abstract long heapBytes();
+
+    /** Bytes held outside the heap (compressed texts). */
+    public abstract long offHeapBytes();
+
+    static long bytes(String[] column) {
+        long bytes = ARRAY_HEADER + (long) REFERENCE * column.length;
+        for (String s : column) bytes += bytes(s);
+        return bytes;
+    }
+
+    static long bytes(String s) {
+        // Compact strings: one byte per char for Latin-1 text
+        return s == null ? 0 : STRING_OVERHEAD + s.length();
+    }
+}
@@ -0,0 +1,86 @@
+package com.mkr.scraper.snapshot;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A column of long texts, each deflated on its own into one direct (off-heap) buffer. Reading a text inflates
+ * just that one; the buffer is released by the garbage collector together with the table holding it.
+ * Limited to 2 GB of compressed text per column.
+ */
+final class CompressedTexts {
+    private final ByteBuffer data;
+    // Text i is data[offsets[i], offsets[i + 1]), rawLengths[i] UTF-8 bytes once inflated; -1 for null
+    private final int[] offsets;
+    private final int[] rawLengths;
+
+    private CompressedTexts(ByteBuffer data, int[] offsets, int[] rawLengths) {
+        this.data = data;
+        this.offsets = offsets;
+        this.rawLengths = rawLengths;
+    }
+
+    String get(int i) {
+        if (rawLengths[i] < 0) return null;
+        byte[] raw = new byte[rawLengths[i]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data.slice(offsets[i], offsets[i + 1] - offsets[i]));
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) n += inflater.inflate(raw, n, raw.length - n);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed text " + i, e);
+        } finally {
+            inflater.end();
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    long offHeapBytes() {
+        return data.capacity();
+    }
+
+    long heapBytes() {
+        return 2 * ColumnTable.ARRAY_HEADER + 4L * (offsets.length + rawLengths.length);
+    }
+
+    static final class Builder {
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        private final byte[] chunk = new byte[8192];
+        private int[] offsets = new int[17];
+        private int[] rawLengths = new int[16];
+        private int size;
+
+        void add(String text) {
+            if (size == rawLengths.length) {
+                rawLengths = Arrays.copyOf(rawLengths, size * 2);
+                offsets = Arrays.copyOf(offsets, size * 2 + 1);
+            }
+            if (text == null) {
+                rawLengths[size] = -1;
+            } else {
+                byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+                rawLengths[size] = raw.length;
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                while (!deflater.finished()) compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            offsets[++size] = compressed.size();
+        }
+
+        CompressedTexts build() {
+            deflater.end();
+            ByteBuffer data = ByteBuffer.allocateDirect(compressed.size());
+            data.put(compressed.toByteArray()).flip();
+            return new CompressedTexts(data.asReadOnlyBuffer(), Arrays.copyOf(offsets, size + 1),
+                    Arrays.copyOf(rawLengths, size));
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.mkr.scraper.snapshot;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding for a low-cardinality string column: each distinct value is stored once and rows hold its
+ * code. Code -1 stands for null.
+ */
+public final class Dictionary {
+    public static final int NULL = -1;
+
+    private final String[] values;
+
+    private Dictionary(String[] values) {
+        this.values = values;
+    }
+
+    public String value(int code) {
+        return code == NULL ? null : values[code];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public List<String> values() {
+        return Arrays.asList(values);
+    }
+
+    long heapBytes() {
+        return ColumnTable.bytes(values);
+    }
+
+    static Builder builder() {
+        return new Builder();
+    }
+
+    static final class Builder {
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        int code(String value) {
+            if (value == null) return NULL;
+            return codes.computeIfAbsent(value, v -> codes.size());
+        }
+
+        Dictionary build() {
+            String[] values = new String[codes.size()];
+            codes.forEach((value, code) -> values[code] = value);
+            return new Dictionary(values);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.mkr.scraper.snapshot;
+
+import com.mkr.scraper.quote.QuoteEntity;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar read model of the live quotes. Authors and tags are dictionary-encoded; the tags of all quotes share
+ * one code array instead of a list per quote. Columns the API never shows (quote key, source URL, tombstone) are
+ * not kept.
+ */
+public final class QuoteTable extends ColumnTable<QuoteEntity> {
+    private final String[] texts;
+    private final String[] contentHashes;
+    private final Dictionary authors;
+    private final Dictionary tagValues;
+    private final int[] author;
+    // Tags of row i are tagCodes[tagStarts[i], tagStarts[i + 1])
+    private final int[] tagStarts;
+    private final int[] tagCodes;
+
+    private QuoteTable(Builder b) {
+        super(Arrays.copyOf(b.ids, b.size));
+        int n = b.size;
+        texts = Arrays.copyOf(b.texts, n);
+        contentHashes = Arrays.copyOf(b.contentHashes, n);
+        authors = b.authors.build();
+        tagValues = b.tagValues.build();
+        author = Arrays.copyOf(b.author, n);
+        tagStarts = Arrays.copyOf(b.tagStarts, n + 1);
+        tagCodes = Arrays.copyOf(b.tagCodes, b.tagStarts[n]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** {@code quotes} itself when it already is a table, otherwise its rows encoded into one. */
+    public static QuoteTable of(List<QuoteEntity> quotes) {
+        if (quotes instanceof QuoteTable table) return table;
+        Builder builder = builder();
+        quotes.forEach(builder::add);
+        return builder.build();
+    }
+
+    @Override
+    public QuoteEntity get(int row) {
+        QuoteEntity q = new QuoteEntity();
+        q.setId(ids[row]);
+        q.setText(texts[row]);
+        q.setAuthor(author(row));
+        q.setTags(tags(row));
+        q.setContentHash(contentHashes[row]);
+        return q;
+    }
+
+    public String text(int row) {
+        return texts[row];
+    }
+
+    public String author(int row) {
+        return authors.value(author[row]);
+    }
+
+    public List<String> tags(int row) {
+        String[] tags = new String[tagStarts[row + 1] - tagStarts[row]];
+        for (int i = 0; i < tags.length; i++) tags[i] = tagValues.value(tagCodes[tagStarts[row] + i]);
+        return Arrays.asList(tags);
+    }
+
+    public String contentHash(int row) {
+        return contentHashes[row];
+    }
+
+    @Override
+    public long heapBytes() {
+        return ARRAY_HEADER + 8L * ids.length + bytes(texts) + bytes(contentHashes) + authors.heapBytes()
+                + tagValues.heapBytes() + 3 * ARRAY_HEADER + 4L * (author.length + tagStarts.length + tagCodes.length);
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return 0;
+    }
+
+    public static final class Builder {
+        private long[] ids = new long[16];
+        private String[] texts = new String[16];
+        private String[] contentHashes = new String[16];
+        private final Dictionary.Builder authors = Dictionary.builder();
+        private final Dictionary.Builder tagValues = Dictionary.builder();
+        private int[] author = new int[16];
+        private int[] tagStarts = new int[17];
+        private int[] tagCodes = new int[64];
+        private int size;
+
+        private Builder() {}
+
+        /** Rows must come in ascending id order. */
+        public Builder add(QuoteEntity q) {
+            if (size == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                texts = Arrays.copyOf(texts, capacity);
+                contentHashes = Arrays.copyOf(contentHashes, capacity);
+                author = Arrays.copyOf(author, capacity);
+                tagStarts = Arrays.copyOf(tagStarts, capacity + 1);
+            }
+            int row = size++;
+            ids[row] = q.getId();
+            texts[row] = q.getText();
+            contentHashes[row] = q.getContentHash();
+            author[row] = authors.code(q.getAuthor());
+            int tags = tagStarts[row];
+            if (q.getTags() != null) {
+                for (String tag : q.getTags()) {
+                    if (tags == tagCodes.length) tagCodes = Arrays.copyOf(tagCodes, tags * 2);
+                    tagCodes[tags++] = tagValues.code(tag);
+                }
+            }
+            tagStarts[row + 1] = tags;
+            return this;
+        }
+
+        public QuoteTable build() {
+            return new QuoteTable(this);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.mkr.scraper.snapshot;
+
+import com.mkr.scraper.scrape.ScrapeCompletedEvent;
+
+/**
+ * Published by {@link SnapshotStore} right after a new generation becomes visible to readers.
+ */
+public record SnapshotPublishedEvent(ScrapeCompletedEvent.Kind kind, CatalogSnapshot<?> snapshot) {}
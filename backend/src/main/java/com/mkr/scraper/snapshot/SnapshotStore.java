@@ -0,0 +1,124 @@
+package com.mkr.scraper.snapshot;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.quote.QuoteEntity;
+import com.mkr.scraper.quote.QuoteRepository;
+import com.mkr.scraper.scrape.ScrapeCompletedEvent;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Double-buffered read model. A new generation is loaded from the database once a scrape has committed and
+ * published with a single reference swap; until then readers keep getting the previous complete generation,
+ * without touching the database. The replaced generation is left to the garbage collector.
+ * <p>
+ * Generations are {@link BookTable}s and {@link QuoteTable}s, encoded row by row off a database cursor, so no
+ * more than a batch of managed entities exists at any time.
+ */
+@Component
+public class SnapshotStore {
+    private static final Logger log = LoggerFactory.getLogger(SnapshotStore.class);
+    private static final int CLEAR_EVERY = 500;
+
+    private final BookRepository bookRepository;
+    private final QuoteRepository quoteRepository;
+    private final ApplicationEventPublisher events;
+    private final TransactionTemplate readOnlyTx;
+    private final EntityManager entityManager;
+    private final AtomicLong generations = new AtomicLong();
+    private final AtomicReference<CatalogSnapshot<BookEntity>> books = new AtomicReference<>(CatalogSnapshot.empty());
+    private final AtomicReference<CatalogSnapshot<QuoteEntity>> quotes = new AtomicReference<>(CatalogSnapshot.empty());
+
+    public SnapshotStore(BookRepository bookRepository, QuoteRepository quoteRepository,
+                         ApplicationEventPublisher events, PlatformTransactionManager transactionManager,
+                         EntityManager entityManager) {
+        this.bookRepository = bookRepository;
+        this.quoteRepository = quoteRepository;
+        this.events = events;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        // Publishes run after the scrape's commit, while its transaction is still bound to the thread
+        this.readOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.entityManager = entityManager;
+    }
+
+    public CatalogSnapshot<BookEntity> books() {
+        return books.get();
+    }
+
+    public CatalogSnapshot<QuoteEntity> quotes() {
+        return quotes.get();
+    }
+
+    // Publish whatever is already stored before the initial scrape kicks in
+    @Order(0)
+    @EventListener(ApplicationReadyEvent.class)
+    public void publishOnStartup() {
+        publishBooks();
+        publishQuotes();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScrapeCompleted(ScrapeCompletedEvent event) {
+        switch (event.kind()) {
+            case BOOKS -> publishBooks();
+            case QUOTES -> publishQuotes();
+        }
+    }
+
+    // synchronized: two publishes of the same catalogue must not swap in out of order
+    public synchronized void publishBooks() {
+        BookTable.Builder table = BookTable.builder();
+        load(bookRepository::streamByRemovedAtIsNullOrderByIdAsc, table::add);
+        publish(ScrapeCompletedEvent.Kind.BOOKS, books,
+                new CatalogSnapshot<>(generations.incrementAndGet(), Instant.now(), table.build()));
+    }
+
+    public synchronized void publishQuotes() {
+        QuoteTable.Builder table = QuoteTable.builder();
+        load(quoteRepository::streamByRemovedAtIsNullOrderByIdAsc, table::add);
+        publish(ScrapeCompletedEvent.Kind.QUOTES, quotes,
+                new CatalogSnapshot<>(generations.incrementAndGet(), Instant.now(), table.build()));
+    }
+
+    private <T> void load(Supplier<Stream<T>> rows, Consumer<T> encode) {
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<T> stream = rows.get()) {
+                Iterator<T> it = stream.iterator();
+                for (int n = 1; it.hasNext(); n++) {
+                    encode.accept(it.next());
+                    if (n % CLEAR_EVERY == 0) entityManager.clear();
+                }
+            }
+        });
+    }
+
+    private <T> void publish(ScrapeCompletedEvent.Kind kind, AtomicReference<CatalogSnapshot<T>> ref,
+                             CatalogSnapshot<T> next) {
+        CatalogSnapshot<T> previous = ref.getAndSet(next);
+        ColumnTable<?> table = (ColumnTable<?>) next.items();
+        log.info("Published {} snapshot generation {} ({} items, ~{} KB heap, {} KB off-heap, replaces generation {})",
+                kind, next.generation(), next.size(), table.heapBytes() / 1024, table.offHeapBytes() / 1024,
+                previous.generation());
+        events.publishEvent(new SnapshotPublishedEvent(kind, next));
+    }
+}
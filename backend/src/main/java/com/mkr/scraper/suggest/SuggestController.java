@@ -0,0 +1,35 @@
+package com.mkr.scraper.suggest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/suggest")
+public class SuggestController {
+    private static final int MAX_LIMIT = 20;
+    private static final int MAX_PREFIX = 100;
+
+    private final SuggestService suggestService;
+
+    public SuggestController(SuggestService suggestService) {
+        this.suggestService = suggestService;
+    }
+
+    @GetMapping
+    public List<SuggestIndex.Suggestion> suggest(@RequestParam String prefix,
+                                                 @RequestParam(defaultValue = "10") int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be in 1.." + MAX_LIMIT);
+        }
+        if (prefix.length() > MAX_PREFIX) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "prefix must be at most " + MAX_PREFIX + " characters");
+        }
+        return suggestService.suggest(prefix, limit);
+    }
+}
@@ -0,0 +1,228 @@
+package com.mkr.scraper.suggest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable typeahead index. Every suggestion is normalized once, and each word start in it becomes a key (so
+ * "attic" finds "A Light in the Attic"). A key is just (suggestion, offset), sorted by the text from the offset on,
+ * so the keys matching a prefix form one contiguous range found by binary search. A max-weight segment tree over
+ * the sorted keys then yields the best suggestions of that range in weight order, without looking at the rest of
+ * the range: a query costs O(|prefix| log n + k log n) whatever the prefix.
+ */
+public final class SuggestIndex {
+    public enum Kind { TITLE, CATEGORY, AUTHOR, TAG }
+
+    private final String[] texts;
+    private final String[] normalized;
+    private final Kind[] kinds;
+    private final long[] weights;
+    private final long[] ids;
+    // Key i is normalized[keyEntry[i]] from character keyStart[i] on; keys are in lexicographic order
+    private final int[] keyEntry;
+    private final int[] keyStart;
+    // Segment tree over keys: tree[node] is the key with the highest weight below node (leaves start at leaves)
+    private final int[] tree;
+    private final int leaves;
+
+    private SuggestIndex(Builder b) {
+        int n = b.texts.size();
+        texts = b.texts.toArray(String[]::new);
+        normalized = b.normalized.toArray(String[]::new);
+        kinds = b.kinds.toArray(Kind[]::new);
+        weights = b.weights.stream().mapToLong(Long::longValue).toArray();
+        ids = b.ids.stream().mapToLong(Long::longValue).toArray();
+
+        int keys = 0;
+        for (int e = 0; e < n; e++) keys += wordStarts(normalized[e]).length;
+        int[] entries = new int[keys];
+        int[] starts = new int[keys];
+        for (int e = 0, k = 0; e < n; e++) {
+            for (int start : wordStarts(normalized[e])) {
+                entries[k] = e;
+                starts[k++] = start;
+            }
+        }
+        Integer[] order = IntStream.range(0, keys).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, (x, y) -> compareKeys(entries[x], starts[x], entries[y], starts[y]));
+        keyEntry = new int[keys];
+        keyStart = new int[keys];
+        for (int i = 0; i < keys; i++) {
+            keyEntry[i] = entries[order[i]];
+            keyStart[i] = starts[order[i]];
+        }
+
+        leaves = Integer.highestOneBit(Math.max(1, keys - 1)) << 1;
+        tree = new int[2 * leaves];
+        Arrays.fill(tree, -1);
+        for (int i = 0; i < keys; i++) tree[leaves + i] = i;
+        for (int node = leaves - 1; node >= 1; node--) tree[node] = heavier(tree[2 * node], tree[2 * node + 1]);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static SuggestIndex empty() {
+        return builder().build();
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    public int keyCount() {
+        return keyEntry.length;
+    }
+
+    /**
+     * Up to {@code k} suggestions with a word starting with {@code prefix} (case and punctuation insensitive),
+     * heaviest first, each suggestion once.
+     */
+    public List<Suggestion> suggest(String prefix, int k) {
+        String p = normalize(prefix);
+        List<Suggestion> result = new ArrayList<>(k);
+        if (p.isEmpty() || k <= 0) return result;
+        int from = lowerBound(p);
+        int to = upperBound(p, from);
+        if (from >= to) return result;
+
+        // Best-first over the segment tree: each queued range knows its heaviest key
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> heavier(a[2], b[2]) == a[2] ? -1 : 1);
+        ranges.add(new int[]{from, to, argmax(from, to)});
+        Set<Integer> seen = new HashSet<>();
+        while (!ranges.isEmpty() && result.size() < k) {
+            int[] range = ranges.poll();
+            int key = range[2];
+            int entry = keyEntry[key];
+            if (seen.add(entry)) {
+                result.add(new Suggestion(texts[entry], kinds[entry], weights[entry], ids[entry]));
+            }
+            if (range[0] < key) ranges.add(new int[]{range[0], key, argmax(range[0], key)});
+            if (key + 1 < range[1]) ranges.add(new int[]{key + 1, range[1], argmax(key + 1, range[1])});
+        }
+        return result;
+    }
+
+    /** Lowercase letters and digits, every other run of characters a single space. */
+    static String normalize(String text) {
+        if (text == null) return "";
+        StringBuilder out = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.isLetterOrDigit(cp)) {
+                if (space && !out.isEmpty()) out.append(' ');
+                space = false;
+                out.appendCodePoint(Character.toLowerCase(cp));
+            } else {
+                space = true;
+            }
+        }
+        return out.toString();
+    }
+
+    private static int[] wordStarts(String text) {
+        if (text.isEmpty()) return new int[0];
+        return IntStream.range(0, text.length()).filter(i -> i == 0 || text.charAt(i - 1) == ' ').toArray();
+    }
+
+    private int compareKeys(int e1, int s1, int e2, int s2) {
+        String a = normalized[e1], b = normalized[e2];
+        int n = Math.min(a.length() - s1, b.length() - s2);
+        for (int i = 0; i < n; i++) {
+            int c = Character.compare(a.charAt(s1 + i), b.charAt(s2 + i));
+            if (c != 0) return c;
+        }
+        return Integer.compare(a.length() - s1, b.length() - s2);
+    }
+
+    // < 0 when key sorts before every string starting with prefix, 0 when it starts with prefix, > 0 after
+    private int compareToPrefix(int key, String prefix) {
+        String text = normalized[keyEntry[key]];
+        int start = keyStart[key];
+        int n = Math.min(text.length() - start, prefix.length());
+        for (int i = 0; i < n; i++) {
+            int c = Character.compare(text.charAt(start + i), prefix.charAt(i));
+            if (c != 0) return c;
+        }
+        return text.length() - start < prefix.length() ? -1 : 0;
+    }
+
+    private int lowerBound(String prefix) {
+        int lo = 0, hi = keyEntry.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareToPrefix(mid, prefix) < 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private int upperBound(String prefix, int from) {
+        int lo = from, hi = keyEntry.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareToPrefix(mid, prefix) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Heaviest key in [from, to)
+    private int argmax(int from, int to) {
+        int best = -1;
+        for (int lo = from + leaves, hi = to + leaves; lo < hi; lo >>= 1, hi >>= 1) {
+            if ((lo & 1) == 1) best = heavier(best, tree[lo++]);
+            if ((hi & 1) == 1) best = heavier(best, tree[--hi]);
+        }
+        return best;
+    }
+
+    private int heavier(int a, int b) {
+        if (a < 0) return b;
+        if (b < 0) return a;
+        int c = compareWeight(a, b);
+        return c > 0 || (c == 0 && a < b) ? a : b;
+    }
+
+    private int compareWeight(int keyA, int keyB) {
+        return Long.compare(weights[keyEntry[keyA]], weights[keyEntry[keyB]]);
+    }
+
+    /**
+     * @param id the book for titles, 0 for the other kinds
+     */
+    public record Suggestion(String text, Kind kind, long weight, long id) {}
+
+    public static final class Builder {
+        private final List<String> texts = new ArrayList<>();
+        private final List<String> normalized = new ArrayList<>();
+        private final List<Kind> kinds = new ArrayList<>();
+        private final List<Long> weights = new ArrayList<>();
+        private final List<Long> ids = new ArrayList<>();
+
+        private Builder() {}
+
+        public Builder add(String text, Kind kind, long weight, long id) {
+            String key = normalize(text);
+            if (key.isEmpty()) return this;
+            texts.add(text);
+            normalized.add(key);
+            kinds.add(kind);
+            weights.add(weight);
+            ids.add(id);
+            return this;
+        }
+
+        public SuggestIndex build() {
+            return new SuggestIndex(this);
+        }
+    }
+}
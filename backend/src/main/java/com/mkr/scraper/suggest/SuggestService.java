@@ -0,0 +1,93 @@
+package com.mkr.scraper.suggest;
+
+import com.mkr.scraper.snapshot.BookTable;
+import com.mkr.scraper.snapshot.QuoteTable;
+import com.mkr.scraper.snapshot.SnapshotPublishedEvent;
+import com.mkr.scraper.snapshot.SnapshotStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Typeahead over book titles and categories, quote authors and tags. A new {@link SuggestIndex} is built from the
+ * current books and quotes snapshots on a background thread after each publish and swapped in with one reference
+ * write; queries read whichever index is current without locking. Publishes that arrive while a build runs are
+ * folded into one more build.
+ * <p>
+ * Weights: a title weighs its star rating plus its number of reviews; a category, author or tag weighs the number
+ * of books or quotes carrying it, so broad suggestions come before single titles.
+ */
+@Service
+public class SuggestService {
+    private static final Logger log = LoggerFactory.getLogger(SuggestService.class);
+    private static final List<String> RATINGS = List.of("One", "Two", "Three", "Four", "Five");
+
+    private final SnapshotStore snapshotStore;
+    private final AtomicReference<SuggestIndex> index = new AtomicReference<>(SuggestIndex.empty());
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final ExecutorService builder =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().name("suggest-index").daemon().factory());
+
+    public SuggestService(SnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
+    @EventListener
+    public void onSnapshotPublished(SnapshotPublishedEvent event) {
+        // One queued build sees every publish made before it starts
+        if (rebuildPending.compareAndSet(false, true)) {
+            builder.execute(() -> {
+                rebuildPending.set(false);
+                rebuild();
+            });
+        }
+    }
+
+    public List<SuggestIndex.Suggestion> suggest(String prefix, int limit) {
+        return index.get().suggest(prefix, limit);
+    }
+
+    /** Builds and publishes an index of the current snapshots; normally runs on the background thread. */
+    public synchronized SuggestIndex rebuild() {
+        long start = System.nanoTime();
+        BookTable books = BookTable.of(snapshotStore.books().items());
+        QuoteTable quotes = QuoteTable.of(snapshotStore.quotes().items());
+        SuggestIndex.Builder builder = SuggestIndex.builder();
+        Map<String, Long> categories = new HashMap<>();
+        for (int row = 0; row < books.size(); row++) {
+            Integer reviews = books.numberOfReviews(row);
+            long weight = RATINGS.indexOf(books.rating(row)) + 1 + (reviews != null ? reviews : 0);
+            builder.add(books.title(row), SuggestIndex.Kind.TITLE, weight, books.id(row));
+            if (books.category(row) != null) categories.merge(books.category(row), 1L, Long::sum);
+        }
+        Map<String, Long> authors = new HashMap<>();
+        Map<String, Long> tags = new HashMap<>();
+        for (int row = 0; row < quotes.size(); row++) {
+            if (quotes.author(row) != null) authors.merge(quotes.author(row), 1L, Long::sum);
+            for (String tag : quotes.tags(row)) tags.merge(tag, 1L, Long::sum);
+        }
+        categories.forEach((category, count) -> builder.add(category, SuggestIndex.Kind.CATEGORY, count, 0));
+        authors.forEach((author, count) -> builder.add(author, SuggestIndex.Kind.AUTHOR, count, 0));
+        tags.forEach((tag, count) -> builder.add(tag, SuggestIndex.Kind.TAG, count, 0));
+        SuggestIndex next = builder.build();
+        index.set(next);
+        log.info("Suggest index rebuilt: {} suggestions, {} keys in {} ms", next.size(), next.keyCount(),
+                (System.nanoTime() - start) / 1_000_000);
+        return next;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+}
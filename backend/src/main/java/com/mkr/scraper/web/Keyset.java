@@ -0,0 +1,44 @@
+package com.mkr.scraper.web;
+
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Keyset (seek) pagination over a published snapshot: clients pass the last id they saw as {@code after} and
+ * follow the {@value #NEXT_AFTER_HEADER} response header until it is absent.
+ */
+public final class Keyset {
+    public static final String NEXT_AFTER_HEADER = "X-Next-After";
+    public static final String GENERATION_HEADER = "X-Snapshot-Generation";
+    public static final int MAX_LIMIT = 1000;
+
+    private Keyset() {}
+
+    /**
+     * Without {@code after} and {@code limit} returns the whole snapshot, otherwise one page ordered by id.
+     * Each item is passed through {@code view} (e.g. a list-view projection).
+     */
+    public static <T> ResponseEntity<List<?>> page(CatalogSnapshot<T> snapshot, Long after, Integer limit,
+                                                   ToLongFunction<T> id, Function<T, ?> view) {
+        if (limit != null && (limit < 1 || limit > MAX_LIMIT)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be in 1.." + MAX_LIMIT);
+        }
+        List<T> rows = after == null && limit == null
+                ? snapshot.items()
+                // One extra row tells us whether another page exists
+                : snapshot.after(after != null ? after : 0L, limit != null ? limit + 1 : Integer.MAX_VALUE);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(GENERATION_HEADER, Long.toString(snapshot.generation()));
+        if (limit != null && rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            response.header(NEXT_AFTER_HEADER, Long.toString(id.applyAsLong(rows.get(limit - 1))));
+        }
+        return response.body(rows.stream().map(view).toList());
+    }
+}
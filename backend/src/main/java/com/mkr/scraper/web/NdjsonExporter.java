@@ -0,0 +1,61 @@
+package com.mkr.scraper.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes repository streams as newline-delimited JSON. Rows are serialized as they come off the cursor and the
+ * persistence context is cleared periodically, so an export of any size runs in constant memory.
+ */
+@Component
+public class NdjsonExporter {
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final int CLEAR_EVERY = 500;
+
+    private final TransactionTemplate readOnlyTx;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    public NdjsonExporter(PlatformTransactionManager transactionManager, EntityManager entityManager,
+                          ObjectMapper objectMapper) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param rows opens the stream; called on the response thread inside a read-only transaction
+     */
+    public <T> ResponseEntity<StreamingResponseBody> export(Supplier<Stream<T>> rows) {
+        StreamingResponseBody body = out -> readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<T> stream = rows.get()) {
+                Iterator<T> it = stream.iterator();
+                int written = 0;
+                while (it.hasNext()) {
+                    out.write(objectMapper.writeValueAsBytes(it.next()));
+                    out.write('\n');
+                    if (++written % CLEAR_EVERY == 0) {
+                        entityManager.clear();
+                    }
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+}
@@ -0,0 +1,127 @@
+package com.mkr.scraper.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.snapshot.BookTable;
+import com.mkr.scraper.snapshot.CatalogSnapshot;
+import com.mkr.scraper.snapshot.SnapshotPublishedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Whole-catalogue list responses, serialized once per published snapshot, raw and gzipped. Requests get the
+ * prepared bytes written as they are, with a strong ETag (generation plus a digest of the JSON) and
+ * {@code Cache-Control: no-cache}, so clients revalidate each poll and an unchanged catalogue costs a 304 with
+ * no body. Spring answers {@code If-None-Match} from the ETag on the returned {@link ResponseEntity}.
+ */
+@Component
+public class PreparedResponses {
+    private static final Logger log = LoggerFactory.getLogger(PreparedResponses.class);
+
+    public enum Body { BOOKS, BOOK_SUMMARIES, QUOTES }
+
+    private final ObjectMapper objectMapper;
+    private final Map<Body, Prepared> prepared = new ConcurrentHashMap<>();
+
+    public PreparedResponses(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @SuppressWarnings("unchecked")
+    @EventListener
+    public void onSnapshotPublished(SnapshotPublishedEvent event) {
+        CatalogSnapshot<?> snapshot = event.snapshot();
+        switch (event.kind()) {
+            case BOOKS -> {
+                CatalogSnapshot<BookEntity> books = (CatalogSnapshot<BookEntity>) snapshot;
+                prepare(Body.BOOKS, snapshot.generation(), books.items());
+                prepare(Body.BOOK_SUMMARIES, snapshot.generation(),
+                        books.view(BookTable.of(books.items())::summary).items());
+            }
+            case QUOTES -> prepare(Body.QUOTES, snapshot.generation(), snapshot.items());
+        }
+    }
+
+    /**
+     * The prepared response for {@code generation}; empty when it has not been prepared (yet), in which case the
+     * caller serializes as usual.
+     */
+    public Optional<ResponseEntity<byte[]>> serve(Body body, long generation, String acceptEncoding) {
+        Prepared p = prepared.get(body);
+        if (p == null || p.generation() != generation) return Optional.empty();
+        boolean gzip = acceptsGzip(acceptEncoding);
+        return Optional.of(ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                // A strong ETag names one representation, so the gzipped body has its own
+                .eTag(gzip ? p.etag() + "-gz" : p.etag())
+                .header(HttpHeaders.CACHE_CONTROL, "no-cache")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(Keyset.GENERATION_HEADER, Long.toString(generation))
+                .headers(h -> {
+                    if (gzip) h.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                })
+                .body(gzip ? p.gzip() : p.raw()));
+    }
+
+    private void prepare(Body body, long generation, List<?> items) {
+        long start = System.nanoTime();
+        try {
+            byte[] raw = objectMapper.writeValueAsBytes(items);
+            Prepared next = new Prepared(generation, raw, gzip(raw), etag(generation, raw));
+            prepared.put(body, next);
+            log.info("Prepared {} response for generation {}: {} KB, {} KB gzipped in {} ms", body, generation,
+                    raw.length / 1024, next.gzip().length / 1024, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            // gzip;q=0 means "not gzip"
+            return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        // Compressed once per publish and sent many times: worth the slowest level
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, 65536) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            gzip.write(raw);
+        }
+        return out.toByteArray();
+    }
+
+    private static String etag(long generation, byte[] raw) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(raw);
+            return generation + "-" + HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Prepared(long generation, byte[] raw, byte[] gzip, String etag) {}
+}
@@ -4,12 +4,24 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+// No scraping: the endpoints are checked against an empty catalogue, without the network
+@SpringBootTest(properties = {
+        "scraper.initial-scrape.enabled=false",
+        "scraper.recrawl.enabled=false"
+})
 @AutoConfigureMockMvc
 class ApiSmokeTest {
 
@@ -27,5 +39,96 @@ class ApiSmokeTest {
         mockMvc.perform(get("/api/scrapedQuotes"))
                 .andExpect(status().isOk());
     }
-}
 
+    @Test
+    void keysetPagesAvailable() throws Exception {
+        mockMvc.perform(get("/api/scrapedBooks").param("limit", "5").param("fields", "summary"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/scrapedQuotes").param("after", "0").param("limit", "5"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/scrapedBooks").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void searchEndpointAvailable() throws Exception {
+        mockMvc.perform(get("/api/search").param("type", "books").param("q", "light"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/search").param("type", "films").param("q", "light"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void facetsEndpointAvailable() throws Exception {
+        mockMvc.perform(get("/api/books/facets").param("category", "Poetry").param("maxPrice", "20"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/books/facets").param("minPrice", "30").param("maxPrice", "20"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void relatedEndpointsAnswerUnknownIdsWithNotFound() throws Exception {
+        mockMvc.perform(get("/api/books/{id}/related", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/quotes/{id}/related", Long.MAX_VALUE))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/books/{id}/related", 1).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void suggestEndpointAvailable() throws Exception {
+        mockMvc.perform(get("/api/suggest").param("prefix", "li"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/suggest").param("prefix", "li").param("limit", "100"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void historyEndpointsAvailable() throws Exception {
+        mockMvc.perform(get("/api/books/{upc}/history", "no-such-upc"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/books/movers").param("since", "2024-05-01"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/books/movers").param("since", "yesterday"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/books/movers").param("since", "2024-05-01").param("series", "rating"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void fullListsAreServedPreparedWithETags() throws Exception {
+        String etag = mockMvc.perform(get("/api/scrapedBooks"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        mockMvc.perform(get("/api/scrapedBooks").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/scrapedBooks").header(HttpHeaders.IF_NONE_MATCH, "\"0-stale\""))
+                .andExpect(status().isOk());
+
+        MvcResult gzipped = mockMvc.perform(get("/api/scrapedQuotes").header(HttpHeaders.ACCEPT_ENCODING, "gzip, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+        String raw = mockMvc.perform(get("/api/scrapedQuotes")).andReturn().getResponse().getContentAsString();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+            assertEquals(raw, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        mockMvc.perform(get("/api/scrapedQuotes").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .header(HttpHeaders.IF_NONE_MATCH, gzipped.getResponse().getHeader(HttpHeaders.ETAG)))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void actuatorEndpointsAvailable() throws Exception {
+        mockMvc.perform(get("/actuator/scrape"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/recrawl"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/scrapedBooks"));
+        mockMvc.perform(get("/actuator/metrics/http.server.requests").param("tag", "uri:/api/scrapedBooks"))
+                .andExpect(status().isOk());
+    }
+}
@@ -0,0 +1,110 @@
+package com.mkr.scraper.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageArchiveTest {
+    @TempDir
+    Path dir;
+
+    private static byte[] page(String text) {
+        return ("<html><body>" + text + "</body></html>").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void storesLatestBodyPerUrlAndSkipsIdenticalOnes() throws IOException {
+        PageArchive archive = new PageArchive(true, dir);
+        archive.append("http://x/a", "UTF-8", page("a1"), "d-a1");
+        archive.append("http://x/b", "ISO-8859-1", page("b1"), "d-b1");
+        long size = Files.size(dir.resolve(PageArchive.ARCHIVE_FILE));
+        archive.append("http://x/a", "UTF-8", page("a1"), "d-a1");
+        assertEquals(size, Files.size(dir.resolve(PageArchive.ARCHIVE_FILE)), "same digest is not stored again");
+        archive.append("http://x/a", "UTF-8", page("a2 ünïcode"), "d-a2");
+
+        try (PageArchive.Reader reader = archive.reader()) {
+            PageArchive.Record a = reader.read("http://x/a");
+            assertEquals("http://x/a", a.url());
+            assertArrayEquals(page("a2 ünïcode"), a.body());
+            assertEquals("ISO-8859-1", reader.read("http://x/b").charset());
+            assertThrows(FileNotFoundException.class, () -> reader.read("http://x/c"));
+        }
+        archive.close();
+    }
+
+    @Test
+    void reopensFromTheIndexAndIgnoresATornTail() throws IOException {
+        PageArchive archive = new PageArchive(true, dir);
+        for (int i = 0; i < 100; i++) archive.append("http://x/" + i, "UTF-8", page("page " + i), "d" + i);
+        archive.close();
+        // A crash mid-append: half a record and half an index line
+        Files.write(dir.resolve(PageArchive.ARCHIVE_FILE), new byte[]{0x1f, (byte) 0x8b, 8}, StandardOpenOption.APPEND);
+        Files.writeString(dir.resolve(PageArchive.INDEX_FILE), "999999 12", StandardOpenOption.APPEND);
+
+        PageArchive reopened = new PageArchive(true, dir);
+        assertEquals(100, reopened.size());
+        reopened.append("http://x/new", "UTF-8", page("new"), "dn");
+        try (PageArchive.Reader reader = reopened.reader()) {
+            for (int i = 0; i < 100; i++) assertArrayEquals(page("page " + i), reader.read("http://x/" + i).body());
+            assertArrayEquals(page("new"), reader.read("http://x/new").body());
+        }
+        reopened.close();
+
+        // The torn line was cut off, so the line appended after it still reads back
+        PageArchive again = new PageArchive(true, dir);
+        assertEquals(101, again.size());
+        try (PageArchive.Reader reader = again.reader()) {
+            assertArrayEquals(page("new"), reader.read("http://x/new").body());
+        }
+        again.close();
+    }
+
+    @Test
+    void unparseableIndexLinesCountAsTorn() throws IOException {
+        PageArchive archive = new PageArchive(true, dir);
+        archive.append("http://x/a", "UTF-8", page("a"), "da");
+        archive.close();
+        // Two torn lines that ran into each other before the index was cut back to its last newline
+        Files.writeString(dir.resolve(PageArchive.INDEX_FILE), "0 1234567899999999999 d http://x/bogus\n",
+                StandardOpenOption.APPEND);
+
+        PageArchive reopened = new PageArchive(true, dir);
+        assertEquals(1, reopened.size());
+        try (PageArchive.Reader reader = reopened.reader()) {
+            assertArrayEquals(page("a"), reader.read("http://x/a").body());
+        }
+        reopened.close();
+    }
+
+    @Test
+    void recordsAreGzipMembersOfPlainWarc() throws IOException {
+        PageArchive archive = new PageArchive(true, dir);
+        archive.append("http://x/a", "UTF-8", page("a"), "d-a");
+        archive.append("http://x/b", "UTF-8", page("b"), "d-b");
+        archive.close();
+        // Like zcat: the concatenated members decompress to consecutive WARC records
+        String warc;
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(dir.resolve(PageArchive.ARCHIVE_FILE)))) {
+            warc = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertTrue(warc.startsWith("WARC/1.1\r\nWARC-Type: resource\r\nWARC-Target-URI: http://x/a\r\n"));
+        assertEquals(2, warc.split("WARC/1.1\r\n", -1).length - 1);
+    }
+
+    @Test
+    void disabledArchiveWritesNothing() throws IOException {
+        PageArchive archive = new PageArchive(false, dir.resolve("off"));
+        archive.append("http://x/a", "UTF-8", page("a"), "d-a");
+        assertFalse(Files.exists(dir.resolve("off")));
+        assertThrows(IllegalStateException.class, archive::reader);
+    }
+}
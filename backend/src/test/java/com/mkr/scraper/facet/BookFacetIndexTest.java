@@ -0,0 +1,130 @@
+package com.mkr.scraper.facet;
+
+import com.mkr.scraper.book.BookEntity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookFacetIndexTest {
+
+    private static long ids;
+
+    private static BookEntity book(String category, String rating, String price, String availability) {
+        BookEntity b = new BookEntity();
+        b.setId(++ids);
+        b.setCategory(category);
+        b.setRating(rating);
+        b.setPrice(price == null ? null : new BigDecimal(price));
+        b.setAvailability(availability);
+        return b;
+    }
+
+    private static List<BookEntity> sample() {
+        return List.of(
+                book("Poetry", "Three", "51.77", "In stock (22 available)"),
+                book("Poetry", "One", "12.00", "In stock (3 available)"),
+                book("Mystery", "Four", "12.01", "In stock (1 available)"),
+                book("Mystery", "One", "9.99", "Out of stock"),
+                book("Fiction", "Five", null, null));
+    }
+
+    private static Map<String, Integer> asMap(List<BookFacetIndex.ValueCount> counts) {
+        return counts.stream().collect(Collectors.toMap(BookFacetIndex.ValueCount::value, BookFacetIndex.ValueCount::count));
+    }
+
+    @Test
+    void countsEveryFacetWithoutFilters() {
+        BookFacetIndex.Facets f = BookFacetIndex.build(7, sample()).query(BookFacetIndex.Filter.NONE);
+        assertEquals(7, f.generation());
+        assertEquals(5, f.total());
+        assertEquals(Map.of("Poetry", 2, "Mystery", 2, "Fiction", 1), asMap(f.categories()));
+        assertEquals(List.of("One", "Three", "Four", "Five"),
+                f.ratings().stream().map(BookFacetIndex.ValueCount::value).toList());
+        assertEquals(Map.of("In stock", 3, "Out of stock", 1), asMap(f.availability()));
+        assertEquals(4, f.prices().stream().mapToInt(BookFacetIndex.PriceBucket::count).sum());
+        assertTrue(f.prices().size() <= 10);
+    }
+
+    @Test
+    void priceBoundsAreExactWithinABand() {
+        BookFacetIndex index = BookFacetIndex.build(1, sample());
+        BookFacetIndex.Facets f = index.query(new BookFacetIndex.Filter(null, null, null, null, new BigDecimal("12.00")));
+        assertEquals(2, f.total());
+        f = index.query(new BookFacetIndex.Filter(null, null, null, new BigDecimal("12.00"), new BigDecimal("12.00")));
+        assertEquals(1, f.total());
+        f = index.query(new BookFacetIndex.Filter(null, null, null, new BigDecimal("12.005"), null));
+        assertEquals(2, f.total());
+    }
+
+    @Test
+    void boundsBeyondALongClampInsteadOfFailing() {
+        BookFacetIndex index = BookFacetIndex.build(1, sample());
+        BookFacetIndex.Facets f = index.query(new BookFacetIndex.Filter(null, null, null, null, new BigDecimal("1e20")));
+        assertEquals(4, f.total(), "no upper bound");
+        f = index.query(new BookFacetIndex.Filter(null, null, null, new BigDecimal("1e20"), new BigDecimal("1e21")));
+        assertEquals(0, f.total());
+    }
+
+    @Test
+    void facetsIgnoreTheirOwnFilter() {
+        BookFacetIndex.Facets f = BookFacetIndex.build(1, sample())
+                .query(new BookFacetIndex.Filter("Mystery", "One", null, null, null));
+        assertEquals(1, f.total());
+        // Categories still list the alternatives for rating One, ratings the alternatives within Mystery
+        assertEquals(Map.of("Poetry", 1, "Mystery", 1, "Fiction", 0), asMap(f.categories()));
+        assertEquals(Map.of("One", 1, "Three", 0, "Four", 1, "Five", 0), asMap(f.ratings()));
+        assertEquals(Map.of("In stock", 0, "Out of stock", 1), asMap(f.availability()));
+    }
+
+    @Test
+    void unknownFilterValueMatchesNothing() {
+        BookFacetIndex.Facets f = BookFacetIndex.build(1, sample())
+                .query(new BookFacetIndex.Filter("Cookbooks", null, null, null, null));
+        assertEquals(0, f.total());
+        assertEquals(Map.of("One", 0, "Three", 0, "Four", 0, "Five", 0), asMap(f.ratings()));
+    }
+
+    @Test
+    void matchesAScanOverRandomCatalogues() {
+        Random random = new Random(42);
+        String[] categories = {"Poetry", "Mystery", "Fiction", "Travel", "History"};
+        String[] stock = {"In stock (5 available)", "Out of stock", null};
+        List<BookEntity> books = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            String price = random.nextInt(20) == 0 ? null : BigDecimal.valueOf(random.nextInt(10_000), 2).toPlainString();
+            books.add(book(categories[random.nextInt(categories.length)],
+                    BookFacetIndex.RATINGS[random.nextInt(5)], price, stock[random.nextInt(stock.length)]));
+        }
+        BookFacetIndex index = BookFacetIndex.build(1, books);
+        for (int q = 0; q < 200; q++) {
+            String category = random.nextBoolean() ? categories[random.nextInt(categories.length)] : null;
+            String rating = random.nextBoolean() ? BookFacetIndex.RATINGS[random.nextInt(5)] : null;
+            BigDecimal min = random.nextBoolean() ? BigDecimal.valueOf(random.nextInt(10_000), 2) : null;
+            BigDecimal max = random.nextBoolean() ? BigDecimal.valueOf(random.nextInt(10_000), 2) : null;
+            BookFacetIndex.Facets f = index.query(new BookFacetIndex.Filter(category, rating, null, min, max));
+
+            Predicate<BookEntity> inCategory = b -> category == null || category.equals(b.getCategory());
+            Predicate<BookEntity> inRating = b -> rating == null || rating.equals(b.getRating());
+            Predicate<BookEntity> inPrice = b -> (min == null && max == null) || (b.getPrice() != null
+                    && (min == null || b.getPrice().compareTo(min) >= 0) && (max == null || b.getPrice().compareTo(max) <= 0));
+            assertEquals(books.stream().filter(inCategory.and(inRating).and(inPrice)).count(), f.total());
+            for (BookFacetIndex.ValueCount c : f.categories()) {
+                assertEquals(books.stream().filter(inRating.and(inPrice)).filter(b -> c.value().equals(b.getCategory())).count(),
+                        c.count());
+            }
+            for (BookFacetIndex.PriceBucket bucket : f.prices()) {
+                assertEquals(books.stream().filter(inCategory.and(inRating).and(inPrice))
+                        .filter(b -> b.getPrice() != null && b.getPrice().compareTo(bucket.from()) >= 0
+                                && b.getPrice().compareTo(bucket.to()) < 0).count(), bucket.count());
+            }
+        }
+    }
+}
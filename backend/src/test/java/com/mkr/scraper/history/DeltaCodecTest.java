@@ -0,0 +1,51 @@
+package com.mkr.scraper.history;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeltaCodecTest {
+
+    @Test
+    void pointsRoundTrip() {
+        Random random = new Random(7);
+        long at = 1_700_000_000L;
+        long value = 5_177;
+        List<long[]> expected = new ArrayList<>(List.of(new long[]{at, value}));
+        byte[] data = new byte[0];
+        long lastAt = at, lastValue = value;
+        for (int i = 0; i < 500; i++) {
+            // Gaps from a second to months, changes either way including very large ones
+            long nextAt = lastAt + 1 + random.nextInt(i % 50 == 0 ? 10_000_000 : 100_000);
+            long nextValue = i % 97 == 0 ? random.nextLong() >> 2 : lastValue + random.nextInt(2_001) - 1_000;
+            data = DeltaCodec.append(data, nextAt - lastAt, nextValue - lastValue);
+            expected.add(new long[]{nextAt, nextValue});
+            lastAt = nextAt;
+            lastValue = nextValue;
+        }
+        List<long[]> decoded = new ArrayList<>();
+        DeltaCodec.decode(at, value, data, (t, v) -> decoded.add(new long[]{t, v}));
+        assertEquals(expected.size(), decoded.size());
+        for (int i = 0; i < expected.size(); i++) assertArrayEquals(expected.get(i), decoded.get(i), "point " + i);
+    }
+
+    @Test
+    void smallChangesTakeFewBytes() {
+        // A day later, 2 pounds cheaper: 3 bytes of seconds, 2 of pence
+        assertEquals(5, DeltaCodec.append(new byte[0], 86_400, -200).length);
+        assertEquals(2, DeltaCodec.append(new byte[0], 1, -1).length);
+    }
+
+    @Test
+    void zigzagKeepsSmallNegativesSmall() {
+        for (long v : new long[]{0, 1, -1, 63, -64, Long.MAX_VALUE, Long.MIN_VALUE}) {
+            assertEquals(v, DeltaCodec.unzigzag(DeltaCodec.zigzag(v)));
+        }
+        assertEquals(1, DeltaCodec.zigzag(-1));
+        assertEquals(2, DeltaCodec.zigzag(1));
+    }
+}
@@ -0,0 +1,113 @@
+package com.mkr.scraper.history;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.scrape.BulkWriter;
+import com.mkr.scraper.scrape.CatalogUpserter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({PriceHistory.class, CatalogUpserter.class, BulkWriter.class})
+@TestPropertySource(properties = "scraper.history.block-points=4")
+class PriceHistoryTest {
+    private static final Instant T0 = Instant.parse("2024-05-01T00:00:00Z");
+
+    @Autowired
+    PriceHistory history;
+    @Autowired
+    CatalogUpserter upserter;
+    @Autowired
+    HistoryBlockRepository blockRepository;
+
+    private static BookEntity book(String upc, String price, String availability) {
+        BookEntity b = new BookEntity();
+        b.setUpc(upc);
+        b.setTitle("Book " + upc);
+        b.setProductUrl("https://books.example/" + upc);
+        b.setPrice(new BigDecimal(price));
+        b.setPriceInclTax(new BigDecimal(price));
+        b.setAvailability(availability);
+        b.setNumberOfReviews(0);
+        return b;
+    }
+
+    private static Instant day(int n) {
+        return T0.plus(n, ChronoUnit.DAYS);
+    }
+
+    private static List<BigDecimal> values(BookHistory h, HistorySeries series) {
+        return h.series().getOrDefault(series, List.of()).stream().map(BookHistory.Point::value).toList();
+    }
+
+    @Test
+    void onlyChangesAreStored() {
+        for (int run = 0; run < 20; run++) {
+            upserter.upsertBooks(List.of(book("a", "10.00", "In stock (5 available)")));
+        }
+        // One block per series, each with its one point: twenty runs of the same values add nothing
+        List<HistoryBlockEntity> blocks = blockRepository.findAll();
+        assertEquals(HistorySeries.values().length, blocks.size());
+        assertTrue(blocks.stream().allMatch(b -> b.getPoints() == 1 && b.getDataBytes() == 0));
+
+        upserter.upsertBooks(List.of(book("a", "12.50", "In stock (5 available)")));
+        BookHistory h = history.history("a", Instant.EPOCH, Instant.now());
+        assertEquals(List.of(new BigDecimal("10.00"), new BigDecimal("12.50")), values(h, HistorySeries.PRICE));
+        assertEquals(List.of(new BigDecimal("5")), values(h, HistorySeries.AVAILABILITY));
+    }
+
+    @Test
+    void rangesStartWithTheValueInEffect() {
+        // 10 price changes over 10 days fill three blocks of up to 4 points
+        for (int d = 0; d < 10; d++) {
+            history.record(List.of(book("b", (10 + d) + ".00", "In stock (" + (20 - d) + " available)")), day(d));
+        }
+        assertEquals(3, blockRepository.findAll().stream().filter(x -> x.getSeries() == HistorySeries.PRICE).count());
+
+        BookHistory h = history.history("b", day(4).plusSeconds(3600), day(6));
+        // The day 4 price is in effect at from, then days 5 and 6
+        assertEquals(List.of(new BigDecimal("14.00"), new BigDecimal("15.00"), new BigDecimal("16.00")),
+                values(h, HistorySeries.PRICE));
+        assertEquals(day(4), h.series().get(HistorySeries.PRICE).get(0).at());
+        assertEquals(List.of(new BigDecimal("16"), new BigDecimal("15"), new BigDecimal("14")),
+                values(h, HistorySeries.AVAILABILITY));
+
+        // A range between two blocks: the earlier block's last point, from its columns
+        BookHistory boundary = history.history("b", day(3).plusSeconds(60), day(3).plusSeconds(120));
+        assertEquals(List.of(new BigDecimal("13.00")), values(boundary, HistorySeries.PRICE));
+        assertTrue(history.history("b", Instant.EPOCH, day(-1)).series().isEmpty());
+    }
+
+    @Test
+    void moversAreRankedByRelativeChange() {
+        history.record(List.of(book("up", "10.00", "In stock (1 available)"),
+                book("down", "40.00", "In stock (1 available)"), book("flat", "20.00", "In stock (1 available)"),
+                book("back", "30.00", "In stock (1 available)")), day(0));
+        history.record(List.of(book("up", "11.00", "In stock (1 available)"),
+                book("back", "33.00", "In stock (1 available)")), day(2));
+        history.record(List.of(book("up", "15.00", "In stock (1 available)"),
+                book("down", "30.00", "In stock (1 available)"), book("back", "30.00", "In stock (1 available)"),
+                book("late", "5.00", "In stock (1 available)")), day(5));
+
+        List<PriceHistory.Mover> movers = history.movers(HistorySeries.PRICE, day(1), 10);
+        // Back where it was and first seen after the date: no move
+        assertEquals(List.of("up", "down"), movers.stream().map(PriceHistory.Mover::upc).toList());
+        assertEquals(new BigDecimal("50.00"), movers.get(0).changePercent());
+        assertEquals(new BigDecimal("-10.00"), movers.get(1).change());
+
+        // Since a date inside up's block: decoded to find 11.00
+        PriceHistory.Mover up = history.movers(HistorySeries.PRICE, day(3), 1).get(0);
+        assertEquals("up", up.upc());
+        assertEquals(new BigDecimal("11.00"), up.from());
+        assertEquals(new BigDecimal("15.00"), up.to());
+    }
+}
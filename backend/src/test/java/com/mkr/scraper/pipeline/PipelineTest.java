@@ -0,0 +1,154 @@
+package com.mkr.scraper.pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineTest {
+
+    @Test
+    void orderedSinkSeesSourceOrderDespiteParallelStages() throws Exception {
+        List<Integer> written = new ArrayList<>();
+        Pipeline.Result result = Pipeline.<Integer>from("numbers", out -> {
+                    for (int i = 0; i < 500; i++) out.emit(i);
+                })
+                .then("slow", 8, 16, i -> {
+                    Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+                    return i % 10 == 0 ? null : i * 2; // null drops the item
+                })
+                .into("write", 16, 32, true, written::addAll)
+                .run();
+
+        assertTrue(result.complete());
+        assertEquals(450, written.size());
+        for (int i = 1; i < written.size(); i++) {
+            assertTrue(written.get(i - 1) < written.get(i), "out of order at " + i);
+        }
+        assertEquals(500, result.stages().get("slow").items());
+        assertEquals(450, result.stages().get("write").items());
+    }
+
+    @Test
+    void fullQueuesHoldTheSourceBack() throws Exception {
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        AtomicInteger maxAhead = new AtomicInteger();
+        Pipeline.<Integer>from("numbers", out -> {
+                    for (int i = 0; i < 200; i++) {
+                        out.emit(i);
+                        maxAhead.accumulateAndGet(emitted.incrementAndGet() - written.get(), Math::max);
+                    }
+                })
+                .then("pass", 1, 4, i -> i)
+                .into("write", 4, 1, false, batch -> {
+                    Thread.sleep(2);
+                    written.addAndGet(batch.size());
+                })
+                .run();
+
+        assertEquals(200, written.get());
+        // Two queues of 4 plus one item in each stage is all that can be in flight
+        assertTrue(maxAhead.get() <= 12, "source ran " + maxAhead.get() + " items ahead");
+    }
+
+    @Test
+    void stuckItemHoldsAnOrderedSourceToItsWindow() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        Pipeline pipeline = Pipeline.<Integer>from("numbers", out -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        out.emit(i);
+                        emitted.incrementAndGet();
+                    }
+                })
+                .then("fetch", 8, 8, i -> {
+                    if (i == 0) release.await(); // one slow product page
+                    return i;
+                })
+                .into("write", 8, 10, true, batch -> written.addAndGet(batch.size()));
+
+        Thread runner = Thread.ofVirtual().start(() -> {
+            try {
+                pipeline.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        Thread.sleep(300);
+        // Everything behind item 0 waits in the reorder buffer, so the source may only run a window ahead
+        assertTrue(emitted.get() <= pipeline.reorderWindow(),
+                emitted.get() + " emitted with a window of " + pipeline.reorderWindow());
+        assertEquals(0, written.get());
+
+        release.countDown();
+        runner.join();
+        assertEquals(10_000, written.get());
+    }
+
+    @Test
+    void runsOnlyOnce() throws Exception {
+        Pipeline pipeline = Pipeline.<Integer>from("numbers", out -> out.emit(1))
+                .then("pass", 1, 1, i -> i)
+                .into("write", 1, 1, true, batch -> {});
+        pipeline.run();
+
+        assertThrows(IllegalStateException.class, pipeline::run);
+        assertEquals(List.of("pass", "write"), List.copyOf(pipeline.queueDepths().keySet()));
+    }
+
+    @Test
+    void stageFailureAbortsTheRun() {
+        Pipeline pipeline = Pipeline.<Integer>from("numbers", out -> {
+                    for (int i = 0; ; i++) {
+                        if (!out.emit(i)) return;
+                    }
+                })
+                .then("boom", 2, 4, i -> {
+                    if (i == 42) throw new IOException("bad page");
+                    return i;
+                })
+                .into("write", 4, 10, false, batch -> {});
+
+        IOException e = assertThrows(IOException.class, pipeline::run);
+        assertEquals("bad page", e.getMessage());
+    }
+
+    @Test
+    void requestStopDrainsWhatWasEmitted() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger emitted = new AtomicInteger();
+        AtomicInteger written = new AtomicInteger();
+        Pipeline pipeline = Pipeline.<Integer>from("endless", out -> {
+                    for (int i = 0; out.emit(i); i++) {
+                        emitted.incrementAndGet();
+                        started.countDown();
+                    }
+                })
+                .then("pass", 2, 8, i -> i)
+                .into("write", 8, 5, true, batch -> written.addAndGet(batch.size()));
+
+        Thread stopper = new Thread(() -> {
+            try {
+                started.await();
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            }
+            pipeline.requestStop();
+        });
+        stopper.start();
+        Pipeline.Result result = pipeline.run();
+        stopper.join();
+
+        assertFalse(result.complete());
+        assertEquals(emitted.get(), written.get(), "every emitted item must reach the sink");
+    }
+}
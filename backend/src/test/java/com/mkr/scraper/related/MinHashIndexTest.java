@@ -0,0 +1,81 @@
+package com.mkr.scraper.related;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.snapshot.BookTable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashIndexTest {
+
+    private static Set<String> words(int from, int to) {
+        Set<String> words = new HashSet<>();
+        for (int i = from; i < to; i++) words.add("w" + i);
+        return words;
+    }
+
+    @Test
+    void estimatesJaccardSimilarity() {
+        // |A ∩ B| = 50, |A ∪ B| = 150
+        int[] a = MinHashIndex.signature(words(0, 100));
+        int[] b = MinHashIndex.signature(words(50, 150));
+        assertEquals(1f / 3, MinHashIndex.similarity(a, b), 0.12f);
+        assertEquals(1f, MinHashIndex.similarity(a, MinHashIndex.signature(words(0, 100))));
+        assertNull(MinHashIndex.signature(Set.of()));
+    }
+
+    @Test
+    void findsNearDuplicatesAmongUnrelatedDocuments() {
+        Random random = new Random(7);
+        List<Set<String>> docs = new ArrayList<>();
+        for (int cluster = 0; cluster < 50; cluster++) {
+            // Four variants of each cluster's 40 words, each with 5 words swapped for random ones
+            for (int variant = 0; variant < 4; variant++) {
+                Set<String> doc = words(cluster * 1000, cluster * 1000 + 35);
+                for (int i = 0; i < 5; i++) doc.add("noise" + random.nextInt(1_000_000));
+                docs.add(doc);
+            }
+        }
+        int[][] signatures = docs.stream().map(MinHashIndex::signature).toArray(int[][]::new);
+        MinHashIndex index = MinHashIndex.build(signatures, 3);
+        for (int doc = 0; doc < docs.size(); doc++) {
+            int[] neighbours = index.neighbours(doc);
+            assertEquals(3, neighbours.length, "doc " + doc);
+            for (int n : neighbours) assertEquals(doc / 4, n / 4, "doc " + doc + " related to " + n);
+            float[] similarities = index.similarities(doc);
+            for (int i = 1; i < similarities.length; i++) assertTrue(similarities[i - 1] >= similarities[i]);
+        }
+    }
+
+    @Test
+    void documentsWithoutFeaturesRelateToNothing() {
+        int[][] signatures = {MinHashIndex.signature(words(0, 10)), null, MinHashIndex.signature(words(0, 10))};
+        MinHashIndex index = MinHashIndex.build(signatures, 5);
+        assertArrayEquals(new int[]{2}, index.neighbours(0));
+        assertArrayEquals(new int[0], index.neighbours(1));
+        assertEquals(1f, index.similarities(2)[0]);
+    }
+
+    @Test
+    void sharedCategoryOutweighsASharedWord() {
+        BookTable books = BookTable.of(List.of(
+                book(1, "Quiet Rivers", "Poetry"), book(2, "Falling Leaves", "Poetry"), book(3, "Quiet Murders", "Mystery")));
+        int[] a = MinHashIndex.signature(RelatedItemsService.bookFeatures(books, 0));
+        assertTrue(MinHashIndex.similarity(a, MinHashIndex.signature(RelatedItemsService.bookFeatures(books, 1)))
+                > MinHashIndex.similarity(a, MinHashIndex.signature(RelatedItemsService.bookFeatures(books, 2))));
+    }
+
+    private static BookEntity book(long id, String title, String category) {
+        BookEntity b = new BookEntity();
+        b.setId(id);
+        b.setTitle(title);
+        b.setCategory(category);
+        return b;
+    }
+}
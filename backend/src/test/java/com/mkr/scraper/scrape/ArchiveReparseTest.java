@@ -0,0 +1,87 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.archive.PageArchive;
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.quote.QuoteRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Crawls the simulator with the archive on, shuts the site down, then rebuilds lost fields from the archive alone
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:reparsetest;DB_CLOSE_DELAY=-1",
+        "scraper.initial-scrape.enabled=false",
+        "scraper.fetch.requests-per-second=0",
+        "scraper.fetch.max-retries=0",
+        "scraper.archive.enabled=true"
+})
+class ArchiveReparseTest {
+    private static final SiteSimulator site = start();
+    private static final Path archiveDir = tempDir();
+
+    @Autowired
+    ScrapeService scrapeService;
+    @Autowired
+    PageArchive pageArchive;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    QuoteRepository quoteRepository;
+    @Autowired
+    JdbcTemplate jdbc;
+
+    private static SiteSimulator start() {
+        try {
+            return SiteSimulator.builder().books(45).quotes(25).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path tempDir() {
+        try {
+            return Files.createTempDirectory("page-archive");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void sites(DynamicPropertyRegistry registry) {
+        registry.add("scraper.books.base-url", site::booksUrl);
+        registry.add("scraper.quotes.base-url", site::quotesUrl);
+        registry.add("scraper.archive.dir", archiveDir::toString);
+    }
+
+    @Test
+    void reparseRebuildsFieldsWithoutTheNetwork() throws Exception {
+        scrapeService.scrapeBooks();
+        scrapeService.scrapeQuotes();
+        // 3 book listings + 45 products, 3 quote listings
+        assertEquals(51, pageArchive.size());
+        site.close();
+
+        // As if the category had been added after the crawl
+        jdbc.update("update books set category = null, content_hash = null");
+
+        scrapeService.reparseFromArchive();
+        List<BookEntity> books = bookRepository.findByRemovedAtIsNullOrderByIdAsc();
+        assertEquals(site.books(), books.size());
+        for (int i = 0; i < books.size(); i++) {
+            assertEquals(SiteSimulator.book(i).category(), books.get(i).getCategory());
+        }
+        assertEquals(site.quotes(), quoteRepository.findByRemovedAtIsNullOrderByIdAsc().size());
+    }
+}
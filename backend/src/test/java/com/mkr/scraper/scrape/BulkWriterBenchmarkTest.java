@@ -0,0 +1,143 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.quote.QuoteEntity;
+import com.mkr.scraper.quote.QuoteRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the old persistence path (saveAll with JDBC batching off, one statement per row, everything kept in
+ * the persistence context) with {@link BulkWriter}. Both use the pooled-sequence ids, so this measures batching
+ * and context size, not the IDENTITY mapping the entities had before. Both paths are warmed up first, then
+ * alternate which one goes first in each measured round; the median round is reported. Run with
+ * {@code mvn test -Pbenchmark}; tune with {@code -Dbench.rows=}, {@code -Dbench.warmup=} and
+ * {@code -Dbench.rounds=}.
+ */
+@Tag("benchmark")
+@DataJpaTest
+@Import(BulkWriter.class)
+class BulkWriterBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("bench.rows", 20_000);
+    private static final int WARMUP = Integer.getInteger("bench.warmup", 2);
+    private static final int ROUNDS = Integer.getInteger("bench.rounds", 5);
+
+    @Autowired
+    BulkWriter bulkWriter;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    QuoteRepository quoteRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    @Test
+    void saveAllVersusBulkWriter() {
+        for (int i = 0; i < WARMUP; i++) {
+            saveAll();
+            bulkWriter();
+        }
+        long[] baseline = new long[ROUNDS];
+        long[] bulk = new long[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            // Alternate the order so neither path always runs on a heap the other one just filled
+            if (i % 2 == 0) {
+                baseline[i] = saveAll();
+                bulk[i] = bulkWriter();
+            } else {
+                bulk[i] = bulkWriter();
+                baseline[i] = saveAll();
+            }
+        }
+        long baselineNanos = median(baseline);
+        long bulkNanos = median(bulk);
+
+        System.out.printf("Persisting %d books + %d quotes (3 tags each), median of %d rounds after %d warmup:%n",
+                ROWS, ROWS, ROUNDS, WARMUP);
+        System.out.printf("  saveAll    %6d ms  %8.0f rows/s%n", baselineNanos / 1_000_000, rate(baselineNanos));
+        System.out.printf("  BulkWriter %6d ms  %8.0f rows/s  (%.1fx)%n", bulkNanos / 1_000_000, rate(bulkNanos),
+                (double) baselineNanos / bulkNanos);
+    }
+
+    private long saveAll() {
+        long nanos = time(() -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(1);
+            bookRepository.saveAll(books(ROWS));
+            quoteRepository.saveAll(quotes(ROWS));
+            entityManager.flush();
+            entityManager.unwrap(Session.class).setJdbcBatchSize(null);
+        });
+        reset();
+        return nanos;
+    }
+
+    private long bulkWriter() {
+        long nanos = time(() -> {
+            bulkWriter.insert(books(ROWS));
+            bulkWriter.insert(quotes(ROWS));
+        });
+        assertEquals(ROWS, bookRepository.count());
+        reset();
+        return nanos;
+    }
+
+    private void reset() {
+        entityManager.clear();
+        bookRepository.deleteAllInBatch();
+        quoteRepository.deleteAllInBatch();
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static double rate(long nanos) {
+        return 2.0 * ROWS / (nanos / 1e9);
+    }
+
+    private static long time(Runnable r) {
+        long start = System.nanoTime();
+        r.run();
+        return System.nanoTime() - start;
+    }
+
+    private static List<BookEntity> books(int n) {
+        List<BookEntity> books = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            BookEntity b = new BookEntity();
+            b.setTitle("Book " + i);
+            b.setUpc(Integer.toHexString(i));
+            b.setPrice(new BigDecimal("10.00").add(BigDecimal.valueOf(i % 100)));
+            b.setDescription("Description of book " + i);
+            books.add(b);
+        }
+        return books;
+    }
+
+    private static List<QuoteEntity> quotes(int n) {
+        List<QuoteEntity> quotes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            QuoteEntity q = new QuoteEntity();
+            q.setText("Quote " + i);
+            q.setAuthor("Author " + (i % 50));
+            q.setTags(List.of("tag" + (i % 7), "tag" + (i % 11), "tag" + (i % 13)));
+            quotes.add(q);
+        }
+        return quotes;
+    }
+}
@@ -0,0 +1,107 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.history.PriceHistory;
+import com.mkr.scraper.quote.QuoteEntity;
+import com.mkr.scraper.quote.QuoteRepository;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({CatalogUpserter.class, BulkWriter.class, PriceHistory.class})
+class CatalogUpserterTest {
+    @Autowired
+    CatalogUpserter upserter;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    QuoteRepository quoteRepository;
+    @Autowired
+    EntityManager entityManager;
+
+    private static BookEntity book(String upc, String title, String price) {
+        BookEntity b = new BookEntity();
+        b.setUpc(upc);
+        b.setTitle(title);
+        b.setPrice(new BigDecimal(price));
+        b.setProductUrl("https://books.example/" + upc);
+        return b;
+    }
+
+    private static QuoteEntity quote(String text, String author, String... tags) {
+        QuoteEntity q = new QuoteEntity();
+        q.setText(text);
+        q.setAuthor(author);
+        q.setTags(List.of(tags));
+        return q;
+    }
+
+    @Test
+    void booksAreMatchedByUpcAndOnlyChangesAreWritten() {
+        CatalogUpserter.Result first = upserter.upsertBooks(List.of(book("a", "Alpha", "10.00"), book("b", "Beta", "20.00")));
+        assertEquals(new CatalogUpserter.Result(2, 0, 0, 0), first);
+        Long alphaId = bookRepository.findByRemovedAtIsNullOrderByIdAsc().get(0).getId();
+
+        CatalogUpserter.Result same = upserter.upsertBooks(List.of(book("a", "Alpha", "10.00"), book("b", "Beta", "20.00")));
+        assertEquals(new CatalogUpserter.Result(0, 0, 2, 0), same);
+        assertFalse(same.hasChanges());
+
+        CatalogUpserter.Result changed = upserter.upsertBooks(List.of(book("a", "Alpha", "12.50")));
+        assertEquals(new CatalogUpserter.Result(0, 1, 0, 1), changed);
+
+        List<BookEntity> live = bookRepository.findByRemovedAtIsNullOrderByIdAsc();
+        assertEquals(1, live.size());
+        assertEquals(alphaId, live.get(0).getId(), "id must survive updates");
+        assertEquals(0, new BigDecimal("12.50").compareTo(live.get(0).getPrice()));
+        assertEquals(2, bookRepository.count(), "vanished book is tombstoned, not deleted");
+
+        CatalogUpserter.Result back = upserter.upsertBooks(List.of(book("a", "Alpha", "12.50"), book("b", "Beta", "20.00")));
+        assertEquals(new CatalogUpserter.Result(0, 1, 1, 0), back);
+        assertEquals(2, bookRepository.findByRemovedAtIsNullOrderByIdAsc().size());
+    }
+
+    @Test
+    void unchangedRowsAreNeverHydrated() {
+        upserter.upsertBooks(List.of(book("a", "Alpha", "10.00"), book("b", "Beta", "20.00"), book("c", "Gamma", "30.00")));
+        upserter.upsertQuotes(List.of(quote("Be yourself.", "Oscar Wilde", "life")));
+        entityManager.flush();
+        entityManager.clear();
+        Statistics stats = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+
+        upserter.upsertBooks(List.of(book("a", "Alpha", "10.00"), book("b", "Beta", "20.00"), book("c", "Gamma", "30.00")));
+        upserter.upsertQuotes(List.of(quote("Be yourself.", "Oscar Wilde", "life")));
+        entityManager.flush();
+        assertEquals(0, stats.getEntityLoadCount(), "a run without changes only reads key columns");
+        assertEquals(0, stats.getEntityUpdateCount());
+
+        upserter.upsertBooks(List.of(book("a", "Alpha", "10.00"), book("b", "Beta", "22.00"), book("c", "Gamma", "30.00")));
+        entityManager.flush();
+        EntityStatistics books = stats.getEntityStatistics(BookEntity.class.getName());
+        assertEquals(1, books.getLoadCount(), "only the changed book is loaded");
+        assertEquals(1, books.getUpdateCount());
+    }
+
+    @Test
+    void quotesAreKeyedByTextAndAuthor() {
+        upserter.upsertQuotes(List.of(quote("Be yourself.", "Oscar Wilde", "life")));
+        CatalogUpserter.Result retagged = upserter.upsertQuotes(List.of(quote("Be yourself.", "Oscar Wilde", "life", "humor")));
+        assertEquals(new CatalogUpserter.Result(0, 1, 0, 0), retagged);
+
+        CatalogUpserter.Result reworded = upserter.upsertQuotes(List.of(quote("Be yourself!", "Oscar Wilde", "life", "humor")));
+        assertEquals(new CatalogUpserter.Result(1, 0, 0, 1), reworded);
+        assertEquals(1, quoteRepository.findByRemovedAtIsNullOrderByIdAsc().size());
+    }
+}
@@ -0,0 +1,158 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.archive.PageArchive;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A stub server instead of the SiteSimulator, which sends no validators
+@DataJpaTest
+class ChangeTrackerTest {
+    private static final byte[] VALIDATED = "<html><title>validated</title></html>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] STATIC = "<html><title>static</title></html>".getBytes(StandardCharsets.UTF_8);
+
+    @Autowired
+    PageStateRepository pageStateRepository;
+    @TempDir
+    Path archiveDir;
+    private HttpServer server;
+    private PageFetcher fetcher;
+    private ChangeTracker tracker;
+    private String base;
+    private final AtomicInteger conditionalRequests = new AtomicInteger();
+    private final AtomicInteger edits = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        // ETag and Last-Modified, answers 304 when either matches
+        server.createContext("/validated", exchange -> {
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            String since = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+            if (etag != null || since != null) conditionalRequests.incrementAndGet();
+            if ("\"v1\"".equals(etag) || "Wed, 21 Oct 2026 07:28:00 GMT".equals(since)) {
+                send(exchange, 304, new byte[0]);
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2026 07:28:00 GMT");
+            send(exchange, 200, VALIDATED);
+        });
+        // No validators: always a full 200 with the same body
+        server.createContext("/static", exchange -> send(exchange, 200, STATIC));
+        // No validators, and the body changes whenever the test edits it
+        server.createContext("/edited", exchange -> send(exchange, 200,
+                ("<html><title>edit " + edits.get() + "</title></html>").getBytes(StandardCharsets.UTF_8)));
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = new PageFetcher(HttpClient.newHttpClient(), new HostThrottle(4, 0, 1),
+                Duration.ofSeconds(5), 0, 1, 5);
+        tracker = new ChangeTracker(fetcher, pageStateRepository, new PageArchive(false, archiveDir),
+                new RecrawlPolicy(Duration.ofMinutes(15), Duration.ofDays(7), Duration.ofHours(6)));
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        fetcher.close();
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void firstVisitDownloadsAndParsesEveryPage() throws IOException {
+        ChangeTracker.Session session = tracker.begin(base);
+        assertTrue(session.fetch(base + "/validated", true).changed());
+        assertTrue(session.fetch(base + "/static", true).changed());
+        session.commit();
+
+        assertEquals(new ChangeTracker.Summary(2, 0, 0, 0, 0), session.summary());
+        assertEquals(0, conditionalRequests.get(), "nothing to revalidate against yet");
+        PageStateEntity state = pageStateRepository.findByUrlStartingWith(base + "/validated").getFirst();
+        assertEquals("\"v1\"", state.getEtag());
+        assertEquals("Wed, 21 Oct 2026 07:28:00 GMT", state.getLastModified());
+        assertEquals(VALIDATED.length, state.getBodyBytes());
+    }
+
+    @Test
+    void notModifiedSkipsTheParseAndCountsTheBytesNotDownloaded() throws IOException {
+        visit("/validated");
+
+        ChangeTracker.Session session = tracker.begin(base);
+        ChangeTracker.TrackedPage page = session.fetch(base + "/validated", true);
+        assertFalse(page.changed());
+        assertNull(page.page());
+        assertEquals(1, conditionalRequests.get());
+        assertEquals(new ChangeTracker.Summary(0, 1, 0, 1, VALIDATED.length), session.summary());
+    }
+
+    @Test
+    void sameDigestSkipsTheParseButSavesNoBytes() throws IOException {
+        visit("/static");
+
+        ChangeTracker.Session session = tracker.begin(base);
+        assertFalse(session.fetch(base + "/static", true).changed());
+        // The body was downloaded again, so nothing was saved on the wire
+        assertEquals(new ChangeTracker.Summary(0, 0, 1, 1, 0), session.summary());
+    }
+
+    @Test
+    void changedBodyIsParsed() throws IOException {
+        visit("/edited");
+        edits.incrementAndGet();
+
+        ChangeTracker.Session session = tracker.begin(base);
+        ChangeTracker.TrackedPage page = session.fetch(base + "/edited", true);
+        assertTrue(page.changed());
+        assertEquals("edit 1", page.document().title());
+        assertEquals(new ChangeTracker.Summary(1, 0, 0, 0, 0), session.summary());
+    }
+
+    @Test
+    void withoutRevalidateKnownPagesAreDownloadedAndParsed() throws IOException {
+        visit("/validated");
+        visit("/static");
+
+        ChangeTracker.Session session = tracker.begin(base);
+        assertTrue(session.fetch(base + "/validated", false).changed());
+        assertTrue(session.fetch(base + "/static", false).changed());
+        assertEquals(0, conditionalRequests.get(), "no validators are sent");
+        assertEquals(new ChangeTracker.Summary(2, 0, 0, 0, 0), session.summary());
+    }
+
+    @Test
+    void uncommittedStatesAreNotRemembered() throws IOException {
+        tracker.begin(base).fetch(base + "/validated", true);
+
+        ChangeTracker.Session session = tracker.begin(base);
+        assertTrue(session.fetch(base + "/validated", true).changed());
+        assertEquals(0, conditionalRequests.get());
+    }
+
+    private void visit(String path) throws IOException {
+        ChangeTracker.Session session = tracker.begin(base);
+        session.fetch(base + path, true);
+        session.commit();
+    }
+}
@@ -0,0 +1,131 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.quote.QuoteRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Full {@code scrapeBooks} and {@code scrapeQuotes} runs against the local {@link SiteSimulator}, cold (empty
+ * database) and then warm (nothing changed), reporting pages/s, items/s, fetch latency percentiles and peak heap.
+ * Run with {@code mvn test -Pbenchmark -Dtest=CrawlBenchmarkTest}; the site is shaped with
+ * {@code -Dbench.books=}, {@code -Dbench.quotes=}, {@code -Dbench.latency-ms=}, {@code -Dbench.jitter-ms=},
+ * {@code -Dbench.error-rate=}, {@code -Dbench.slow-rate=} and {@code -Dbench.slow-ms=}. Per-host politeness is
+ * off so the numbers measure the crawler, not the rate limit.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:crawlbench;DB_CLOSE_DELAY=-1",
+        "scraper.initial-scrape.enabled=false",
+        "scraper.fetch.requests-per-second=0",
+        "scraper.fetch.max-concurrent-per-host=64",
+        "scraper.fetch.backoff-base-ms=5",
+        "scraper.fetch.backoff-max-ms=50",
+        "scraper.pipeline.fetch-parallelism=32"
+})
+class CrawlBenchmarkTest {
+    private static final SiteSimulator site = start();
+
+    @Autowired
+    ScrapeService scrapeService;
+    @Autowired
+    PageFetcher pageFetcher;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    QuoteRepository quoteRepository;
+
+    private static SiteSimulator start() {
+        try {
+            return SiteSimulator.builder()
+                    .books(Integer.getInteger("bench.books", 10_000))
+                    .quotes(Integer.getInteger("bench.quotes", 10_000))
+                    .latency(Duration.ofMillis(Long.getLong("bench.latency-ms", 5)),
+                            Duration.ofMillis(Long.getLong("bench.jitter-ms", 5)))
+                    .errorRate(Double.parseDouble(System.getProperty("bench.error-rate", "0")))
+                    .slowPages(Double.parseDouble(System.getProperty("bench.slow-rate", "0")),
+                            Duration.ofMillis(Long.getLong("bench.slow-ms", 500)))
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void sites(DynamicPropertyRegistry registry) {
+        registry.add("scraper.books.base-url", site::booksUrl);
+        registry.add("scraper.quotes.base-url", site::quotesUrl);
+    }
+
+    @AfterAll
+    static void stop() {
+        site.close();
+    }
+
+    @Test
+    void crawlSimulatedSites() throws Exception {
+        System.out.printf("Crawling %d books + %d quotes, latency %s ms + up to %s ms, error rate %s, slow pages %s%n",
+                site.books(), site.quotes(), Long.getLong("bench.latency-ms", 5), Long.getLong("bench.jitter-ms", 5),
+                System.getProperty("bench.error-rate", "0"), System.getProperty("bench.slow-rate", "0"));
+        System.out.printf("  %-12s %8s %8s %10s %10s %9s %9s %10s%n",
+                "run", "ms", "pages", "pages/s", "items/s", "p50 ms", "p99 ms", "heap MB");
+
+        measure("books cold", site.books(), scrapeService::scrapeBooks);
+        assertEquals(site.books(), bookRepository.count());
+        measure("books warm", site.books(), scrapeService::scrapeBooks);
+        measure("quotes cold", site.quotes(), scrapeService::scrapeQuotes);
+        assertEquals(site.quotes(), quoteRepository.count());
+        measure("quotes warm", site.quotes(), scrapeService::scrapeQuotes);
+        System.out.printf("  %d pages served, %d errors injected%n", site.pagesServed(), site.errorsInjected());
+    }
+
+    private void measure(String label, int items, Crawl crawl) throws Exception {
+        System.gc();
+        resetPeakHeap();
+        FetchStats.Snapshot before = pageFetcher.stats().snapshot();
+        long pagesBefore = site.pagesServed();
+        long start = System.nanoTime();
+        crawl.run();
+        long nanos = System.nanoTime() - start;
+        FetchStats.Snapshot fetched = pageFetcher.stats().snapshot().minus(before);
+        long pages = site.pagesServed() - pagesBefore;
+        double seconds = nanos / 1e9;
+        System.out.printf("  %-12s %8d %8d %10.0f %10.0f %9.1f %9.1f %10d%n", label, nanos / 1_000_000, pages,
+                pages / seconds, items / seconds, fetched.latencies().percentileMillis(0.5),
+                fetched.latencies().percentileMillis(0.99), peakHeapBytes() / (1024 * 1024));
+    }
+
+    private static void resetPeakHeap() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    // Sum of per-pool peaks: an upper bound, the pools need not peak at the same moment
+    private static long peakHeapBytes() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    @FunctionalInterface
+    private interface Crawl {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,107 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.quote.QuoteRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Stops a crawl half-way like a redeploy would, then checks the next run resumes instead of starting over
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:resumetest;DB_CLOSE_DELAY=-1",
+        "scraper.initial-scrape.enabled=false",
+        "scraper.fetch.requests-per-second=0",
+        "scraper.pipeline.queue-capacity=4",
+        "scraper.pipeline.fetch-parallelism=2",
+        "scraper.pipeline.write-batch-size=10"
+})
+class CrawlResumeTest {
+    private static final SiteSimulator site = start();
+
+    @Autowired
+    ScrapeService scrapeService;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    QuoteRepository quoteRepository;
+    @Autowired
+    FrontierRepository frontierRepository;
+
+    private static SiteSimulator start() {
+        try {
+            return SiteSimulator.builder().books(200).quotes(300)
+                    .latency(Duration.ofMillis(3), Duration.ZERO)
+                    .trackPaths()
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void sites(DynamicPropertyRegistry registry) {
+        registry.add("scraper.books.base-url", site::booksUrl);
+        registry.add("scraper.quotes.base-url", site::quotesUrl);
+    }
+
+    @AfterAll
+    static void stop() {
+        site.close();
+    }
+
+    @Test
+    void interruptedCrawlsResumeWithoutRefetching() throws Exception {
+        stopPartWay(scrapeService::scrapeBooks, bookRepository::count);
+        long storedBooks = bookRepository.count();
+        assertTrue(storedBooks > 0 && storedBooks < site.books(), "stopped part-way, stored " + storedBooks);
+        assertFalse(frontierRepository.findByCatalogue("books").isEmpty(), "frontier kept for the next run");
+
+        scrapeService.scrapeBooks();
+        assertEquals(site.books(), bookRepository.findByRemovedAtIsNullOrderByIdAsc().size());
+        assertEquals(List.of(), site.pathsServedMoreThanOnce(), "completed pages are never fetched again");
+        assertTrue(frontierRepository.findByCatalogue("books").isEmpty(), "frontier deleted once complete");
+
+        stopPartWay(scrapeService::scrapeQuotes, quoteRepository::count);
+        long storedQuotes = quoteRepository.count();
+        assertTrue(storedQuotes > 0 && storedQuotes < site.quotes(), "stopped part-way, stored " + storedQuotes);
+
+        scrapeService.scrapeQuotes();
+        assertEquals(site.quotes(), quoteRepository.findByRemovedAtIsNullOrderByIdAsc().size());
+        // Only the listing page the stop landed on can be read twice, its quotes were partly written
+        assertTrue(site.pathsServedMoreThanOnce().size() <= 1, "refetched " + site.pathsServedMoreThanOnce());
+        assertTrue(frontierRepository.findByCatalogue("quotes").isEmpty());
+    }
+
+    private void stopPartWay(Crawl crawl, LongSupplier stored) throws Exception {
+        CompletableFuture<Void> run = CompletableFuture.runAsync(() -> {
+            try {
+                crawl.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (stored.getAsLong() < 20 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        scrapeService.drain();
+        run.get();
+    }
+
+    @FunctionalInterface
+    private interface Crawl {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,80 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A product page failing in the same run as its listing entry changed, with change tracking on both pages
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:failedproducttest;DB_CLOSE_DELAY=-1",
+        "scraper.initial-scrape.enabled=false",
+        "scraper.recrawl.enabled=false",
+        "scraper.fetch.requests-per-second=0",
+        "scraper.fetch.max-retries=0"
+})
+class FailedProductPageTest {
+    private static final SiteSimulator site = start();
+
+    @Autowired
+    ScrapeService scrapeService;
+    @Autowired
+    BookRepository bookRepository;
+
+    private static SiteSimulator start() {
+        try {
+            return SiteSimulator.builder().books(25).quotes(10).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void sites(DynamicPropertyRegistry registry) {
+        registry.add("scraper.books.base-url", site::booksUrl);
+        registry.add("scraper.quotes.base-url", site::quotesUrl);
+    }
+
+    @AfterAll
+    static void stop() {
+        site.close();
+    }
+
+    @Test
+    void listingChangesSurviveAFailedProductPage() throws Exception {
+        scrapeService.scrapeBooks();
+        BookEntity stored = book(site.productUrl(11));
+
+        site.reprice(11, "42.00");
+        site.failProductPage(11, true);
+        scrapeService.scrapeBooks();
+        BookEntity failed = book(site.productUrl(11));
+        assertEquals(0, new BigDecimal("42.00").compareTo(failed.getPrice()), "The listing's new price is stored");
+        assertEquals(stored.getUpc(), failed.getUpc(), "Product details are kept");
+        assertEquals(0, stored.getPriceInclTax().compareTo(failed.getPriceInclTax()));
+        assertNotEquals(stored.getContentHash(), failed.getContentHash());
+
+        // The listing page is unchanged now, so its books are carried over from the database: the new price has to
+        // be there already. The product page changed since it was last downloaded and fills in the rest
+        site.failProductPage(11, false);
+        scrapeService.scrapeBooks();
+        BookEntity recovered = book(site.productUrl(11));
+        assertEquals(0, new BigDecimal("42.00").compareTo(recovered.getPrice()));
+        assertEquals(0, new BigDecimal("42.00").compareTo(recovered.getPriceInclTax()));
+    }
+
+    private BookEntity book(String productUrl) {
+        return bookRepository.findByRemovedAtIsNullOrderByIdAsc().stream()
+                .filter(b -> b.getProductUrl().equals(productUrl)).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,126 @@
+package com.mkr.scraper.scrape;
+
+import com.sun.net.httpserver.HttpServer;
+import org.jsoup.HttpStatusException;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageFetcherTest {
+    private HttpServer server;
+    private PageFetcher fetcher;
+    private String base;
+    private final AtomicInteger flakyCalls = new AtomicInteger();
+    private final AtomicInteger missingCalls = new AtomicInteger();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/gzip", exchange -> {
+            byte[] html = "<html><head><title>Zipped</title></head><body><p>čćž</p></body></html>"
+                    .getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            try (GZIPOutputStream gz = new GZIPOutputStream(buf)) {
+                gz.write(html);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            send(exchange, 200, buf.toByteArray());
+        });
+        server.createContext("/flaky", exchange -> {
+            if (flakyCalls.incrementAndGet() < 3) {
+                send(exchange, 503, new byte[0]);
+            } else {
+                send(exchange, 200, "<html><title>ok</title></html>".getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        server.createContext("/missing", exchange -> {
+            missingCalls.incrementAndGet();
+            send(exchange, 404, new byte[0]);
+        });
+        server.createContext("/etag", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                send(exchange, 304, new byte[0]);
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Last-Modified", "Wed, 21 Oct 2026 07:28:00 GMT");
+            send(exchange, 200, "<html><title>v1</title></html>".getBytes(StandardCharsets.UTF_8));
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetcher = new PageFetcher(HttpClient.newHttpClient(), new HostThrottle(4, 0, 1),
+                Duration.ofSeconds(5), 3, 1, 5);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+        fetcher.close();
+    }
+
+    private static void send(com.sun.net.httpserver.HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Test
+    void decodesGzipAndCharset() throws Exception {
+        Document doc = fetcher.fetch(base + "/gzip");
+        assertEquals("Zipped", doc.title());
+        assertEquals("čćž", doc.selectFirst("p").text());
+        assertEquals(base + "/gzip", doc.location());
+    }
+
+    @Test
+    void retriesServerErrorsThenSucceeds() throws Exception {
+        Document doc = fetcher.fetch(base + "/flaky");
+        assertEquals("ok", doc.title());
+        assertEquals(3, flakyCalls.get());
+        assertEquals(2, fetcher.stats().snapshot().retries());
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        HttpStatusException e = assertThrows(HttpStatusException.class, () -> fetcher.fetch(base + "/missing"));
+        assertEquals(404, e.getStatusCode());
+        assertEquals(1, missingCalls.get());
+        assertEquals(1, fetcher.stats().snapshot().failures());
+    }
+
+    @Test
+    void conditionalGetReturnsNotModified() throws Exception {
+        PageFetcher.FetchedPage first = fetcher.fetchPage(base + "/etag");
+        assertEquals(200, first.status());
+        assertEquals("\"v1\"", first.etag());
+        assertEquals("Wed, 21 Oct 2026 07:28:00 GMT", first.lastModified());
+
+        PageFetcher.FetchedPage second = fetcher.fetchPage(base + "/etag", first.etag(), first.lastModified());
+        assertTrue(second.notModified());
+        assertEquals(0, second.body().length);
+    }
+
+    @Test
+    void recordsBytesAndLatency() throws Exception {
+        fetcher.fetch(base + "/gzip");
+        FetchStats.Snapshot s = fetcher.stats().snapshot();
+        assertEquals(1, s.requests());
+        assertTrue(s.bytes() > 0);
+        assertTrue(s.latencyNanos() > 0);
+    }
+}
@@ -0,0 +1,110 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: per-page detail extraction on the fixture product page, the original eight {@code tr:contains(...)}
+ * queries with regex price cleanup against {@link ProductPageExtractor}. Parsing the HTML is done once in setup
+ * and not measured. The GC profiler reports allocation per call ({@code gc.alloc.rate.norm}).
+ * Run with {@code mvn test -Pbenchmark -Dtest=ProductPageExtractorBenchmarkTest}.
+ */
+@Tag("benchmark")
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductPageExtractorBenchmarkTest {
+    private Document page;
+
+    @Setup
+    public void load() throws IOException {
+        page = ProductPageExtractorTest.fixture();
+    }
+
+    @Benchmark
+    public BookEntity selectorPerField() {
+        BookEntity book = new BookEntity();
+        selectorPerField(page, book);
+        return book;
+    }
+
+    @Benchmark
+    public BookEntity singlePass() {
+        BookEntity book = new BookEntity();
+        ProductPageExtractor.apply(page, book);
+        return book;
+    }
+
+    @Test
+    void run() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(getClass().getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+
+    // The extraction ScrapeService used before ProductPageExtractor, kept as the baseline
+    private static void selectorPerField(Document pd, BookEntity book) {
+        Element breadcrumbCat = pd.selectFirst("ul.breadcrumb li:nth-child(3) a");
+        if (breadcrumbCat != null) {
+            book.setCategory(breadcrumbCat.text());
+        }
+        Element descHeader = pd.selectFirst("#product_description");
+        if (descHeader != null) {
+            Element descPara = descHeader.nextElementSibling();
+            if (descPara != null) {
+                book.setDescription(ProductPageExtractor.truncateWithEllipsis(descPara.text(), 16000));
+            }
+        }
+        Element avail = pd.selectFirst("table.table.table-striped tr:contains(Availability) td");
+        if (avail != null) book.setAvailability(avail.text());
+        Element upcEl = pd.selectFirst("table.table.table-striped tr:contains(UPC) td");
+        if (upcEl != null) book.setUpc(upcEl.text());
+        Element typeEl = pd.selectFirst("table.table.table-striped tr:contains(Product Type) td");
+        if (typeEl != null) book.setProductType(typeEl.text());
+        Element exclEl = pd.selectFirst("table.table.table-striped tr:contains(Price (excl. tax)) td");
+        if (exclEl != null) {
+            String n = exclEl.text().replaceAll("[^0-9.]", "");
+            if (!n.isEmpty()) book.setPriceExclTax(new BigDecimal(n));
+        }
+        Element inclEl = pd.selectFirst("table.table.table-striped tr:contains(Price (incl. tax)) td");
+        if (inclEl != null) {
+            String n = inclEl.text().replaceAll("[^0-9.]", "");
+            if (!n.isEmpty()) book.setPriceInclTax(new BigDecimal(n));
+        }
+        Element taxEl = pd.selectFirst("table.table.table-striped tr:contains(Tax) td");
+        if (taxEl != null) {
+            String n = taxEl.text().replaceAll("[^0-9.]", "");
+            if (!n.isEmpty()) book.setTax(new BigDecimal(n));
+        }
+        Element reviewsEl = pd.selectFirst("table.table.table-striped tr:contains(Number of reviews) td");
+        if (reviewsEl != null) {
+            try {
+                book.setNumberOfReviews(Integer.parseInt(reviewsEl.text().trim()));
+            } catch (NumberFormatException ignored) {}
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductPageExtractorTest {
+
+    static Document fixture() throws IOException {
+        try (InputStream in = ProductPageExtractorTest.class.getResourceAsStream("/fixtures/product-page.html")) {
+            return Jsoup.parse(in, "UTF-8", "https://books.toscrape.com/catalogue/a-light-in-the-attic_1000/index.html");
+        }
+    }
+
+    @Test
+    void extractsEveryDetail() throws Exception {
+        BookEntity book = new BookEntity();
+        ProductPageExtractor.apply(fixture(), book);
+
+        assertEquals("Poetry", book.getCategory());
+        assertTrue(book.getDescription().startsWith("A collection of humorous poems"));
+        assertEquals("a897fe39b1053632", book.getUpc());
+        assertEquals("Books", book.getProductType());
+        assertEquals("In stock (22 available)", book.getAvailability());
+        assertEquals(new BigDecimal("51.77"), book.getPriceExclTax());
+        assertEquals(new BigDecimal("53.25"), book.getPriceInclTax());
+        assertEquals(new BigDecimal("1.48"), book.getTax(), "Tax row, not the first row mentioning tax");
+        assertEquals(0, book.getNumberOfReviews());
+    }
+
+    @Test
+    void missingTableLeavesDetailsUnset() {
+        BookEntity book = new BookEntity();
+        ProductPageExtractor.apply(Jsoup.parse("<html><body><p>gone</p></body></html>"), book);
+        assertNull(book.getUpc());
+        assertNull(book.getTax());
+    }
+
+    @Test
+    void parsesPricesLikeTheOldRegex() {
+        assertEquals(new BigDecimal("51.77"), ProductPageExtractor.parsePrice("£51.77"));
+        assertEquals(new BigDecimal("51.77"), ProductPageExtractor.parsePrice("Â£51.77"));
+        assertEquals(new BigDecimal("0.00"), ProductPageExtractor.parsePrice("£0.00"));
+        assertEquals(new BigDecimal("1234"), ProductPageExtractor.parsePrice("£1,234"));
+        assertNull(ProductPageExtractor.parsePrice("free"));
+        assertNull(ProductPageExtractor.parsePrice(null));
+    }
+
+    @Test
+    void pricesTooLongForALongAreStillExact() {
+        assertEquals(new BigDecimal("999999999999999999"), ProductPageExtractor.parsePrice("£999999999999999999"));
+        assertEquals(new BigDecimal("12345678901234567890.12"),
+                ProductPageExtractor.parsePrice("£12,345,678,901,234,567,890.12"));
+        assertEquals(new BigDecimal("9223372036854775808"), ProductPageExtractor.parsePrice("9223372036854775808"));
+    }
+}
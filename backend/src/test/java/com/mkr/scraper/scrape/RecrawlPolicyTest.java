@@ -0,0 +1,121 @@
+package com.mkr.scraper.scrape;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecrawlPolicyTest {
+    private static final Instant T0 = Instant.parse("2025-01-01T00:00:00Z");
+    private final RecrawlPolicy policy = new RecrawlPolicy(Duration.ofMinutes(15), Duration.ofDays(7),
+            Duration.ofHours(6));
+
+    // Checks the page whenever it is due, telling the policy whether it changed; returns the last interval
+    private Duration follow(PageStateEntity state, int checks, boolean changing) {
+        Instant now = T0;
+        policy.observe(state, true, now);
+        for (int i = 0; i < checks; i++) {
+            now = state.getNextDueAt();
+            policy.observe(state, changing, now);
+        }
+        return policy.interval(state);
+    }
+
+    @Test
+    void newPageIsCheckedAfterTheInitialInterval() {
+        PageStateEntity state = new PageStateEntity("u");
+        policy.observe(state, true, T0);
+        assertEquals(T0.plus(Duration.ofHours(6)), state.getNextDueAt());
+        assertEquals(T0.plus(Duration.ofHours(6)), policy.dueAt(state));
+        assertNull(policy.changeInterval(state));
+    }
+
+    @Test
+    void stablePageBacksOffToTheMaximum() {
+        PageStateEntity state = new PageStateEntity("u");
+        policy.observe(state, true, T0);
+        Instant first = state.getNextDueAt();
+        policy.observe(state, false, first);
+        // Stable for 6h: next check after another 6h, then 12h, 24h...
+        assertEquals(first.plus(Duration.ofHours(6)), state.getNextDueAt());
+        policy.observe(state, false, state.getNextDueAt());
+        assertEquals(Duration.ofHours(12), policy.interval(state));
+
+        assertEquals(Duration.ofDays(7), follow(new PageStateEntity("v"), 20, false));
+    }
+
+    @Test
+    void volatilePageIsCheckedOftenButNotBelowTheMinimum() {
+        Duration interval = follow(new PageStateEntity("u"), 60, true);
+        assertEquals(Duration.ofMinutes(15), interval);
+    }
+
+    @Test
+    void intervalFollowsTheObservedChangeRate() {
+        // Changed in 1 of every 4 hourly checks: a change every ~4h, a bit less since some go unseen
+        PageStateEntity state = new PageStateEntity("u");
+        policy.observe(state, true, T0);
+        for (int i = 1; i <= 24; i++) policy.observe(state, i % 4 == 0, T0.plus(Duration.ofHours(i)));
+        long hours = policy.changeInterval(state).toHours();
+        assertTrue(hours >= 3 && hours <= 4, "Expected about 4h between changes, got " + hours + "h");
+        assertEquals(policy.changeInterval(state), policy.interval(state));
+        assertEquals(T0.plus(Duration.ofHours(24)), state.getChangedAt());
+    }
+
+    @Test
+    void oldHistoryIsHalved() {
+        PageStateEntity state = new PageStateEntity("u");
+        policy.observe(state, true, T0);
+        for (int i = 1; i <= RecrawlPolicy.HISTORY + 1; i++) policy.observe(state, true, T0.plus(Duration.ofHours(i)));
+        assertEquals((RecrawlPolicy.HISTORY + 1) / 2, state.getChecks());
+        assertEquals(state.getChecks(), state.getChanges());
+    }
+
+    @Test
+    void pagesWithoutHistoryAreDueAfterTheirLastFetch() {
+        PageStateEntity state = new PageStateEntity("u");
+        assertEquals(Instant.EPOCH, policy.dueAt(state));
+        state.setFetchedAt(T0);
+        assertEquals(T0.plus(Duration.ofHours(6)), policy.dueAt(state));
+    }
+
+    @Test
+    void queueHandsOutMostOverdueFirstAndMovesReofferedUrls() {
+        RecrawlQueue queue = new RecrawlQueue();
+        queue.offer("a", T0.plusSeconds(30));
+        queue.offer("b", T0.plusSeconds(10));
+        queue.offer("c", T0.plusSeconds(20));
+        queue.offer("d", T0.plusSeconds(100));
+        queue.offer("a", T0.plusSeconds(5));
+        assertEquals(4, queue.size());
+
+        assertEquals(List.of("a", "b"), queue.takeDue(T0.plusSeconds(50), 2));
+        assertEquals(List.of("c"), queue.takeDue(T0.plusSeconds(50), 10));
+        assertEquals(List.of(), queue.takeDue(T0.plusSeconds(50), 10));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void budgetRefillsHourlyAndOverspendingIsPaidBack() {
+        AtomicLong now = new AtomicLong();
+        RequestBudget budget = new RequestBudget(120, now::get);
+        // A quarter hour's worth at most
+        assertEquals(30, budget.available());
+        budget.charge(70);
+        assertEquals(0, budget.available());
+        // 40 requests in debt, refilling at 2 a minute
+        now.addAndGet(TimeUnit.MINUTES.toNanos(20));
+        assertEquals(0, budget.available());
+        now.addAndGet(TimeUnit.MINUTES.toNanos(5));
+        assertEquals(10, budget.available());
+        now.addAndGet(TimeUnit.HOURS.toNanos(5));
+        assertEquals(30, budget.available());
+
+        assertEquals(Integer.MAX_VALUE, new RequestBudget(0, now::get).available());
+    }
+}
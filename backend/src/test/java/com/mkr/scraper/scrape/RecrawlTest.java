@@ -0,0 +1,114 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookRepository;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Recrawls single pages of the SiteSimulator; every page is due right after it was checked
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recrawltest;DB_CLOSE_DELAY=-1",
+        "scraper.initial-scrape.enabled=false",
+        "scraper.fetch.requests-per-second=0",
+        "scraper.recrawl.enabled=false",
+        "scraper.recrawl.requests-per-hour=40",
+        "scraper.recrawl.min-interval=0s",
+        "scraper.recrawl.initial-interval=0s",
+        "scraper.recrawl.full-interval=3650d"
+})
+class RecrawlTest {
+    private static final SiteSimulator site = start();
+
+    @Autowired
+    ScrapeService scrapeService;
+    @Autowired
+    ScrapeScheduler scheduler;
+    @Autowired
+    BookRepository bookRepository;
+
+    private static SiteSimulator start() {
+        try {
+            return SiteSimulator.builder().books(45).quotes(25).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void sites(DynamicPropertyRegistry registry) {
+        registry.add("scraper.books.base-url", site::booksUrl);
+        registry.add("scraper.quotes.base-url", site::quotesUrl);
+    }
+
+    @AfterAll
+    static void stop() {
+        site.close();
+    }
+
+    @Test
+    void changedPagesAreRecrawledWithoutWalkingTheSite() throws Exception {
+        scrapeService.scrapeBooks();
+        site.reprice(7, "99.99");
+        List<BookEntity> before = bookRepository.findByRemovedAtIsNullOrderByIdAsc();
+
+        long served = site.pagesServed();
+        List<PageStateEntity> checked = scrapeService.recrawl(List.of(site.booksUrl() + "index.html"));
+        // The listing, and the product page of the one book whose listing entry changed
+        assertEquals(2, site.pagesServed() - served);
+        assertEquals(2, checked.size());
+
+        List<BookEntity> after = bookRepository.findByRemovedAtIsNullOrderByIdAsc();
+        assertEquals(before.size(), after.size(), "A partial recrawl never removes books");
+        for (int i = 0; i < after.size(); i++) {
+            BookEntity book = after.get(i);
+            if (book.getProductUrl().equals(site.productUrl(7))) {
+                assertEquals(0, new BigDecimal("99.99").compareTo(book.getPrice()));
+                assertEquals(0, new BigDecimal("99.99").compareTo(book.getPriceInclTax()));
+            } else {
+                assertEquals(before.get(i).getContentHash(), book.getContentHash());
+            }
+        }
+        PageStateEntity listing = checked.stream().filter(s -> s.getUrl().endsWith("index.html")
+                && !s.getUrl().contains("book-")).findFirst().orElseThrow();
+        assertEquals(listing.getCheckedAt(), listing.getChangedAt(), "The check found the listing changed");
+        assertTrue(listing.getChanges() >= 1);
+    }
+
+    @Test
+    void schedulerRecrawlsDuePagesWithinTheBudget() throws Exception {
+        scrapeService.scrapeBooks();
+        scrapeService.scrapeQuotes();
+        FreshnessReport report = scheduler.freshness();
+        FreshnessReport.Catalogue books = report.catalogues().get(0);
+        assertEquals("books", books.catalogue());
+        // 3 listing pages and 45 product pages, all due at once with a zero interval
+        assertEquals(48, books.pages());
+        assertEquals(48, books.due());
+        assertNotNull(books.lastFullCrawl());
+        assertEquals(10, report.budgetAvailable(), "A quarter of 40 requests per hour");
+
+        long served = site.pagesServed();
+        assertEquals(10, scheduler.recrawlDue());
+        assertEquals(10, site.pagesServed() - served);
+        assertEquals(0, scheduler.recrawlDue(), "Budget spent");
+        assertEquals(0, scheduler.freshness().budgetAvailable());
+
+        List<FreshnessReport.Page> pages = scheduler.pages("books");
+        assertEquals(48, pages.size());
+        for (int i = 1; i < pages.size(); i++) {
+            assertFalse(pages.get(i).nextDueAt().isBefore(pages.get(i - 1).nextDueAt()), "Soonest due first");
+        }
+        assertNull(scheduler.pages("films"));
+    }
+}
@@ -0,0 +1,84 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.pipeline.Pipeline;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScrapeMetricsTest {
+
+    @Test
+    void hotPathMetersAreBuiltOnce() {
+        ScrapeMetrics metrics = ScrapeMetrics.detached();
+        metrics.fetched("books.example", 200, 512, 1_000);
+        int meters = metrics.registry().getMeters().size();
+        Timer fetch = metrics.registry().get("scraper.fetch").timer();
+
+        metrics.fetched("books.example", 200, 256, 2_000);
+        assertEquals(meters, metrics.registry().getMeters().size());
+        assertSame(fetch, metrics.registry().get("scraper.fetch").timer());
+        assertEquals(2, fetch.count());
+        assertEquals(768, metrics.registry().get("scraper.fetch.bytes").summary().totalAmount());
+    }
+
+    @Test
+    void overlappingRunsOfOnePipelineShareTheGaugeWithoutOverwriting() throws Exception {
+        ScrapeMetrics metrics = ScrapeMetrics.detached();
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        CountDownLatch releaseSecond = new CountDownLatch(1);
+        Pipeline first = stalled(releaseFirst);
+        Pipeline second = stalled(releaseSecond);
+        metrics.track(first);
+        metrics.track(second);
+        Thread runFirst = start(first);
+        Thread runSecond = start(second);
+
+        // Each run holds one item in its worker; four more and the end marker wait in the queue in front of it
+        awaitGauge(metrics, 10);
+        releaseFirst.countDown();
+        runFirst.join();
+        metrics.untrack(first);
+        assertEquals(5, gauge(metrics), "the finished run no longer counts, the other one still does");
+
+        releaseSecond.countDown();
+        runSecond.join();
+        metrics.untrack(second);
+        assertEquals(0, gauge(metrics));
+    }
+
+    private static Pipeline stalled(CountDownLatch release) {
+        return Pipeline.<Integer>from("recrawl", out -> {
+                    for (int i = 0; i < 5; i++) out.emit(i);
+                })
+                .then("fetch", 1, 8, i -> {
+                    release.await();
+                    return i;
+                })
+                .into("write", 8, 10, false, batch -> {});
+    }
+
+    private static Thread start(Pipeline pipeline) {
+        return Thread.ofVirtual().start(() -> {
+            try {
+                pipeline.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static double gauge(ScrapeMetrics metrics) {
+        return metrics.registry().get("scraper.pipeline.queue").tags("pipeline", "recrawl", "stage", "fetch")
+                .gauge().value();
+    }
+
+    private static void awaitGauge(ScrapeMetrics metrics, double expected) throws InterruptedException {
+        for (int i = 0; i < 100 && gauge(metrics) != expected; i++) Thread.sleep(20);
+        assertEquals(expected, gauge(metrics));
+    }
+}
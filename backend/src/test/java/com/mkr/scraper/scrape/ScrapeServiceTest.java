@@ -1,28 +1,96 @@
 package com.mkr.scraper.scrape;
 
+import com.mkr.scraper.book.BookEntity;
 import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.quote.QuoteEntity;
 import com.mkr.scraper.quote.QuoteRepository;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+// Crawls the local SiteSimulator, so the test needs no network
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:scrapetest;DB_CLOSE_DELAY=-1",
+        "scraper.initial-scrape.enabled=false",
+        "scraper.fetch.requests-per-second=0"
+})
 class ScrapeServiceTest {
+    private static final SiteSimulator site = start();
+
     @Autowired
     ScrapeService scrapeService;
     @Autowired
     BookRepository bookRepository;
     @Autowired
     QuoteRepository quoteRepository;
+    @Autowired
+    ScrapeMetrics metrics;
+
+    private static SiteSimulator start() {
+        try {
+            return SiteSimulator.builder().books(45).quotes(25).start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void sites(DynamicPropertyRegistry registry) {
+        registry.add("scraper.books.base-url", site::booksUrl);
+        registry.add("scraper.quotes.base-url", site::quotesUrl);
+    }
+
+    @AfterAll
+    static void stop() {
+        site.close();
+    }
 
     @Test
     void scrapeBooksAndQuotes() throws Exception {
         scrapeService.scrapeBooks();
         scrapeService.scrapeQuotes();
-        assertTrue(bookRepository.count() > 0, "Books should be scraped");
-        assertTrue(quoteRepository.count() > 0, "Quotes should be scraped");
+
+        List<BookEntity> books = bookRepository.findByRemovedAtIsNullOrderByIdAsc();
+        assertEquals(site.books(), books.size(), "Books should be scraped");
+        assertEquals(site.quotes(), quoteRepository.findByRemovedAtIsNullOrderByIdAsc().size(), "Quotes should be scraped");
+
+        // Listing order survives the parallel product fetches, and product details are filled in
+        for (int i = 0; i < books.size(); i++) {
+            SiteSimulator.Book expected = SiteSimulator.book(i);
+            BookEntity actual = books.get(i);
+            assertEquals(expected.title(), actual.getTitle());
+            assertEquals(expected.upc(), actual.getUpc());
+            assertEquals(expected.category(), actual.getCategory());
+            assertEquals(0, new BigDecimal(expected.price()).compareTo(actual.getPrice()));
+            assertEquals(0, BigDecimal.ZERO.compareTo(actual.getTax()));
+            assertEquals(expected.reviews(), actual.getNumberOfReviews());
+            assertNotNull(actual.getDescription());
+        }
+        QuoteEntity first = quoteRepository.findByRemovedAtIsNullOrderByIdAsc().get(0);
+        assertEquals(SiteSimulator.quote(0).author(), first.getAuthor());
+        assertEquals(SiteSimulator.quote(0).tags(), first.getTags());
+
+        ScrapeRunReport report = metrics.lastRuns().get("books");
+        assertEquals(site.books(), report.result().inserted());
+        assertEquals(0, report.failedProductPages());
+        assertEquals(site.books(), report.stages().get("parse").items());
+        assertEquals(site.books(), metrics.registry().get("scraper.parse")
+                .tags("catalogue", "books", "kind", "product").timer().count());
+        assertTrue(metrics.registry().get("scraper.fetch").timers().stream().mapToLong(t -> t.count()).sum() > 0);
+
+        // Nothing changed on the site, so a second run carries everything over
+        scrapeService.scrapeBooks();
+        assertEquals(site.books(), bookRepository.count());
+        assertEquals(site.books(), metrics.lastRuns().get("books").result().unchanged());
     }
 }
-
@@ -0,0 +1,148 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.ScraperApplication;
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookRepository;
+import com.mkr.scraper.snapshot.SnapshotStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two nodes in one JVM, sharing an H2 file through the cluster profile. Heartbeats are driven by the test, right
+// before each step, since a node stops counting shards as its own half a lease after its last heartbeat
+class ShardedCrawlTest {
+    private static final int SHARDS = 16;
+    private static final Duration LEASE_TTL = Duration.ofSeconds(6);
+
+    @TempDir
+    Path dataDir;
+    private final List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+    private SiteSimulator site;
+
+    @AfterEach
+    void stop() {
+        nodes.forEach(ConfigurableApplicationContext::close);
+        if (site != null) site.close();
+    }
+
+    @Test
+    void nodesSplitTheCrawlAndStoreEachBookOnce() throws Exception {
+        site = SiteSimulator.builder().books(120).quotes(30).trackPaths().start();
+        ConfigurableApplicationContext a = node("a");
+        ConfigurableApplicationContext b = node("b");
+        balance(a, b);
+
+        Set<Integer> shardsA = cluster(a).ownedShards();
+        Set<Integer> shardsB = cluster(b).ownedShards();
+        assertEquals(SHARDS / 2, shardsA.size());
+        assertEquals(SHARDS / 2, shardsB.size());
+        assertTrue(shardsA.stream().noneMatch(shardsB::contains), "Shards are held by one node at a time");
+
+        assertTrue(cluster(a).tryWalk("books"));
+        assertFalse(cluster(b).tryWalk("books"), "One walker per catalogue");
+        cluster(a).heartbeat();
+        a.getBean(ScrapeService.class).scrapeBooks();
+        CrawlFrontier frontier = a.getBean(CrawlFrontier.class);
+        assertTrue(frontier.walked("books"));
+        long pending = frontier.pendingProducts("books");
+        assertTrue(pending > 0 && pending < site.books(), "Node b's books are left to it: " + pending);
+        assertEquals(site.books() - pending, books(a).size());
+        long generation = a.getBean(SnapshotStore.class).books().generation();
+        cluster(a).heartbeat();
+        cluster(a).republished().get();
+        assertEquals(generation, a.getBean(SnapshotStore.class).books().generation(),
+                "A node already published its own change and does not republish it");
+
+        cluster(b).heartbeat();
+        assertEquals(pending, b.getBean(ScrapeService.class).crawlPendingBooks());
+        // Node a serves what b stored once its next heartbeat sees b's change
+        assertEquals(site.books() - pending, a.getBean(SnapshotStore.class).books().size());
+        cluster(a).heartbeat();
+        cluster(a).republished().get();
+        assertEquals(site.books(), a.getBean(SnapshotStore.class).books().size());
+        a.getBean(ScrapeScheduler.class).recrawlDue();
+        assertFalse(frontier.active("books"), "The walker finishes the run once every book is stored");
+        assertTrue(frontier.lastCompleted("books").isPresent());
+
+        List<BookEntity> stored = books(a);
+        assertEquals(site.books(), stored.size());
+        assertEquals(site.books(), stored.stream().map(BookEntity::getProductUrl).distinct().count());
+        assertTrue(stored.stream().allMatch(book -> book.getUpc() != null), "Every product page was fetched");
+        assertEquals(List.of(), site.pathsServedMoreThanOnce(), "No page is fetched by both nodes");
+    }
+
+    @Test
+    void deadNodesShardsAreTakenOver() throws Exception {
+        site = SiteSimulator.builder().books(60).quotes(10).start();
+        ConfigurableApplicationContext a = node("a");
+        ConfigurableApplicationContext b = node("b");
+        balance(a, b);
+
+        assertTrue(cluster(a).tryWalk("books"));
+        cluster(a).heartbeat();
+        a.getBean(ScrapeService.class).scrapeBooks();
+        CrawlFrontier frontier = a.getBean(CrawlFrontier.class);
+        assertTrue(frontier.pendingProducts("books") > 0);
+
+        // Node b stops renewing: once its leases expire, a takes its shards and finishes the run
+        Thread.sleep(LEASE_TTL.toMillis() + 100);
+        assertFalse(cluster(b).owns(site.productUrl(0)), "A node stops crawling before its leases can be taken");
+        cluster(a).heartbeat();
+        assertEquals(SHARDS, cluster(a).ownedShards().size());
+        assertEquals(1, cluster(a).liveNodes());
+
+        a.getBean(ScrapeScheduler.class).recrawlDue();
+        assertFalse(frontier.active("books"));
+        assertEquals(site.books(), books(a).size());
+    }
+
+    private ConfigurableApplicationContext node(String id) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(ScraperApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("cluster")
+                // Arguments, so they win over application.properties
+                .run(
+                        "--scraper.data-dir=" + dataDir,
+                        "--scraper.cluster.node-id=" + id,
+                        "--scraper.cluster.shards=" + SHARDS,
+                        "--scraper.cluster.lease-ttl=" + LEASE_TTL.toSeconds() + "s",
+                        "--scraper.cluster.heartbeat=PT1H",
+                        "--scraper.initial-scrape.enabled=false",
+                        "--scraper.fetch.requests-per-second=0",
+                        "--scraper.recrawl.enabled=false",
+                        "--scraper.recrawl.requests-per-hour=0",
+                        "--scraper.recrawl.full-interval=3650d",
+                        "--scraper.books.base-url=" + site.booksUrl(),
+                        "--scraper.quotes.base-url=" + site.quotesUrl());
+        nodes.add(context);
+        return context;
+    }
+
+    // a takes every shard alone, b joins with none, a gives half back, b takes them
+    private static void balance(ConfigurableApplicationContext a, ConfigurableApplicationContext b) {
+        cluster(a).heartbeat();
+        cluster(b).heartbeat();
+        cluster(a).heartbeat();
+        cluster(b).heartbeat();
+        assertEquals(2, cluster(a).liveNodes());
+    }
+
+    private static CrawlCluster cluster(ConfigurableApplicationContext node) {
+        return node.getBean(CrawlCluster.class);
+    }
+
+    private static List<BookEntity> books(ConfigurableApplicationContext node) {
+        return node.getBean(BookRepository.class).findByRemovedAtIsNullOrderByIdAsc();
+    }
+}
@@ -0,0 +1,427 @@
+package com.mkr.scraper.scrape;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Local stand-in for books.toscrape.com and quotes.toscrape.com. Serves synthetic catalogues of any size in
+ * the same page structure, generated on the fly from the item number, so a million books cost no memory.
+ * Latency, injected 503s and a share of slow pages are configurable, and single books can be repriced while
+ * it runs.
+ *
+ * <pre>{@code
+ * try (SiteSimulator site = SiteSimulator.builder().books(1000).quotes(500).latency(Duration.ofMillis(20), Duration.ZERO).start()) {
+ *     // point scraper.books.base-url at site.booksUrl(), scraper.quotes.base-url at site.quotesUrl()
+ * }
+ * }</pre>
+ */
+public final class SiteSimulator implements AutoCloseable {
+    static final int BOOKS_PER_PAGE = 20;
+    static final int QUOTES_PER_PAGE = 10;
+
+    private static final String[] WORDS = ("light attic night garden river stone silver shadow winter summer "
+            + "empire secret journey ocean forest crown mirror letter city heart dream fire glass storm island "
+            + "memory promise kingdom wolf star paper song house road bridge witch dragon lost last first little "
+            + "great hidden golden broken quiet wild dark bright ancient modern strange perfect simple true").split(" ");
+    private static final String[] CATEGORIES = {"Travel", "Mystery", "Historical Fiction", "Sequential Art",
+            "Classics", "Philosophy", "Romance", "Womens Fiction", "Fiction", "Childrens", "Religion", "Nonfiction",
+            "Music", "Science Fiction", "Sports and Games", "Fantasy", "Young Adult", "Science", "Poetry", "Art",
+            "Psychology", "Autobiography", "Humor", "Horror", "History", "Food and Drink", "Business", "Biography",
+            "Thriller", "Contemporary", "Spirituality", "Academic", "Self Help", "Historical", "Christian",
+            "Suspense", "Short Stories", "Novels", "Health", "Politics", "Cultural", "Erotica", "Crime"};
+    private static final String[] RATINGS = {"One", "Two", "Three", "Four", "Five"};
+    private static final String[] AUTHORS = {"Albert Einstein", "J.K. Rowling", "Jane Austen", "Marilyn Monroe",
+            "André Gide", "Thomas A. Edison", "Eleanor Roosevelt", "Steve Martin", "Bob Marley", "Dr. Seuss",
+            "Douglas Adams", "Elie Wiesel", "Friedrich Nietzsche", "Mark Twain", "Allen Saunders", "Pablo Neruda",
+            "Ralph Waldo Emerson", "Mother Teresa", "Garrison Keillor", "Jim Henson", "Charles M. Schulz",
+            "William Nicholson", "Jorge Luis Borges", "George Eliot", "George R.R. Martin", "C.S. Lewis"};
+    private static final String[] TAGS = {"love", "inspirational", "life", "humor", "books", "reading",
+            "friendship", "friends", "truth", "simile", "change", "deep-thoughts", "thinking", "world", "choices",
+            "abilities", "aliteracy", "adulthood", "be-yourself", "miracles", "live", "misattributed", "paraphrased",
+            "music", "writing", "success", "wisdom", "value", "attributed", "imagination", "fantasy", "poetry"};
+
+    private static final Pattern BOOK_LISTING = Pattern.compile("/books/catalogue/page-(\\d+)\\.html");
+    private static final Pattern BOOK_PRODUCT = Pattern.compile("/books/catalogue/book-(\\d+)_\\d+/index\\.html");
+    private static final Pattern QUOTE_LISTING = Pattern.compile("/quotes/page/(\\d+)/?");
+
+    private final Builder config;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final LongAdder pagesServed = new LongAdder();
+    private final LongAdder errorsInjected = new LongAdder();
+    private final Map<String, Integer> servedByPath = new ConcurrentHashMap<>();
+    private final Map<Integer, String> prices = new ConcurrentHashMap<>();
+    private final Set<Integer> failingProducts = ConcurrentHashMap.newKeySet();
+
+    private SiteSimulator(Builder config) throws IOException {
+        this.config = config;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        // Every request on its own virtual thread, so injected latency never queues other requests
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String booksUrl() {
+        return base() + "/books/";
+    }
+
+    public String quotesUrl() {
+        return base() + "/quotes/";
+    }
+
+    private String base() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int books() {
+        return config.books;
+    }
+
+    public int quotes() {
+        return config.quotes;
+    }
+
+    /** Listing and product pages answered with 200. */
+    public long pagesServed() {
+        return pagesServed.sum();
+    }
+
+    public long errorsInjected() {
+        return errorsInjected.sum();
+    }
+
+    /** From now on, book {@code i} costs {@code price} on its listing and product page. */
+    public void reprice(int i, String price) {
+        prices.put(i, price);
+    }
+
+    /** While {@code fails}, the product page of book {@code i} answers 503; its listing entry is unaffected. */
+    public void failProductPage(int i, boolean fails) {
+        if (fails) failingProducts.add(i);
+        else failingProducts.remove(i);
+    }
+
+    /** Product page URL of book {@code i}, as the scraper stores it. */
+    public String productUrl(int i) {
+        return booksUrl() + "catalogue/" + book(i).slug() + "/index.html";
+    }
+
+    /** Paths answered with 200 more than once; only recorded with {@link Builder#trackPaths()}. */
+    public List<String> pathsServedMoreThanOnce() {
+        return servedByPath.entrySet().stream().filter(e -> e.getValue() > 1).map(Map.Entry::getKey).sorted().toList();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            // The scraper joins base URL and absolute hrefs, e.g. "/quotes/" + "/page/2/"
+            String path = exchange.getRequestURI().getPath().replaceAll("/{2,}", "/");
+            String html = render(path);
+            if (html == null) {
+                send(exchange, 404, new byte[0]);
+                return;
+            }
+            delay(path);
+            Matcher product = BOOK_PRODUCT.matcher(path);
+            if (product.matches() && failingProducts.contains(Integer.parseInt(product.group(1)))) {
+                send(exchange, 503, new byte[0]);
+                return;
+            }
+            if (config.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < config.errorRate) {
+                errorsInjected.increment();
+                send(exchange, 503, new byte[0]);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            send(exchange, 200, html.getBytes(StandardCharsets.UTF_8));
+            pagesServed.increment();
+            if (config.trackPaths) servedByPath.merge(path, 1, Integer::sum);
+        }
+    }
+
+    private void delay(String path) {
+        long nanos = config.latency.toNanos();
+        if (!config.jitter.isZero()) nanos += ThreadLocalRandom.current().nextLong(config.jitter.toNanos() + 1);
+        // The same pages are slow on every run, like a heavy page on a real site
+        if (config.slowRate > 0 && Math.floorMod(mix(path.hashCode()), 10_000) < config.slowRate * 10_000) {
+            nanos += config.slowDelay.toNanos();
+        }
+        if (nanos <= 0) return;
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private String render(String path) {
+        if (path.equals("/books/") || path.equals("/books/index.html")) return bookListing(1);
+        Matcher m = BOOK_LISTING.matcher(path);
+        if (m.matches()) return bookListing(Integer.parseInt(m.group(1)));
+        m = BOOK_PRODUCT.matcher(path);
+        if (m.matches()) return bookProduct(Integer.parseInt(m.group(1)));
+        if (path.equals("/quotes/")) return quoteListing(1);
+        m = QUOTE_LISTING.matcher(path);
+        if (m.matches()) return quoteListing(Integer.parseInt(m.group(1)));
+        return null;
+    }
+
+    // Books: index.html is page 1 and links into catalogue/, later pages link relative to catalogue/
+
+    private String bookListing(int page) {
+        int pages = pageCount(config.books, BOOKS_PER_PAGE);
+        if (page < 1 || page > pages) return null;
+        boolean root = page == 1;
+        StringBuilder html = new StringBuilder(BOOKS_PER_PAGE * 900)
+                .append("<!DOCTYPE html><html lang=\"en-us\"><head><title>All products | Books to Scrape - Sandbox</title>")
+                .append("</head><body id=\"default\" class=\"default\"><div class=\"container-fluid page\">")
+                .append("<div class=\"page_inner\"><div class=\"row\"><section>")
+                .append("<div class=\"alert alert-warning\" role=\"alert\"><strong>Warning!</strong> This is a demo website.</div>")
+                .append("<div><ol class=\"row\">");
+        int from = (page - 1) * BOOKS_PER_PAGE;
+        for (int i = from; i < Math.min(config.books, from + BOOKS_PER_PAGE); i++) {
+            Book b = current(i);
+            String href = (root ? "catalogue/" : "") + b.slug() + "/index.html";
+            html.append("<li class=\"col-xs-6 col-sm-4 col-md-3 col-lg-3\"><article class=\"product_pod\">")
+                    .append("<div class=\"image_container\"><a href=\"").append(href).append("\"><img src=\"")
+                    .append(root ? "" : "../").append("media/cache/").append(b.upc(), 0, 2).append('/')
+                    .append(b.upc()).append(".jpg\" alt=\"").append(b.title()).append("\" class=\"thumbnail\"></a></div>")
+                    .append("<p class=\"star-rating ").append(b.rating()).append("\">")
+                    .append("<i class=\"icon-star\"></i>".repeat(5)).append("</p>")
+                    .append("<h3><a href=\"").append(href).append("\" title=\"").append(b.title()).append("\">")
+                    .append(abbreviate(b.title())).append("</a></h3>")
+                    .append("<div class=\"product_price\"><p class=\"price_color\">£").append(b.price()).append("</p>")
+                    .append("<p class=\"instock availability\"><i class=\"icon-ok\"></i> In stock</p>")
+                    .append("<form><button type=\"submit\" class=\"btn btn-primary btn-block\">Add to basket</button></form>")
+                    .append("</div></article></li>");
+        }
+        html.append("</ol><div><ul class=\"pager\"><li class=\"current\">Page ").append(page).append(" of ")
+                .append(pages).append("</li>");
+        if (page > 1) {
+            html.append("<li class=\"previous\"><a href=\"").append(page == 2 ? "../index.html" : "page-" + (page - 1) + ".html")
+                    .append("\">previous</a></li>");
+        }
+        if (page < pages) {
+            html.append("<li class=\"next\"><a href=\"").append(root ? "catalogue/" : "").append("page-")
+                    .append(page + 1).append(".html\">next</a></li>");
+        }
+        return html.append("</ul></div></div></section></div></div></div></body></html>").toString();
+    }
+
+    private String bookProduct(int i) {
+        if (i < 0 || i >= config.books) return null;
+        Book b = current(i);
+        return new StringBuilder(4096)
+                .append("<!DOCTYPE html><html lang=\"en-us\"><head><title>").append(b.title())
+                .append(" | Books to Scrape - Sandbox</title></head><body id=\"default\" class=\"default\">")
+                .append("<div class=\"container-fluid page\"><div class=\"page_inner\">")
+                .append("<ul class=\"breadcrumb\"><li><a href=\"../../index.html\">Home</a></li>")
+                .append("<li><a href=\"../category/books_1/index.html\">Books</a></li>")
+                .append("<li><a href=\"../category/books/").append(b.category().toLowerCase(Locale.ROOT).replace(' ', '-'))
+                .append("/index.html\">").append(b.category()).append("</a></li>")
+                .append("<li class=\"active\">").append(b.title()).append("</li></ul>")
+                .append("<article class=\"product_page\"><div class=\"row\"><div class=\"col-sm-6 product_main\">")
+                .append("<h1>").append(b.title()).append("</h1><p class=\"price_color\">£").append(b.price()).append("</p>")
+                .append("<p class=\"instock availability\"><i class=\"icon-ok\"></i> In stock (").append(b.stock())
+                .append(" available)</p><p class=\"star-rating ").append(b.rating()).append("\"></p></div></div>")
+                .append("<div id=\"product_description\" class=\"sub-header\"><h2>Product Description</h2></div>")
+                .append("<p>").append(b.description()).append("</p>")
+                .append("<div class=\"sub-header\"><h2>Product Information</h2></div>")
+                .append("<table class=\"table table-striped\">")
+                .append("<tr><th>UPC</th><td>").append(b.upc()).append("</td></tr>")
+                .append("<tr><th>Product Type</th><td>Books</td></tr>")
+                .append("<tr><th>Price (excl. tax)</th><td>£").append(b.price()).append("</td></tr>")
+                .append("<tr><th>Price (incl. tax)</th><td>£").append(b.price()).append("</td></tr>")
+                .append("<tr><th>Tax</th><td>£0.00</td></tr>")
+                .append("<tr><th>Availability</th><td>In stock (").append(b.stock()).append(" available)</td></tr>")
+                .append("<tr><th>Number of reviews</th><td>").append(b.reviews()).append("</td></tr>")
+                .append("</table></article></div></div></body></html>")
+                .toString();
+    }
+
+    // Quotes: page 1 is the root, later pages are /page/N/; the next link is an absolute path like on the real site
+
+    private String quoteListing(int page) {
+        int pages = pageCount(config.quotes, QUOTES_PER_PAGE);
+        if (page < 1 || page > pages) return null;
+        StringBuilder html = new StringBuilder(QUOTES_PER_PAGE * 600)
+                .append("<!DOCTYPE html><html lang=\"en\"><head><title>Quotes to Scrape</title></head><body>")
+                .append("<div class=\"container\"><div class=\"row\"><div class=\"col-md-8\">");
+        int from = (page - 1) * QUOTES_PER_PAGE;
+        for (int i = from; i < Math.min(config.quotes, from + QUOTES_PER_PAGE); i++) {
+            Quote q = quote(i);
+            html.append("<div class=\"quote\" itemscope itemtype=\"http://schema.org/CreativeWork\">")
+                    .append("<span class=\"text\" itemprop=\"text\">“").append(q.text()).append("”</span>")
+                    .append("<span>by <small class=\"author\" itemprop=\"author\">").append(q.author())
+                    .append("</small> <a href=\"/author/").append(q.author().replace(' ', '-')).append("\">(about)</a></span>")
+                    .append("<div class=\"tags\">Tags: <meta class=\"keywords\" itemprop=\"keywords\" content=\"")
+                    .append(String.join(",", q.tags())).append("\">");
+            for (String tag : q.tags()) {
+                html.append("<a class=\"tag\" href=\"/tag/").append(tag).append("/page/1/\">").append(tag).append("</a>");
+            }
+            html.append("</div></div>");
+        }
+        html.append("<nav><ul class=\"pager\">");
+        if (page < pages) {
+            html.append("<li class=\"next\"><a href=\"/page/").append(page + 1)
+                    .append("/\">Next <span aria-hidden=\"true\">&rarr;</span></a></li>");
+        }
+        return html.append("</ul></nav></div></div></div></body></html>").toString();
+    }
+
+    private static int pageCount(int items, int perPage) {
+        return Math.max(1, (items + perPage - 1) / perPage);
+    }
+
+    private static String abbreviate(String title) {
+        return title.length() <= 40 ? title : title.substring(0, 37) + "...";
+    }
+
+    // Items are a pure function of their number, so every run and every instance serves the same catalogue
+
+    private Book current(int i) {
+        Book b = book(i);
+        String price = prices.get(i);
+        return price == null ? b : new Book(i, b.title(), b.upc(), price, b.category(), b.rating(), b.description(),
+                b.stock(), b.reviews());
+    }
+
+    static Book book(int i) {
+        SplittableRandom r = new SplittableRandom(mix(i));
+        String title = capitalize(words(r, 2 + r.nextInt(4)));
+        String upc = String.format("%016x", mix(i));
+        int cents = 1000 + r.nextInt(5000);
+        String price = cents / 100 + "." + String.format("%02d", cents % 100);
+        String description = capitalize(words(r, 60 + r.nextInt(120))) + ".";
+        return new Book(i, title, upc, price, CATEGORIES[r.nextInt(CATEGORIES.length)], RATINGS[r.nextInt(5)],
+                description, 1 + r.nextInt(30), r.nextInt(5));
+    }
+
+    static Quote quote(int i) {
+        SplittableRandom r = new SplittableRandom(~mix(i));
+        // The item number keeps the text unique, it is the quote's natural key together with the author
+        String text = capitalize(words(r, 6 + r.nextInt(20))) + " (" + i + ").";
+        String author = AUTHORS[r.nextInt(AUTHORS.length)];
+        int tagCount = r.nextInt(5);
+        List<String> tags = r.ints(0, TAGS.length).distinct().limit(tagCount).mapToObj(t -> TAGS[t]).toList();
+        return new Quote(i, text, author, tags);
+    }
+
+    private static String words(SplittableRandom r, int n) {
+        StringBuilder s = new StringBuilder(n * 8);
+        for (int w = 0; w < n; w++) {
+            if (w > 0) s.append(' ');
+            s.append(WORDS[r.nextInt(WORDS.length)]);
+        }
+        return s.toString();
+    }
+
+    private static String capitalize(String s) {
+        return s.isEmpty() ? s : Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    // SplitMix64 finalizer: a bijection, so distinct item numbers give distinct UPCs
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    record Book(int number, String title, String upc, String price, String category, String rating,
+                String description, int stock, int reviews) {
+        String slug() {
+            return "book-" + number + "_" + number;
+        }
+    }
+
+    record Quote(int number, String text, String author, List<String> tags) {}
+
+    public static final class Builder {
+        private int books = 1000;
+        private int quotes = 100;
+        private Duration latency = Duration.ZERO;
+        private Duration jitter = Duration.ZERO;
+        private double errorRate;
+        private double slowRate;
+        private Duration slowDelay = Duration.ZERO;
+        private boolean trackPaths;
+
+        private Builder() {}
+
+        public Builder books(int books) {
+            this.books = books;
+            return this;
+        }
+
+        public Builder quotes(int quotes) {
+            this.quotes = quotes;
+            return this;
+        }
+
+        /** Every response waits {@code base} plus a uniform random share of {@code jitter}. */
+        public Builder latency(Duration base, Duration jitter) {
+            this.latency = base;
+            this.jitter = jitter;
+            return this;
+        }
+
+        /** Share of requests (0..1) answered with 503, which the fetcher retries. */
+        public Builder errorRate(double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /** Share of pages (0..1) that always take {@code delay} longer. */
+        public Builder slowPages(double rate, Duration delay) {
+            this.slowRate = rate;
+            this.slowDelay = delay;
+            return this;
+        }
+
+        /** Counts 200s per path, see {@link #pathsServedMoreThanOnce()}. Costs memory per page served. */
+        public Builder trackPaths() {
+            this.trackPaths = true;
+            return this;
+        }
+
+        public SiteSimulator start() throws IOException {
+            return new SiteSimulator(this);
+        }
+    }
+}
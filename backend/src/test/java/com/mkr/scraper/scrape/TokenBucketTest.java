@@ -0,0 +1,51 @@
+package com.mkr.scraper.scrape;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+    // Fake clock: sleeping advances it instead of waiting
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicLong slept = new AtomicLong();
+
+    private TokenBucket bucket(double ratePerSecond, int capacity) {
+        return new TokenBucket(ratePerSecond, capacity, now::get, nanos -> {
+            slept.addAndGet(nanos);
+            now.addAndGet(nanos);
+        });
+    }
+
+    @Test
+    void burstIsImmediateThenRateLimited() throws Exception {
+        TokenBucket bucket = bucket(20, 5);
+        for (int i = 0; i < 5; i++) bucket.acquire();
+        assertEquals(0, slept.get(), "Burst should not wait");
+
+        for (int i = 0; i < 4; i++) bucket.acquire();
+        long limitedMs = TimeUnit.NANOSECONDS.toMillis(slept.get());
+        assertTrue(limitedMs >= 199 && limitedMs <= 201, "4 tokens at 20/s should take 200ms, took " + limitedMs);
+    }
+
+    @Test
+    void idleTimeRefillsUpToCapacity() throws Exception {
+        TokenBucket bucket = bucket(20, 2);
+        for (int i = 0; i < 2; i++) bucket.acquire();
+        now.addAndGet(TimeUnit.SECONDS.toNanos(10));
+        for (int i = 0; i < 2; i++) bucket.acquire();
+        assertEquals(0, slept.get(), "Two tokens were refilled while idle");
+
+        bucket.acquire();
+        assertTrue(slept.get() > 0, "Capacity caps what idle time refills");
+    }
+
+    @Test
+    void nonPositiveRateDisablesLimiting() throws Exception {
+        TokenBucket bucket = bucket(0, 1);
+        for (int i = 0; i < 1000; i++) bucket.acquire();
+        assertEquals(0, slept.get());
+    }
+}
@@ -0,0 +1,55 @@
+package com.mkr.scraper.scrape;
+
+import com.mkr.scraper.ScraperApplication;
+import com.mkr.scraper.snapshot.SnapshotStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two boots of the 'durable' profile on the same data directory: the second serves the first one's data at once
+class WarmStartTest {
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void restartServesStoredSnapshotAndSkipsFreshScrape() throws Exception {
+        try (SiteSimulator site = SiteSimulator.builder().books(25).quotes(15).start()) {
+            try (ConfigurableApplicationContext first = boot(site, "0")) {
+                first.getBean(ScrapeScheduler.class).startupRefresh().get(60, TimeUnit.SECONDS);
+                assertEquals(site.books(), first.getBean(SnapshotStore.class).books().size());
+            }
+            long served = site.pagesServed();
+
+            try (ConfigurableApplicationContext second = boot(site, "1h")) {
+                SnapshotStore snapshots = second.getBean(SnapshotStore.class);
+                assertEquals(site.books(), snapshots.books().size(), "stored snapshot published at boot");
+                assertEquals(site.quotes(), snapshots.quotes().size());
+                second.getBean(ScrapeScheduler.class).startupRefresh().get(60, TimeUnit.SECONDS);
+                assertEquals(served, site.pagesServed(), "crawled within the TTL, nothing fetched");
+            }
+
+            try (ConfigurableApplicationContext third = boot(site, "0")) {
+                third.getBean(ScrapeScheduler.class).startupRefresh().get(60, TimeUnit.SECONDS);
+                assertTrue(site.pagesServed() > served, "TTL passed, refreshed in the background");
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext boot(SiteSimulator site, String ttl) {
+        // Command-line arguments, so they win over application.properties
+        return new SpringApplicationBuilder(ScraperApplication.class)
+                .profiles("durable")
+                .run("--spring.main.web-application-type=none",
+                        "--scraper.data-dir=" + dataDir,
+                        "--scraper.fetch.requests-per-second=0",
+                        "--scraper.initial-scrape.ttl=" + ttl,
+                        "--scraper.books.base-url=" + site.booksUrl(),
+                        "--scraper.quotes.base-url=" + site.quotesUrl());
+    }
+}
@@ -0,0 +1,121 @@
+package com.mkr.scraper.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvertedIndexTest {
+
+    private static InvertedIndex sample() {
+        return InvertedIndex.builder()
+                .add(0, "A Light in the Attic", 3).add(0, "Poetry", 2)
+                .add(1, "Tipping the Velvet", 3).add(1, "Historical Fiction", 2)
+                .add(2, "The Light of the World", 3).add(2, "Fiction", 2)
+                .add(3, "Sharp Objects", 3).add(3, "Mystery", 2)
+                .build();
+    }
+
+    @Test
+    void matchesAllTermsCaseInsensitively() {
+        InvertedIndex.Result r = sample().search("LIGHT attic", 0, 10);
+        assertEquals(1, r.total());
+        assertArrayEquals(new int[]{0}, r.docs());
+    }
+
+    @Test
+    void ranksRarerAndHeavierMatchesFirst() {
+        // "fiction" is in two docs; doc 2 also has "light" and "world"
+        InvertedIndex.Result r = sample().search("fiction", 0, 10);
+        assertEquals(2, r.total());
+        assertArrayEquals(new int[]{1, 2}, r.docs());
+        assertTrue(r.scores()[0] >= r.scores()[1]);
+
+        InvertedIndex.Result light = sample().search("light", 0, 10);
+        assertArrayEquals(new int[]{0, 2}, light.docs());
+    }
+
+    @Test
+    void paginatesRankedHits() {
+        InvertedIndex.Result page0 = sample().search("the", 0, 2);
+        InvertedIndex.Result page1 = sample().search("the", 2, 2);
+        assertEquals(3, page0.total());
+        assertEquals(2, page0.docs().length);
+        assertEquals(1, page1.docs().length);
+    }
+
+    @Test
+    void unknownTermOrBlankQueryMatchesNothing() {
+        assertEquals(0, sample().search("light unicorn", 0, 10).total());
+        assertEquals(0, sample().search("  --  ", 0, 10).total());
+    }
+
+    @Test
+    void toleratesTyposInLongerTerms() {
+        assertArrayEquals(new int[]{0}, sample().search("atic", 0, 10).docs());
+        assertArrayEquals(new int[]{0}, sample().search("ligth attic", 0, 10).docs(), "transposition is one edit");
+        assertArrayEquals(new int[]{1}, sample().search("historcal fiktion", 0, 10).docs());
+        assertEquals(0, sample().search("teh", 0, 10).total(), "terms under 4 characters are not corrected");
+        assertEquals(0, sample().search("lxxht", 0, 10).total(), "two edits are too many for a 5 letter term");
+    }
+
+    @Test
+    void exactMatchesOutrankFuzzyOnes() {
+        InvertedIndex index = InvertedIndex.builder()
+                .add(0, "Stone House", 1)
+                .add(1, "Stone Horse", 1)
+                .build();
+        InvertedIndex.Result r = index.search("stone house", 0, 10);
+        assertArrayEquals(new int[]{0}, r.docs(), "an exact term is not expanded");
+        InvertedIndex.Result typo = index.search("stone hous", 0, 10);
+        assertArrayEquals(new int[]{0}, typo.docs());
+        assertTrue(typo.scores()[0] < r.scores()[0]);
+    }
+
+    @Test
+    void bm25PrefersShorterDocumentsForTheSameTerm() {
+        InvertedIndex index = InvertedIndex.builder()
+                .add(0, "castle", 1).add(0, "a long description that goes on about many other things entirely", 1)
+                .add(1, "castle", 1)
+                .add(2, "unrelated", 1)
+                .build();
+        assertArrayEquals(new int[]{1, 0}, index.search("castle", 0, 10).docs());
+    }
+
+    @Test
+    void cachedDocTermsIndexLikeTokenizedFields() {
+        InvertedIndex tokenized = InvertedIndex.builder()
+                .add(0, "Tipping the Velvet", 3).add(0, "Historical Fiction", 2)
+                .add(1, "The Velvet Rage", 3).add(1, "Nonfiction", 2)
+                .build();
+        InvertedIndex cached = InvertedIndex.builder()
+                .add(0, DocTerms.builder().add("Tipping the Velvet", 3).add("Historical Fiction", 2).build())
+                .add(1, DocTerms.builder().add("The Velvet Rage", 3).add("Nonfiction", 2).build())
+                .build();
+        InvertedIndex.Result a = tokenized.search("velvet", 0, 10);
+        InvertedIndex.Result b = cached.search("velvet", 0, 10);
+        assertArrayEquals(a.docs(), b.docs());
+        assertArrayEquals(a.scores(), b.scores());
+    }
+
+    @Test
+    void builderReportsWhenTheBudgetIsReached() {
+        InvertedIndex.Builder builder = InvertedIndex.builder(1_000);
+        assertTrue(builder.hasRoom());
+        for (int doc = 0; builder.hasRoom(); doc++) builder.add(doc, "term" + doc, 1);
+        assertTrue(builder.estimatedBytes() >= 1_000);
+        assertEquals(builder.estimatedBytes(), builder.build().estimatedBytes());
+    }
+
+    @Test
+    void editDistanceCountsTranspositionsAndStopsEarly() {
+        assertEquals(3, InvertedIndex.editDistance("kitten", "sitting", 3));
+        assertEquals(1, InvertedIndex.editDistance("ab", "ba", 1));
+        assertEquals(2, InvertedIndex.editDistance("kitten", "sitting", 1), "capped at max + 1");
+    }
+
+    @Test
+    void tokenizerSplitsOnPunctuationAndLowercases() {
+        assertIterableEquals(java.util.List.of("it", "s", "a", "truth", "universally"),
+                Tokenizer.tokenize("“It's a truth—universally…”"));
+    }
+}
@@ -0,0 +1,33 @@
+package com.mkr.scraper.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogSnapshotTest {
+    private final CatalogSnapshot<Long> snapshot =
+            new CatalogSnapshot<>(3, Instant.now(), List.of(2L, 5L, 7L, 11L), Long::longValue);
+
+    @Test
+    void afterSeeksPastTheGivenId() {
+        assertEquals(List.of(2L, 5L), snapshot.after(0, 2));
+        assertEquals(List.of(7L, 11L), snapshot.after(5, 10));
+        assertEquals(List.of(7L), snapshot.after(6, 1), "ids that were removed still work as cursors");
+        assertEquals(List.of(), snapshot.after(11, 5));
+    }
+
+    @Test
+    void byIdFindsExactMatchesOnly() {
+        assertEquals(Long.valueOf(7), snapshot.byId(7));
+        assertNull(snapshot.byId(6));
+    }
+
+    @Test
+    void emptySnapshotIsGenerationZero() {
+        assertEquals(0, CatalogSnapshot.empty().generation());
+        assertEquals(0, CatalogSnapshot.empty().size());
+    }
+}
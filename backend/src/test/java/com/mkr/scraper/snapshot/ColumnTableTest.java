@@ -0,0 +1,106 @@
+package com.mkr.scraper.snapshot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.book.BookSummary;
+import com.mkr.scraper.quote.QuoteEntity;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnTableTest {
+    private final ObjectMapper json = new ObjectMapper();
+
+    static BookEntity book(long id, String category, String price, String description) {
+        BookEntity b = new BookEntity();
+        b.setId(id);
+        b.setTitle("Book " + id);
+        b.setImageUrl("https://books.toscrape.com/media/" + id + ".jpg");
+        b.setProductUrl("https://books.toscrape.com/catalogue/book_" + id + "/index.html");
+        b.setRating("Three");
+        b.setCategory(category);
+        b.setPrice(price == null ? null : new BigDecimal(price));
+        b.setPriceExclTax(price == null ? null : new BigDecimal(price));
+        b.setPriceInclTax(price == null ? null : new BigDecimal(price));
+        b.setTax(new BigDecimal("0.00"));
+        b.setAvailability("In stock (19 available)");
+        b.setUpc("upc" + id);
+        b.setProductType("Books");
+        b.setNumberOfReviews(id % 2 == 0 ? null : 0);
+        b.setDescription(description);
+        b.setContentHash("hash" + id);
+        return b;
+    }
+
+    @Test
+    void booksDecodeToTheSameJson() throws Exception {
+        List<BookEntity> books = List.of(
+                book(1, "Poetry", "51.77", "It's hard to imagine a world without A Light in the Attic. ".repeat(20)),
+                book(4, "Mystery", null, null),
+                book(9, null, "0.00", "Ünïcødé — description"));
+        BookTable table = BookTable.of(books);
+        assertSame(table, BookTable.of(table));
+        assertEquals(3, table.size());
+        for (int row = 0; row < books.size(); row++) {
+            assertEquals(json.writeValueAsString(books.get(row)), json.writeValueAsString(table.get(row)));
+            assertEquals(books.get(row).getContentHash(), table.contentHash(row));
+        }
+        assertEquals(5177, table.priceCents(0));
+        assertEquals(BookTable.NO_PRICE, table.priceCents(1));
+        assertEquals(json.writeValueAsString(BookSummary.of(books.get(0))), json.writeValueAsString(table.summary(0)));
+        assertTrue(table.offHeapBytes() < books.get(0).getDescription().length(), "descriptions are compressed");
+    }
+
+    @Test
+    void quotesDecodeTheirTags() throws Exception {
+        QuoteEntity first = quote(2, "Albert Einstein", List.of("change", "deep-thoughts"));
+        QuoteEntity second = quote(3, "Albert Einstein", List.of());
+        QuoteEntity third = quote(5, "Jane Austen", List.of("change"));
+        QuoteTable table = QuoteTable.of(List.of(first, second, third));
+        assertEquals(List.of("change", "deep-thoughts"), table.tags(0));
+        assertEquals(List.of(), table.tags(1));
+        assertEquals("Jane Austen", table.author(2));
+        assertEquals(json.writeValueAsString(first), json.writeValueAsString(table.get(0)));
+        assertEquals(json.writeValueAsString(third), json.writeValueAsString(table.get(2)));
+    }
+
+    @Test
+    void snapshotsOverTablesSeekById() {
+        CatalogSnapshot<BookEntity> snapshot = new CatalogSnapshot<>(1, Instant.now(),
+                BookTable.of(List.of(book(2, "Poetry", "1.00", null), book(5, "Poetry", "2.00", null))));
+        assertEquals(5L, snapshot.byId(5).getId());
+        assertEquals(List.of(5L), snapshot.after(2, 10).stream().map(BookEntity::getId).toList());
+        assertEquals("Book 2", snapshot.view(BookTable.of(snapshot.items())::summary).items().get(0).title());
+    }
+
+    @Test
+    void readersOnlyEverChangeTheirOwnCopy() {
+        CatalogSnapshot<BookEntity> books = new CatalogSnapshot<>(1, Instant.now(),
+                BookTable.of(List.of(book(2, "Poetry", "1.00", null))));
+        BookEntity mine = books.byId(2);
+        mine.setTitle("Defaced");
+        mine.setPrice(BigDecimal.ZERO);
+        assertEquals("Book 2", books.byId(2).getTitle());
+        assertEquals(0, new BigDecimal("1.00").compareTo(books.items().get(0).getPrice()));
+
+        CatalogSnapshot<QuoteEntity> quotes = new CatalogSnapshot<>(1, Instant.now(),
+                QuoteTable.of(List.of(quote(3, "Jane Austen", List.of("change")))));
+        quotes.byId(3).getTags().set(0, "defaced");
+        assertEquals(List.of("change"), quotes.byId(3).getTags());
+        assertThrows(UnsupportedOperationException.class, () -> books.items().set(0, mine));
+    }
+
+    private static QuoteEntity quote(long id, String author, List<String> tags) {
+        QuoteEntity q = new QuoteEntity();
+        q.setId(id);
+        q.setText("Quote " + id);
+        q.setAuthor(author);
+        q.setTags(tags);
+        q.setContentHash("hash" + id);
+        return q;
+    }
+}
@@ -0,0 +1,119 @@
+package com.mkr.scraper.snapshot;
+
+import com.mkr.scraper.book.BookEntity;
+import com.mkr.scraper.quote.QuoteEntity;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Heap held by a snapshot of entities (what the read model used to keep) versus the columnar tables, per
+ * {@code bench.rows} items (default 100k). Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ReadModelFootprintBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("bench.rows", 100_000);
+    private static final String[] WORDS = ("the of and a to in is you that it he was for on are as with his they at be "
+            + "this have from or one had by word but not what all were we when your can said there use an each which "
+            + "she do how their if will up other about out many then them these so some her would make like him into "
+            + "time has look two more write go see number no way could people my than first water been call who oil "
+            + "its now find long down day did get come made may part novel story love mystery secret family").split(" ");
+    private static final String[] CATEGORIES = {"Poetry", "Mystery", "Historical Fiction", "Travel", "Romance",
+            "Fantasy", "Science", "Classics", "Horror", "Nonfiction"};
+    private static final String[] RATINGS = {"One", "Two", "Three", "Four", "Five"};
+
+    @Test
+    void entitiesVersusColumns() {
+        long entityBooks = retained(() -> books(ROWS));
+        long tableBooks = retained(() -> BookTable.of(books(ROWS)));
+        long entityQuotes = retained(() -> quotes(ROWS));
+        long tableQuotes = retained(() -> QuoteTable.of(quotes(ROWS)));
+        BookTable books = BookTable.of(books(ROWS));
+        QuoteTable quotes = QuoteTable.of(quotes(ROWS));
+
+        System.out.printf("Read model heap for %d items:%n", ROWS);
+        System.out.printf("  books   entities %7.1f MB  table %7.1f MB (estimate %.1f MB) + %.1f MB off-heap%n",
+                mb(entityBooks), mb(tableBooks), mb(books.heapBytes()), mb(books.offHeapBytes()));
+        System.out.printf("  quotes  entities %7.1f MB  table %7.1f MB (estimate %.1f MB)%n",
+                mb(entityQuotes), mb(tableQuotes), mb(quotes.heapBytes()));
+        assertTrue(tableBooks < entityBooks);
+        assertTrue(tableQuotes < entityQuotes);
+    }
+
+    // Used heap after a full GC with the result reachable, minus used heap before
+    private static long retained(Supplier<Object> build) {
+        long before = usedAfterGc();
+        Object kept = build.get();
+        long after = usedAfterGc();
+        assertNotNull(kept);
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        return text.toString();
+    }
+
+    private static List<BookEntity> books(int n) {
+        Random random = new Random(1);
+        List<BookEntity> books = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            BookEntity b = new BookEntity();
+            b.setId((long) i + 1);
+            b.setTitle(words(random, 4));
+            b.setImageUrl("https://books.toscrape.com/media/cache/" + Integer.toHexString(random.nextInt()) + ".jpg");
+            b.setProductUrl("https://books.toscrape.com/catalogue/book_" + i + "/index.html");
+            b.setRating(RATINGS[random.nextInt(RATINGS.length)]);
+            b.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+            BigDecimal price = BigDecimal.valueOf(1000 + random.nextInt(5000), 2);
+            b.setPrice(price);
+            b.setPriceExclTax(price);
+            b.setPriceInclTax(price);
+            b.setTax(BigDecimal.valueOf(0, 2));
+            // Strings as Hibernate would hand them over: one instance per row, not shared literals
+            b.setAvailability(new String("In stock (" + (1 + random.nextInt(22)) + " available)"));
+            b.setProductType(new String("Books"));
+            b.setUpc(Long.toHexString(random.nextLong()));
+            b.setNumberOfReviews(0);
+            b.setDescription(words(random, 150));
+            b.setContentHash(Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+            books.add(b);
+        }
+        return books;
+    }
+
+    private static List<QuoteEntity> quotes(int n) {
+        Random random = new Random(2);
+        List<QuoteEntity> quotes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            QuoteEntity q = new QuoteEntity();
+            q.setId((long) i + 1);
+            q.setText(words(random, 20));
+            q.setAuthor(new String("Author " + random.nextInt(500)));
+            List<String> tags = new ArrayList<>();
+            for (int t = random.nextInt(5); t > 0; t--) tags.add(new String("tag" + random.nextInt(200)));
+            q.setTags(tags);
+            q.setContentHash(Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+            quotes.add(q);
+        }
+        return quotes;
+    }
+}
@@ -0,0 +1,55 @@
+package com.mkr.scraper.suggest;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Per-keystroke latency of {@link SuggestIndex} over {@code bench.rows} titles (default 100k), typing random
+ * prefixes one character at a time. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class SuggestIndexBenchmarkTest {
+    private static final int ROWS = Integer.getInteger("bench.rows", 100_000);
+    private static final String[] WORDS = ("light attic world sharp objects velvet tipping soumission requiem "
+            + "dark secret garden history love poetry mystery travel journey night city river house girl boy war "
+            + "star king queen shadow fire water stone heart song").split(" ");
+
+    @Test
+    void keystrokeLatency() {
+        Random random = new Random(5);
+        SuggestIndex.Builder builder = SuggestIndex.builder();
+        for (int i = 0; i < ROWS; i++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 2 + random.nextInt(4); w > 0; w--) title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            builder.add(title.toString() + i, SuggestIndex.Kind.TITLE, random.nextInt(100), i);
+        }
+        long buildStart = System.nanoTime();
+        SuggestIndex index = builder.build();
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        long[] latencies = new long[200_000];
+        int keystrokes = 0;
+        long total = 0;
+        // The first rounds only warm up the JIT
+        for (int round = 0; keystrokes < latencies.length; round++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            for (int len = 1; len <= word.length() && keystrokes < latencies.length; len++) {
+                long start = System.nanoTime();
+                assertFalse(index.suggest(word.substring(0, len), 10).isEmpty());
+                long nanos = System.nanoTime() - start;
+                if (round < 2000) continue;
+                latencies[keystrokes++] = nanos;
+                total += nanos;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("Suggest over %d titles (%d keys, built in %d ms): %d keystrokes, mean %.1f us, "
+                        + "p99 %.1f us, p99.9 %.1f us%n", ROWS, index.keyCount(), buildMillis, keystrokes,
+                total / 1e3 / keystrokes, latencies[keystrokes * 99 / 100] / 1e3, latencies[keystrokes * 999 / 1000] / 1e3);
+    }
+}
@@ -0,0 +1,87 @@
+package com.mkr.scraper.suggest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuggestIndexTest {
+
+    private static SuggestIndex sample() {
+        return SuggestIndex.builder()
+                .add("A Light in the Attic", SuggestIndex.Kind.TITLE, 3, 1)
+                .add("The Light of the World", SuggestIndex.Kind.TITLE, 5, 2)
+                .add("Sharp Objects", SuggestIndex.Kind.TITLE, 4, 3)
+                .add("Poetry", SuggestIndex.Kind.CATEGORY, 19, 0)
+                .add("love", SuggestIndex.Kind.TAG, 14, 0)
+                .add("Albert Einstein", SuggestIndex.Kind.AUTHOR, 10, 0)
+                .add("--", SuggestIndex.Kind.TAG, 99, 0)
+                .build();
+    }
+
+    private static List<String> texts(List<SuggestIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(SuggestIndex.Suggestion::text).toList();
+    }
+
+    @Test
+    void matchesWordStartsHeaviestFirst() {
+        assertEquals(List.of("The Light of the World", "A Light in the Attic"), texts(sample().suggest("LIG", 10)));
+        assertEquals(List.of("A Light in the Attic"), texts(sample().suggest("att", 10)));
+        assertEquals(List.of("love", "The Light of the World", "A Light in the Attic"), texts(sample().suggest("l", 10)));
+        assertEquals(List.of(), texts(sample().suggest("ight", 10)), "only at word starts");
+    }
+
+    @Test
+    void prefixSpansWordsAndIgnoresPunctuation() {
+        assertEquals(List.of("A Light in the Attic"), texts(sample().suggest("light  in-t", 10)));
+        assertEquals(List.of(), texts(sample().suggest("  ", 10)));
+        assertEquals(List.of(), texts(sample().suggest("--", 10)), "punctuation-only suggestions are dropped");
+    }
+
+    @Test
+    void eachSuggestionOnceUpToLimit() {
+        // "the" starts two words of "The Light of the World"
+        List<SuggestIndex.Suggestion> the = sample().suggest("the", 10);
+        assertEquals(List.of("The Light of the World", "A Light in the Attic"), texts(the));
+        assertEquals(2, the.get(0).id());
+        assertEquals(1, sample().suggest("the", 1).size());
+    }
+
+    @Test
+    void matchesAScanOverRandomSuggestions() {
+        Random random = new Random(3);
+        String letters = "abcde";
+        SuggestIndex.Builder builder = SuggestIndex.builder();
+        List<String> texts = new ArrayList<>();
+        List<Long> weights = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder text = new StringBuilder();
+            for (int w = 1 + random.nextInt(3); w > 0; w--) {
+                if (!text.isEmpty()) text.append(' ');
+                for (int c = 1 + random.nextInt(4); c > 0; c--) text.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            long weight = random.nextInt(1000);
+            builder.add(text.toString(), SuggestIndex.Kind.TITLE, weight, i);
+            texts.add(text.toString());
+            weights.add(weight);
+        }
+        SuggestIndex index = builder.build();
+        for (int q = 0; q < 300; q++) {
+            StringBuilder prefix = new StringBuilder();
+            for (int c = 1 + random.nextInt(3); c > 0; c--) prefix.append(letters.charAt(random.nextInt(letters.length())));
+            String p = prefix.toString();
+            List<Long> expected = new ArrayList<>();
+            for (int i = 0; i < texts.size(); i++) {
+                String t = texts.get(i);
+                if (t.startsWith(p) || t.contains(" " + p)) expected.add(weights.get(i));
+            }
+            expected.sort(Comparator.reverseOrder());
+            List<Long> actual = index.suggest(p, 10).stream().map(SuggestIndex.Suggestion::weight).toList();
+            assertEquals(expected.subList(0, Math.min(10, expected.size())), actual, "prefix " + p);
+        }
+    }
+}
@@ -51,6 +51,19 @@ const renderStars = (r: string | number | undefined, size: 'sm' | 'lg' = 'sm') =
   );
 };
 
+// Related items of one book or quote; null when the request failed or was aborted
+const loadRelated = async <T,>(type: 'books' | 'quotes', id: number, signal: AbortSignal): Promise<T[] | null> => {
+  try {
+    const res = await fetch(`http://localhost:8080/api/${type}/${id}/related`, { signal });
+    if (!res.ok) return null;
+    const data: { related: { item: T }[] } = await res.json();
+    return data.related.map(r => r.item);
+  } catch (e) {
+    if (!signal.aborted) console.error(e);
+    return null;
+  }
+};
+
 // Page sizes for pagination
 const PAGE_SIZES = {
   books: 20,
@@ -65,6 +78,8 @@ export default function HomePage() {
   const [page, setPage] = useState(1);
   const [showModalQuote, setShowModalQuote] = useState<Quote | null>(null);
   const [showModalBook, setShowModalBook] = useState<Book | null>(null);
+  const [relatedQuotes, setRelatedQuotes] = useState<Quote[]>([]);
+  const [relatedBooks, setRelatedBooks] = useState<Book[]>([]);
   const [isMobile, setIsMobile] = useState(false);
   const [theme, setTheme] = useState<'light' | 'dark' | ''>('');
   const [hideHeader, setHideHeader] = useState(false);
@@ -79,6 +94,30 @@ export default function HomePage() {
     return () => window.removeEventListener('resize', handler);
   }, []);
 
+  // Related items are precomputed by the backend; load them when a modal opens. One effect per modal, and each
+  // aborts its request when the modal closes or shows another item, so a late response never lands on the wrong one
+  const relatedQuoteId = showModalQuote?.id;
+  useEffect(() => {
+    setRelatedQuotes([]);
+    if (relatedQuoteId === undefined) return;
+    const controller = new AbortController();
+    loadRelated<Quote>('quotes', relatedQuoteId, controller.signal).then(items => {
+      if (items && !controller.signal.aborted) setRelatedQuotes(items);
+    });
+    return () => controller.abort();
+  }, [relatedQuoteId]);
+
+  const relatedBookId = showModalBook?.id;
+  useEffect(() => {
+    setRelatedBooks([]);
+    if (relatedBookId === undefined) return;
+    const controller = new AbortController();
+    loadRelated<Book>('books', relatedBookId, controller.signal).then(items => {
+      if (items && !controller.signal.aborted) setRelatedBooks(items);
+    });
+    return () => controller.abort();
+  }, [relatedBookId]);
+
   useEffect(() => {
     // Fetch initial data when mode changes
     const fetchData = async () => {
@@ -475,7 +514,7 @@ export default function HomePage() {
             </div>
             <div className={styles.relatedHeader}>Related Quotes</div>
             <div className={styles.relatedGrid}>
-              {quotes.filter(q => q !== showModalQuote && q.tags.some(t => showModalQuote.tags.includes(t))).slice(0, 6).map((qt, idx) => (
+              {relatedQuotes.map((qt, idx) => (
                 <RelatedQuoteCard key={`${qt.text.slice(0,20)}-${idx}`} quote={qt} onClick={() => setShowModalQuote(qt)} />
               ))}
             </div>
@@ -556,7 +595,7 @@ export default function HomePage() {
             {/* Related books */}
             <div className={styles.relatedHeader}>Related Books</div>
             <div className={styles.relatedGrid}>
-              {books.filter(b => b !== showModalBook && b.category && showModalBook.category && b.category === showModalBook.category).slice(0, 8).map((rb, idx) => (
+              {relatedBooks.map((rb, idx) => (
                 <div key={`${rb.title}-${idx}`} className={`${styles.relatedCard} ${styles.relatedBookCard}`} onClick={() => setShowModalBook(rb)}>
                   {/* eslint-disable-next-line @next/next/no-img-element */}
                   <img src={String(rb.imageUrl)} alt={rb.title} className={styles.relatedBookImage} />